@@ -0,0 +1,118 @@
+package benchmarks;
+
+import service.BalanceEngine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Measures the {@link BalanceEngine}: the transfers per second it makes durable with group commit and
+ * with a force of the write-ahead log per transfer, the time it takes to load the balances, the time it
+ * takes to recover after a crash, i.e. to load the balances and replay the transfers logged since the
+ * last checkpoint, and the time of the checkpoint that writes the changed balances back.
+ * The accounts are inserted with one INSERT ... SELECT. Pass the number of accounts as the first argument
+ * and the number of transfers as the second (both 1000000 by default); the run without group commit makes
+ * a hundredth of the transfers.
+ */
+public class BalanceEngineThroughput {
+    private static final int WAL_SEGMENT_SIZE = 64 << 20;
+    private static final int GROUP_COMMIT_SIZE = 1024;
+    // Transfers in flight at once, so the producer does not hold a future per transfer
+    private static final int WINDOW = GROUP_COMMIT_SIZE * 8;
+
+    public static void main(String[] args) throws IOException {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int transfers = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path walDirectory = Files.createTempDirectory("balance-wal");
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(Collections.emptyMap())) {
+            long start = System.nanoTime();
+            insertAccounts(database, accounts);
+            StringBuilder report = new StringBuilder(String.format("%n%-28s %10.1f s (%d accounts)%n",
+                    "insert accounts", seconds(System.nanoTime() - start), accounts));
+
+            BalanceEngine single = new BalanceEngine(database.getTransactionTemplate(), walDirectory.resolve("single"),
+                    WAL_SEGMENT_SIZE, 1, Duration.ofHours(1));
+            single.start();
+            int singleTransfers = Math.max(1, transfers / 100);
+            report.append(String.format("%-28s %10.0f transfers/s (%d transfers)%n", "force per transfer",
+                    transfersPerSecond(single, accounts, singleTransfers), singleTransfers));
+            single.close();
+
+            BalanceEngine engine = new BalanceEngine(database.getTransactionTemplate(), walDirectory.resolve("grouped"),
+                    WAL_SEGMENT_SIZE, GROUP_COMMIT_SIZE, Duration.ofHours(1));
+            engine.start();
+            report.append(String.format("%-28s %10.1f s%n", "load balances", seconds(engine.getRecoveryTime().toNanos())));
+            report.append(String.format("%-28s %10.0f transfers/s (%d transfers)%n", "group commit of " + GROUP_COMMIT_SIZE,
+                    transfersPerSecond(engine, accounts, transfers), transfers));
+
+            // The engine is abandoned as if the process had died: no checkpoint was written since the start
+            BalanceEngine recovered = new BalanceEngine(database.getTransactionTemplate(), walDirectory.resolve("grouped"),
+                    WAL_SEGMENT_SIZE, GROUP_COMMIT_SIZE, Duration.ofHours(1));
+            recovered.start();
+            report.append(String.format("%-28s %10.1f s (%d transfers replayed)%n", "recover",
+                    seconds(recovered.getRecoveryTime().toNanos()), recovered.getReplayedTransfers()));
+            start = System.nanoTime();
+            recovered.checkpoint();
+            report.append(String.format("%-28s %10.1f s%n", "checkpoint", seconds(System.nanoTime() - start)));
+            recovered.close();
+            System.out.print(report);
+        } finally {
+            try (Stream<Path> files = Files.walk(walDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        // The abandoned engine's writer is still waiting for requests
+        System.exit(0);
+    }
+
+    private static double transfersPerSecond(BalanceEngine engine, int accounts, int transfers) {
+        CompletableFuture<?>[] window = new CompletableFuture<?>[WINDOW];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long start = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            int slot = i % WINDOW;
+            if (window[slot] != null) {
+                window[slot].join();
+            }
+            int from = 1 + random.nextInt(accounts);
+            int to = 1 + (from + random.nextInt(accounts - 1)) % accounts;
+            window[slot] = engine.makeMoneyTransfer(1 + random.nextInt(100), from, to);
+        }
+        for (CompletableFuture<?> transfer : window) {
+            if (transfer != null) {
+                transfer.join();
+            }
+        }
+        return transfers * 1_000_000_000.0 / (System.nanoTime() - start);
+    }
+
+    private static void insertAccounts(BenchmarkDatabase database, int accounts) {
+        String rows = BenchmarkDatabase.isEmbedded()
+                ? "SELECT x FROM SYSTEM_RANGE(1, ?)"
+                : "SELECT g FROM generate_series(1, ?) g";
+        database.getTransactionTemplate().runInTransaction(em -> {
+            try (PreparedStatement statement = em.unwrap(Connection.class).prepareStatement(
+                    "INSERT INTO account (id_account, account_number, account_balance, account_type, currency_type, version) "
+                            + "SELECT n, CAST(n AS VARCHAR(10)), 1000000, 'checking', 'CZK', 0 FROM (" + rows + ") ids(n)")) {
+                statement.setInt(1, accounts);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not insert the accounts", e);
+            }
+        });
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
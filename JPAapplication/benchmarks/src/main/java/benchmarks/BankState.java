@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A seeded benchmark database shared by all benchmark threads of a trial. The data set size is
+ * controlled by the banks, persons, accounts and cards parameters, e.g. {@code -p accounts=100000}.
+ */
+@State(Scope.Benchmark)
+public class BankState {
+    @Param("10")
+    public int banks;
+
+    @Param("1000")
+    public int persons;
+
+    @Param("2000")
+    public int accounts;
+
+    @Param("1000")
+    public int cards;
+
+    public BenchmarkDatabase database;
+    public DataSeeder.SeededData data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = BenchmarkDatabase.start(extraProperties());
+        data = new DataSeeder(database.getTransactionTemplate()).seed(banks, persons, accounts, cards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.println();
+        System.out.println("Connection pool: " + database.getPool().getMetrics());
+        database.close();
+    }
+
+    /**
+     * @return Persistence unit properties to start the database with.
+     */
+    protected Map<String, String> extraProperties() {
+        return Collections.emptyMap();
+    }
+
+    public Integer randomAccount() {
+        return random(data.accountIds);
+    }
+
+    /**
+     * @return A random account other than the given one.
+     */
+    public Integer randomAccountOtherThan(Integer idAccount) {
+        Integer other;
+        do {
+            other = randomAccount();
+        } while (other.equals(idAccount));
+        return other;
+    }
+
+    static <T> T random(List<T> values) {
+        return values.get(ThreadLocalRandom.current().nextInt(values.size()));
+    }
+}
@@ -0,0 +1,135 @@
+package benchmarks;
+
+import DAO.QueryRegistry;
+import DAO.TransactionTemplate;
+import jakarta.persistence.EntityManagerFactory;
+import pool.ConnectionPool;
+import pool.ReplicaRouter;
+import service.BankService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The "Bank" persistence unit pointed at a throw-away database. By default this is an in-memory H2
+ * database in PostgreSQL mode; set the bench.jdbc.url, bench.jdbc.user, bench.jdbc.password and
+ * bench.jdbc.driver system properties to run the same benchmarks against a local PostgreSQL server.
+ * H2 runs queries lazily, so like PostgreSQL it does not materialize a result set a cursor reads.
+ * The schema is dropped and re-created on start and the named queries are prepared, see
+ * DAO.QueryRegistry. Reports are routed to the read replicas of the bank.replica.urls property, e.g. a
+ * streaming standby of that server, if it is set.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final ConnectionPool pool;
+    private final EntityManagerFactory entityManagerFactory;
+    private final QueryRegistry queryRegistry;
+    private final ReplicaRouter replicaRouter;
+    private final TransactionTemplate transactionTemplate;
+    private final BankService bankService;
+
+    private BenchmarkDatabase(Map<String, String> properties) {
+        pool = ConnectionPool.forPersistenceUnit("Bank", properties);
+        entityManagerFactory = pool.createEntityManagerFactory();
+        queryRegistry = QueryRegistry.prepare(entityManagerFactory);
+        replicaRouter = ReplicaRouter.forPersistenceUnit("Bank", pool, properties);
+        transactionTemplate = new TransactionTemplate(entityManagerFactory, replicaRouter);
+        bankService = new BankService(transactionTemplate);
+    }
+
+    /**
+     * Starts a database with an empty schema.
+     *
+     * @param extraProperties Persistence unit properties specific to the benchmark, e.g. cache settings.
+     * @return The started database.
+     */
+    public static BenchmarkDatabase start(Map<String, String> extraProperties) {
+        Map<String, String> properties = new HashMap<>();
+        String url = System.getProperty("bench.jdbc.url");
+        if (url == null) {
+            properties.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:bench" + DATABASES.incrementAndGet()
+                    + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;LOCK_TIMEOUT=10000;LAZY_QUERY_EXECUTION=1");
+            properties.put("jakarta.persistence.jdbc.driver", "org.h2.Driver");
+            properties.put("jakarta.persistence.jdbc.user", "sa");
+            properties.put("jakarta.persistence.jdbc.password", "");
+            // H2 understands the PostgreSQL dialect, but not the DDL EclipseLink generates for H2 2.x
+            properties.put("eclipselink.target-database", "PostgreSQL");
+        } else {
+            properties.put("jakarta.persistence.jdbc.url", url);
+            properties.put("jakarta.persistence.jdbc.driver", System.getProperty("bench.jdbc.driver", "org.postgresql.Driver"));
+            properties.put("jakarta.persistence.jdbc.user", System.getProperty("bench.jdbc.user", "postgres"));
+            properties.put("jakarta.persistence.jdbc.password", System.getProperty("bench.jdbc.password", ""));
+        }
+        properties.put("jakarta.persistence.schema-generation.database.action", "drop-and-create");
+        // Dropping a schema that does not exist yet logs a warning for every table and sequence
+        properties.put("eclipselink.logging.level", "SEVERE");
+        properties.putAll(extraProperties);
+        return new BenchmarkDatabase(properties);
+    }
+
+    /**
+     * @return true if the benchmarks run against the embedded stand-in rather than PostgreSQL.
+     */
+    public static boolean isEmbedded() {
+        return System.getProperty("bench.jdbc.url") == null;
+    }
+
+    /**
+     * Runs one of the SQL scripts shipped with the application, e.g. "/sql/ledger_partitions.sql", in a
+     * single transaction.
+     *
+     * @param resource The class path of the script.
+     */
+    public void runScript(String resource) {
+        transactionTemplate.runInTransaction(em -> {
+            try (InputStream in = BenchmarkDatabase.class.getResourceAsStream(resource);
+                 Statement statement = em.unwrap(Connection.class).createStatement()) {
+                statement.execute(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not run " + resource, e);
+            }
+        });
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    public ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+
+    public QueryRegistry getQueryRegistry() {
+        return queryRegistry;
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    public BankService getBankService() {
+        return bankService;
+    }
+
+    @Override
+    public void close() {
+        replicaRouter.close();
+        entityManagerFactory.close();
+        pool.close();
+    }
+}
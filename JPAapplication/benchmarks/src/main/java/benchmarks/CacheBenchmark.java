@@ -0,0 +1,59 @@
+package benchmarks;
+
+import entities.Account;
+import entities.Bank;
+import metrics.CacheStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read paths with the shared (L2) cache switched on and off, to measure what the per-entity cache
+ * policies buy. The cache hit/miss counts of each trial are printed when it ends.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CacheState extends BankState {
+        @Param({"true", "false"})
+        public boolean sharedCache;
+
+        @Override
+        protected Map<String, String> extraProperties() {
+            return Collections.singletonMap("eclipselink.cache.shared.default", String.valueOf(sharedCache));
+        }
+
+        @Setup(Level.Iteration)
+        public void resetStatistics() {
+            CacheStatistics.getInstance().reset();
+        }
+
+        @TearDown(Level.Iteration)
+        public void printStatistics() {
+            System.out.println();
+            System.out.println("Cache: " + CacheStatistics.getInstance());
+        }
+    }
+
+    @Benchmark
+    public Account findAccount(CacheState state) {
+        return state.database.getBankService().findAccount(state.randomAccount());
+    }
+
+    @Benchmark
+    public Bank findBank(CacheState state) {
+        return state.database.getBankService().findBank(BankState.random(state.data.bankIds));
+    }
+
+    @Benchmark
+    public Bank findBankByIban(CacheState state) {
+        return state.database.getBankService().findBankByIban(BankState.random(state.data.ibans));
+    }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import entities.Account;
+import metrics.ContentionStatistics;
+import org.openjdk.jmh.annotations.*;
+import service.RetryPolicy;
+import service.TransferStatus;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes that all hit the same few accounts: optimistic read-modify-write through
+ * {@link service.BankService#modifyAccount}, retried on version conflicts, and pessimistically locked
+ * transfers between the same accounts. Run with {@code -t} threads, or use {@link ContentionScaling}
+ * to sweep the thread count; the conflicts, retries and give-ups of the hottest accounts are printed
+ * after every iteration.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ContentionState extends BankState {
+        @Param("4")
+        public int hotAccounts;
+
+        List<Integer> hot;
+
+        @Setup(Level.Trial)
+        public void pickHotAccounts() {
+            hot = data.accountIds.subList(0, hotAccounts);
+        }
+
+        @Setup(Level.Iteration)
+        public void resetStatistics() {
+            ContentionStatistics.getInstance().reset();
+        }
+
+        @TearDown(Level.Iteration)
+        public void printStatistics() {
+            System.out.println();
+            System.out.println("Contention:");
+            System.out.print(ContentionStatistics.getInstance());
+        }
+
+        Integer randomHotAccount() {
+            return BankState.random(hot);
+        }
+    }
+
+    /**
+     * @return The changed account, or null if the change gave up after its last attempt.
+     */
+    @Benchmark
+    public Account modifyAccount(ContentionState state) {
+        double amount = 1 + ThreadLocalRandom.current().nextInt(100);
+        try {
+            return state.database.getBankService().modifyAccount(state.randomHotAccount(),
+                    account -> account.setAccount_balance(account.getAccount_balance() + amount));
+        } catch (RuntimeException e) {
+            // A give-up is an outcome under contention, already counted by the statistics
+            if (!RetryPolicy.isTransient(e)) {
+                throw e;
+            }
+            return null;
+        }
+    }
+
+    @Benchmark
+    public TransferStatus transferBetweenHotAccounts(ContentionState state) {
+        Integer from = state.randomHotAccount();
+        Integer to;
+        do {
+            to = state.randomHotAccount();
+        } while (to.equals(from));
+        return state.database.getBankService().makeMoneyTransfer(1 + ThreadLocalRandom.current().nextInt(100), from, to);
+    }
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs {@link ContentionBenchmark} with 1, 2, 4, ... threads and prints the throughput and tail latency of
+ * each thread count, to show how optimistic retries and row locks behave as more threads fight over the
+ * same accounts. Pass the highest thread count as the first argument (default 16) and the number of hot
+ * accounts as the second (default 4).
+ */
+public class ContentionScaling {
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        String hotAccounts = args.length > 1 ? args[1] : "4";
+        List<String> lines = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(ContentionBenchmark.class.getName())
+                    .param("hotAccounts", hotAccounts)
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                lines.add(String.format("%3d threads  %-28s %-12s %s", threads, result.getParams().getBenchmark()
+                                .substring(result.getParams().getBenchmark().lastIndexOf('.') + 1),
+                        result.getParams().getMode(), result.getPrimaryResult()));
+            }
+        }
+        System.out.println();
+        lines.forEach(System.out::println);
+    }
+}
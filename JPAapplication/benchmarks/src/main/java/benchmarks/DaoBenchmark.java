@@ -0,0 +1,164 @@
+package benchmarks;
+
+import entities.*;
+import org.openjdk.jmh.annotations.*;
+import service.BankService;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CRUD operations of the DAOs, called through the {@link BankService} wrappers so every call runs
+ * in its own unit of work as it does in the application.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DaoBenchmark {
+
+    @Benchmark
+    public Account findAccount(BankState state) {
+        return service(state).findAccount(state.randomAccount());
+    }
+
+    @Benchmark
+    public Bank findBank(BankState state) {
+        return service(state).findBank(BankState.random(state.data.bankIds));
+    }
+
+    @Benchmark
+    public Person findPerson(BankState state) {
+        return service(state).findPerson(BankState.random(state.data.personIds));
+    }
+
+    @Benchmark
+    public Customer findCustomer(BankState state) {
+        return service(state).findCustomer(BankState.random(state.data.customerIds));
+    }
+
+    @Benchmark
+    public Employee findEmployee(BankState state) {
+        return service(state).findEmployee(BankState.random(state.data.employeeIds));
+    }
+
+    @Benchmark
+    public Education findEducation(BankState state) {
+        return service(state).findEducation(BankState.random(state.data.getEducationIds()));
+    }
+
+    @Benchmark
+    public Payment_card findPayment_card(BankState state) {
+        return service(state).findPayment_card(BankState.random(state.data.cardIds));
+    }
+
+    @Benchmark
+    public void updateAccount(BankState state) {
+        Account account = service(state).findAccount(state.randomAccount());
+        account.setAccount_type(ThreadLocalRandom.current().nextBoolean() ? "checking" : "savings");
+        service(state).updateAccount(account);
+    }
+
+    @Benchmark
+    public void updatePerson(BankState state) {
+        Person person = service(state).findPerson(BankState.random(state.data.personIds));
+        person.setCity(ThreadLocalRandom.current().nextBoolean() ? "Prague" : "Brno");
+        service(state).updatePerson(person);
+    }
+
+    @Benchmark
+    public void updateBank(BankState state) {
+        Bank bank = service(state).findBank(BankState.random(state.data.bankIds));
+        bank.setMain_office(ThreadLocalRandom.current().nextBoolean() ? "Prague" : "Brno");
+        service(state).updateBank(bank);
+    }
+
+    @Benchmark
+    public void updateCustomer(BankState state) {
+        Customer customer = service(state).findCustomer(BankState.random(state.data.customerIds));
+        customer.setCustomer_status(ThreadLocalRandom.current().nextBoolean() ? "active" : "inactive");
+        service(state).updateCustomer(customer);
+    }
+
+    @Benchmark
+    public void updateEmployee(BankState state) {
+        Employee employee = service(state).findEmployee(BankState.random(state.data.employeeIds));
+        employee.setCity(ThreadLocalRandom.current().nextBoolean() ? "Prague" : "Brno");
+        service(state).updateEmployee(employee);
+    }
+
+    @Benchmark
+    public void updateEducation(BankState state) {
+        Education education = service(state).findEducation(BankState.random(state.data.getEducationIds()));
+        education.setEmployee(service(state).findEmployee(BankState.random(state.data.employeeIds)));
+        service(state).updateEducation(education);
+    }
+
+    @Benchmark
+    public void updatePayment_card(BankState state) {
+        Payment_card card = service(state).findPayment_card(BankState.random(state.data.cardIds));
+        card.setCard_status(ThreadLocalRandom.current().nextBoolean() ? "active" : "blocked");
+        service(state).updatePayment_card(card);
+    }
+
+    @Benchmark
+    public void createAndDeleteBank(BankState state) {
+        Bank bank = DataSeeder.newBank();
+        service(state).createBank(bank);
+        service(state).deleteBank(bank.getId_bank());
+    }
+
+    @Benchmark
+    public void createAndDeletePerson(BankState state) {
+        Person person = DataSeeder.newPerson();
+        service(state).createPerson(person);
+        service(state).deletePerson(person.getId_person());
+    }
+
+    @Benchmark
+    public void createAndDeleteAccount(BankState state) {
+        Account account = DataSeeder.newAccount(service(state).findBank(BankState.random(state.data.bankIds)));
+        service(state).createAccount(account);
+        service(state).deleteAccount(account.getId_account());
+    }
+
+    @Benchmark
+    public void createAndDeleteCustomer(BankState state) {
+        Customer customer = DataSeeder.newCustomer(service(state).findEmployee(BankState.random(state.data.employeeIds)));
+        service(state).createCustomer(customer);
+        service(state).deleteCustomer(customer.getId_person());
+    }
+
+    @Benchmark
+    public void createAndDeleteEmployee(BankState state) {
+        Employee employee = DataSeeder.newEmployee(null);
+        service(state).createEmployee(employee);
+        service(state).deleteEmployee(employee.getId_person());
+    }
+
+    @Benchmark
+    public void createAndDeleteEducation(BankState state) {
+        Education education = DataSeeder.newEducation(service(state).findEmployee(BankState.random(state.data.employeeIds)));
+        service(state).createEducation(education);
+        service(state).deleteEducation(education.getId_education());
+    }
+
+    /**
+     * A card belongs to at most one account, so each card gets an account of its own, created and
+     * deleted with it.
+     */
+    @Benchmark
+    public void createAndDeletePayment_card(BankState state) {
+        Account account = DataSeeder.newAccount(service(state).findBank(BankState.random(state.data.bankIds)));
+        service(state).createAccount(account);
+        Payment_card card = DataSeeder.newPaymentCard(account);
+        service(state).createPayment_card(card);
+        service(state).deletePayment_card(card.getId_card());
+        service(state).deleteAccount(account.getId_account());
+    }
+
+    private static BankService service(BankState state) {
+        return state.database.getBankService();
+    }
+}
@@ -0,0 +1,222 @@
+package benchmarks;
+
+import DAO.TransactionTemplate;
+import entities.*;
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fills a benchmark database with banks, persons (plain persons, employees with an education each,
+ * and customers), accounts with one or two holders each, and payment cards.
+ * Also builds the fresh entities the create benchmarks persist.
+ */
+public class DataSeeder {
+    private static final int CHUNK_SIZE = 500;
+    private static final AtomicLong UNIQUE = new AtomicLong(1_000_000);
+
+    private final TransactionTemplate transactionTemplate;
+    private final Random random = new Random(42);
+
+    public DataSeeder(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Seeds the database.
+     *
+     * @param banks    The number of banks.
+     * @param persons  The number of persons; a tenth are employees and four tenths are customers.
+     * @param accounts The number of accounts, spread over the banks and held by random persons.
+     * @param cards    The number of payment cards, one per account for the first accounts.
+     * @return The ids of everything that was created.
+     */
+    public SeededData seed(int banks, int persons, int accounts, int cards) {
+        SeededData data = new SeededData();
+
+        List<Bank> bankList = new ArrayList<>();
+        inChunks(banks, (em, i) -> {
+            Bank bank = newBank();
+            em.persist(bank);
+            bankList.add(bank);
+        });
+        bankList.forEach(bank -> {
+            data.bankIds.add(bank.getId_bank());
+            data.ibans.add(bank.getIban());
+        });
+
+        int employees = Math.max(1, persons / 10);
+        int customers = persons * 4 / 10;
+        List<Employee> employeeList = new ArrayList<>();
+        inChunks(employees, (em, i) -> {
+            Employee employee = newEmployee(employeeList.isEmpty() ? null : employeeList.get(0));
+            em.persist(employee);
+            Education education = newEducation(employee);
+            em.persist(education);
+            employeeList.add(employee);
+            data.educationIds.add(education);
+        });
+        employeeList.forEach(employee -> data.employeeIds.add(employee.getId_person()));
+
+        List<Person> personList = new ArrayList<>(employeeList);
+        inChunks(persons - employees, (em, i) -> {
+            Person person = i < customers
+                    ? newCustomer(employeeList.get(random.nextInt(employeeList.size())))
+                    : newPerson();
+            em.persist(person);
+            personList.add(person);
+        });
+        for (Person person : personList) {
+            data.personIds.add(person.getId_person());
+            if (person instanceof Customer) {
+                data.customerIds.add(person.getId_person());
+            }
+        }
+
+        List<Account> accountList = new ArrayList<>();
+        inChunks(accounts, (em, i) -> {
+            Account account = newAccount(em.getReference(Bank.class, data.bankIds.get(i % data.bankIds.size())));
+            em.persist(account);
+            accountList.add(account);
+        });
+        accountList.forEach(account -> data.accountIds.add(account.getId_account()));
+
+        // One or two holders per account, on the owning Person side of the relationship
+        inChunks(accounts, (em, i) -> {
+            Account account = em.getReference(Account.class, data.accountIds.get(i));
+            int holders = 1 + random.nextInt(2);
+            for (int h = 0; h < holders; h++) {
+                Person holder = em.find(Person.class, data.personIds.get(random.nextInt(data.personIds.size())));
+                if (holder.getAccounts() == null) {
+                    holder.setAccounts(new ArrayList<>());
+                }
+                if (!holder.getAccounts().contains(account)) {
+                    holder.getAccounts().add(account);
+                }
+            }
+        });
+
+        List<Payment_card> cardList = new ArrayList<>();
+        inChunks(Math.min(cards, accounts), (em, i) -> {
+            Payment_card card = newPaymentCard(em.getReference(Account.class, data.accountIds.get(i)));
+            em.persist(card);
+            cardList.add(card);
+        });
+        cardList.forEach(card -> data.cardIds.add(card.getId_card()));
+
+        transactionTemplate.getEntityManagerFactory().getCache().evictAll();
+        return data;
+    }
+
+    public static Bank newBank() {
+        long n = UNIQUE.incrementAndGet();
+        Bank bank = new Bank();
+        bank.setBank_name("Bank " + n);
+        bank.setMain_office("Office " + n);
+        bank.setIban("IBAN" + n);
+        return bank;
+    }
+
+    public static Account newAccount(Bank bank) {
+        Account account = new Account();
+        account.setAccount_number(String.format("%010d", UNIQUE.incrementAndGet()));
+        account.setAccount_balance(1_000_000);
+        account.setAccount_type("checking");
+        account.setCurrency_type("EUR");
+        account.setBank(bank);
+        return account;
+    }
+
+    public static Person newPerson() {
+        return fillPerson(new Person());
+    }
+
+    public static Employee newEmployee(Employee superior) {
+        Employee employee = fillPerson(new Employee());
+        employee.setSuperior(superior);
+        return employee;
+    }
+
+    public static Customer newCustomer(Employee employee) {
+        Customer customer = fillPerson(new Customer());
+        customer.setCustomer_status("active");
+        customer.setRegistration_date(new Date());
+        customer.setEmployee(employee);
+        return customer;
+    }
+
+    public static Education newEducation(Employee employee) {
+        return new Education(null, "University " + UNIQUE.incrementAndGet() % 100, employee);
+    }
+
+    public static Payment_card newPaymentCard(Account account) {
+        Payment_card card = new Payment_card();
+        card.setCard_number(String.format("%016d", UNIQUE.incrementAndGet()));
+        card.setCard_status("active");
+        card.setExpiration_date(new Date(System.currentTimeMillis() + 3L * 365 * 24 * 3600 * 1000));
+        card.setCVC((short) 123);
+        card.setAccount(account);
+        return card;
+    }
+
+    private static <T extends Person> T fillPerson(T person) {
+        long n = UNIQUE.incrementAndGet();
+        person.setBirth_certificate_number(String.format("%010d", n));
+        person.setBirth_date(new Date(0));
+        person.setFull_name("Person " + n);
+        person.setEmail("person" + n + "@example.com");
+        person.setPhone_number("+420" + n % 1_000_000_000);
+        person.setCountry("Czechia");
+        person.setCity("Prague");
+        person.setPostcode("11000");
+        person.setStreet("Street " + n % 100);
+        return person;
+    }
+
+    private void inChunks(int count, ChunkWork work) {
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            int start = from;
+            int end = Math.min(count, from + CHUNK_SIZE);
+            transactionTemplate.runInTransaction(em -> {
+                for (int i = start; i < end; i++) {
+                    work.apply(em, i);
+                }
+            });
+        }
+    }
+
+    private interface ChunkWork {
+        void apply(EntityManager em, int index);
+    }
+
+    /**
+     * Ids of the seeded rows.
+     */
+    public static class SeededData {
+        public final List<Integer> bankIds = new ArrayList<>();
+        public final List<String> ibans = new ArrayList<>();
+        public final List<Integer> personIds = new ArrayList<>();
+        public final List<Integer> customerIds = new ArrayList<>();
+        public final List<Integer> employeeIds = new ArrayList<>();
+        public final List<Integer> accountIds = new ArrayList<>();
+        public final List<Integer> cardIds = new ArrayList<>();
+        final List<Education> educationIds = new ArrayList<>();
+
+        public List<Integer> getEducationIds() {
+            List<Integer> ids = new ArrayList<>();
+            educationIds.forEach(education -> ids.add(education.getId_education()));
+            return ids;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.asList(bankIds.size() + " banks", personIds.size() + " persons",
+                    accountIds.size() + " accounts", cardIds.size() + " cards").toString();
+        }
+    }
+}
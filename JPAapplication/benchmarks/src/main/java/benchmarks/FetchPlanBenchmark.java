@@ -0,0 +1,93 @@
+package benchmarks;
+
+import DAO.FetchPlan;
+import entities.Account;
+import entities.Bank;
+import entities.Employee;
+import entities.Person;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import service.BankService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a bank with its accounts, their holders and payment cards, a person with their accounts and an
+ * employee with their customers and educations, by walking the graph lazily in the unit of work and by a
+ * {@link FetchPlan}. The statements each operation executed are printed at the end of every iteration, see
+ * {@link LoadCountingState}: walking lazily costs a query per account and relationship, the plan a fixed
+ * number whatever the size of the bank, e.g. compare {@code -p banks=10} with {@code -p banks=100}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FetchPlanBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class GraphState extends LoadCountingState {
+        @Param({"lazy", "plan"})
+        public String loading;
+
+        boolean lazy() {
+            return "lazy".equals(loading);
+        }
+    }
+
+    @Benchmark
+    public void bankAccountBook(GraphState state, Blackhole blackhole) {
+        Integer idBank = BankState.random(state.data.bankIds);
+        if (state.lazy()) {
+            state.database.getTransactionTemplate().withEntityManager(em -> {
+                walkAccounts(em.find(Bank.class, idBank).getAccounts(), blackhole);
+                return null;
+            });
+        } else {
+            walkAccounts(service(state).findBank(idBank, FetchPlan.BANK_ACCOUNT_BOOK).getAccounts(), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void personAccounts(GraphState state, Blackhole blackhole) {
+        Integer idPerson = BankState.random(state.data.personIds);
+        if (state.lazy()) {
+            state.database.getTransactionTemplate().withEntityManager(em -> {
+                walkAccounts(em.find(Person.class, idPerson).getAccounts(), blackhole);
+                return null;
+            });
+        } else {
+            walkAccounts(service(state).findPerson(idPerson, FetchPlan.PERSON_ACCOUNTS).getAccounts(), blackhole);
+        }
+    }
+
+    @Benchmark
+    public void employeePortfolio(GraphState state, Blackhole blackhole) {
+        Integer idEmployee = BankState.random(state.data.employeeIds);
+        if (state.lazy()) {
+            state.database.getTransactionTemplate().withEntityManager(em -> {
+                walkPortfolio(em.find(Employee.class, idEmployee), blackhole);
+                return null;
+            });
+        } else {
+            walkPortfolio(service(state).findEmployee(idEmployee, FetchPlan.EMPLOYEE_PORTFOLIO), blackhole);
+        }
+    }
+
+    private static void walkAccounts(Iterable<Account> accounts, Blackhole blackhole) {
+        for (Account account : accounts) {
+            blackhole.consume(account.getBank().getBank_name());
+            blackhole.consume(account.getPaymentCard());
+            blackhole.consume(account.getPersons().size());
+        }
+    }
+
+    private static void walkPortfolio(Employee employee, Blackhole blackhole) {
+        blackhole.consume(employee.getCustomers().size());
+        blackhole.consume(employee.getEducations().size());
+    }
+
+    private static BankService service(BankState state) {
+        return state.database.getBankService();
+    }
+}
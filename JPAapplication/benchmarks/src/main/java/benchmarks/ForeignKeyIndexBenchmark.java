@@ -0,0 +1,112 @@
+package benchmarks;
+
+import entities.Account;
+import entities.Bank;
+import entities.Education;
+import entities.Employee;
+import metrics.ExplainedQuery;
+import metrics.IndexAdvisor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups through the foreign key and join columns that had no index of their own: the accounts of
+ * a bank (account.iban), the accounts of a person (person_account.person_id), the educations of an
+ * employee (education.id_person) and the subordinates of an employee (employee.id_superior), with the
+ * indexes declared on the entities and with them dropped. The difference only shows on tables larger
+ * than a few pages and banks with few accounts each, e.g.
+ * {@code -p banks=10000 -p persons=100000 -p accounts=200000}. The embedded stand-in indexes every
+ * foreign key column itself, so the indexes are only dropped on PostgreSQL.
+ * <p>
+ * On PostgreSQL the SQL of the measured queries is captured and run through {@link IndexAdvisor}, whose
+ * report is printed at the end of the trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ForeignKeyIndexBenchmark {
+    private static final String[] FOREIGN_KEY_INDEXES = {
+            "account_iban_idx", "education_id_person_idx", "employee_id_superior_idx", "person_account_person_id_idx"};
+
+    @State(Scope.Benchmark)
+    public static class IndexState extends BankState {
+        @Param({"false", "true"})
+        public boolean foreignKeyIndexes;
+
+        List<Bank> banks;
+        List<Employee> employees;
+        IndexAdvisor advisor;
+
+        @Setup(Level.Trial)
+        public void dropIndexes() {
+            if (!foreignKeyIndexes && !BenchmarkDatabase.isEmbedded()) {
+                database.getTransactionTemplate().runInTransaction(em -> {
+                    for (String index : FOREIGN_KEY_INDEXES) {
+                        em.createNativeQuery("DROP INDEX IF EXISTS " + index).executeUpdate();
+                    }
+                });
+            }
+            banks = database.getTransactionTemplate().withEntityManager(em ->
+                    em.createQuery("SELECT b FROM Bank b", Bank.class).getResultList());
+            employees = database.getTransactionTemplate().withEntityManager(em ->
+                    em.createQuery("SELECT e FROM Employee e", Employee.class).getResultList());
+            if (!BenchmarkDatabase.isEmbedded()) {
+                database.getTransactionTemplate().runInTransaction(em ->
+                        em.createNativeQuery("ANALYZE").executeUpdate());
+                advisor = new IndexAdvisor(database.getEntityManagerFactory());
+                advisor.startCapture();
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            if (advisor != null) {
+                advisor.stopCapture();
+                List<ExplainedQuery> explained = advisor.analyze();
+                System.out.println();
+                System.out.println(advisor.report(explained));
+            }
+            super.tearDown();
+        }
+    }
+
+    @Benchmark
+    public List<Account> accountsOfBank(IndexState state) {
+        Bank bank = BankState.random(state.banks);
+        return state.database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                        "SELECT a FROM Account a WHERE a.bank = :bank", Account.class)
+                .setParameter("bank", bank)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Account> accountsOfPerson(IndexState state) {
+        Integer idPerson = BankState.random(state.data.personIds);
+        return state.database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                        "SELECT a FROM Account a JOIN a.persons p WHERE p.id_person = :idPerson", Account.class)
+                .setParameter("idPerson", idPerson)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Education> educationsOfEmployee(IndexState state) {
+        Employee employee = BankState.random(state.employees);
+        return state.database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                        "SELECT e FROM Education e WHERE e.employee = :employee", Education.class)
+                .setParameter("employee", employee)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<Employee> subordinates(IndexState state) {
+        Employee employee = BankState.random(state.employees);
+        return state.database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                        "SELECT e FROM Employee e WHERE e.superior = :employee", Employee.class)
+                .setParameter("employee", employee)
+                .getResultList());
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import service.PersonImportService;
+
+import java.io.Reader;
+
+/**
+ * An import file of generated persons that is produced line by line as it is read, so files of any
+ * size can be imported without holding them in memory. Every tenth row is an employee and every
+ * second row a customer.
+ */
+public class GeneratedPersonCsv extends Reader {
+    private final long rows;
+    private final long firstNumber;
+    private long row = -1;
+    private String line = PersonImportService.CSV_HEADER + "\n";
+    private int position;
+
+    /**
+     * @param rows        The number of person rows after the header.
+     * @param firstNumber The number the unique values of the first row are derived from.
+     */
+    public GeneratedPersonCsv(long rows, long firstNumber) {
+        this.rows = rows;
+        this.firstNumber = firstNumber;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        int read = 0;
+        while (read < length) {
+            if (position == line.length()) {
+                if (row + 1 == rows) {
+                    break;
+                }
+                row++;
+                line = line(firstNumber + row, row);
+                position = 0;
+            }
+            int count = Math.min(length - read, line.length() - position);
+            line.getChars(position, position + count, buffer, offset + read);
+            position += count;
+            read += count;
+        }
+        return read == 0 && length > 0 ? -1 : read;
+    }
+
+    private static String line(long n, long row) {
+        String type = row % 10 == 0 ? "employee" : row % 2 == 0 ? "customer" : "person";
+        return type + "," + String.format("%010d", n) + ",1990-01-01,\"Person " + n + "\",person" + n + "@example.com,"
+                + "+420" + n % 1_000_000_000 + ",Czechia,Prague,11000,\"Street " + n % 100 + "\","
+                + ("customer".equals(type) ? "active,2024-01-01," : ",,") + "\n";
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import entities.Bank;
+import entities.IdGeneration;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput with ids taken from block-allocated sequences, which lets EclipseLink send the
+ * inserts of a transaction as JDBC batches, against identity columns, which need one round trip per
+ * insert to read the generated id back. Each invocation persists {@value #ROWS_PER_TRANSACTION} rows in
+ * one transaction; the scores are rows per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IdGenerationBenchmark {
+    static final int ROWS_PER_TRANSACTION = 100;
+
+    @State(Scope.Benchmark)
+    public static class IdGenerationState extends BankState {
+        @Param({"identity", "sequence"})
+        public String idGeneration;
+
+        @Override
+        protected Map<String, String> extraProperties() {
+            return Collections.singletonMap(IdGeneration.MODE_PROPERTY, idGeneration);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS_PER_TRANSACTION)
+    public void insertBanks(IdGenerationState state) {
+        state.database.getTransactionTemplate().runInTransaction(em -> {
+            for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+                em.persist(DataSeeder.newBank());
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS_PER_TRANSACTION)
+    public void insertPersons(IdGenerationState state) {
+        state.database.getTransactionTemplate().runInTransaction(em -> {
+            for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+                em.persist(DataSeeder.newPerson());
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS_PER_TRANSACTION)
+    public void insertAccounts(IdGenerationState state) {
+        state.database.getTransactionTemplate().runInTransaction(em -> {
+            Bank bank = em.getReference(Bank.class, BankState.random(state.data.bankIds));
+            for (int i = 0; i < ROWS_PER_TRANSACTION; i++) {
+                em.persist(DataSeeder.newAccount(bank));
+            }
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package benchmarks;
+
+import DAO.LedgerDAO;
+import DAO.TransactionTemplate;
+import org.openjdk.jmh.annotations.*;
+import service.LedgerService;
+import service.RetryPolicy;
+import service.TransferMode;
+import service.TransferStatus;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The transfer ledger over a year of history: transfers that append their ledger entries, bare ledger
+ * appends of {@value #TRANSFERS_PER_TRANSACTION} transfers per transaction (scores are transfers per
+ * second), and the latency of the balance of a random account at a random instant of the year, rebuilt
+ * from the nearest daily snapshot and compared with rebuilding it from the current balance alone.
+ * <p>
+ * The history has ledgerEntries entries spread evenly over the accounts and the year, 1 million by
+ * default. It is seeded with set-based INSERTs, so a larger ledger only takes longer to seed, e.g.
+ * {@code -p ledgerEntries=100000000 -p accounts=100000} on PostgreSQL; add {@code -p partitioned=true}
+ * to apply sql/ledger_partitions.sql first. The embedded database has no partitions and ignores that
+ * parameter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LedgerBenchmark {
+    static final int TRANSFERS_PER_TRANSACTION = 100;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int HISTORY_DAYS = 365;
+    private static final int SEED_CHUNK = 1_000_000;
+
+    @State(Scope.Benchmark)
+    public static class LedgerState extends BankState {
+        @Param("1000000")
+        public long ledgerEntries;
+
+        @Param("false")
+        public boolean partitioned;
+
+        long historyStart;
+        long historyEnd;
+        LedgerDAO ledgerDAO;
+
+        @Setup(Level.Trial)
+        public void seedLedger() {
+            TransactionTemplate template = database.getTransactionTemplate();
+            LedgerService ledgerService = new LedgerService(template, RetryPolicy.defaults());
+            ledgerDAO = new LedgerDAO(template);
+            historyEnd = System.currentTimeMillis() - DAY_MILLIS;
+            historyStart = historyEnd - HISTORY_DAYS * DAY_MILLIS;
+
+            if (partitioned && !BenchmarkDatabase.isEmbedded()) {
+                database.runScript("/sql/ledger_partitions.sql");
+                ledgerService.ensurePartitions(new Date(historyStart), new Date(System.currentTimeMillis() + 31 * DAY_MILLIS));
+            }
+
+            int firstAccount = Collections.min(data.accountIds);
+            if (Collections.max(data.accountIds) - firstAccount + 1 != data.accountIds.size()) {
+                throw new IllegalStateException("The seeded account ids are not contiguous");
+            }
+            // Ids below zero stay clear of the ids the sequence hands out during the benchmark
+            long started = System.nanoTime();
+            for (long from = 1; from <= ledgerEntries; from += SEED_CHUNK) {
+                long to = Math.min(ledgerEntries, from + SEED_CHUNK - 1);
+                long chunkFrom = from;
+                template.runInTransaction(em -> em.createNativeQuery(
+                                "INSERT INTO ledger_entry (id_entry, id_account, counter_account, amount, booked_at) "
+                                        + "SELECT -g, ? + MOD(g, ?), ? + MOD(g + 1, ?), MOD(g, 7) - 3, "
+                                        + "CAST(? AS timestamp) + INTERVAL '1' SECOND * (g * ? / ?) "
+                                        + "FROM generate_series(CAST(? AS bigint), CAST(? AS bigint)) s(g)")
+                        .setParameter(1, firstAccount)
+                        .setParameter(2, data.accountIds.size())
+                        .setParameter(3, firstAccount)
+                        .setParameter(4, data.accountIds.size())
+                        .setParameter(5, new Timestamp(historyStart))
+                        .setParameter(6, HISTORY_DAYS * DAY_MILLIS / 1000)
+                        .setParameter(7, ledgerEntries)
+                        .setParameter(8, chunkFrom)
+                        .setParameter(9, to)
+                        .executeUpdate());
+            }
+            long seeded = System.nanoTime();
+
+            int snapshots = 0;
+            for (long cutoff = historyStart + DAY_MILLIS; cutoff <= historyEnd; cutoff += DAY_MILLIS) {
+                snapshots += ledgerService.takeSnapshots(new Date(cutoff));
+            }
+            System.out.println();
+            System.out.printf("Seeded %d ledger entries in %d s and took %d daily snapshots in %d s%n", ledgerEntries,
+                    TimeUnit.NANOSECONDS.toSeconds(seeded - started), snapshots,
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - seeded));
+        }
+
+        Date randomInstant() {
+            return new Date(ThreadLocalRandom.current().nextLong(historyStart, historyEnd));
+        }
+    }
+
+    @Benchmark
+    public TransferStatus transfer(LedgerState state) {
+        Integer from = state.randomAccount();
+        Integer to = state.randomAccountOtherThan(from);
+        return state.database.getBankService().makeMoneyTransfer(1 + ThreadLocalRandom.current().nextInt(100), from, to,
+                TransferMode.GUARDED_UPDATE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRANSFERS_PER_TRANSACTION)
+    public void appendEntries(LedgerState state) {
+        state.database.getTransactionTemplate().runInTransaction(em -> {
+            Date bookedAt = new Date();
+            for (int i = 0; i < TRANSFERS_PER_TRANSACTION; i++) {
+                Integer from = state.randomAccount();
+                state.ledgerDAO.recordTransfer(from, state.randomAccountOtherThan(from), 1, bookedAt);
+            }
+        });
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Double balanceAtFromSnapshot(LedgerState state) {
+        return state.database.getBankService().findBalanceAt(state.randomAccount(), state.randomInstant());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Double balanceAtFromCurrent(LedgerState state) {
+        return state.database.getTransactionTemplate().withEntityManager(
+                em -> state.ledgerDAO.findBalanceFromCurrent(state.randomAccount(), state.randomInstant()));
+    }
+}
@@ -0,0 +1,64 @@
+package benchmarks;
+
+import metrics.TransactionStatistics;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A {@link BankState} that counts the statements and rows every benchmark operation loads, printed at the
+ * end of every iteration. The counts are only exact with one benchmark thread. The shared cache is
+ * emptied before every operation by default, as a warm cache answers most loads without a statement;
+ * {@code -p coldCache=false} measures that case.
+ */
+@State(Scope.Benchmark)
+public class LoadCountingState extends BankState {
+    @Param("true")
+    public boolean coldCache;
+
+    private final TransactionStatistics transactions = TransactionStatistics.getInstance();
+    private long operations;
+    private long statements;
+    private long minStatements;
+    private long maxStatements;
+    private long rows;
+    private long statementsBefore;
+    private long rowsBefore;
+
+    @Setup(Level.Iteration)
+    public void resetCounts() {
+        operations = 0;
+        statements = 0;
+        minStatements = Long.MAX_VALUE;
+        maxStatements = 0;
+        rows = 0;
+    }
+
+    @Setup(Level.Invocation)
+    public void beforeOperation() {
+        if (coldCache) {
+            database.getEntityManagerFactory().getCache().evictAll();
+        }
+        statementsBefore = transactions.getStatements();
+        rowsBefore = transactions.getRowsFetched();
+    }
+
+    @TearDown(Level.Invocation)
+    public void afterOperation() {
+        long executed = transactions.getStatements() - statementsBefore;
+        operations++;
+        statements += executed;
+        minStatements = Math.min(minStatements, executed);
+        maxStatements = Math.max(maxStatements, executed);
+        rows += transactions.getRowsFetched() - rowsBefore;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printCounts() {
+        System.out.println();
+        System.out.printf("Per operation: statements mean %.1f, min %d, max %d; rows fetched mean %.1f%n",
+                mean(statements), operations == 0 ? 0 : minStatements, maxStatements, mean(rows));
+    }
+
+    private double mean(long total) {
+        return operations == 0 ? 0.0 : (double) total / operations;
+    }
+}
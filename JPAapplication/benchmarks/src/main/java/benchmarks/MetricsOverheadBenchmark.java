@@ -0,0 +1,46 @@
+package benchmarks;
+
+import metrics.OperationStatistics;
+import metrics.TransactionStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What recording costs every timed operation and every SQL statement, alone and with 8 threads
+ * recording the same operation, the worst case for the shared counters. The operations themselves
+ * take tens of microseconds and more, see the other benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    private static final OperationStatistics OPERATIONS = OperationStatistics.getInstance();
+    private static final TransactionStatistics TRANSACTIONS = TransactionStatistics.getInstance();
+
+    @Benchmark
+    @Threads(1)
+    public void recordOperation() {
+        OPERATIONS.record("BankDAO.findBank", System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordOperationContended() {
+        OPERATIONS.record("BankDAO.findBank", System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void recordStatement() {
+        TRANSACTIONS.recordStatement();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordStatementContended() {
+        TRANSACTIONS.recordStatement();
+    }
+}
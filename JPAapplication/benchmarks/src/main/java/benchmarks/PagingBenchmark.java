@@ -0,0 +1,65 @@
+package benchmarks;
+
+import DAO.Page;
+import DAO.PersonOrder;
+import entities.Person;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the person listing page at a given depth with keyset pagination and, for comparison, with
+ * OFFSET paging. The keyset page costs the same at every depth; the OFFSET page gets slower the deeper it is.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PagingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PagingState {
+        @Param("20")
+        public int pageSize;
+
+        /**
+         * The number of pages before the one read.
+         */
+        @Param({"0", "10", "45"})
+        public int depth;
+
+        @Param({"ID", "FULL_NAME"})
+        public PersonOrder order;
+
+        String pageToken;
+
+        @Setup(Level.Trial)
+        public void walkToDepth(BankState state) {
+            pageToken = null;
+            for (int i = 0; i < depth; i++) {
+                Page<Person> page = state.database.getBankService().findPersonPage(order, pageSize, pageToken);
+                if (!page.hasNext()) {
+                    throw new IllegalStateException("The data set has fewer than " + depth + " pages");
+                }
+                pageToken = page.getNextPageToken();
+            }
+        }
+    }
+
+    @Benchmark
+    public Page<Person> keyset(BankState state, PagingState paging) {
+        return state.database.getBankService().findPersonPage(paging.order, paging.pageSize, paging.pageToken);
+    }
+
+    @Benchmark
+    public List<Person> offset(BankState state, PagingState paging) {
+        String orderBy = paging.order == PersonOrder.ID ? "p.id_person" : "p.full_name, p.id_person";
+        return state.database.getTransactionTemplate().withEntityManager(em -> em
+                .createQuery("SELECT p FROM Person p ORDER BY " + orderBy, Person.class)
+                .setFirstResult(paging.depth * paging.pageSize)
+                .setMaxResults(paging.pageSize)
+                .getResultList());
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import entities.PersonCard;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of the cards of a person and of the person of a card in person_card, either the plain view the
+ * application used to drop and re-create on every read or the trigger-maintained table of
+ * sql/person_card_projection.sql, and the price the triggers add to writes of person and payment_card.
+ * cardStatus and fullName change a projected column and fire the triggers; expirationDate changes one
+ * that is not projected and does not. The view has the columns of the table here, so both are read the
+ * same way.
+ * <p>
+ * The triggers are PL/pgSQL, so this benchmark needs PostgreSQL.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersonCardBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class PersonCardState extends BankState {
+        @Param({"view", "projection"})
+        public String source;
+
+        List<String> birthCertificateNumbers;
+        List<String> cardNumbers;
+
+        @Setup(Level.Trial)
+        public void createPersonCard() {
+            if (BenchmarkDatabase.isEmbedded()) {
+                throw new IllegalStateException("PersonCardBenchmark needs PostgreSQL, set bench.jdbc.url");
+            }
+            if (source.equals("projection")) {
+                database.runScript("/sql/person_card_projection.sql");
+            } else {
+                database.getTransactionTemplate().runInTransaction(em -> {
+                    em.createNativeQuery("DROP TABLE IF EXISTS person_card").executeUpdate();
+                    em.createNativeQuery("CREATE VIEW person_card AS "
+                            + "SELECT pc.id_card, p.id_person, p.birth_certificate_number, p.full_name AS person_name, "
+                            + "pc.card_number, pc.card_status "
+                            + "FROM person p JOIN payment_card pc ON p.id_person = pc.account_id").executeUpdate();
+                });
+            }
+            birthCertificateNumbers = database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                    "SELECT DISTINCT c.birth_certificate_number FROM PersonCard c", String.class).getResultList());
+            cardNumbers = database.getTransactionTemplate().withEntityManager(em -> em.createQuery(
+                    "SELECT c.card_number FROM PersonCard c", String.class).getResultList());
+            System.out.println();
+            System.out.println("person_card rows: " + cardNumbers.size());
+        }
+    }
+
+    @Benchmark
+    public List<PersonCard> findByBirthCertificateNumber(PersonCardState state) {
+        return state.database.getBankService().findPersonCards(BankState.random(state.birthCertificateNumbers));
+    }
+
+    @Benchmark
+    public PersonCard findByCardNumber(PersonCardState state) {
+        return state.database.getBankService().findPersonCardByCardNumber(BankState.random(state.cardNumbers));
+    }
+
+    @Benchmark
+    public int cardStatus(PersonCardState state) {
+        Integer idCard = BankState.random(state.data.cardIds);
+        return state.database.getTransactionTemplate().inTransaction(em -> em.createNativeQuery(
+                        "UPDATE payment_card SET card_status = "
+                                + "CASE WHEN card_status = 'active' THEN 'blocked' ELSE 'active' END WHERE id_card = ?")
+                .setParameter(1, idCard)
+                .executeUpdate());
+    }
+
+    @Benchmark
+    public int fullName(PersonCardState state) {
+        Integer idPerson = BankState.random(state.data.personIds);
+        return state.database.getTransactionTemplate().inTransaction(em -> em.createNativeQuery(
+                        "UPDATE person SET full_name = ? WHERE id_person = ?")
+                .setParameter(1, "Person " + ThreadLocalRandom.current().nextInt(1_000_000))
+                .setParameter(2, idPerson)
+                .executeUpdate());
+    }
+
+    @Benchmark
+    public int expirationDate(PersonCardState state) {
+        Integer idCard = BankState.random(state.data.cardIds);
+        return state.database.getTransactionTemplate().inTransaction(em -> em.createNativeQuery(
+                        "UPDATE payment_card SET expiration_date = expiration_date + 1 WHERE id_card = ?")
+                .setParameter(1, idCard)
+                .executeUpdate());
+    }
+}
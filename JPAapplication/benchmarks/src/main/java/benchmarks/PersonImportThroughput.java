@@ -0,0 +1,47 @@
+package benchmarks;
+
+import entities.Person;
+import service.BatchMode;
+import service.PersonImportResult;
+import service.PersonImportService;
+import service.RetryPolicy;
+
+import java.util.Collections;
+
+/**
+ * Compares the rows per second of importing persons one {@code persist} at a time with the bulk import,
+ * with COPY (PostgreSQL only) and with multi-row INSERTs. The file is generated while it is read and the
+ * import commits chunk by chunk, so the heap stays small whatever the row count.
+ * Pass the number of rows as the first argument (default 100000); the persist baseline imports a tenth of them.
+ */
+public class PersonImportThroughput {
+    public static void main(String[] args) {
+        long rows = args.length > 0 ? Long.parseLong(args[0]) : 100_000;
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(Collections.emptyMap())) {
+            long baselineRows = Math.max(1, rows / 10);
+            long start = System.nanoTime();
+            for (long i = 0; i < baselineRows; i++) {
+                Person person = DataSeeder.newPerson();
+                database.getBankService().createPerson(person);
+            }
+            double persistRate = baselineRows * 1_000_000_000.0 / (System.nanoTime() - start);
+
+            StringBuilder report = new StringBuilder(String.format("%n%-16s %12.0f rows/s (%d rows)%n",
+                    "persist", persistRate, baselineRows));
+            long firstNumber = 2_000_000_000L;
+            for (boolean copy : new boolean[]{false, true}) {
+                if (copy && BenchmarkDatabase.isEmbedded()) {
+                    continue;
+                }
+                PersonImportService importService = new PersonImportService(
+                        database.getTransactionTemplate(), RetryPolicy.defaults(), copy);
+                PersonImportResult result = importService.importPersons(
+                        new GeneratedPersonCsv(rows, firstNumber), BatchMode.COMMIT_PER_CHUNK);
+                firstNumber += rows;
+                report.append(String.format("%-16s %12.0f rows/s (%s)%n",
+                        copy ? "import, COPY" : "import, INSERT", result.getRowsPerSecond(), result));
+            }
+            System.out.print(report);
+        }
+    }
+}
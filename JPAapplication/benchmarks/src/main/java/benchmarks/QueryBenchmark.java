@@ -0,0 +1,37 @@
+package benchmarks;
+
+import DAO.AccountDAO;
+import entities.Bank;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The queries of the application: the IBAN lookup and the account holder report. The report reads
+ * the whole person_account table, so its cost grows with the accounts parameter; see
+ * {@link ReportHeapUsage} for how much heap the list and streaming variants of the report hold.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Benchmark
+    public Bank findBankByIban(BankState state) {
+        return state.database.getBankService().findBankByIban(BankState.random(state.data.ibans));
+    }
+
+    @Benchmark
+    public List<Object[]> findAccountHolders(BankState state) {
+        return state.database.getBankService().findAccountHolders();
+    }
+
+    @Benchmark
+    public long forEachAccountHolder(BankState state, Blackhole blackhole) {
+        return state.database.getBankService().forEachAccountHolder(AccountDAO.DEFAULT_FETCH_SIZE, blackhole::consume);
+    }
+}
@@ -0,0 +1,91 @@
+package benchmarks;
+
+import DAO.QueryRegistry;
+import entities.Account;
+import entities.Bank;
+import metrics.QueryStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repeated lookups of an account by number and of a bank row by IBAN through the named queries of
+ * {@link QueryRegistry}, compared with the same queries built by concatenating the value into the query
+ * text and, for JPQL, with an ad-hoc query that binds it. A concatenated query is a new text every time,
+ * so EclipseLink parses the JPQL and generates the SQL again and PostgreSQL parses and plans a statement
+ * it cannot keep prepared; the ad-hoc query finds its text in the JPQL parse cache of EclipseLink but is
+ * looked up there on every run. The runs of every named query are printed at the end of the trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class QueryRegistryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LookupState extends BankState {
+        public List<String> accountNumbers;
+
+        @Setup(Level.Trial)
+        public void prepareQueries() {
+            QueryRegistry registry = database.getQueryRegistry();
+            System.out.println();
+            System.out.println(registry.getQueryNames().size() + " named queries, unavailable: "
+                    + registry.getUnavailableQueries().keySet());
+            accountNumbers = database.getTransactionTemplate().withEntityManager(em ->
+                    em.createQuery("SELECT a.account_number FROM Account a", String.class).getResultList());
+            QueryStatistics.getInstance().reset();
+        }
+
+        @TearDown(Level.Trial)
+        public void printQueries() {
+            System.out.println();
+            System.out.print(QueryStatistics.getInstance());
+        }
+    }
+
+    @Benchmark
+    public Account accountByNumberConcatenated(LookupState state) {
+        String accountNumber = BankState.random(state.accountNumbers);
+        return state.database.getTransactionTemplate().withEntityManager(em ->
+                em.createQuery("SELECT a FROM Account a WHERE a.account_number = '" + accountNumber + "'", Account.class)
+                        .getSingleResult());
+    }
+
+    @Benchmark
+    public Account accountByNumberAdHoc(LookupState state) {
+        String accountNumber = BankState.random(state.accountNumbers);
+        return state.database.getTransactionTemplate().withEntityManager(em ->
+                em.createQuery("SELECT a FROM Account a WHERE a.account_number = :accountNumber", Account.class)
+                        .setParameter("accountNumber", accountNumber)
+                        .getSingleResult());
+    }
+
+    @Benchmark
+    public Account accountByNumberNamed(LookupState state) {
+        String accountNumber = BankState.random(state.accountNumbers);
+        return state.database.getTransactionTemplate().withEntityManager(em ->
+                em.createNamedQuery(Account.FIND_BY_NUMBER, Account.class)
+                        .setParameter("accountNumber", accountNumber)
+                        .getSingleResult());
+    }
+
+    @Benchmark
+    public Object bankRowConcatenated(LookupState state) {
+        String iban = BankState.random(state.data.ibans);
+        return state.database.getTransactionTemplate().withEntityManager(em ->
+                em.createNativeQuery("SELECT id_bank, bank_name, main_office, iban FROM bank WHERE iban = '" + iban + "'")
+                        .getSingleResult());
+    }
+
+    @Benchmark
+    public Object bankRowNamed(LookupState state) {
+        String iban = BankState.random(state.data.ibans);
+        return state.database.getTransactionTemplate().withEntityManager(em ->
+                em.createNamedQuery(Bank.FIND_ROW_BY_IBAN)
+                        .setParameter(1, iban)
+                        .getSingleResult());
+    }
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import DAO.AccountDAO;
+import DAO.Page;
+import DAO.PersonOrder;
+import entities.Customer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pool.ReplicaStatus;
+import service.BankService;
+import service.TransferStatus;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer latency while reports run next to them: one thread makes transfers while two read the whole
+ * account holder table and every page of customers, the reports of displayDataFromManyToManyTable and
+ * displayDataFromDescendantTable, over and over. With reports=primary everything runs on the primary;
+ * with reports=replica the reports are routed to the replicaUrl server, which must be a streaming
+ * standby of the bench.jdbc.url server, so it runs on PostgreSQL only. The state and lag of the replica
+ * are printed at the end of the trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReadReplicaBenchmark {
+    private static final int REPORT_PAGE_SIZE = 100;
+
+    @State(Scope.Benchmark)
+    public static class MixedState extends BankState {
+        @Param({"primary", "replica"})
+        public String reports;
+
+        @Param("jdbc:postgresql://localhost:5433/postgres")
+        public String replicaUrl;
+
+        @Override
+        protected Map<String, String> extraProperties() {
+            if (!"replica".equals(reports)) {
+                return Collections.emptyMap();
+            }
+            if (BenchmarkDatabase.isEmbedded()) {
+                throw new IllegalStateException("reports=replica needs a PostgreSQL primary (bench.jdbc.url) with a streaming standby");
+            }
+            return Collections.singletonMap("bank.replica.urls", replicaUrl);
+        }
+
+        @Override
+        public void tearDown() {
+            System.out.println();
+            for (ReplicaStatus replica : database.getReplicaRouter().getStatus()) {
+                System.out.println("Replica: " + replica);
+            }
+            super.tearDown();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public TransferStatus transfer(MixedState state) {
+        Integer idAccountFrom = state.randomAccount();
+        return service(state).makeMoneyTransfer(1, idAccountFrom, state.randomAccountOtherThan(idAccountFrom));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public long report(MixedState state, Blackhole blackhole) {
+        BankService service = service(state);
+        long rows = service.forEachAccountHolder(AccountDAO.DEFAULT_FETCH_SIZE, blackhole::consume);
+        String pageToken = null;
+        do {
+            Page<Customer> page = service.findCustomerPage(PersonOrder.ID, REPORT_PAGE_SIZE, pageToken);
+            blackhole.consume(page.getItems());
+            rows += page.getItems().size();
+            pageToken = page.getNextPageToken();
+        } while (pageToken != null);
+        return rows;
+    }
+
+    private static BankService service(BankState state) {
+        return state.database.getBankService();
+    }
+}
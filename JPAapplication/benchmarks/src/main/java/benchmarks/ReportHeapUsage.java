@@ -0,0 +1,85 @@
+package benchmarks;
+
+import DAO.AccountDAO;
+import service.BankService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.management.MemoryMXBean;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures the heap the account holder report keeps alive while it runs, for the list variant
+ * ({@link BankService#findAccountHolders}) and the streaming variant
+ * ({@link BankService#forEachAccountHolder}), over data sets of growing size. The list variant grows
+ * with the number of rows; the streaming one stays flat at about one fetch of rows.
+ * Pass the account counts to measure as arguments (default 10000 20000 40000 80000).
+ */
+public class ReportHeapUsage {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) {
+        String[] sizes = args.length > 0 ? args : new String[]{"10000", "20000", "40000", "80000"};
+        // The first database of the JVM allocates a few lazily initialized buffers that would skew the first size
+        measure(100);
+
+        StringBuilder report = new StringBuilder(String.format("%10s %10s %14s %14s%n",
+                "accounts", "rows", "list KiB", "stream KiB"));
+        for (String size : sizes) {
+            int accounts = Integer.parseInt(size);
+            long[] result = measure(accounts);
+            report.append(String.format("%10d %10d %14d %14d%n", accounts, result[0], result[1] / 1024, result[2] / 1024));
+        }
+        System.out.println();
+        System.out.print(report);
+    }
+
+    /**
+     * @return The row count and the bytes held by the list and by the streaming report.
+     */
+    private static long[] measure(int accounts) {
+        try (BenchmarkDatabase database = BenchmarkDatabase.start(
+                // Keeps the shared cache from holding on to the strings of the rows being measured
+                Collections.singletonMap("eclipselink.cache.shared.default", "false"))) {
+            new DataSeeder(database.getTransactionTemplate()).seed(10, Math.max(100, accounts / 2), accounts, 0);
+            BankService bankService = database.getBankService();
+
+            // The first run of each variant also parses and caches the query
+            bankService.findAccountHolders();
+            bankService.forEachAccountHolder(AccountDAO.DEFAULT_FETCH_SIZE, row -> { });
+
+            // Heap held while the report runs, relative to the heap once it has finished
+            List<Object[]> rows = bankService.findAccountHolders();
+            int rowCount = rows.size();
+            long listHeld = usedHeapAfterGc();
+            Reference.reachabilityFence(rows);
+            rows = null;
+            long listBytes = listHeld - usedHeapAfterGc();
+
+            long[] streamHeld = new long[1];
+            long[] seen = new long[1];
+            bankService.forEachAccountHolder(AccountDAO.DEFAULT_FETCH_SIZE, row -> {
+                if (++seen[0] == rowCount / 2) {
+                    streamHeld[0] = usedHeapAfterGc();
+                }
+            });
+            long streamBytes = streamHeld[0] - usedHeapAfterGc();
+
+            return new long[]{rowCount, listBytes, streamBytes};
+        }
+    }
+
+    private static long usedHeapAfterGc() {
+        // Objects released through reference processing only go away on a later collection
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import service.BankRequestExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bursts of concurrent requests, one in ten a transfer and the rest account lookups, submitted at once
+ * to a {@link BankRequestExecutor} on virtual threads and on a fixed pool of platform threads, and waited
+ * for; the score is the time per burst. Both run at most as many operations at once as the connection
+ * pool has connections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RequestExecutorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ExecutorState extends BankState {
+        @Param({"virtual", "platform"})
+        public String threads;
+
+        @Param({"100", "1000", "10000"})
+        public int concurrentRequests;
+
+        @Param("200")
+        public int platformThreads;
+
+        BankRequestExecutor executor;
+
+        @Setup(Level.Trial)
+        public void startExecutor() {
+            int connections = database.getPool().getMetrics().getMaximumPoolSize();
+            executor = "virtual".equals(threads)
+                    ? BankRequestExecutor.onVirtualThreads(database.getBankService(), connections)
+                    : BankRequestExecutor.onPlatformThreads(database.getBankService(), platformThreads, connections);
+        }
+
+        @Override
+        public void tearDown() {
+            if (executor != null) {
+                executor.close();
+            }
+            super.tearDown();
+        }
+    }
+
+    @Benchmark
+    public int requests(ExecutorState state) {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[state.concurrentRequests];
+        for (int i = 0; i < requests.length; i++) {
+            if (i % 10 == 0) {
+                Integer idAccountFrom = state.randomAccount();
+                requests[i] = state.executor.makeMoneyTransfer(1, idAccountFrom, state.randomAccountOtherThan(idAccountFrom));
+            } else {
+                requests[i] = state.executor.findAccount(state.randomAccount());
+            }
+        }
+        CompletableFuture.allOf(requests).join();
+        return requests.length;
+    }
+}
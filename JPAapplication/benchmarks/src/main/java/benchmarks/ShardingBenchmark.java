@@ -0,0 +1,178 @@
+package benchmarks;
+
+import DAO.Shard;
+import DAO.ShardRouter;
+import DAO.TransactionTemplate;
+import entities.Account;
+import entities.Bank;
+import entities.TransferSaga;
+import org.openjdk.jmh.annotations.*;
+import service.ShardedBankService;
+import service.TransferStatus;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of transfers and of an aggregate over all accounts as the banks are spread over 1, 2 and 4
+ * shards by {@link ShardRouter}, each shard a database of its own: a separate in-memory H2 database, or
+ * on PostgreSQL a database named after the bench.jdbc.url one with a _shard suffix, created on the same
+ * server if it does not exist. The number of accounts stays the same, so every shard holds a smaller
+ * part of them. crossShardPercent of the transfers go to an account of another shard and take the saga
+ * of {@link ShardedBankService}; the others stay in the shard of their source account. At the end of the
+ * trial the total balance is checked against the money seeded, and the transfers left unfinished are
+ * counted.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ShardingBenchmark {
+    private static final int BANKS_PER_SHARD = 2;
+    private static final double SEEDED_BALANCE = 1_000_000;
+
+    @State(Scope.Benchmark)
+    public static class ShardedState {
+        @Param({"1", "2", "4"})
+        public int shards;
+
+        @Param({"0", "10"})
+        public int crossShardPercent;
+
+        @Param("4000")
+        public int accounts;
+
+        public final List<BenchmarkDatabase> databases = new ArrayList<>();
+        public final List<List<Integer>> accountIds = new ArrayList<>();
+        public ShardRouter router;
+        public ShardedBankService service;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            List<TransactionTemplate> templates = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                BenchmarkDatabase database = BenchmarkDatabase.start(shardProperties(i));
+                databases.add(database);
+                templates.add(database.getTransactionTemplate());
+            }
+            router = new ShardRouter(templates);
+            router.initializeIds();
+            service = new ShardedBankService(router);
+            for (Shard shard : router.getShards()) {
+                accountIds.add(seed(shard, accounts / shards));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            double expected = SEEDED_BALANCE * accountIds.stream().mapToInt(List::size).sum();
+            long unfinished = router.scatter(shard -> shard.getTransactionTemplate().withEntityManager(em ->
+                    em.createQuery("SELECT COUNT(s) FROM TransferSaga s WHERE s.state = :state", Long.class)
+                            .setParameter("state", TransferSaga.State.DEBITED)
+                            .getSingleResult())).stream().mapToLong(Long::longValue).sum();
+            System.out.println();
+            System.out.printf("Total balance %.0f of %.0f seeded, %d transfers between shards unfinished%n",
+                    service.totalBalance(), expected, unfinished);
+            router.close();
+            for (BenchmarkDatabase database : databases) {
+                System.out.println("Connection pool: " + database.getPool().getMetrics());
+                database.close();
+            }
+        }
+
+        Integer randomAccount(int shard) {
+            List<Integer> ids = accountIds.get(shard);
+            return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        private Map<String, String> shardProperties(int shard) throws SQLException {
+            Map<String, String> properties = new HashMap<>();
+            // Factories of one persistence unit open at the same time need names of their own
+            properties.put("eclipselink.session-name", "bench-shard-" + shard);
+            properties.put("bank.pool.name", "bench-shard-" + shard);
+            if (!BenchmarkDatabase.isEmbedded() && shard > 0) {
+                properties.put("jakarta.persistence.jdbc.url", createShardDatabase(shard));
+            }
+            return properties;
+        }
+
+        private List<Integer> seed(Shard shard, int count) {
+            List<Bank> banks = new ArrayList<>();
+            while (banks.size() < BANKS_PER_SHARD) {
+                Bank bank = DataSeeder.newBank();
+                if (router.shardOfIban(bank.getIban()) == shard) {
+                    service.createBank(bank);
+                    banks.add(bank);
+                }
+            }
+            List<Account> created = new ArrayList<>();
+            shard.getTransactionTemplate().runInTransaction(em -> {
+                for (int i = 0; i < count; i++) {
+                    Account account = DataSeeder.newAccount(em.getReference(Bank.class, banks.get(i % banks.size()).getId_bank()));
+                    em.persist(account);
+                    created.add(account);
+                }
+            });
+            shard.getTransactionTemplate().getEntityManagerFactory().getCache().evictAll();
+            List<Integer> ids = new ArrayList<>();
+            created.forEach(account -> ids.add(account.getId_account()));
+            return ids;
+        }
+    }
+
+    @Benchmark
+    public TransferStatus makeMoneyTransfer(ShardedState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sourceShard = random.nextInt(state.shards);
+        int destinationShard = sourceShard;
+        if (state.shards > 1 && random.nextInt(100) < state.crossShardPercent) {
+            destinationShard = (sourceShard + 1 + random.nextInt(state.shards - 1)) % state.shards;
+        }
+        Integer from = state.randomAccount(sourceShard);
+        Integer to;
+        do {
+            to = state.randomAccount(destinationShard);
+        } while (to.equals(from));
+        return state.service.makeMoneyTransfer(1 + random.nextInt(100), from, to);
+    }
+
+    /**
+     * The sum of the balances of all shards, each added up in parallel.
+     */
+    @Benchmark
+    @Threads(1)
+    public double totalBalance(ShardedState state) {
+        return state.service.totalBalance();
+    }
+
+    /**
+     * Creates the database of a shard next to the bench.jdbc.url one, e.g. bench_shard2 for bench.
+     *
+     * @return The url of the shard's database.
+     */
+    private static String createShardDatabase(int shard) throws SQLException {
+        String url = System.getProperty("bench.jdbc.url");
+        int query = url.indexOf('?');
+        String base = query < 0 ? url : url.substring(0, query);
+        String name = base.substring(base.lastIndexOf('/') + 1) + "_shard" + shard;
+        try (Connection connection = DriverManager.getConnection(url, System.getProperty("bench.jdbc.user", "postgres"),
+                System.getProperty("bench.jdbc.password", ""));
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1 FROM pg_database WHERE datname = '" + name + "'");
+            if (!statement.getResultSet().next()) {
+                statement.execute("CREATE DATABASE " + name);
+            }
+        }
+        return base.substring(0, base.lastIndexOf('/') + 1) + name + (query < 0 ? "" : url.substring(query));
+    }
+}
@@ -0,0 +1,30 @@
+package benchmarks;
+
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session event listener that counts the SQL statements the persistence provider executes, to compare
+ * the round trips of two code paths. Statements sent over the connection directly are not counted.
+ */
+public class StatementCounter extends SessionEventAdapter {
+    private static final LongAdder STATEMENTS = new LongAdder();
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        STATEMENTS.increment();
+    }
+
+    /**
+     * @return The number of statements executed since the last reset.
+     */
+    public static long statements() {
+        return STATEMENTS.sum();
+    }
+
+    public static void reset() {
+        STATEMENTS.reset();
+    }
+}
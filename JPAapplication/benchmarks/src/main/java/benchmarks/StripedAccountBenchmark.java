@@ -0,0 +1,54 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import service.TransferMode;
+import service.TransferStatus;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second into a single settlement account that every thread books against, with the
+ * account's balance split over a growing number of stripes. stripes=0 leaves the account unstriped,
+ * so every transfer queues for its one row. One transfer in ten pays out of the settlement account,
+ * which exercises the rebalancing of stripes that run short.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class StripedAccountBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SettlementState extends BankState {
+        @Param({"0", "1", "4", "16"})
+        public int stripes;
+
+        Integer settlementAccount;
+
+        @Setup(Level.Trial)
+        public void stripeSettlementAccount() {
+            settlementAccount = data.accountIds.get(0);
+            if (stripes > 0) {
+                database.getBankService().stripeAccount(settlementAccount, stripes);
+            }
+        }
+
+        Integer randomOtherAccount() {
+            return randomAccountOtherThan(settlementAccount);
+        }
+    }
+
+    @Benchmark
+    public TransferStatus settle(SettlementState state) {
+        int amount = 1 + ThreadLocalRandom.current().nextInt(100);
+        if (ThreadLocalRandom.current().nextInt(10) == 0) {
+            return state.database.getBankService().makeMoneyTransfer(amount, state.settlementAccount,
+                    state.randomOtherAccount(), TransferMode.GUARDED_UPDATE);
+        }
+        return state.database.getBankService().makeMoneyTransfer(amount, state.randomOtherAccount(),
+                state.settlementAccount, TransferMode.GUARDED_UPDATE);
+    }
+}
@@ -0,0 +1,60 @@
+package benchmarks;
+
+import entities.Account;
+import entities.Customer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import service.BankService;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the to-one relationships (Account.bank and paymentCard, Customer.employee, Employee.superior) cost
+ * the lookups that do not need them, and the lookups that do: an account, a customer, an account and
+ * then its bank, and a page of accounts with the bank of each. The statements and rows of every operation
+ * are printed at the end of every iteration, see {@link LoadCountingState}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ToOneLoadingBenchmark {
+    private static final int PAGE_SIZE = 50;
+
+    @Benchmark
+    public Account findAccount(LoadCountingState state) {
+        return service(state).findAccount(state.randomAccount());
+    }
+
+    @Benchmark
+    public Customer findCustomer(LoadCountingState state) {
+        return service(state).findCustomer(BankState.random(state.data.customerIds));
+    }
+
+    @Benchmark
+    public String findAccountThenBank(LoadCountingState state) {
+        return service(state).findAccount(state.randomAccount()).getBank().getBank_name();
+    }
+
+    @Benchmark
+    public void accountPageWithBanks(LoadCountingState state, Blackhole blackhole) {
+        int first = ThreadLocalRandom.current().nextInt(Math.max(1, state.data.accountIds.size() - PAGE_SIZE));
+        state.database.getTransactionTemplate().withEntityManager(em -> {
+            List<Account> accounts = em.createQuery("SELECT a FROM Account a ORDER BY a.id_account", Account.class)
+                    .setFirstResult(first)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            for (Account account : accounts) {
+                blackhole.consume(account.getBank().getBank_name());
+            }
+            return null;
+        });
+    }
+
+    private static BankService service(BankState state) {
+        return state.database.getBankService();
+    }
+}
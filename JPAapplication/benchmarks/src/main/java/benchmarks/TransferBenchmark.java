@@ -0,0 +1,59 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import service.BatchMode;
+import service.BatchTransferResult;
+import service.Transfer;
+import service.TransferStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Money transfers between random accounts: one transaction per transfer through
+ * {@link service.BankService#makeMoneyTransfer}, and batches settled through
+ * {@link service.BankService#settleTransfers}. Run with {@code -t} threads to see how the transfer
+ * path scales under lock contention, or use {@link TransferScaling} to sweep the thread count.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BatchParams {
+        @Param("100")
+        public int batchSize;
+
+        @Param({"ALL_OR_NOTHING", "COMMIT_PER_CHUNK"})
+        public BatchMode mode;
+    }
+
+    @Benchmark
+    public TransferStatus makeMoneyTransfer(BankState state) {
+        Integer from = state.randomAccount();
+        Integer to = state.randomAccountOtherThan(from);
+        return state.database.getBankService().makeMoneyTransfer(randomAmount(), from, to);
+    }
+
+    /**
+     * Settles one batch; divide the score by batchSize for the cost per transfer.
+     */
+    @Benchmark
+    public BatchTransferResult settleTransfers(BankState state, BatchParams params) {
+        List<Transfer> transfers = new ArrayList<>(params.batchSize);
+        for (int i = 0; i < params.batchSize; i++) {
+            Integer from = state.randomAccount();
+            transfers.add(new Transfer(from, state.randomAccountOtherThan(from), randomAmount()));
+        }
+        return state.database.getBankService().settleTransfers(transfers, params.mode, 25);
+    }
+
+    private static Integer randomAmount() {
+        return 1 + ThreadLocalRandom.current().nextInt(100);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import service.TransferMode;
+import service.TransferStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single transfers with the entity-based path, which locks and reads both accounts before writing them
+ * back, against the guarded UPDATE path, which changes each balance with one statement, and the
+ * transfer_funds database function, which does the whole transfer in one statement. The number of
+ * statements per transfer of each iteration is printed when it ends; the commit adds one round trip to all.
+ * The function is created on PostgreSQL only; on the embedded stand-in STORED_FUNCTION measures its
+ * fallback, the entity-based path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferModeBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TransferModeState extends BankState {
+        @Param({"LOCKED_ENTITIES", "GUARDED_UPDATE", "STORED_FUNCTION"})
+        public TransferMode mode;
+
+        final LongAdder transfers = new LongAdder();
+
+        @Override
+        protected Map<String, String> extraProperties() {
+            Map<String, String> properties = new HashMap<>();
+            properties.put("eclipselink.session-event-listener", StatementCounter.class.getName());
+            return properties;
+        }
+
+        @Setup(Level.Trial)
+        public void createTransferFunction() {
+            if (mode == TransferMode.STORED_FUNCTION && !BenchmarkDatabase.isEmbedded()) {
+                database.runScript("/sql/transfer_funds.sql");
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void resetCounters() {
+            transfers.reset();
+            StatementCounter.reset();
+        }
+
+        @TearDown(Level.Iteration)
+        public void printCounters() {
+            System.out.println();
+            System.out.printf("Statements per transfer: %.2f%n", (double) StatementCounter.statements() / transfers.sum());
+        }
+    }
+
+    @Benchmark
+    public TransferStatus makeMoneyTransfer(TransferModeState state) {
+        Integer from = state.randomAccount();
+        Integer to = state.randomAccountOtherThan(from);
+        state.transfers.increment();
+        return state.database.getBankService().makeMoneyTransfer(1 + ThreadLocalRandom.current().nextInt(100), from, to, state.mode);
+    }
+}
@@ -0,0 +1,36 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Runs {@link TransferBenchmark#makeMoneyTransfer} with 1, 2, 4, ... threads and prints the throughput
+ * and tail latency of each thread count, to show where lock contention and the connection pool stop
+ * the transfer path from scaling. Pass the highest thread count as the first argument (default 8).
+ */
+public class TransferScaling {
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        List<String> lines = new ArrayList<>();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                    .include(TransferBenchmark.class.getName() + ".makeMoneyTransfer$")
+                    .threads(threads)
+                    .build();
+            Collection<RunResult> results = new Runner(options).run();
+            for (RunResult result : results) {
+                lines.add(String.format("%3d threads  %-12s %s", threads, result.getParams().getMode(),
+                        result.getPrimaryResult()));
+            }
+        }
+        System.out.println();
+        lines.forEach(System.out::println);
+    }
+}
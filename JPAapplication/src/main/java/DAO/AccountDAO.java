@@ -1,21 +1,54 @@
 package DAO;
 
 import entities.Account;
+import entities.AccountStripe;
+import jakarta.persistence.CacheRetrieveMode;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import metrics.OperationStatistics;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.jpa.JpaQuery;
+import org.eclipse.persistence.queries.BatchFetchPolicy;
+import org.eclipse.persistence.queries.ObjectLevelReadQuery;
+import org.eclipse.persistence.queries.ScrollableCursor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Data Access Object (DAO) for managing Account entities.
  */
 public class AccountDAO {
-    private final EntityManager entityManager;
+    /**
+     * The number of rows the JDBC driver fetches per round trip when streaming a report.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs an AccountDAO with the provided EntityManager.
+     * Constructs an AccountDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public AccountDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public AccountDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -24,7 +57,12 @@ public class AccountDAO {
      * @param account The Account entity to be created.
      */
     public void createAccount(Account account) {
-        entityManager.persist(account);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(account);
+        } finally {
+            operations.record("AccountDAO.createAccount", start);
+        }
     }
 
     /**
@@ -34,7 +72,298 @@ public class AccountDAO {
      * @return The Account entity with the specified ID, or null if not found.
      */
     public Account findAccount(Integer id) {
-        return entityManager.find(Account.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Account.class, id);
+        } finally {
+            operations.record("AccountDAO.findAccount", start);
+        }
+    }
+
+    /**
+     * Retrieves Account entities with the relationships of a fetch plan loaded, e.g.
+     * {@link FetchPlan#ACCOUNT_DETAILS}.
+     *
+     * @param ids  The IDs of the Account entities to retrieve.
+     * @param plan The relationships to load with them.
+     * @return The Account entities found, ordered by ID.
+     */
+    public List<Account> findAccounts(Collection<Integer> ids, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            if (ids.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Account> accounts = plan.applyTo(entityManager().createNamedQuery(Account.FIND_BY_IDS, Account.class), "a")
+                    .setParameter("ids", ids)
+                    .getResultList();
+            plan.load(accounts);
+            return accounts;
+        } finally {
+            operations.record("AccountDAO.findAccounts", start);
+        }
+    }
+
+    /**
+     * Retrieves an Account entity based on its account number.
+     *
+     * @param accountNumber The account number of the Account entity to retrieve.
+     * @return The Account entity with the specified account number, or null if not found.
+     */
+    public Account findAccountByNumber(String accountNumber) {
+        long start = System.nanoTime();
+        try {
+            List<Account> accounts = entityManager().createNamedQuery(Account.FIND_BY_NUMBER, Account.class)
+                    .setParameter("accountNumber", accountNumber)
+                    .getResultList();
+            return accounts.isEmpty() ? null : accounts.get(0);
+        } finally {
+            operations.record("AccountDAO.findAccountByNumber", start);
+        }
+    }
+
+    /**
+     * Retrieves an Account entity straight from the database, bypassing the shared cache, so that a
+     * change made to it under optimistic locking starts from the current version.
+     *
+     * @param id The ID of the Account entity to retrieve.
+     * @return The Account entity with the specified ID, or null if not found.
+     */
+    public Account findCurrentAccount(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Account.class, id,
+                    Map.of("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS));
+        } finally {
+            operations.record("AccountDAO.findCurrentAccount", start);
+        }
+    }
+
+    /**
+     * Retrieves an Account entity and locks its row for the rest of the current transaction
+     * (SELECT ... FOR UPDATE).
+     *
+     * @param id The ID of the Account entity to lock.
+     * @return The locked Account entity, or null if not found.
+     */
+    public Account lockAccount(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Account.class, id, LockModeType.PESSIMISTIC_WRITE);
+        } finally {
+            operations.record("AccountDAO.lockAccount", start);
+        }
+    }
+
+    /**
+     * Takes money from an account in a single statement, provided the balance covers it. The row is
+     * changed without the EntityManager, so the statement increments the version itself and the caller
+     * evicts the account from the shared cache once the transaction has committed.
+     *
+     * A striped account is left alone, since its row holds only part of its balance.
+     *
+     * @param id     The ID of the account to take the money from.
+     * @param amount The amount to take.
+     * @return 1 if the money was taken, 0 if the account does not exist, its balance is too low or it is
+     * striped.
+     */
+    public int withdrawIfCovered(Integer id, double amount) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.WITHDRAW_IF_COVERED)
+                    .setParameter(1, amount)
+                    .setParameter(2, id)
+                    .setParameter(3, amount)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountDAO.withdrawIfCovered", start);
+        }
+    }
+
+    /**
+     * Adds money to an account in a single statement, see {@link #withdrawIfCovered(Integer, double)}.
+     *
+     * @param id     The ID of the account to add the money to.
+     * @param amount The amount to add.
+     * @return 1 if the money was added, 0 if the account does not exist.
+     */
+    public int deposit(Integer id, double amount) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.DEPOSIT)
+                    .setParameter(1, amount)
+                    .setParameter(2, id)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountDAO.deposit", start);
+        }
+    }
+
+    /**
+     * Locks an account row and reads the balance it holds itself, leaving out any stripes.
+     *
+     * @param id The ID of the account.
+     * @return The balance of the account row, or null if the account does not exist.
+     */
+    public Double lockRowBalance(Integer id) {
+        long start = System.nanoTime();
+        try {
+            List<?> balances = entityManager().createNamedQuery(Account.LOCK_ROW_BALANCE)
+                    .setParameter(1, id)
+                    .getResultList();
+            return balances.isEmpty() ? null : ((Number) balances.get(0)).doubleValue();
+        } finally {
+            operations.record("AccountDAO.lockRowBalance", start);
+        }
+    }
+
+    /**
+     * Overwrites the balance of an account row the caller has locked, see {@link #lockRowBalance(Integer)}.
+     *
+     * @param id      The ID of the account.
+     * @param balance The new balance of the account row.
+     */
+    public void updateRowBalance(Integer id, double balance) {
+        long start = System.nanoTime();
+        try {
+            entityManager().createNamedQuery(Account.UPDATE_ROW_BALANCE)
+                    .setParameter(1, balance)
+                    .setParameter(2, id)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountDAO.updateRowBalance", start);
+        }
+    }
+
+    /**
+     * Marks an account as striped, or no longer striped, see {@link entities.AccountStripe}.
+     *
+     * @param id      The ID of the account.
+     * @param striped true if the balance of the account is split over stripes.
+     */
+    public void updateStriped(Integer id, boolean striped) {
+        long start = System.nanoTime();
+        try {
+            entityManager().createNamedQuery(Account.UPDATE_STRIPED)
+                    .setParameter(1, striped)
+                    .setParameter(2, id)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountDAO.updateStriped", start);
+        }
+    }
+
+    /**
+     * Transfers money with the transfer_funds database function of sql/transfer_funds.sql, in a single
+     * statement. Like {@link #withdrawIfCovered(Integer, double)}, the rows are changed without the
+     * EntityManager, so the caller evicts both accounts from the shared cache once the transaction has
+     * committed.
+     *
+     * @param idAccountFrom The ID of the account to take the money from.
+     * @param idAccountTo   The ID of the account to add the money to.
+     * @param amount        The amount to transfer.
+     * @return The status code of the function: 0 completed, 1 invalid request, 2 account not found,
+     * 3 insufficient balance, 4 an account is striped.
+     */
+    public int transferFunds(Integer idAccountFrom, Integer idAccountTo, double amount) {
+        long start = System.nanoTime();
+        try {
+            return ((Number) entityManager().createNamedQuery(Account.TRANSFER_FUNDS)
+                    .setParameter(1, idAccountFrom)
+                    .setParameter(2, idAccountTo)
+                    .setParameter(3, amount)
+                    .getSingleResult()).intValue();
+        } finally {
+            operations.record("AccountDAO.transferFunds", start);
+        }
+    }
+
+    /**
+     * Checks whether the database has the transfer_funds function; only PostgreSQL can have it. Asks the
+     * JDBC driver rather than the persistence provider, as a stand-in may be configured as PostgreSQL.
+     * Must be called inside a transaction, which holds the connection to ask.
+     *
+     * @return true if {@link #transferFunds} can be called.
+     */
+    public boolean hasTransferFunction() {
+        long start = System.nanoTime();
+        try {
+            try {
+                if (!"PostgreSQL".equals(entityManager().unwrap(Connection.class).getMetaData().getDatabaseProductName())) {
+                    return false;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not read the database product name", e);
+            }
+            return entityManager().createNamedQuery(Account.HAS_TRANSFER_FUNCTION).getSingleResult().equals(Boolean.TRUE);
+        } finally {
+            operations.record("AccountDAO.hasTransferFunction", start);
+        }
+    }
+
+    /**
+     * Checks whether an account exists without loading it.
+     *
+     * @param id The ID of the account.
+     * @return true if the account exists.
+     */
+    public boolean accountExists(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.COUNT_BY_ID, Long.class)
+                    .setParameter("id", id)
+                    .getSingleResult() > 0;
+        } finally {
+            operations.record("AccountDAO.accountExists", start);
+        }
+    }
+
+    /**
+     * Counts the accounts.
+     *
+     * @return The number of accounts.
+     */
+    public long countAccounts() {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.COUNT_ALL, Long.class).getSingleResult();
+        } finally {
+            operations.record("AccountDAO.countAccounts", start);
+        }
+    }
+
+    /**
+     * Adds up the money held by all accounts, including the stripes of striped accounts.
+     *
+     * @return The sum of the balances.
+     */
+    public double sumBalances() {
+        long start = System.nanoTime();
+        try {
+            Double accounts = entityManager().createNamedQuery(Account.SUM_BALANCES, Double.class).getSingleResult();
+            Double stripes = entityManager().createNamedQuery(AccountStripe.SUM_BALANCES, Double.class).getSingleResult();
+            return (accounts == null ? 0 : accounts) + (stripes == null ? 0 : stripes);
+        } finally {
+            operations.record("AccountDAO.sumBalances", start);
+        }
+    }
+
+    /**
+     * Retrieves the accounts with the highest balances, by the balance of the account row; the stripes
+     * of a striped account are not counted.
+     *
+     * @param limit The maximum number of accounts.
+     * @return The accounts, highest balance first.
+     */
+    public List<Account> findRichestAccounts(int limit) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.FIND_RICHEST, Account.class)
+                    .setMaxResults(limit)
+                    .getResultList();
+        } finally {
+            operations.record("AccountDAO.findRichestAccounts", start);
+        }
     }
 
     /**
@@ -43,7 +372,12 @@ public class AccountDAO {
      * @param account The Account entity to be updated.
      */
     public void updateAccount(Account account) {
-        entityManager.merge(account);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(account);
+        } finally {
+            operations.record("AccountDAO.updateAccount", start);
+        }
     }
 
     /**
@@ -52,9 +386,71 @@ public class AccountDAO {
      * @param id The ID of the Account entity to delete.
      */
     public void deleteAccount(Integer id) {
-        Account account = entityManager.find(Account.class, id);
-        if (account != null) {
-            entityManager.remove(account);
+        long start = System.nanoTime();
+        try {
+            Account account = entityManager().find(Account.class, id);
+            if (account != null) {
+                entityManager().remove(account);
+            }
+        } finally {
+            operations.record("AccountDAO.deleteAccount", start);
+        }
+    }
+
+    /**
+     * Retrieves the account number and person name of every account holder at once.
+     *
+     * @return One (account number, person name) row per account holder.
+     */
+    public List<Object[]> findAccountHolders() {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(Account.FIND_HOLDERS, Object[].class).getResultList();
+        } finally {
+            operations.record("AccountDAO.findAccountHolders", start);
+        }
+    }
+
+    /**
+     * Streams the account number and person name of every account holder over a forward-only cursor,
+     * so only one fetch of rows is held in memory at a time. The stream must be consumed and closed
+     * inside the current transaction; PostgreSQL only fetches a cursor in batches while autocommit is off.
+     *
+     * @param fetchSize The number of rows fetched per round trip.
+     * @return One (account number, person name) row per account holder.
+     */
+    public Stream<Object[]> streamAccountHolders(int fetchSize) {
+        long start = System.nanoTime();
+        try {
+            // Moves the transaction onto its own connection; reads otherwise go through a connection in
+            // autocommit mode, on which PostgreSQL ignores the fetch size and sends the whole result at once
+            entityManager().unwrap(Connection.class);
+
+            JpaQuery<?> query = entityManager().createNamedQuery(Account.FIND_HOLDERS)
+                    .setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+                    .setHint(QueryHints.RESULT_SET_TYPE, ResultSetType.ForwardOnly)
+                    .setHint(QueryHints.JDBC_FETCH_SIZE, fetchSize)
+                    .unwrap(JpaQuery.class);
+            // The batch-fetched relationships of Account make a cursor keep every row it read, for batches
+            // it will never load here. The hints above gave this query its own copy of the shared query.
+            ((ObjectLevelReadQuery) query.getDatabaseQuery()).setBatchFetchPolicy(new BatchFetchPolicy());
+            ScrollableCursor cursor = (ScrollableCursor) query.getSingleResult();
+
+            Iterator<Object[]> rows = new Iterator<Object[]>() {
+                @Override
+                public boolean hasNext() {
+                    return cursor.hasNext();
+                }
+
+                @Override
+                public Object[] next() {
+                    return (Object[]) cursor.next();
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(cursor::close);
+        } finally {
+            operations.record("AccountDAO.streamAccountHolders", start);
         }
     }
 }
@@ -0,0 +1,170 @@
+package DAO;
+
+import entities.AccountStripe;
+import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Data Access Object (DAO) for the sub-balance rows of striped accounts. The balances are changed with
+ * single native statements so that a credit only ever locks the one stripe it adds to.
+ */
+public class AccountStripeDAO {
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs an AccountStripeDAO that works in the unit of work currently run by the given template.
+     *
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
+     */
+    public AccountStripeDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
+    }
+
+    /**
+     * Retrieves the number of stripes of every striped account.
+     *
+     * @return The stripe count by account ID.
+     */
+    public Map<Integer, Integer> findStripeCounts() {
+        long start = System.nanoTime();
+        try {
+            Map<Integer, Integer> counts = new HashMap<>();
+            List<Object[]> rows = entityManager().createNamedQuery(AccountStripe.COUNT_BY_ACCOUNT, Object[].class)
+                    .getResultList();
+            for (Object[] row : rows) {
+                counts.put((Integer) row[0], ((Number) row[1]).intValue());
+            }
+            return counts;
+        } finally {
+            operations.record("AccountStripeDAO.findStripeCounts", start);
+        }
+    }
+
+    /**
+     * Persists the stripes of an account.
+     *
+     * @param idAccount The ID of the account.
+     * @param balances  The balance of every stripe, indexed by stripe number.
+     */
+    public void createStripes(Integer idAccount, double[] balances) {
+        long start = System.nanoTime();
+        try {
+            for (int stripe = 0; stripe < balances.length; stripe++) {
+                entityManager().persist(new AccountStripe(idAccount, stripe, balances[stripe]));
+            }
+        } finally {
+            operations.record("AccountStripeDAO.createStripes", start);
+        }
+    }
+
+    /**
+     * Locks all stripes of an account in stripe order and reads their balances.
+     *
+     * @param idAccount The ID of the account.
+     * @return The balance of every stripe, indexed by stripe number; empty if the account is not striped.
+     */
+    public double[] lockStripes(Integer idAccount) {
+        long start = System.nanoTime();
+        try {
+            List<?> balances = entityManager().createNamedQuery(AccountStripe.LOCK_BALANCES)
+                    .setParameter(1, idAccount)
+                    .getResultList();
+            double[] result = new double[balances.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ((Number) balances.get(i)).doubleValue();
+            }
+            return result;
+        } finally {
+            operations.record("AccountStripeDAO.lockStripes", start);
+        }
+    }
+
+    /**
+     * Overwrites the balances of the stripes of an account, which the caller has locked.
+     *
+     * @param idAccount The ID of the account.
+     * @param balances  The new balance of every stripe, indexed by stripe number.
+     */
+    public void updateStripes(Integer idAccount, double[] balances) {
+        long start = System.nanoTime();
+        try {
+            for (int stripe = 0; stripe < balances.length; stripe++) {
+                entityManager().createNamedQuery(AccountStripe.UPDATE_BALANCE)
+                        .setParameter(1, balances[stripe])
+                        .setParameter(2, idAccount)
+                        .setParameter(3, stripe)
+                        .executeUpdate();
+            }
+        } finally {
+            operations.record("AccountStripeDAO.updateStripes", start);
+        }
+    }
+
+    /**
+     * Deletes all stripes of an account.
+     *
+     * @param idAccount The ID of the account.
+     */
+    public void deleteStripes(Integer idAccount) {
+        long start = System.nanoTime();
+        try {
+            entityManager().createNamedQuery(AccountStripe.DELETE_BY_ACCOUNT)
+                    .setParameter(1, idAccount)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountStripeDAO.deleteStripes", start);
+        }
+    }
+
+    /**
+     * Adds money to one stripe of an account.
+     *
+     * @param idAccount The ID of the account.
+     * @param stripe    The number of the stripe.
+     * @param amount    The amount to add.
+     * @return 1 if the money was added, 0 if the stripe does not exist.
+     */
+    public int credit(Integer idAccount, int stripe, double amount) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(AccountStripe.CREDIT)
+                    .setParameter(1, amount)
+                    .setParameter(2, idAccount)
+                    .setParameter(3, stripe)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountStripeDAO.credit", start);
+        }
+    }
+
+    /**
+     * Takes money from one stripe of an account, provided the stripe's balance covers it.
+     *
+     * @param idAccount The ID of the account.
+     * @param stripe    The number of the stripe.
+     * @param amount    The amount to take.
+     * @return 1 if the money was taken, 0 if the stripe does not exist or holds too little.
+     */
+    public int debitIfCovered(Integer idAccount, int stripe, double amount) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(AccountStripe.DEBIT_IF_COVERED)
+                    .setParameter(1, amount)
+                    .setParameter(2, idAccount)
+                    .setParameter(3, stripe)
+                    .setParameter(4, amount)
+                    .executeUpdate();
+        } finally {
+            operations.record("AccountStripeDAO.debitIfCovered", start);
+        }
+    }
+}
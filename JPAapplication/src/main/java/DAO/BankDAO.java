@@ -4,6 +4,7 @@ import entities.Bank;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.TypedQuery;
+import metrics.OperationStatistics;
 
 import java.util.List;
 
@@ -11,15 +12,20 @@ import java.util.List;
  * Data Access Object (DAO) for managing Bank entities.
  */
 public class BankDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs a BankDAO with the provided EntityManager.
+     * Constructs a BankDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public BankDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public BankDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -28,7 +34,12 @@ public class BankDAO {
      * @param bank The Bank entity to be created.
      */
     public void createBank(Bank bank) {
-        entityManager.persist(bank);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(bank);
+        } finally {
+            operations.record("BankDAO.createBank", start);
+        }
     }
 
     /**
@@ -38,7 +49,33 @@ public class BankDAO {
      * @return The Bank entity with the specified ID, or null if not found.
      */
     public Bank findBank(Integer id) {
-        return entityManager.find(Bank.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Bank.class, id);
+        } finally {
+            operations.record("BankDAO.findBank", start);
+        }
+    }
+
+    /**
+     * Retrieves a Bank entity with the relationships of a fetch plan loaded, e.g.
+     * {@link FetchPlan#BANK_ACCOUNT_BOOK}.
+     *
+     * @param id   The ID of the Bank entity to retrieve.
+     * @param plan The relationships to load with it.
+     * @return The Bank entity with the specified ID, or null if not found.
+     */
+    public Bank findBank(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            List<Bank> banks = plan.applyTo(entityManager().createNamedQuery(Bank.FIND_BY_ID, Bank.class), "b")
+                    .setParameter("id", id)
+                    .getResultList();
+            plan.load(banks);
+            return banks.isEmpty() ? null : banks.get(0);
+        } finally {
+            operations.record("BankDAO.findBank(FetchPlan)", start);
+        }
     }
 
     /**
@@ -48,14 +85,55 @@ public class BankDAO {
      * @return The Bank entity with the specified IBAN, or null if not found.
      */
     public Bank findBankByIban(String iban) {
-        TypedQuery<Bank> query = entityManager.createQuery("SELECT b FROM Bank b WHERE b.iban = :iban", Bank.class);
-        query.setParameter("iban", iban);
+        long start = System.nanoTime();
         try {
-            return query.getSingleResult();
-        } catch (NoResultException e) {
-            // Log or handle the case where no bank with the given IBAN is found
-            System.err.println("No bank found with IBAN: " + iban);
-            return null;
+            TypedQuery<Bank> query = entityManager().createNamedQuery(Bank.FIND_BY_IBAN, Bank.class);
+            query.setParameter("iban", iban);
+            try {
+                return query.getSingleResult();
+            } catch (NoResultException e) {
+                return null;
+            }
+        } finally {
+            operations.record("BankDAO.findBankByIban", start);
+        }
+    }
+
+    /**
+     * Retrieves a Bank entity based on its IBAN with the relationships of a fetch plan loaded.
+     *
+     * @param iban The IBAN of the Bank entity to retrieve.
+     * @param plan The relationships to load with it.
+     * @return The Bank entity with the specified IBAN, or null if not found.
+     */
+    public Bank findBankByIban(String iban, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            List<Bank> banks = plan.applyTo(entityManager().createNamedQuery(Bank.FIND_BY_IBAN, Bank.class), "b")
+                    .setParameter("iban", iban)
+                    .getResultList();
+            plan.load(banks);
+            return banks.isEmpty() ? null : banks.get(0);
+        } finally {
+            operations.record("BankDAO.findBankByIban(FetchPlan)", start);
+        }
+    }
+
+    /**
+     * Reads the row of a bank straight from the database, e.g. to show what was stored.
+     *
+     * @param iban The IBAN of the bank.
+     * @return The (id_bank, bank_name, main_office, iban) row, or null if not found.
+     */
+    public Object[] findBankRowByIban(String iban) {
+        long start = System.nanoTime();
+        try {
+            List<?> rows = entityManager().createNamedQuery(Bank.FIND_ROW_BY_IBAN)
+                    .setParameter(1, iban)
+                    .getResultList();
+            return rows.isEmpty() ? null : (Object[]) rows.get(0);
+        } finally {
+            operations.record("BankDAO.findBankRowByIban", start);
         }
     }
 
@@ -65,7 +143,12 @@ public class BankDAO {
      * @param bank The Bank entity to be updated.
      */
     public void updateBank(Bank bank) {
-        entityManager.merge(bank);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(bank);
+        } finally {
+            operations.record("BankDAO.updateBank", start);
+        }
     }
 
     /**
@@ -74,9 +157,14 @@ public class BankDAO {
      * @param id The ID of the Bank entity to delete.
      */
     public void deleteBank(Integer id) {
-        Bank bank = entityManager.find(Bank.class, id);
-        if (bank != null) {
-            entityManager.remove(bank);
+        long start = System.nanoTime();
+        try {
+            Bank bank = entityManager().find(Bank.class, id);
+            if (bank != null) {
+                entityManager().remove(bank);
+            }
+        } finally {
+            operations.record("BankDAO.deleteBank", start);
         }
     }
 }
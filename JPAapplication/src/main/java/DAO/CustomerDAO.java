@@ -3,20 +3,26 @@ package DAO;
 import entities.Customer;
 import entities.Person;
 import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
 
 /**
  * Data Access Object (DAO) for managing Customer entities.
  */
 public class CustomerDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs a CustomerDAO with the provided EntityManager.
+     * Constructs a CustomerDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public CustomerDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public CustomerDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -25,7 +31,12 @@ public class CustomerDAO {
      * @param customer The Customer entity to be created.
      */
     public void createCustomer(Customer customer) {
-        entityManager.persist(customer);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(customer);
+        } finally {
+            operations.record("CustomerDAO.createCustomer", start);
+        }
     }
 
     /**
@@ -35,7 +46,12 @@ public class CustomerDAO {
      * @return The Customer entity with the specified ID, or null if not found.
      */
     public Customer findCustomer(Integer id) {
-        return entityManager.find(Customer.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Customer.class, id);
+        } finally {
+            operations.record("CustomerDAO.findCustomer", start);
+        }
     }
 
     /**
@@ -44,7 +60,12 @@ public class CustomerDAO {
      * @param customer The Customer entity to be updated.
      */
     public void updateCustomer(Customer customer) {
-        entityManager.merge(customer);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(customer);
+        } finally {
+            operations.record("CustomerDAO.updateCustomer", start);
+        }
     }
 
     /**
@@ -53,10 +74,33 @@ public class CustomerDAO {
      * @param id The ID of the Customer entity to delete.
      */
     public void deleteCustomer(Integer id) {
-        Customer customer = entityManager.find(Customer.class, id);
-        if (customer != null) {
-            entityManager.remove(customer);
+        long start = System.nanoTime();
+        try {
+            Customer customer = entityManager().find(Customer.class, id);
+            if (customer != null) {
+                entityManager().remove(customer);
+            }
+        } finally {
+            operations.record("CustomerDAO.deleteCustomer", start);
         }
     }
-}
 
+    /**
+     * Retrieves one page of Customer entities, using keyset pagination so every page costs the same
+     * however deep into the listing it is.
+     *
+     * @param order     The listing order.
+     * @param pageSize  The maximum number of Customer entities on the page.
+     * @param pageToken The continuation token of the previous page, or null for the first page.
+     * @return The page, with the token of the next page unless it is the last one.
+     * @throws IllegalArgumentException if the page size is not positive or the token is not valid for the order.
+     */
+    public Page<Customer> findCustomerPage(PersonOrder order, int pageSize, String pageToken) {
+        long start = System.nanoTime();
+        try {
+            return PersonPages.find(entityManager(), Customer.class, order, pageSize, pageToken);
+        } finally {
+            operations.record("CustomerDAO.findCustomerPage", start);
+        }
+    }
+}
@@ -3,20 +3,26 @@ package DAO;
 import entities.Education;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Id;
+import metrics.OperationStatistics;
 
 /**
  * Data Access Object (DAO) for managing Education entities.
  */
 public class EducationDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs an EducationDAO with the provided EntityManager.
+     * Constructs an EducationDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public EducationDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public EducationDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -25,7 +31,12 @@ public class EducationDAO {
      * @param education The Education entity to be created.
      */
     public void createEducation(Education education) {
-        entityManager.persist(education);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(education);
+        } finally {
+            operations.record("EducationDAO.createEducation", start);
+        }
     }
 
     /**
@@ -35,7 +46,12 @@ public class EducationDAO {
      * @return The Education entity with the specified ID, or null if not found.
      */
     public Education findEducation(Integer id) {
-        return entityManager.find(Education.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Education.class, id);
+        } finally {
+            operations.record("EducationDAO.findEducation", start);
+        }
     }
 
     /**
@@ -44,7 +60,12 @@ public class EducationDAO {
      * @param education The Education entity to be updated.
      */
     public void updateEducation(Education education) {
-        entityManager.merge(education);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(education);
+        } finally {
+            operations.record("EducationDAO.updateEducation", start);
+        }
     }
 
     /**
@@ -53,9 +74,14 @@ public class EducationDAO {
      * @param id The ID of the Education entity to delete.
      */
     public void deleteEducation(Integer id) {
-        Education education = entityManager.find(Education.class, id);
-        if (education != null) {
-            entityManager.remove(education);
+        long start = System.nanoTime();
+        try {
+            Education education = entityManager().find(Education.class, id);
+            if (education != null) {
+                entityManager().remove(education);
+            }
+        } finally {
+            operations.record("EducationDAO.deleteEducation", start);
         }
     }
 }
@@ -3,20 +3,28 @@ package DAO;
 import entities.Employee;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Id;
+import metrics.OperationStatistics;
+
+import java.util.List;
 
 /**
  * Data Access Object (DAO) for managing Employee entities.
  */
 public class EmployeeDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs an EmployeeDAO with the provided EntityManager.
+     * Constructs an EmployeeDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public EmployeeDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public EmployeeDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -25,7 +33,12 @@ public class EmployeeDAO {
      * @param employee The Employee entity to be created.
      */
     public void createEmployee(Employee employee) {
-        entityManager.persist(employee);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(employee);
+        } finally {
+            operations.record("EmployeeDAO.createEmployee", start);
+        }
     }
 
     /**
@@ -35,7 +48,33 @@ public class EmployeeDAO {
      * @return The Employee entity with the specified ID, or null if not found.
      */
     public Employee findEmployee(Integer id) {
-        return entityManager.find(Employee.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Employee.class, id);
+        } finally {
+            operations.record("EmployeeDAO.findEmployee", start);
+        }
+    }
+
+    /**
+     * Retrieves an Employee entity with the relationships of a fetch plan loaded, e.g.
+     * {@link FetchPlan#EMPLOYEE_PORTFOLIO}.
+     *
+     * @param id   The ID of the Employee entity to retrieve.
+     * @param plan The relationships to load with it.
+     * @return The Employee entity with the specified ID, or null if not found.
+     */
+    public Employee findEmployee(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            List<Employee> employees = plan.applyTo(entityManager().createNamedQuery(Employee.FIND_BY_ID, Employee.class), "e")
+                    .setParameter("id", id)
+                    .getResultList();
+            plan.load(employees);
+            return employees.isEmpty() ? null : employees.get(0);
+        } finally {
+            operations.record("EmployeeDAO.findEmployee(FetchPlan)", start);
+        }
     }
 
     /**
@@ -44,7 +83,12 @@ public class EmployeeDAO {
      * @param employee The Employee entity to be updated.
      */
     public void updateEmployee(Employee employee) {
-        entityManager.merge(employee);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(employee);
+        } finally {
+            operations.record("EmployeeDAO.updateEmployee", start);
+        }
     }
 
     /**
@@ -53,9 +97,14 @@ public class EmployeeDAO {
      * @param id The ID of the Employee entity to delete.
      */
     public void deleteEmployee(Integer id) {
-        Employee employee = entityManager.find(Employee.class, id);
-        if (employee != null) {
-            entityManager.remove(employee);
+        long start = System.nanoTime();
+        try {
+            Employee employee = entityManager().find(Employee.class, id);
+            if (employee != null) {
+                entityManager().remove(employee);
+            }
+        } finally {
+            operations.record("EmployeeDAO.deleteEmployee", start);
         }
     }
 }
@@ -0,0 +1,144 @@
+package DAO;
+
+import jakarta.persistence.TypedQuery;
+import org.eclipse.persistence.config.QueryHints;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The relationships to load together with the entities a DAO finds, as paths from the found entity, e.g.
+ * "accounts.persons" for the holders of the accounts of a bank. The paths are join fetched (an outer
+ * join per relationship) by the query that finds the entities, so a plan costs one query however many
+ * entities it loads, where walking the same graph lazily costs a query per parent and relationship. The
+ * plan is loaded before the DAO returns, so the graph can be walked after its unit of work has ended.
+ * <p>
+ * Relationships off the plan stay lazy and are read when first walked, the to-one ones for all the
+ * entities the same query read at once (batch fetch). The relationships of subclasses (the employee of
+ * a customer, the superior of an employee) cannot be named in a path. Two collections on the same level
+ * multiply their rows, so keep plans to one such branch over large collections.
+ */
+public final class FetchPlan {
+    /** Loads nothing beyond what the mappings load. */
+    public static final FetchPlan NONE = new FetchPlan(Collections.emptyList());
+
+    /** A bank with its accounts, and their holders and payment cards. */
+    public static final FetchPlan BANK_ACCOUNT_BOOK = FetchPlan.of(
+            "accounts", "accounts.bank", "accounts.persons", "accounts.paymentCard");
+
+    /** Accounts with their bank, holders and payment card. */
+    public static final FetchPlan ACCOUNT_DETAILS = FetchPlan.of("bank", "persons", "paymentCard");
+
+    /** A person with their accounts, and the banks and payment cards of those. */
+    public static final FetchPlan PERSON_ACCOUNTS = FetchPlan.of("accounts", "accounts.bank", "accounts.paymentCard");
+
+    /** An employee with their customers and educations. */
+    public static final FetchPlan EMPLOYEE_PORTFOLIO = FetchPlan.of("customers", "educations");
+
+    private static final Map<String, Method> GETTERS = new ConcurrentHashMap<>();
+
+    private final List<String> paths;
+
+    private FetchPlan(List<String> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Creates a plan.
+     *
+     * @param paths The relationship paths, each a chain of attribute names separated by dots.
+     * @return The plan.
+     */
+    public static FetchPlan of(String... paths) {
+        return new FetchPlan(List.of(paths));
+    }
+
+    /**
+     * @return A plan with the paths of this one and the given ones.
+     */
+    public FetchPlan with(String... morePaths) {
+        List<String> all = new ArrayList<>(paths);
+        all.addAll(List.of(morePaths));
+        return new FetchPlan(Collections.unmodifiableList(all));
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /**
+     * Adds the join fetch hints of the plan to a query.
+     *
+     * @param query The query.
+     * @param alias The identification variable of the entity the query selects.
+     * @return The query.
+     */
+    <T> TypedQuery<T> applyTo(TypedQuery<T> query, String alias) {
+        for (String path : paths) {
+            query.setHint(QueryHints.LEFT_FETCH, alias + "." + path);
+        }
+        return query;
+    }
+
+    /**
+     * Walks every path of the plan from the given entities, which loads what the join did not, e.g. an
+     * empty collection.
+     *
+     * @param roots The entities the plan was applied to.
+     */
+    void load(Collection<?> roots) {
+        for (String path : paths) {
+            walk(roots, path.split("\\."), 0);
+        }
+    }
+
+    private static void walk(Collection<?> entities, String[] path, int depth) {
+        if (depth == path.length) {
+            return;
+        }
+        List<Object> next = new ArrayList<>();
+        for (Object entity : entities) {
+            Object value = get(entity, path[depth]);
+            if (value instanceof Collection) {
+                // Iterating instantiates the lazy collection
+                next.addAll((Collection<?>) value);
+            } else if (value != null) {
+                next.add(value);
+            }
+        }
+        walk(next, path, depth + 1);
+    }
+
+    private static Object get(Object entity, String attribute) {
+        Class<?> type = entity.getClass();
+        Method getter = GETTERS.computeIfAbsent(type.getName() + "." + attribute, key -> getterOf(type, attribute));
+        try {
+            return getter.invoke(entity);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not read " + key(type, attribute), e);
+        }
+    }
+
+    private static Method getterOf(Class<?> type, String attribute) {
+        try {
+            return type.getMethod("get" + Character.toUpperCase(attribute.charAt(0)) + attribute.substring(1));
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No relationship " + key(type, attribute) + " with a getter", e);
+        }
+    }
+
+    private static String key(Class<?> type, String attribute) {
+        return type.getSimpleName() + "." + attribute;
+    }
+
+    @Override
+    public String toString() {
+        return paths.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package DAO;
+
+import entities.LedgerEntry;
+import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the transfer ledger and the balance snapshots built from it.
+ */
+public class LedgerDAO {
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs a LedgerDAO that works in the unit of work currently run by the given template.
+     *
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
+     */
+    public LedgerDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
+    }
+
+    /**
+     * Appends the two entries of a transfer. They are inserted when the transaction commits, batched
+     * with the other inserts of the transaction.
+     *
+     * @param idAccountFrom The ID of the account the money was taken from.
+     * @param idAccountTo   The ID of the account the money was added to.
+     * @param amount        The amount transferred.
+     * @param bookedAt      The instant the transfer is booked at.
+     */
+    public void recordTransfer(Integer idAccountFrom, Integer idAccountTo, double amount, Date bookedAt) {
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(new LedgerEntry(idAccountFrom, idAccountTo, -amount, bookedAt));
+            entityManager().persist(new LedgerEntry(idAccountTo, idAccountFrom, amount, bookedAt));
+        } finally {
+            operations.record("LedgerDAO.recordTransfer", start);
+        }
+    }
+
+    /**
+     * Appends one side of a transfer, e.g. where the two accounts are kept in different databases and
+     * each side is booked in a transaction of its own.
+     *
+     * @param idAccount        The ID of the account whose balance moved.
+     * @param idCounterAccount The ID of the account on the other side of the transfer.
+     * @param amount           The change of the balance: negative for money taken, positive for money added.
+     * @param bookedAt         The instant the transfer is booked at.
+     */
+    public void recordEntry(Integer idAccount, Integer idCounterAccount, double amount, Date bookedAt) {
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(new LedgerEntry(idAccount, idCounterAccount, amount, bookedAt));
+        } finally {
+            operations.record("LedgerDAO.recordEntry", start);
+        }
+    }
+
+    /**
+     * Rebuilds the balance of an account at an instant from the nearest snapshot, before the instant if
+     * there is one and after it otherwise, and the ledger entries between the snapshot and the instant.
+     *
+     * @param idAccount The ID of the account.
+     * @param at        The instant.
+     * @return The balance, or null if the account has no snapshot.
+     */
+    public Double findBalanceFromSnapshot(Integer idAccount, Date at) {
+        long start = System.nanoTime();
+        try {
+            Timestamp instant = new Timestamp(at.getTime());
+            Double balance = singleBalance(entityManager().createNamedQuery(LedgerEntry.FIND_BALANCE_FROM_SNAPSHOT_BEFORE)
+                    .setParameter(1, instant)
+                    .setParameter(2, idAccount)
+                    .setParameter(3, instant)
+                    .getResultList());
+            if (balance != null) {
+                return balance;
+            }
+            return singleBalance(entityManager().createNamedQuery(LedgerEntry.FIND_BALANCE_FROM_SNAPSHOT_AFTER)
+                    .setParameter(1, instant)
+                    .setParameter(2, idAccount)
+                    .setParameter(3, instant)
+                    .getResultList());
+        } finally {
+            operations.record("LedgerDAO.findBalanceFromSnapshot", start);
+        }
+    }
+
+    /**
+     * Rebuilds the balance of an account at an instant from its current balance and the ledger entries
+     * booked after the instant; meant for accounts without a snapshot, whose entries are all recent.
+     *
+     * @param idAccount The ID of the account.
+     * @param at        The instant.
+     * @return The balance, or null if the account does not exist.
+     */
+    public Double findBalanceFromCurrent(Integer idAccount, Date at) {
+        long start = System.nanoTime();
+        try {
+            return singleBalance(entityManager().createNamedQuery(LedgerEntry.FIND_BALANCE_FROM_CURRENT)
+                    .setParameter(1, new Timestamp(at.getTime()))
+                    .setParameter(2, idAccount)
+                    .getResultList());
+        } finally {
+            operations.record("LedgerDAO.findBalanceFromCurrent", start);
+        }
+    }
+
+    /**
+     * Snapshots the balance, as of the cutoff, of every account that had entries booked since its last
+     * snapshot. Entries booked at or before the cutoff must all be committed, so the cutoff should lie
+     * further in the past than the longest transfer transaction takes.
+     *
+     * @param cutoff The instant the snapshots are as of.
+     * @return The number of snapshots taken.
+     */
+    public int createSnapshots(Date cutoff) {
+        long start = System.nanoTime();
+        try {
+            Timestamp instant = new Timestamp(cutoff.getTime());
+            int taken = entityManager().createNamedQuery(LedgerEntry.CREATE_SNAPSHOTS_FROM_PREVIOUS)
+                    .setParameter(1, instant)
+                    .setParameter(2, instant)
+                    .executeUpdate();
+            taken += entityManager().createNamedQuery(LedgerEntry.CREATE_SNAPSHOTS_FROM_CURRENT)
+                    .setParameter(1, instant)
+                    .setParameter(2, instant)
+                    .setParameter(3, instant)
+                    .executeUpdate();
+            return taken;
+        } finally {
+            operations.record("LedgerDAO.createSnapshots", start);
+        }
+    }
+
+    /**
+     * Creates the missing monthly partitions of the ledger between two instants; PostgreSQL only, once
+     * sql/ledger_partitions.sql has been applied.
+     *
+     * @param from An instant in the first month to create.
+     * @param to   An instant in the last month to create.
+     */
+    public void createPartitions(Date from, Date to) {
+        long start = System.nanoTime();
+        try {
+            entityManager().createNamedQuery(LedgerEntry.ENSURE_PARTITIONS)
+                    .setParameter(1, new Timestamp(from.getTime()))
+                    .setParameter(2, new Timestamp(to.getTime()))
+                    .getResultList();
+        } finally {
+            operations.record("LedgerDAO.createPartitions", start);
+        }
+    }
+
+    private static Double singleBalance(List<?> rows) {
+        return rows.isEmpty() || rows.get(0) == null ? null : ((Number) rows.get(0)).doubleValue();
+    }
+}
@@ -0,0 +1,42 @@
+package DAO;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing.
+ *
+ * @param <T> The type of the listed entities.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextPageToken;
+
+    /**
+     * Constructs a Page.
+     *
+     * @param items         The entities on this page, in listing order.
+     * @param nextPageToken The token that continues the listing after this page, or null if this is the last page.
+     */
+    public Page(List<T> items, String nextPageToken) {
+        this.items = items;
+        this.nextPageToken = nextPageToken;
+    }
+
+    //    Getters
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+    public boolean hasNext() {
+        return nextPageToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return items.size() + " items" + (hasNext() ? ", more" : ", last page");
+    }
+}
@@ -1,21 +1,30 @@
 package DAO;
 
 import entities.Payment_card;
+import jakarta.persistence.CacheRetrieveMode;
 import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
+
+import java.util.Map;
 
 /**
  * Data Access Object (DAO) for managing Payment_card entities.
  */
 public class Payment_cardDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs a Payment_cardDAO with the provided EntityManager.
+     * Constructs a Payment_cardDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public Payment_cardDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public Payment_cardDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -24,7 +33,12 @@ public class Payment_cardDAO {
      * @param paymentCard The Payment_card entity to be created.
      */
     public void createPaymentCard(Payment_card paymentCard) {
-        entityManager.persist(paymentCard);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(paymentCard);
+        } finally {
+            operations.record("Payment_cardDAO.createPaymentCard", start);
+        }
     }
 
     /**
@@ -34,7 +48,29 @@ public class Payment_cardDAO {
      * @return The Payment_card entity with the specified ID, or null if not found.
      */
     public Payment_card findPaymentCard(Integer id) {
-        return entityManager.find(Payment_card.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Payment_card.class, id);
+        } finally {
+            operations.record("Payment_cardDAO.findPaymentCard", start);
+        }
+    }
+
+    /**
+     * Retrieves a Payment_card entity straight from the database, bypassing the shared cache, so that a
+     * change made to it under optimistic locking starts from the current version.
+     *
+     * @param id The ID of the Payment_card entity to retrieve.
+     * @return The Payment_card entity with the specified ID, or null if not found.
+     */
+    public Payment_card findCurrentPaymentCard(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Payment_card.class, id,
+                    Map.of("jakarta.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS));
+        } finally {
+            operations.record("Payment_cardDAO.findCurrentPaymentCard", start);
+        }
     }
 
     /**
@@ -43,7 +79,12 @@ public class Payment_cardDAO {
      * @param paymentCard The Payment_card entity to be updated.
      */
     public void updatePaymentCard(Payment_card paymentCard) {
-        entityManager.merge(paymentCard);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(paymentCard);
+        } finally {
+            operations.record("Payment_cardDAO.updatePaymentCard", start);
+        }
     }
 
     /**
@@ -52,9 +93,14 @@ public class Payment_cardDAO {
      * @param id The ID of the Payment_card entity to delete.
      */
     public void deletePaymentCard(Integer id) {
-        Payment_card paymentCard = entityManager.find(Payment_card.class, id);
-        if (paymentCard != null) {
-            entityManager.remove(paymentCard);
+        long start = System.nanoTime();
+        try {
+            Payment_card paymentCard = entityManager().find(Payment_card.class, id);
+            if (paymentCard != null) {
+                entityManager().remove(paymentCard);
+            }
+        } finally {
+            operations.record("Payment_cardDAO.deletePaymentCard", start);
         }
     }
 }
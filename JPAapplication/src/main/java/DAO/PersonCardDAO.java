@@ -0,0 +1,124 @@
+package DAO;
+
+import entities.PersonCard;
+import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for reading the person_card projection. Both lookups are answered from an
+ * index of the projection instead of joining person and payment_card. Where the triggers that maintain
+ * the projection are missing (see {@link #hasProjectionTriggers()}) its table may be empty or stale, so
+ * every read can instead join person and payment_card.
+ */
+public class PersonCardDAO {
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs a PersonCardDAO that works in the unit of work currently run by the given template.
+     *
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
+     */
+    public PersonCardDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
+    }
+
+    /**
+     * Retrieves the cards of a person.
+     *
+     * @param birthCertificateNumber The birth certificate number of the person.
+     * @param fromProjection         true to read the projection, false to join person and payment_card.
+     * @return The person's cards ordered by card number; empty if there are none.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PersonCard> findByBirthCertificateNumber(String birthCertificateNumber, boolean fromProjection) {
+        long start = System.nanoTime();
+        try {
+            if (!fromProjection) {
+                return entityManager().createNamedQuery(PersonCard.JOIN_BY_BIRTH_CERTIFICATE_NUMBER)
+                        .setParameter(1, birthCertificateNumber)
+                        .getResultList();
+            }
+            return entityManager().createNamedQuery(PersonCard.FIND_BY_BIRTH_CERTIFICATE_NUMBER, PersonCard.class)
+                    .setParameter("birthCertificateNumber", birthCertificateNumber)
+                    .getResultList();
+        } finally {
+            operations.record("PersonCardDAO.findByBirthCertificateNumber", start);
+        }
+    }
+
+    /**
+     * Retrieves a card together with the person it belongs to.
+     *
+     * @param cardNumber     The card number.
+     * @param fromProjection true to read the projection, false to join person and payment_card.
+     * @return The card, or null if no card with that number belongs to a person.
+     */
+    @SuppressWarnings("unchecked")
+    public PersonCard findByCardNumber(String cardNumber, boolean fromProjection) {
+        long start = System.nanoTime();
+        try {
+            List<PersonCard> cards = fromProjection
+                    ? entityManager().createNamedQuery(PersonCard.FIND_BY_CARD_NUMBER, PersonCard.class)
+                    .setParameter("cardNumber", cardNumber)
+                    .getResultList()
+                    : entityManager().createNamedQuery(PersonCard.JOIN_BY_CARD_NUMBER)
+                    .setParameter(1, cardNumber)
+                    .getResultList();
+            return cards.isEmpty() ? null : cards.get(0);
+        } finally {
+            operations.record("PersonCardDAO.findByCardNumber", start);
+        }
+    }
+
+    /**
+     * Retrieves every row of the projection.
+     *
+     * @param fromProjection true to read the projection, false to join person and payment_card.
+     * @return All person cards ordered by birth certificate number and card number.
+     */
+    @SuppressWarnings("unchecked")
+    public List<PersonCard> findAll(boolean fromProjection) {
+        long start = System.nanoTime();
+        try {
+            if (!fromProjection) {
+                return entityManager().createNamedQuery(PersonCard.JOIN_ALL).getResultList();
+            }
+            return entityManager().createNamedQuery(PersonCard.FIND_ALL, PersonCard.class)
+                    .getResultList();
+        } finally {
+            operations.record("PersonCardDAO.findAll", start);
+        }
+    }
+
+    /**
+     * Checks whether the triggers of sql/person_card_projection.sql are installed on person and
+     * payment_card. Without them person_card is not maintained, e.g. when the schema was generated from
+     * the entities, which creates the table but neither fills it nor installs the triggers.
+     *
+     * @return true if the database is PostgreSQL and all four triggers exist.
+     */
+    public boolean hasProjectionTriggers() {
+        long start = System.nanoTime();
+        try {
+            try {
+                if (!"PostgreSQL".equals(entityManager().unwrap(Connection.class).getMetaData().getDatabaseProductName())) {
+                    return false;
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not read the database product name", e);
+            }
+            return entityManager().createNamedQuery(PersonCard.HAS_PROJECTION_TRIGGERS).getSingleResult().equals(Boolean.TRUE);
+        } finally {
+            operations.record("PersonCardDAO.hasProjectionTriggers", start);
+        }
+    }
+}
@@ -2,20 +2,28 @@ package DAO;
 
 import entities.Person;
 import jakarta.persistence.EntityManager;
+import metrics.OperationStatistics;
+
+import java.util.List;
 
 /**
  * Data Access Object (DAO) for managing Person entities.
  */
 public class PersonDAO {
-    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
 
     /**
-     * Constructs a PersonDAO with the provided EntityManager.
+     * Constructs a PersonDAO that works in the unit of work currently run by the given template.
      *
-     * @param entityManager The EntityManager to be used for database operations.
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
      */
-    public PersonDAO(EntityManager entityManager) {
-        this.entityManager = entityManager;
+    public PersonDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
     }
 
     /**
@@ -24,7 +32,12 @@ public class PersonDAO {
      * @param person The Person entity to be created.
      */
     public void createPerson(Person person) {
-        entityManager.persist(person);
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(person);
+        } finally {
+            operations.record("PersonDAO.createPerson", start);
+        }
     }
 
     /**
@@ -34,7 +47,33 @@ public class PersonDAO {
      * @return The Person entity with the specified ID, or null if not found.
      */
     public Person findPerson(Integer id) {
-        return entityManager.find(Person.class, id);
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(Person.class, id);
+        } finally {
+            operations.record("PersonDAO.findPerson", start);
+        }
+    }
+
+    /**
+     * Retrieves a Person entity with the relationships of a fetch plan loaded, e.g.
+     * {@link FetchPlan#PERSON_ACCOUNTS}.
+     *
+     * @param id   The ID of the Person entity to retrieve.
+     * @param plan The relationships to load with it.
+     * @return The Person entity with the specified ID, or null if not found.
+     */
+    public Person findPerson(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            List<Person> persons = plan.applyTo(entityManager().createNamedQuery(Person.FIND_BY_ID, Person.class), "p")
+                    .setParameter("id", id)
+                    .getResultList();
+            plan.load(persons);
+            return persons.isEmpty() ? null : persons.get(0);
+        } finally {
+            operations.record("PersonDAO.findPerson(FetchPlan)", start);
+        }
     }
 
     /**
@@ -43,7 +82,12 @@ public class PersonDAO {
      * @param person The Person entity to be updated.
      */
     public void updatePerson(Person person) {
-        entityManager.merge(person);
+        long start = System.nanoTime();
+        try {
+            entityManager().merge(person);
+        } finally {
+            operations.record("PersonDAO.updatePerson", start);
+        }
     }
 
     /**
@@ -52,10 +96,33 @@ public class PersonDAO {
      * @param id The ID of the Person entity to delete.
      */
     public void deletePerson(Integer id) {
-        Person person = entityManager.find(Person.class, id);
-        if (person != null) {
-            entityManager.remove(person);
+        long start = System.nanoTime();
+        try {
+            Person person = entityManager().find(Person.class, id);
+            if (person != null) {
+                entityManager().remove(person);
+            }
+        } finally {
+            operations.record("PersonDAO.deletePerson", start);
         }
     }
-}
 
+    /**
+     * Retrieves one page of Person entities, using keyset pagination so every page costs the same
+     * however deep into the listing it is.
+     *
+     * @param order     The listing order.
+     * @param pageSize  The maximum number of Person entities on the page.
+     * @param pageToken The continuation token of the previous page, or null for the first page.
+     * @return The page, with the token of the next page unless it is the last one.
+     * @throws IllegalArgumentException if the page size is not positive or the token is not valid for the order.
+     */
+    public Page<Person> findPersonPage(PersonOrder order, int pageSize, String pageToken) {
+        long start = System.nanoTime();
+        try {
+            return PersonPages.find(entityManager(), Person.class, order, pageSize, pageToken);
+        } finally {
+            operations.record("PersonDAO.findPersonPage", start);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package DAO;
+
+/**
+ * The orders persons and customers can be listed in. Every order ends with the person ID, so it is total
+ * and a page can be continued from the key of its last row.
+ */
+public enum PersonOrder {
+    /**
+     * By person ID.
+     */
+    ID,
+    /**
+     * By full name, then by person ID; served by the person (full_name, id_person) index.
+     */
+    FULL_NAME
+}
@@ -0,0 +1,92 @@
+package DAO;
+
+import entities.Person;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset (seek method) pagination over Person and its subclasses. Each page is read with
+ * {@code WHERE key > last key ORDER BY key LIMIT n} instead of an OFFSET, so a deep page costs the same
+ * as the first one. The continuation token carries the order and the key of the last row of the page.
+ */
+class PersonPages {
+    private static final String SEPARATOR = ":";
+
+    private PersonPages() {
+    }
+
+    /**
+     * Reads one page.
+     *
+     * @param em         The EntityManager to query with.
+     * @param type       Person or one of its subclasses.
+     * @param order      The listing order.
+     * @param pageSize   The maximum number of entities on the page.
+     * @param pageToken  The token of the previous page, or null for the first page.
+     * @return The page.
+     * @throws IllegalArgumentException if the page size is not positive, or the token is malformed or
+     *                                  belongs to a listing in another order.
+     */
+    static <T extends Person> Page<T> find(EntityManager em, Class<T> type, PersonOrder order, int pageSize, String pageToken) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String entity = type.getSimpleName();
+        TypedQuery<T> query;
+        if (pageToken == null) {
+            query = em.createQuery("SELECT p FROM " + entity + " p ORDER BY " + orderBy(order), type);
+        } else {
+            String[] key = decode(order, pageToken);
+            if (order == PersonOrder.ID) {
+                query = em.createQuery("SELECT p FROM " + entity + " p WHERE p.id_person > :lastId"
+                        + " ORDER BY " + orderBy(order), type);
+            } else {
+                // The redundant full_name >= :lastName lets the database range-scan the index
+                query = em.createQuery("SELECT p FROM " + entity + " p WHERE p.full_name >= :lastName"
+                        + " AND (p.full_name > :lastName OR p.id_person > :lastId)"
+                        + " ORDER BY " + orderBy(order), type);
+                query.setParameter("lastName", key[2]);
+            }
+            query.setParameter("lastId", Integer.valueOf(key[1]));
+        }
+
+        // One row more than the page tells whether there is a next page
+        List<T> rows = query.setMaxResults(pageSize + 1).getResultList();
+        if (rows.size() <= pageSize) {
+            return new Page<>(new ArrayList<>(rows), null);
+        }
+        List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+        return new Page<>(items, encode(order, items.get(pageSize - 1)));
+    }
+
+    private static String orderBy(PersonOrder order) {
+        return order == PersonOrder.ID ? "p.id_person" : "p.full_name, p.id_person";
+    }
+
+    private static String encode(PersonOrder order, Person last) {
+        String key = order.name() + SEPARATOR + last.getId_person();
+        if (order == PersonOrder.FULL_NAME) {
+            key += SEPARATOR + last.getFull_name();
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(PersonOrder order, String pageToken) {
+        String[] key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8).split(SEPARATOR, 3);
+            Integer.parseInt(key[1]);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed page token: " + pageToken, e);
+        }
+        if (!key[0].equals(order.name()) || key.length != (order == PersonOrder.FULL_NAME ? 3 : 2)) {
+            throw new IllegalArgumentException("Page token does not belong to a listing by " + order + ": " + pageToken);
+        }
+        return key;
+    }
+}
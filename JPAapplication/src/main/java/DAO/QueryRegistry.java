@@ -0,0 +1,137 @@
+package DAO;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.persistence.internal.sessions.AbstractSession;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DatabaseRecord;
+import org.eclipse.persistence.sessions.Session;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The named queries of the persistence unit, declared next to their entity with @NamedQuery and
+ * @NamedNativeQuery and run by the DAOs through createNamedQuery. EclipseLink parses the JPQL of a named
+ * query once, at login, and generates its SQL on the first run; an ad-hoc query repeats both on every
+ * createQuery. Their parameters are bound, so the SQL text of a query never changes and the JDBC driver
+ * can keep it prepared on the server (see the pgjdbc settings in persistence.xml).
+ * <p>
+ * {@link #prepare(EntityManagerFactory)} does the work of the first run at startup: it generates the SQL
+ * of every JPQL query, failing if one does not translate, and has the database prepare every native
+ * statement once to check it. Native statements that need something the database lacks, e.g. the
+ * transfer_funds function on a database where sql/transfer_funds.sql was not applied, are reported as
+ * unavailable rather than failing, since the DAOs only run them where it exists.
+ */
+public final class QueryRegistry {
+    private static final Logger LOGGER = Logger.getLogger(QueryRegistry.class.getName());
+
+    private final List<String> queryNames;
+    private final Map<String, String> unavailableQueries;
+
+    private QueryRegistry(List<String> queryNames, Map<String, String> unavailableQueries) {
+        this.queryNames = Collections.unmodifiableList(queryNames);
+        this.unavailableQueries = Collections.unmodifiableMap(unavailableQueries);
+    }
+
+    /**
+     * Logs the factory in, if it is not yet, and prepares its named queries.
+     *
+     * @param entityManagerFactory The factory of the persistence unit.
+     * @return The registry of the prepared queries.
+     * @throws IllegalStateException if the SQL of a JPQL query cannot be generated.
+     */
+    public static QueryRegistry prepare(EntityManagerFactory entityManagerFactory) {
+        // Creating an EntityManager deploys the persistence unit, which parses the JPQL of every named query
+        entityManagerFactory.createEntityManager().close();
+        Session session = JpaHelper.getServerSession(entityManagerFactory);
+        List<String> names = new ArrayList<>();
+        Map<String, String> nativeQueries = new TreeMap<>();
+        for (Map.Entry<String, List<DatabaseQuery>> named : session.getQueries().entrySet()) {
+            names.add(named.getKey());
+            for (DatabaseQuery query : named.getValue()) {
+                if (query.isSQLCallQuery()) {
+                    nativeQueries.put(named.getKey(), query.getSQLString());
+                } else {
+                    generateSql(named.getKey(), query, (AbstractSession) session);
+                }
+            }
+        }
+        Collections.sort(names);
+        Map<String, String> unavailable = checkNativeQueries(entityManagerFactory, nativeQueries);
+        unavailable.forEach((name, reason) ->
+                LOGGER.log(Level.WARNING, "Named query {0} is not available on this database: {1}", new Object[]{name, reason}));
+        LOGGER.log(Level.FINE, "Prepared {0} named queries", names.size());
+        return new QueryRegistry(names, unavailable);
+    }
+
+    /**
+     * @return The names of all named queries, sorted.
+     */
+    public List<String> getQueryNames() {
+        return queryNames;
+    }
+
+    /**
+     * @return The native queries the database could not prepare, with the reason, keyed by name.
+     */
+    public Map<String, String> getUnavailableQueries() {
+        return unavailableQueries;
+    }
+
+    /**
+     * @param name The name of a query.
+     * @return true if the query is registered and the database could prepare it.
+     */
+    public boolean isAvailable(String name) {
+        return queryNames.contains(name) && !unavailableQueries.containsKey(name);
+    }
+
+    private static void generateSql(String name, DatabaseQuery query, AbstractSession session) {
+        try {
+            query.checkPrepare(session, new DatabaseRecord());
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Could not prepare named query " + name + ": " + query.getJPQLString(), e);
+        }
+    }
+
+    private static Map<String, String> checkNativeQueries(EntityManagerFactory entityManagerFactory,
+                                                          Map<String, String> nativeQueries) {
+        Map<String, String> unavailable = new TreeMap<>();
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Connection connection = em.unwrap(Connection.class);
+            for (Map.Entry<String, String> query : nativeQueries.entrySet()) {
+                // A statement that fails aborts a PostgreSQL transaction, so each one gets a savepoint
+                Savepoint savepoint = connection.setSavepoint();
+                try (PreparedStatement statement = connection.prepareStatement(query.getValue())) {
+                    // Makes pgjdbc, which prepares lazily, have the server parse the statement
+                    statement.getParameterMetaData();
+                    connection.releaseSavepoint(savepoint);
+                } catch (SQLException e) {
+                    connection.rollback(savepoint);
+                    unavailable.put(query.getKey(), e.getMessage());
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not check the native named queries", e);
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+        return unavailable;
+    }
+}
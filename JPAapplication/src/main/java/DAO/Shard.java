@@ -0,0 +1,63 @@
+package DAO;
+
+/**
+ * One of the databases of a {@link ShardRouter}, with the template its units of work run with and the
+ * DAOs of the entities it holds: the banks routed to it by IBAN, their accounts and payment cards,
+ * their ledger entries and the transfers between shards that involve them.
+ */
+public class Shard {
+    private final int index;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountDAO accountDAO;
+    private final BankDAO bankDAO;
+    private final Payment_cardDAO paymentCardDAO;
+    private final LedgerDAO ledgerDAO;
+    private final TransferSagaDAO transferSagaDAO;
+
+    Shard(int index, TransactionTemplate transactionTemplate) {
+        this.index = index;
+        this.transactionTemplate = transactionTemplate;
+        accountDAO = new AccountDAO(transactionTemplate);
+        bankDAO = new BankDAO(transactionTemplate);
+        paymentCardDAO = new Payment_cardDAO(transactionTemplate);
+        ledgerDAO = new LedgerDAO(transactionTemplate);
+        transferSagaDAO = new TransferSagaDAO(transactionTemplate);
+    }
+
+    //    Getters
+    /**
+     * @return The position of the shard, from 0; it is also the top bits of the IDs generated in it.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    public AccountDAO getAccountDAO() {
+        return accountDAO;
+    }
+
+    public BankDAO getBankDAO() {
+        return bankDAO;
+    }
+
+    public Payment_cardDAO getPaymentCardDAO() {
+        return paymentCardDAO;
+    }
+
+    public LedgerDAO getLedgerDAO() {
+        return ledgerDAO;
+    }
+
+    public TransferSagaDAO getTransferSagaDAO() {
+        return transferSagaDAO;
+    }
+
+    @Override
+    public String toString() {
+        return "Shard " + index;
+    }
+}
@@ -0,0 +1,235 @@
+package DAO;
+
+import entities.IdGeneration;
+import jakarta.persistence.EntityManagerFactory;
+import pool.ConnectionPool;
+import pool.PersistenceUnitSettings;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Spreads the banks, their accounts and their payment cards over several databases, the shards, each
+ * with a persistence unit of its own. A bank lives in the shard its IBAN hashes to, and its accounts
+ * and their cards live with it, so the foreign keys between them stay inside one database. The IDs of
+ * accounts, cards and banks are generated in a range of their own in every shard: the top bits are the
+ * index of the shard (see {@link #initializeIds()}), so an account is found from its ID alone. Persons,
+ * employees and customers are not sharded and stay in the first shard. Configured by the bank.shard.*
+ * properties of the persistence unit, which system properties of the same name override:
+ * <ul>
+ *     <li>bank.shard.urls - comma-separated JDBC urls of the shards, at most {@value #MAX_SHARDS}, which
+ *     share the credentials and pool settings of the persistence unit (default none: the persistence
+ *     unit's own database is the only shard)</li>
+ * </ul>
+ * Adding a shard changes where IBANs hash to; moving the banks that change shard is left to a migration.
+ */
+public class ShardRouter implements AutoCloseable {
+    public static final String PROPERTY_PREFIX = "bank.shard.";
+
+    /** The bits of a generated ID below the index of its shard. */
+    public static final int ID_BITS = 28;
+    /** Shard indexes above this would make the IDs of the last shard negative. */
+    public static final int MAX_SHARDS = 1 << (Integer.SIZE - 1 - ID_BITS);
+
+    private static final String[] ID_SEQUENCES = {
+            "account_id_account_seq", "payment_card_id_card_seq", "bank_id_bank_seq"};
+
+    private final List<Shard> shards;
+    private final List<AutoCloseable> resources;
+    private final ExecutorService scatterExecutor;
+
+    /**
+     * Constructs a ShardRouter over databases the caller opened and closes.
+     *
+     * @param transactionTemplates The template of every shard, in shard order.
+     */
+    public ShardRouter(List<TransactionTemplate> transactionTemplates) {
+        this(transactionTemplates, Collections.emptyList());
+    }
+
+    private ShardRouter(List<TransactionTemplate> transactionTemplates, List<AutoCloseable> resources) {
+        if (transactionTemplates.isEmpty() || transactionTemplates.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported, not "
+                    + transactionTemplates.size());
+        }
+        List<Shard> list = new ArrayList<>();
+        for (TransactionTemplate transactionTemplate : transactionTemplates) {
+            list.add(new Shard(list.size(), transactionTemplate));
+        }
+        this.shards = Collections.unmodifiableList(list);
+        this.resources = resources;
+        AtomicInteger threads = new AtomicInteger();
+        scatterExecutor = Executors.newFixedThreadPool(list.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-scatter-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens the shards of a persistence unit as configured in persistence.xml, each with its own
+     * {@link ConnectionPool} and EntityManagerFactory, which the router closes.
+     *
+     * @param persistenceUnitName The name of the persistence unit.
+     * @param overrides           Properties that take precedence over persistence.xml; the url and the
+     *                            pool name are replaced for every shard.
+     * @return The router.
+     */
+    public static ShardRouter forPersistenceUnit(String persistenceUnitName, Map<String, ?> overrides) {
+        Properties settings = PersistenceUnitSettings.load(persistenceUnitName);
+        overrides.forEach((name, value) -> settings.setProperty(name, String.valueOf(value)));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                .forEach(name -> settings.setProperty(name, System.getProperty(name)));
+
+        List<TransactionTemplate> templates = new ArrayList<>();
+        List<AutoCloseable> resources = new ArrayList<>();
+        String urls = settings.getProperty(PROPERTY_PREFIX + "urls", "").trim();
+        for (String url : urls.isEmpty() ? new String[]{null} : urls.split(",")) {
+            Map<String, Object> shardOverrides = new HashMap<>(overrides);
+            if (url != null) {
+                String name = persistenceUnitName + "-shard-" + templates.size();
+                shardOverrides.put("jakarta.persistence.jdbc.url", url.trim());
+                shardOverrides.put(ConnectionPool.PROPERTY_PREFIX + "name", name);
+                shardOverrides.put("eclipselink.session-name", name);
+            }
+            ConnectionPool pool = ConnectionPool.forPersistenceUnit(persistenceUnitName, shardOverrides);
+            EntityManagerFactory entityManagerFactory = pool.createEntityManagerFactory();
+            // The factory must be closed before its pool
+            resources.add(0, pool);
+            resources.add(0, entityManagerFactory::close);
+            templates.add(new TransactionTemplate(entityManagerFactory));
+        }
+        return new ShardRouter(templates, resources);
+    }
+
+    /**
+     * Moves the ID sequences of every shard but the first into the range of the shard, so that the IDs
+     * of accounts, cards and banks say which shard they live in. Run it once on new, empty shards,
+     * before the first insert; running it again would hand out IDs that are taken.
+     */
+    public void initializeIds() {
+        for (Shard shard : shards) {
+            if (shard.getIndex() == 0) {
+                continue;
+            }
+            TransactionTemplate transactionTemplate = shard.getTransactionTemplate();
+            // A block of IDs is allocated below the value the sequence returns
+            long first = ((long) shard.getIndex() << ID_BITS) + allocationSize(transactionTemplate);
+            transactionTemplate.runInTransaction(em -> {
+                try (Statement statement = em.unwrap(Connection.class).createStatement()) {
+                    for (String sequence : ID_SEQUENCES) {
+                        statement.addBatch("ALTER SEQUENCE " + sequence + " RESTART WITH " + first);
+                    }
+                    statement.executeBatch();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Could not move the ID sequences of " + shard, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param iban The IBAN of a bank.
+     * @return The shard the bank, its accounts and their cards live in.
+     */
+    public Shard shardOfIban(String iban) {
+        return shards.get(Math.floorMod(iban.hashCode(), shards.size()));
+    }
+
+    /**
+     * @param id The ID of an account, payment card or bank.
+     * @return The shard it was created in.
+     * @throws IllegalArgumentException if the ID lies in the range of no shard.
+     */
+    public Shard shardOfId(Integer id) {
+        int index = id >>> ID_BITS;
+        if (index >= shards.size()) {
+            throw new IllegalArgumentException("ID " + id + " belongs to shard " + index + " of " + shards.size());
+        }
+        return shards.get(index);
+    }
+
+    /**
+     * @param id The ID of an account, payment card or bank.
+     * @return false if the ID lies in the range of no shard, so the entity cannot exist.
+     */
+    public boolean containsId(Integer id) {
+        return id >= 0 && id >>> ID_BITS < shards.size();
+    }
+
+    /**
+     * Runs the work on every shard at once and waits for all of them, e.g. to add up an aggregate.
+     *
+     * @param work The work; it runs on a thread of its own per shard, so it must open its own unit of work.
+     * @return The value returned by the work on every shard, in shard order.
+     */
+    public <T> List<T> scatter(Function<Shard, T> work) {
+        if (shards.size() == 1) {
+            return Collections.singletonList(work.apply(shards.get(0)));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>();
+        for (Shard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(shard), scatterExecutor));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Stops the scatter threads and closes the EntityManagerFactory and the pool of every shard the
+     * router opened.
+     */
+    @Override
+    public void close() {
+        scatterExecutor.shutdownNow();
+        for (AutoCloseable resource : resources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not close a shard", e);
+            }
+        }
+    }
+
+    private static int allocationSize(TransactionTemplate transactionTemplate) {
+        String value = System.getProperty(IdGeneration.ALLOCATION_SIZE_PROPERTY);
+        if (value == null) {
+            Object property = transactionTemplate.getEntityManagerFactory().getProperties()
+                    .get(IdGeneration.ALLOCATION_SIZE_PROPERTY);
+            value = property == null ? null : property.toString();
+        }
+        return value == null ? IdGeneration.DEFAULT_ALLOCATION_SIZE : Integer.parseInt(value.trim());
+    }
+}
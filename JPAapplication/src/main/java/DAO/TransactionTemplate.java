@@ -0,0 +1,227 @@
+package DAO;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+import metrics.CacheStatistics;
+import metrics.RollbackReason;
+import metrics.TransactionStatistics;
+import pool.ReplicaRouter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs units of work against an EntityManagerFactory. Each unit of work gets its own EntityManager,
+ * bound to the calling thread for as long as the work runs, so the DAOs built on this template can be
+ * shared by any number of threads. A unit of work started inside another one joins it. Every transaction
+ * the template commits or rolls back is counted in {@link TransactionStatistics}. Read-only units of work
+ * may run on a read replica instead, see {@link #withReadOnlyEntityManager(Function)}.
+ */
+public class TransactionTemplate {
+    private final EntityManagerFactory entityManagerFactory;
+    private final ReplicaRouter replicaRouter;
+    private final List<EntityManagerFactory> cachingEntityManagerFactories;
+    private final ThreadLocal<EntityManager> currentEntityManager = new ThreadLocal<>();
+    private final TransactionStatistics statistics = TransactionStatistics.getInstance();
+
+    /**
+     * Constructs a TransactionTemplate.
+     *
+     * @param entityManagerFactory The factory the EntityManager of each unit of work is created from.
+     */
+    public TransactionTemplate(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, null);
+    }
+
+    /**
+     * Constructs a TransactionTemplate that runs read-only units of work on read replicas.
+     *
+     * @param entityManagerFactory The factory of the primary, for every other unit of work.
+     * @param replicaRouter        Chooses the replica of each read-only unit of work; null for none.
+     */
+    public TransactionTemplate(EntityManagerFactory entityManagerFactory, ReplicaRouter replicaRouter) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.replicaRouter = replicaRouter;
+        List<EntityManagerFactory> factories = new ArrayList<>();
+        factories.add(entityManagerFactory);
+        if (replicaRouter != null) {
+            factories.addAll(replicaRouter.getEntityManagerFactories());
+        }
+        this.cachingEntityManagerFactories = List.copyOf(factories);
+    }
+
+    /**
+     * Runs the work in a transaction. The transaction commits when the work returns, unless the work
+     * marked it rollback-only, and rolls back when the work throws.
+     *
+     * @param work The unit of work.
+     * @return The value returned by the work.
+     */
+    public <T> T inTransaction(Function<EntityManager, T> work) {
+        return execute(true, work);
+    }
+
+    /**
+     * Runs the work in a transaction, see {@link #inTransaction(Function)}.
+     *
+     * @param work The unit of work.
+     */
+    public void runInTransaction(Consumer<EntityManager> work) {
+        execute(true, em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    /**
+     * Runs read-only work with a scoped EntityManager but without starting a transaction.
+     *
+     * @param work The unit of work.
+     * @return The value returned by the work.
+     */
+    public <T> T withEntityManager(Function<EntityManager, T> work) {
+        return execute(false, work);
+    }
+
+    /**
+     * Runs read-only work that may see data a little behind the primary, e.g. a report, on a replica
+     * chosen by the {@link ReplicaRouter}, without starting a transaction. It runs on the primary when
+     * there is no replica to take it, and joins the unit of work already running on the current thread,
+     * so that it reads that unit's own writes.
+     *
+     * @param work The unit of work; it must not write.
+     * @return The value returned by the work.
+     */
+    public <T> T withReadOnlyEntityManager(Function<EntityManager, T> work) {
+        return execute(false, work, readOnlyEntityManagerFactory());
+    }
+
+    /**
+     * Runs read-only work in a transaction, e.g. one that reads through a cursor, on a replica where
+     * possible, see {@link #withReadOnlyEntityManager(Function)}.
+     *
+     * @param work The unit of work; it must not write.
+     * @return The value returned by the work.
+     */
+    public <T> T inReadOnlyTransaction(Function<EntityManager, T> work) {
+        return execute(true, work, readOnlyEntityManagerFactory());
+    }
+
+    /**
+     * Returns the EntityManager of the unit of work running on the current thread.
+     *
+     * @return The bound EntityManager.
+     * @throws IllegalStateException if no unit of work is running on the current thread.
+     */
+    public EntityManager currentEntityManager() {
+        EntityManager entityManager = currentEntityManager.get();
+        if (entityManager == null) {
+            throw new IllegalStateException("No unit of work is running on the current thread");
+        }
+        return entityManager;
+    }
+
+    /**
+     * Marks the transaction of the unit of work running on the current thread rollback-only, e.g. when a
+     * transfer is rejected, and records why for the rollback statistics.
+     *
+     * @param reason The reason the transaction is rolled back.
+     * @throws IllegalStateException if no transaction is running on the current thread.
+     */
+    public void setRollbackOnly(RollbackReason reason) {
+        currentEntityManager().getTransaction().setRollbackOnly();
+        statistics.markRollback(reason);
+    }
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    /**
+     * Removes an entity from the shared cache after its row was changed without the EntityManager,
+     * e.g. by a native or JDBC update. It is removed from the caches of the read replicas too, which
+     * would otherwise serve the old row until it expires, however soon the replica replays the update.
+     *
+     * @param entityClass The class of the entity.
+     * @param id          The ID of the entity.
+     */
+    public void evictFromCache(Class<?> entityClass, Object id) {
+        for (EntityManagerFactory factory : cachingEntityManagerFactories) {
+            factory.getCache().evict(entityClass, id);
+        }
+        CacheStatistics.getInstance().recordInvalidation(entityClass.getSimpleName());
+    }
+
+    /**
+     * Removes every entity of a class from the shared cache, e.g. after a bulk JDBC update of its table,
+     * see {@link #evictFromCache(Class, Object)}.
+     *
+     * @param entityClass The class of the entities.
+     */
+    public void evictFromCache(Class<?> entityClass) {
+        for (EntityManagerFactory factory : cachingEntityManagerFactories) {
+            factory.getCache().evict(entityClass);
+        }
+        CacheStatistics.getInstance().recordInvalidation(entityClass.getSimpleName());
+    }
+
+
+    private EntityManagerFactory readOnlyEntityManagerFactory() {
+        if (replicaRouter == null || currentEntityManager.get() != null) {
+            return entityManagerFactory;
+        }
+        EntityManagerFactory replica = replicaRouter.route();
+        return replica == null ? entityManagerFactory : replica;
+    }
+
+    private <T> T execute(boolean transactional, Function<EntityManager, T> work) {
+        return execute(transactional, work, entityManagerFactory);
+    }
+
+    private <T> T execute(boolean transactional, Function<EntityManager, T> work, EntityManagerFactory factory) {
+        EntityManager bound = currentEntityManager.get();
+        boolean ownsEntityManager = bound == null;
+        EntityManager em = ownsEntityManager ? factory.createEntityManager() : bound;
+        if (ownsEntityManager) {
+            currentEntityManager.set(em);
+        }
+
+        EntityTransaction transaction = em.getTransaction();
+        boolean ownsTransaction = transactional && !transaction.isActive();
+        try {
+            if (ownsTransaction) {
+                transaction.begin();
+                statistics.begin();
+            }
+            T result = work.apply(em);
+            if (ownsTransaction) {
+                if (transaction.getRollbackOnly()) {
+                    transaction.rollback();
+                    statistics.rollback();
+                } else {
+                    transaction.commit();
+                    statistics.commit();
+                }
+            }
+            return result;
+        } catch (RuntimeException e) {
+            // A failed commit has already rolled back, so the failure is counted here rather than below
+            if (ownsTransaction) {
+                statistics.rollback(RollbackReason.of(e));
+            }
+            throw e;
+        } finally {
+            // Rollback transaction if an exception occurred
+            if (ownsTransaction && transaction.isActive()) {
+                transaction.rollback();
+            }
+            if (ownsEntityManager) {
+                currentEntityManager.remove();
+                em.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package DAO;
+
+import entities.TransferSaga;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import metrics.OperationStatistics;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Data Access Object (DAO) for the steps of transfers between shards, see {@link ShardRouter}.
+ */
+public class TransferSagaDAO {
+    private final TransactionTemplate transactionTemplate;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs a TransferSagaDAO that works in the unit of work currently run by the given template.
+     *
+     * @param transactionTemplate The template whose EntityManager is used for database operations.
+     */
+    public TransferSagaDAO(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    private EntityManager entityManager() {
+        return transactionTemplate.currentEntityManager();
+    }
+
+    /**
+     * Persists a new TransferSaga row. Fails on commit if a row with its ID exists already.
+     *
+     * @param saga The TransferSaga entity to be created.
+     */
+    public void createSaga(TransferSaga saga) {
+        long start = System.nanoTime();
+        try {
+            entityManager().persist(saga);
+        } finally {
+            operations.record("TransferSagaDAO.createSaga", start);
+        }
+    }
+
+    /**
+     * Retrieves a TransferSaga row.
+     *
+     * @param id The ID of the transfer.
+     * @return The TransferSaga entity, or null if not found.
+     */
+    public TransferSaga findSaga(String id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(TransferSaga.class, id);
+        } finally {
+            operations.record("TransferSagaDAO.findSaga", start);
+        }
+    }
+
+    /**
+     * Retrieves a TransferSaga row and locks it until the current transaction ends, so that only one
+     * thread moves the transfer on.
+     *
+     * @param id The ID of the transfer.
+     * @return The locked TransferSaga entity, or null if not found.
+     */
+    public TransferSaga lockSaga(String id) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().find(TransferSaga.class, id, LockModeType.PESSIMISTIC_WRITE);
+        } finally {
+            operations.record("TransferSagaDAO.lockSaga", start);
+        }
+    }
+
+    /**
+     * Retrieves the transfers that have been in a state since before an instant, oldest first.
+     *
+     * @param state      The state.
+     * @param before     The instant.
+     * @param maxResults The maximum number of rows.
+     * @return The TransferSaga entities.
+     */
+    public List<TransferSaga> findSagas(TransferSaga.State state, Date before, int maxResults) {
+        long start = System.nanoTime();
+        try {
+            return entityManager().createNamedQuery(TransferSaga.FIND_BY_STATE, TransferSaga.class)
+                    .setParameter("state", state)
+                    .setParameter("before", before)
+                    .setMaxResults(maxResults)
+                    .getResultList();
+        } finally {
+            operations.record("TransferSagaDAO.findSagas", start);
+        }
+    }
+}
@@ -1,26 +1,42 @@
-import jakarta.persistence.EntityManager;
+import DAO.QueryRegistry;
 import jakarta.persistence.EntityManagerFactory;
-import jakarta.persistence.Persistence;
+import metrics.MetricsReporter;
+import pool.ConnectionPool;
+import service.BankService;
 
 /**
  * Main class for executing banking operations and testing functionalities.
  */
 public class Main {
     public static void main(String[] args) {
-        EntityManagerFactory emf = Persistence.createEntityManagerFactory("Bank");
-        EntityManager em = emf.createEntityManager();
+        ConnectionPool pool = ConnectionPool.forPersistenceUnit("Bank");
+        EntityManagerFactory emf = pool.createEntityManagerFactory();
+        QueryRegistry.prepare(emf); // generates the SQL of the named queries now, failing if one does not translate
 
-        BankService bankService = new BankService(em);
-        bankService.makeMoneyTransfer(em,200,7, 1); // try from account with invalid balance (11)
-//        bankService.deleteViewCreateItViewAndCheckIt(em);
-//        bankService.createNewBank(em, "New Bank 130", "New Office 130", "NEWIBAN130");
-//        bankService.deleteInsertedBank(em, "NEWIBAN130");
-//        bankService.createTriggerCheckItDropIt(em);
-//        bankService.displayDataFromManyToManyTable(em);
+        MetricsReporter metricsReporter = MetricsReporter.fromProperties(emf.getProperties());
+        metricsReporter.start();
 
-//        bankService.displayDataFromDescendantTable(em);
+        BankService bankService = new BankService(emf);
+        bankService.makeMoneyTransfer(200,7, 1); // try from account with invalid balance (11)
+//        bankService.displayPersonCards();
+//        bankService.createNewBank("New Bank 130", "New Office 130", "NEWIBAN130");
+//        bankService.deleteInsertedBank("NEWIBAN130");
+//        bankService.createTriggerCheckItDropIt();
+//        bankService.displayDataFromManyToManyTable();
+//        bankService.importPersons(new FileReader("persons.csv"), BatchMode.COMMIT_PER_CHUNK);
+//        bankService.takeBalanceSnapshots();
+//        BankRequestExecutor requests = BankRequestExecutor.onVirtualThreads(bankService, pool.getMetrics().getMaximumPoolSize());
+//        BalanceEngine balances = BalanceEngine.fromProperties(new TransactionTemplate(emf), emf.getProperties()); // start() recovers, close() checkpoints
+//        ReplicaRouter replicas = ReplicaRouter.forPersistenceUnit("Bank", pool, new HashMap<>()); // new BankService(new TransactionTemplate(emf, replicas)) runs the reports on them
+//        ShardedBankService shards = new ShardedBankService(ShardRouter.forPersistenceUnit("Bank", new HashMap<>())); // bank.shard.urls; initializeIds() once on new shards
+//        IndexAdvisor indexAdvisor = new IndexAdvisor(emf); // startCapture() before, writeReport(path) after a run
 
-        em.close();
+//        bankService.displayDataFromDescendantTable();
+
+        System.out.println("Connection pool: " + pool.getMetrics());
+        metricsReporter.dump();
+        metricsReporter.close();
         emf.close();
+        pool.close();
     }
 }
@@ -1,6 +1,10 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheType;
 import java.util.Collection;
 
 /**
@@ -8,12 +12,60 @@ import java.util.Collection;
  * Each account has a unique identifier, account number, balance, type, and currency.
  * It also holds a reference to the bank it belongs to, any associated payment card,
  * and the collection of persons associated with this account.
+ * The shared cache holds the 10,000 most recently used accounts strongly and any others only while
+ * the application still references them.
+ * Balances change constantly, so cached accounts expire after a few seconds; code that updates the
+ * account table without going through the EntityManager must evict the accounts it touched and
+ * increment their version.
+ * The version column makes concurrent updates of the same account fail with an OptimisticLockException
+ * instead of overwriting each other. The balance of a very hot account can be striped over several
+ * {@link AccountStripe} rows; the striped column marks such an account, so the balance of any other
+ * account is read from its row alone, without loading its stripes.
+ * The iban index serves the accounts of a bank and the foreign key check when a bank is deleted.
  */
 @Entity
-@Table(name = "account")
+@Table(name = "account", indexes = @Index(name = "account_iban_idx", columnList = "iban"))
+@Cache(type = CacheType.HARD_WEAK, size = 10_000, expiry = 5_000)
+@NamedQuery(name = Account.FIND_BY_IDS, query = "SELECT a FROM Account a WHERE a.id_account IN :ids ORDER BY a.id_account")
+@NamedQuery(name = Account.FIND_BY_NUMBER, query = "SELECT a FROM Account a WHERE a.account_number = :accountNumber")
+@NamedQuery(name = Account.COUNT_BY_ID, query = "SELECT COUNT(a) FROM Account a WHERE a.id_account = :id")
+@NamedQuery(name = Account.COUNT_ALL, query = "SELECT COUNT(a) FROM Account a")
+@NamedQuery(name = Account.SUM_BALANCES, query = "SELECT SUM(a.account_balance) FROM Account a")
+@NamedQuery(name = Account.FIND_RICHEST, query = "SELECT a FROM Account a ORDER BY a.account_balance DESC, a.id_account")
+@NamedQuery(name = Account.FIND_HOLDERS, query = "SELECT a.account_number, p.full_name FROM Account a JOIN a.persons p")
+@NamedNativeQuery(name = Account.WITHDRAW_IF_COVERED, query = "UPDATE account SET account_balance = account_balance - ?, "
+        + "version = version + 1 WHERE id_account = ? AND account_balance >= ? AND NOT striped")
+@NamedNativeQuery(name = Account.DEPOSIT,
+        query = "UPDATE account SET account_balance = account_balance + ?, version = version + 1 WHERE id_account = ?")
+@NamedNativeQuery(name = Account.LOCK_ROW_BALANCE, query = "SELECT account_balance FROM account WHERE id_account = ? FOR UPDATE")
+@NamedNativeQuery(name = Account.UPDATE_ROW_BALANCE,
+        query = "UPDATE account SET account_balance = ?, version = version + 1 WHERE id_account = ?")
+@NamedNativeQuery(name = Account.UPDATE_STRIPED,
+        query = "UPDATE account SET striped = ?, version = version + 1 WHERE id_account = ?")
+@NamedNativeQuery(name = Account.TRANSFER_FUNDS, query = "SELECT transfer_funds(?, ?, ?)")
+@NamedNativeQuery(name = Account.HAS_TRANSFER_FUNCTION,
+        query = "SELECT to_regprocedure('transfer_funds(integer, integer, double precision)') IS NOT NULL")
 public class Account {
+    public static final String FIND_BY_IDS = "Account.findByIds";
+    public static final String FIND_BY_NUMBER = "Account.findByNumber";
+    public static final String COUNT_BY_ID = "Account.countById";
+    public static final String COUNT_ALL = "Account.countAll";
+    public static final String SUM_BALANCES = "Account.sumBalances";
+    public static final String FIND_RICHEST = "Account.findRichest";
+    public static final String FIND_HOLDERS = "Account.findHolders";
+    public static final String WITHDRAW_IF_COVERED = "Account.withdrawIfCovered";
+    public static final String DEPOSIT = "Account.deposit";
+    public static final String LOCK_ROW_BALANCE = "Account.lockRowBalance";
+    public static final String UPDATE_ROW_BALANCE = "Account.updateRowBalance";
+    public static final String UPDATE_STRIPED = "Account.updateStriped";
+    /** Needs the transfer_funds function of sql/transfer_funds.sql. */
+    public static final String TRANSFER_FUNDS = "Account.transferFunds";
+    /** PostgreSQL only. */
+    public static final String HAS_TRANSFER_FUNCTION = "Account.hasTransferFunction";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_id_account_seq")
+    @SequenceGenerator(name = "account_id_account_seq", sequenceName = "account_id_account_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
     @Column(name = "id_account", nullable = false)
     private Integer id_account;
 
@@ -29,19 +81,32 @@ public class Account {
     @Column(name = "currency_type", nullable = false, length = 3)
     private String currency_type;
 
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    // The default lets native inserts leave the column out
+    @Column(name = "striped", nullable = false, columnDefinition = "boolean default false")
+    private boolean striped;
+
 //    @Column(name = "iban", nullable = false, unique = true, length = 34)
 //    private String iban;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "iban", referencedColumnName = "iban")
     private Bank bank;
 
-    @OneToOne(mappedBy = "account")
+    @OneToOne(mappedBy = "account", fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     private Payment_card paymentCard;
 
     @ManyToMany(mappedBy = "accounts")
     private Collection<Person> persons;
 
+    @OneToMany(mappedBy = "account")
+    private Collection<AccountStripe> stripes;
+
     public Account() {
     }
 
@@ -80,8 +145,17 @@ public class Account {
         return account_number;
     }
 
+    /**
+     * @return The balance of the account, including the sub-balances of its stripes if it is striped.
+     */
     public double getAccount_balance() {
-        return account_balance;
+        double balance = account_balance;
+        if (striped && stripes != null) {
+            for (AccountStripe stripe : stripes) {
+                balance += stripe.getBalance();
+            }
+        }
+        return balance;
     }
 
     public String getAccount_type() {
@@ -92,6 +166,17 @@ public class Account {
         return currency_type;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if the balance of the account is split over {@link AccountStripe} rows.
+     */
+    public boolean isStriped() {
+        return striped;
+    }
+
 //    public String getIban() {
 //        return iban;
 //    }
@@ -108,6 +193,10 @@ public class Account {
         return persons;
     }
 
+    public Collection<AccountStripe> getStripes() {
+        return stripes;
+    }
+
     public void setId_account(Integer id_account) {
         this.id_account = id_account;
     }
@@ -116,8 +205,13 @@ public class Account {
         this.account_number = account_number;
     }
 
+    /**
+     * @param account_balance The new balance of the account; for a striped account the stripes keep their
+     *                        sub-balances and the difference is taken from or added to the account row.
+     */
     public void setAccount_balance(double account_balance) {
-        this.account_balance = account_balance;
+        double stripesBalance = getAccount_balance() - this.account_balance;
+        this.account_balance = account_balance - stripesBalance;
     }
 
     public void setAccount_type(String account_type) {
@@ -0,0 +1,124 @@
+package entities;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * This class represents one sub-balance of a striped account. The balance of a very hot account can be
+ * split over several stripes so that concurrent credits update different rows instead of queueing for
+ * the lock of the single account row; the account's balance is the sum of its own and its stripes'.
+ * Stripes are changed with native updates all the time, so they are never kept in the shared cache.
+ */
+@Entity
+@Table(name = "account_stripe")
+@IdClass(AccountStripe.Key.class)
+@Cacheable(false)
+@NamedQuery(name = AccountStripe.COUNT_BY_ACCOUNT,
+        query = "SELECT s.id_account, COUNT(s) FROM AccountStripe s GROUP BY s.id_account")
+@NamedQuery(name = AccountStripe.SUM_BALANCES, query = "SELECT SUM(s.balance) FROM AccountStripe s")
+@NamedNativeQuery(name = AccountStripe.LOCK_BALANCES,
+        query = "SELECT balance FROM account_stripe WHERE id_account = ? ORDER BY stripe FOR UPDATE")
+@NamedNativeQuery(name = AccountStripe.UPDATE_BALANCE,
+        query = "UPDATE account_stripe SET balance = ? WHERE id_account = ? AND stripe = ?")
+@NamedNativeQuery(name = AccountStripe.DELETE_BY_ACCOUNT, query = "DELETE FROM account_stripe WHERE id_account = ?")
+@NamedNativeQuery(name = AccountStripe.CREDIT,
+        query = "UPDATE account_stripe SET balance = balance + ? WHERE id_account = ? AND stripe = ?")
+@NamedNativeQuery(name = AccountStripe.DEBIT_IF_COVERED,
+        query = "UPDATE account_stripe SET balance = balance - ? WHERE id_account = ? AND stripe = ? AND balance >= ?")
+public class AccountStripe {
+    public static final String COUNT_BY_ACCOUNT = "AccountStripe.countByAccount";
+    public static final String SUM_BALANCES = "AccountStripe.sumBalances";
+    public static final String LOCK_BALANCES = "AccountStripe.lockBalances";
+    public static final String UPDATE_BALANCE = "AccountStripe.updateBalance";
+    public static final String DELETE_BY_ACCOUNT = "AccountStripe.deleteByAccount";
+    public static final String CREDIT = "AccountStripe.credit";
+    public static final String DEBIT_IF_COVERED = "AccountStripe.debitIfCovered";
+
+    @Id
+    @Column(name = "id_account", nullable = false)
+    private Integer id_account;
+
+    @Id
+    @Column(name = "stripe", nullable = false)
+    private int stripe;
+
+    @Column(name = "balance", nullable = false)
+    private double balance;
+
+    @ManyToOne
+    @JoinColumn(name = "id_account", referencedColumnName = "id_account", insertable = false, updatable = false)
+    private Account account;
+
+    public AccountStripe() {
+    }
+
+    /**
+     * Constructs an AccountStripe object with the provided parameters.
+     *
+     * @param id_account The ID of the striped account.
+     * @param stripe     The number of the stripe, from 0 to the stripe count minus one.
+     * @param balance    The part of the account's balance held by the stripe.
+     */
+    public AccountStripe(Integer id_account, int stripe, double balance) {
+        this.id_account = id_account;
+        this.stripe = stripe;
+        this.balance = balance;
+    }
+
+//    Getters and Setters
+
+    public Integer getId_account() {
+        return id_account;
+    }
+
+    public int getStripe() {
+        return stripe;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public void setBalance(double balance) {
+        this.balance = balance;
+    }
+
+    /**
+     * The primary key of an AccountStripe.
+     */
+    public static class Key implements Serializable {
+        private Integer id_account;
+        private int stripe;
+
+        public Key() {
+        }
+
+        public Key(Integer id_account, int stripe) {
+            this.id_account = id_account;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return stripe == key.stripe && Objects.equals(id_account, key.id_account);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id_account, stripe);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package entities;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * This class represents the last checkpoint of the in-memory balance engine (see service.BalanceEngine):
+ * the account balances in the database include every transfer of its write-ahead log up to and including
+ * wal_sequence. The table holds a single row, written in the same transaction as the balances.
+ */
+@Entity
+@Table(name = "balance_checkpoint")
+@Cacheable(false)
+public class BalanceCheckpoint {
+    /** The ID of the only row. */
+    public static final int ID = 1;
+
+    @Id
+    @Column(name = "id_checkpoint", nullable = false)
+    private Integer id_checkpoint;
+
+    @Column(name = "wal_sequence", nullable = false)
+    private long wal_sequence;
+
+    @Column(name = "taken_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date taken_at;
+
+    public BalanceCheckpoint() {
+    }
+
+    /**
+     * Constructs the BalanceCheckpoint row.
+     *
+     * @param wal_sequence The sequence of the last transfer the balances include.
+     * @param taken_at     The instant the checkpoint was written.
+     */
+    public BalanceCheckpoint(long wal_sequence, Date taken_at) {
+        this.id_checkpoint = ID;
+        this.wal_sequence = wal_sequence;
+        this.taken_at = taken_at;
+    }
+
+//    Getters
+
+    public Integer getId_checkpoint() {
+        return id_checkpoint;
+    }
+
+    public long getWal_sequence() {
+        return wal_sequence;
+    }
+
+    public Date getTaken_at() {
+        return taken_at;
+    }
+
+//    Setters
+
+    public void setWal_sequence(long wal_sequence) {
+        this.wal_sequence = wal_sequence;
+    }
+
+    public void setTaken_at(Date taken_at) {
+        this.taken_at = taken_at;
+    }
+}
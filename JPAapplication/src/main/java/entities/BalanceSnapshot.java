@@ -0,0 +1,94 @@
+package entities;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * This class represents the balance of an account as of a point in time, computed from the previous
+ * snapshot and the ledger entries booked since. The balance at any instant is the nearest snapshot
+ * before it plus the ledger entries between the two, so no query has to add up an account's whole
+ * history. Snapshots are not kept in the shared cache.
+ */
+@Entity
+@Table(name = "balance_snapshot")
+@IdClass(BalanceSnapshot.Key.class)
+@Cacheable(false)
+public class BalanceSnapshot {
+    @Id
+    @Column(name = "id_account", nullable = false)
+    private Integer id_account;
+
+    @Id
+    @Column(name = "taken_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date taken_at;
+
+    @Column(name = "balance", nullable = false)
+    private double balance;
+
+    public BalanceSnapshot() {
+    }
+
+    /**
+     * Constructs a BalanceSnapshot object with the provided parameters.
+     *
+     * @param id_account The ID of the account.
+     * @param taken_at   The instant the balance is as of; entries booked up to and including it are in it.
+     * @param balance    The balance of the account at that instant.
+     */
+    public BalanceSnapshot(Integer id_account, Date taken_at, double balance) {
+        this.id_account = id_account;
+        this.taken_at = taken_at;
+        this.balance = balance;
+    }
+
+//    Getters
+
+    public Integer getId_account() {
+        return id_account;
+    }
+
+    public Date getTaken_at() {
+        return taken_at;
+    }
+
+    public double getBalance() {
+        return balance;
+    }
+
+    /**
+     * The primary key of a BalanceSnapshot.
+     */
+    public static class Key implements Serializable {
+        private Integer id_account;
+        private Date taken_at;
+
+        public Key() {
+        }
+
+        public Key(Integer id_account, Date taken_at) {
+            this.id_account = id_account;
+            this.taken_at = taken_at;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(id_account, key.id_account) && Objects.equals(taken_at, key.taken_at);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id_account, taken_at);
+        }
+    }
+}
@@ -1,18 +1,37 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheType;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 import java.util.Collection;
 
 /**
  * This class represents a Bank entity in the database.
  * Each bank has a unique identifier, name, main office location, and IBAN.
  * It also holds a collection of accounts associated with this bank.
+ * Banks are read on every transfer and almost never change, so they are kept in the shared cache
+ * for an hour, and lookups by IBAN are answered from the query-result cache.
  */
 @Entity
 @Table(name = "bank")
+@Cache(type = CacheType.HARD_WEAK, size = 1000, expiry = 3_600_000)
+@NamedQuery(name = Bank.FIND_BY_IBAN, query = "SELECT b FROM Bank b WHERE b.iban = :iban", hints = {
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE, value = HintValues.TRUE),
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE_SIZE, value = "1000"),
+        @QueryHint(name = QueryHints.QUERY_RESULTS_CACHE_EXPIRY, value = "3600000")
+})
+@NamedQuery(name = Bank.FIND_BY_ID, query = "SELECT b FROM Bank b WHERE b.id_bank = :id")
+@NamedNativeQuery(name = Bank.FIND_ROW_BY_IBAN, query = "SELECT id_bank, bank_name, main_office, iban FROM bank WHERE iban = ?")
 public class Bank {
+    public static final String FIND_BY_IBAN = "Bank.findByIban";
+    public static final String FIND_BY_ID = "Bank.findById";
+    public static final String FIND_ROW_BY_IBAN = "Bank.findRowByIban";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bank_id_bank_seq")
+    @SequenceGenerator(name = "bank_id_bank_seq", sequenceName = "bank_id_bank_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
     @Column(name = "id_bank", nullable = false)
     private Integer id_bank;
 
@@ -1,6 +1,8 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 import java.util.Date;
 
 /**
@@ -17,7 +19,8 @@ public class Customer extends Person {
     @Column(name = "registration_date", nullable = false)
     private Date registration_date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "id_person", nullable = false)
     private Employee employee;
 
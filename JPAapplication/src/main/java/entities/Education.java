@@ -1,23 +1,31 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
+import org.eclipse.persistence.annotations.Cache;
+import org.eclipse.persistence.annotations.CacheType;
 
 /**
  * This class represents an Education entity in the database.
  * Each education record has a unique identifier, institution name, and is associated with an employee.
+ * Education records are read-mostly and are kept in the shared cache for an hour.
  */
 @Entity
-@Table(name = "education")
+@Table(name = "education", indexes = @Index(name = "education_id_person_idx", columnList = "id_person"))
+@Cache(type = CacheType.HARD_WEAK, size = 5000, expiry = 3_600_000)
 public class Education {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "education_id_education_seq")
+    @SequenceGenerator(name = "education_id_education_seq", sequenceName = "education_id_education_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
     @Column(name = "id_education")
     private Integer id_education;
 
     @Column(name = "institution_name", nullable = false, length = 50)
     private String institution_name;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "id_person", nullable = false)
     private Employee employee;
 
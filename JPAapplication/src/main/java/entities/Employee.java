@@ -1,6 +1,8 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 import java.util.Collection;
 
 /**
@@ -8,10 +10,14 @@ import java.util.Collection;
  * Each employee may have a superior, a collection of customers, and a collection of educations.
  */
 @Entity
-@Table(name = "employee")
+@Table(name = "employee", indexes = @Index(name = "employee_id_superior_idx", columnList = "id_superior"))
 //@DiscriminatorValue("Employee")
+@NamedQuery(name = Employee.FIND_BY_ID, query = "SELECT e FROM Employee e WHERE e.id_person = :id")
 public class Employee extends Person {
-    @ManyToOne
+    public static final String FIND_BY_ID = "Employee.findById";
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "id_superior")
     private Employee superior;
 
@@ -0,0 +1,59 @@
+package entities;
+
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.NativeSequence;
+import org.eclipse.persistence.sequencing.Sequence;
+import org.eclipse.persistence.sessions.Session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Configures how entity ids are generated. By default every entity takes its id from its table's
+ * sequence (e.g. person_id_person_seq) in blocks of {@value #DEFAULT_ALLOCATION_SIZE}, so inserts need
+ * no round trip for the id and can be sent as JDBC batches. Set in persistence.xml, or as a system
+ * property that takes precedence:
+ * <ul>
+ *     <li>{@value #MODE_PROPERTY}: sequence (default), or identity to fall back to one id per insert,
+ *     generated by the column default;</li>
+ *     <li>{@value #ALLOCATION_SIZE_PROPERTY}: the number of ids taken per sequence call. It must equal
+ *     the INCREMENT BY of the sequences, see sql/migrate_ids_to_sequences.sql.</li>
+ * </ul>
+ */
+public class IdGeneration implements SessionCustomizer {
+    public static final String MODE_PROPERTY = "bank.id.generation";
+    public static final String ALLOCATION_SIZE_PROPERTY = "bank.id.allocation-size";
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void customize(Session session) {
+        String mode = setting(session, MODE_PROPERTY);
+        String allocationSize = setting(session, ALLOCATION_SIZE_PROPERTY);
+
+        // Copied because sequences are replaced while iterating
+        List<Sequence> sequences = new ArrayList<>(session.getLogin().getSequences().values());
+        for (Sequence sequence : sequences) {
+            if (!sequence.getName().endsWith("_seq")) {
+                continue;
+            }
+            if (mode != null && mode.toLowerCase(Locale.ROOT).equals("identity")) {
+                NativeSequence identity = new NativeSequence(sequence.getName(), 1, true);
+                session.getLogin().addSequence(identity);
+            } else if (mode != null && !mode.toLowerCase(Locale.ROOT).equals("sequence")) {
+                throw new IllegalArgumentException(MODE_PROPERTY + " must be sequence or identity, not " + mode);
+            } else if (allocationSize != null) {
+                sequence.setPreallocationSize(Integer.parseInt(allocationSize));
+            }
+        }
+    }
+
+    private static String setting(Session session, String name) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            Object property = session.getProperty(name);
+            value = property == null ? null : property.toString();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package entities;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * This class represents one movement of money on an account. Every transfer appends two entries in
+ * its own transaction, a negative one on the account it takes the money from and a positive one on
+ * the account it adds it to, both booked at the same instant. Entries are never changed or deleted
+ * by the application; on PostgreSQL the table is partitioned by month of booked_at, see
+ * sql/ledger_partitions.sql, so old months can be detached. Entries are not kept in the shared cache.
+ */
+@Entity
+@Table(name = "ledger_entry", indexes = {
+        // Serves statements and the ledger tail of point-in-time balances
+        @Index(name = "ledger_entry_account_booked_idx", columnList = "id_account, booked_at")
+})
+@Cacheable(false)
+@NamedNativeQuery(name = LedgerEntry.FIND_BALANCE_FROM_SNAPSHOT_BEFORE, query = LedgerEntry.BALANCE_FROM_SNAPSHOT_BEFORE)
+@NamedNativeQuery(name = LedgerEntry.FIND_BALANCE_FROM_SNAPSHOT_AFTER, query = LedgerEntry.BALANCE_FROM_SNAPSHOT_AFTER)
+@NamedNativeQuery(name = LedgerEntry.FIND_BALANCE_FROM_CURRENT, query = LedgerEntry.BALANCE_FROM_CURRENT)
+@NamedNativeQuery(name = LedgerEntry.CREATE_SNAPSHOTS_FROM_PREVIOUS, query = LedgerEntry.SNAPSHOT_FROM_PREVIOUS)
+@NamedNativeQuery(name = LedgerEntry.CREATE_SNAPSHOTS_FROM_CURRENT, query = LedgerEntry.SNAPSHOT_FROM_CURRENT)
+@NamedNativeQuery(name = LedgerEntry.ENSURE_PARTITIONS,
+        query = "SELECT ledger_ensure_partitions(CAST(? AS date), CAST(? AS date))")
+public class LedgerEntry {
+    public static final String FIND_BALANCE_FROM_SNAPSHOT_BEFORE = "LedgerEntry.findBalanceFromSnapshotBefore";
+    public static final String FIND_BALANCE_FROM_SNAPSHOT_AFTER = "LedgerEntry.findBalanceFromSnapshotAfter";
+    public static final String FIND_BALANCE_FROM_CURRENT = "LedgerEntry.findBalanceFromCurrent";
+    public static final String CREATE_SNAPSHOTS_FROM_PREVIOUS = "LedgerEntry.createSnapshotsFromPrevious";
+    public static final String CREATE_SNAPSHOTS_FROM_CURRENT = "LedgerEntry.createSnapshotsFromCurrent";
+    /** PostgreSQL only, once sql/ledger_partitions.sql has been applied. */
+    public static final String ENSURE_PARTITIONS = "LedgerEntry.ensurePartitions";
+
+    // The snapshot is picked before the ledger tail is summed, so the tail is read for that snapshot only
+    static final String BALANCE_FROM_SNAPSHOT_BEFORE =
+            "SELECT s.balance + COALESCE((SELECT SUM(e.amount) FROM ledger_entry e "
+                    + "WHERE e.id_account = s.id_account AND e.booked_at > s.taken_at AND e.booked_at <= ?), 0) "
+                    + "FROM (SELECT id_account, taken_at, balance FROM balance_snapshot "
+                    + "WHERE id_account = ? AND taken_at <= ? ORDER BY taken_at DESC LIMIT 1) s";
+    static final String BALANCE_FROM_SNAPSHOT_AFTER =
+            "SELECT s.balance - COALESCE((SELECT SUM(e.amount) FROM ledger_entry e "
+                    + "WHERE e.id_account = s.id_account AND e.booked_at > ? AND e.booked_at <= s.taken_at), 0) "
+                    + "FROM (SELECT id_account, taken_at, balance FROM balance_snapshot "
+                    + "WHERE id_account = ? AND taken_at > ? ORDER BY taken_at LIMIT 1) s";
+    static final String BALANCE_FROM_CURRENT =
+            "SELECT a.account_balance "
+                    + "+ COALESCE((SELECT SUM(st.balance) FROM account_stripe st WHERE st.id_account = a.id_account), 0) "
+                    + "- COALESCE((SELECT SUM(e.amount) FROM ledger_entry e WHERE e.id_account = a.id_account AND e.booked_at > ?), 0) "
+                    + "FROM account a WHERE a.id_account = ?";
+
+    /**
+     * New snapshots of the accounts that have one already and had entries booked since. Every lookup is
+     * made per account through an index, so a run does not read the snapshots of earlier runs.
+     */
+    static final String SNAPSHOT_FROM_PREVIOUS =
+            "INSERT INTO balance_snapshot (id_account, taken_at, balance) "
+                    + "SELECT l.id_account, ?, l.balance + l.moved FROM ("
+                    + "SELECT a.id_account, "
+                    + "(SELECT s.balance FROM balance_snapshot s WHERE s.id_account = a.id_account "
+                    + "ORDER BY s.taken_at DESC LIMIT 1) AS balance, "
+                    + "(SELECT SUM(e.amount) FROM ledger_entry e WHERE e.id_account = a.id_account "
+                    + "AND e.booked_at > (SELECT MAX(p.taken_at) FROM balance_snapshot p WHERE p.id_account = a.id_account) "
+                    + "AND e.booked_at <= ?) AS moved "
+                    + "FROM account a) l "
+                    + "WHERE l.balance IS NOT NULL AND l.moved IS NOT NULL";
+    /**
+     * First snapshots of the accounts with entries but no snapshot yet: their current balance without the
+     * entries booked after the cutoff. Both are read by one statement, so they are consistent.
+     */
+    static final String SNAPSHOT_FROM_CURRENT =
+            "INSERT INTO balance_snapshot (id_account, taken_at, balance) "
+                    + "SELECT a.id_account, ?, a.account_balance "
+                    + "+ COALESCE((SELECT SUM(st.balance) FROM account_stripe st WHERE st.id_account = a.id_account), 0) "
+                    + "- COALESCE((SELECT SUM(e.amount) FROM ledger_entry e WHERE e.id_account = a.id_account AND e.booked_at > ?), 0) "
+                    + "FROM account a "
+                    + "WHERE NOT EXISTS (SELECT 1 FROM balance_snapshot s WHERE s.id_account = a.id_account) "
+                    + "AND EXISTS (SELECT 1 FROM ledger_entry e WHERE e.id_account = a.id_account AND e.booked_at <= ?)";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_id_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_id_entry_seq", sequenceName = "ledger_entry_id_entry_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
+    @Column(name = "id_entry", nullable = false)
+    private Long id_entry;
+
+    @Column(name = "id_account", nullable = false)
+    private Integer id_account;
+
+    @Column(name = "counter_account")
+    private Integer counter_account;
+
+    @Column(name = "amount", nullable = false)
+    private double amount;
+
+    @Column(name = "booked_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date booked_at;
+
+    public LedgerEntry() {
+    }
+
+    /**
+     * Constructs a LedgerEntry object with the provided parameters.
+     *
+     * @param id_account      The ID of the account whose balance moved.
+     * @param counter_account The ID of the account on the other side of the transfer.
+     * @param amount          The change of the balance: negative for money taken, positive for money added.
+     * @param booked_at       The instant the transfer was booked.
+     */
+    public LedgerEntry(Integer id_account, Integer counter_account, double amount, Date booked_at) {
+        this.id_account = id_account;
+        this.counter_account = counter_account;
+        this.amount = amount;
+        this.booked_at = booked_at;
+    }
+
+//    Getters
+
+    public Long getId_entry() {
+        return id_entry;
+    }
+
+    public Integer getId_account() {
+        return id_account;
+    }
+
+    public Integer getCounter_account() {
+        return counter_account;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public Date getBooked_at() {
+        return booked_at;
+    }
+}
@@ -1,17 +1,21 @@
 package entities;
 
 import jakarta.persistence.*;
+import org.eclipse.persistence.annotations.BatchFetch;
+import org.eclipse.persistence.annotations.BatchFetchType;
 import java.util.Date;
 
 /**
  * This class represents a Payment Card entity in the database.
  * Each payment card has a unique identifier, card number, status, expiration date, CVC, and is associated with an account.
+ * The version column makes concurrent updates of the same card fail with an OptimisticLockException.
  */
 @Entity
 @Table(name = "payment_card")
 public class Payment_card {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_card_id_card_seq")
+    @SequenceGenerator(name = "payment_card_id_card_seq", sequenceName = "payment_card_id_card_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
     @Column(name = "id_card", nullable = false)
     private Integer id_card;
 
@@ -28,7 +32,12 @@ public class Payment_card {
     @Column(name = "CVC", nullable = false)
     private short CVC;
 
-    @OneToOne
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @OneToOne(fetch = FetchType.LAZY)
+    @BatchFetch(BatchFetchType.IN)
     @JoinColumn(name = "account_id", referencedColumnName = "id_account", unique = true)
     private Account account;
 
@@ -74,6 +83,10 @@ public class Payment_card {
         return CVC;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public Account getAccount() {
         return account;
     }
@@ -9,14 +9,20 @@ import java.util.Date;
  * This class represents a Person entity in the database.
  * Each person has a unique identifier, birth certificate number, birth date, full name, email, phone number,
  * country, city, postcode, street, and may be associated with multiple accounts.
+ * The (full_name, id_person) index serves the keyset-paginated listing by name. The primary key of
+ * person_account starts with account_id, so the accounts of a person have an index of their own.
  */
 @Entity
-@Table(name = "person")
+@Table(name = "person", indexes = @Index(name = "person_full_name_id_idx", columnList = "full_name, id_person"))
 @Inheritance(strategy = InheritanceType.JOINED)
 //@DiscriminatorColumn(name = "person_type", discriminatorType = DiscriminatorType.STRING)
+@NamedQuery(name = Person.FIND_BY_ID, query = "SELECT p FROM Person p WHERE p.id_person = :id")
 public class Person {
+    public static final String FIND_BY_ID = "Person.findById";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "person_id_person_seq")
+    @SequenceGenerator(name = "person_id_person_seq", sequenceName = "person_id_person_seq", allocationSize = IdGeneration.DEFAULT_ALLOCATION_SIZE)
     @Column(name = "id_person", nullable = false)
     private Integer id_person;
 
@@ -52,7 +58,8 @@ public class Person {
     @JoinTable(
             name = "person_account",
             joinColumns = @JoinColumn(name = "person_id"),
-            inverseJoinColumns = @JoinColumn(name = "account_id")
+            inverseJoinColumns = @JoinColumn(name = "account_id"),
+            indexes = @Index(name = "person_account_person_id_idx", columnList = "person_id")
     )
     private Collection<Account> accounts;
 
@@ -0,0 +1,99 @@
+package entities;
+
+import jakarta.persistence.*;
+
+/**
+ * This class represents one row of the person_card projection: a payment card together with the birth
+ * certificate number and name of the person it belongs to. The rows are maintained by database triggers
+ * on person and payment_card (see sql/person_card_projection.sql) whenever either changes, so the
+ * application only reads them, and they are never kept in the shared cache. Where the triggers are not
+ * installed, e.g. on a schema just generated from the entities, the same rows are read by joining person
+ * and payment_card, as the view person_card used to.
+ */
+@Entity
+@Table(name = "person_card", indexes = {
+        @Index(name = "person_card_birth_certificate_number_idx", columnList = "birth_certificate_number"),
+        @Index(name = "person_card_id_person_idx", columnList = "id_person")
+})
+@Cacheable(false)
+@NamedQuery(name = PersonCard.FIND_BY_BIRTH_CERTIFICATE_NUMBER,
+        query = "SELECT c FROM PersonCard c WHERE c.birth_certificate_number = :birthCertificateNumber ORDER BY c.card_number")
+@NamedQuery(name = PersonCard.FIND_BY_CARD_NUMBER,
+        query = "SELECT c FROM PersonCard c WHERE c.card_number = :cardNumber")
+@NamedQuery(name = PersonCard.FIND_ALL,
+        query = "SELECT c FROM PersonCard c ORDER BY c.birth_certificate_number, c.card_number")
+@NamedNativeQuery(name = PersonCard.JOIN_BY_BIRTH_CERTIFICATE_NUMBER, resultClass = PersonCard.class,
+        query = PersonCard.JOIN + " WHERE p.birth_certificate_number = ? ORDER BY pc.card_number")
+@NamedNativeQuery(name = PersonCard.JOIN_BY_CARD_NUMBER, resultClass = PersonCard.class,
+        query = PersonCard.JOIN + " WHERE pc.card_number = ?")
+@NamedNativeQuery(name = PersonCard.JOIN_ALL, resultClass = PersonCard.class,
+        query = PersonCard.JOIN + " ORDER BY p.birth_certificate_number, pc.card_number")
+@NamedNativeQuery(name = PersonCard.HAS_PROJECTION_TRIGGERS,
+        query = "SELECT count(DISTINCT tgname) = 4 FROM pg_trigger WHERE tgrelid IN (to_regclass('person'), to_regclass('payment_card')) "
+                + "AND tgname IN ('person_card_on_card_insert_delete', 'person_card_on_card_update', "
+                + "'person_card_on_person_insert_delete', 'person_card_on_person_update')")
+public class PersonCard {
+    public static final String FIND_BY_BIRTH_CERTIFICATE_NUMBER = "PersonCard.findByBirthCertificateNumber";
+    public static final String FIND_BY_CARD_NUMBER = "PersonCard.findByCardNumber";
+    public static final String FIND_ALL = "PersonCard.findAll";
+    public static final String JOIN_BY_BIRTH_CERTIFICATE_NUMBER = "PersonCard.joinByBirthCertificateNumber";
+    public static final String JOIN_BY_CARD_NUMBER = "PersonCard.joinByCardNumber";
+    public static final String JOIN_ALL = "PersonCard.joinAll";
+    public static final String HAS_PROJECTION_TRIGGERS = "PersonCard.hasProjectionTriggers";
+
+    static final String JOIN = "SELECT pc.id_card, p.id_person, p.birth_certificate_number, p.full_name AS person_name, "
+            + "pc.card_number, pc.card_status FROM person p JOIN payment_card pc ON p.id_person = pc.account_id";
+
+    @Id
+    @Column(name = "id_card", nullable = false)
+    private Integer id_card;
+
+    @Column(name = "id_person", nullable = false)
+    private Integer id_person;
+
+    @Column(name = "birth_certificate_number", nullable = false, length = 10)
+    private String birth_certificate_number;
+
+    @Column(name = "person_name", nullable = false, length = 50)
+    private String person_name;
+
+    @Column(name = "card_number", nullable = false, unique = true, length = 20)
+    private String card_number;
+
+    @Column(name = "card_status", nullable = false, length = 7)
+    private String card_status;
+
+    public PersonCard() {
+    }
+
+//    Getters
+
+    public Integer getId_card() {
+        return id_card;
+    }
+
+    public Integer getId_person() {
+        return id_person;
+    }
+
+    public String getBirth_certificate_number() {
+        return birth_certificate_number;
+    }
+
+    public String getPerson_name() {
+        return person_name;
+    }
+
+    public String getCard_number() {
+        return card_number;
+    }
+
+    public String getCard_status() {
+        return card_status;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + birth_certificate_number + ", " + person_name + ", " + card_number + ", " + card_status + "]";
+    }
+}
@@ -0,0 +1,114 @@
+package entities;
+
+import jakarta.persistence.*;
+
+import java.util.Date;
+
+/**
+ * This class represents a step of a transfer between accounts kept in different shards (see
+ * service.ShardedBankService). The shard of the source account holds a row from the moment the money
+ * was taken, DEBITED, until the transfer is COMPLETED or the money was given back, COMPENSATED. The
+ * shard of the destination account holds a row with the same ID, written in the transaction that adds
+ * the money, CREDITED, or that finds the account gone, COMPENSATED, so that a step repeated after a
+ * failure does not add the money twice. The state index serves the recovery of unfinished transfers.
+ */
+@Entity
+@Table(name = "transfer_saga", indexes = @Index(name = "transfer_saga_state_idx", columnList = "state, updated_at"))
+@Cacheable(false)
+@NamedQuery(name = TransferSaga.FIND_BY_STATE,
+        query = "SELECT s FROM TransferSaga s WHERE s.state = :state AND s.updated_at < :before ORDER BY s.updated_at")
+public class TransferSaga {
+    public static final String FIND_BY_STATE = "TransferSaga.findByState";
+
+    /**
+     * The state of a transfer on one shard.
+     */
+    public enum State {
+        /** The money was taken from the source account and has not arrived yet. */
+        DEBITED,
+        /** The money was added to the destination account. */
+        CREDITED,
+        /** The money arrived; the transfer is finished. */
+        COMPLETED,
+        /** The money could not be added and was given back; the transfer is finished. */
+        COMPENSATED
+    }
+
+    @Id
+    @Column(name = "id_saga", nullable = false, length = 36)
+    private String id_saga;
+
+    @Column(name = "id_account_from", nullable = false)
+    private Integer id_account_from;
+
+    @Column(name = "id_account_to", nullable = false)
+    private Integer id_account_to;
+
+    @Column(name = "amount", nullable = false)
+    private double amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "state", nullable = false, length = 11)
+    private State state;
+
+    @Column(name = "updated_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date updated_at;
+
+    public TransferSaga() {
+    }
+
+    /**
+     * Constructs a TransferSaga object with the provided parameters.
+     *
+     * @param id_saga         The ID of the transfer, the same on both shards.
+     * @param id_account_from The ID of the account the money is taken from.
+     * @param id_account_to   The ID of the account the money is added to.
+     * @param amount          The amount transferred.
+     * @param state           The state of the transfer on this shard.
+     * @param updated_at      The instant the state was set.
+     */
+    public TransferSaga(String id_saga, Integer id_account_from, Integer id_account_to, double amount, State state,
+                        Date updated_at) {
+        this.id_saga = id_saga;
+        this.id_account_from = id_account_from;
+        this.id_account_to = id_account_to;
+        this.amount = amount;
+        this.state = state;
+        this.updated_at = updated_at;
+    }
+
+//    Getters and Setters
+
+    public String getId_saga() {
+        return id_saga;
+    }
+
+    public Integer getId_account_from() {
+        return id_account_from;
+    }
+
+    public Integer getId_account_to() {
+        return id_account_to;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Date getUpdated_at() {
+        return updated_at;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public void setUpdated_at(Date updated_at) {
+        this.updated_at = updated_at;
+    }
+}
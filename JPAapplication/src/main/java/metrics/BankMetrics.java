@@ -0,0 +1,208 @@
+package metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * One view of the operation latencies, transaction, contention and named-query counters of the
+ * application, for JMX and for the periodic dumps of {@link MetricsReporter}.
+ */
+public class BankMetrics implements BankMetricsMXBean {
+    public static final String OBJECT_NAME = "bank:type=Metrics";
+
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+    private final TransactionStatistics transactions = TransactionStatistics.getInstance();
+    private final ContentionStatistics contention = ContentionStatistics.getInstance();
+    private final QueryStatistics queries = QueryStatistics.getInstance();
+
+    /**
+     * Registers the metrics with the platform MBean server, unless they already are.
+     *
+     * @throws IllegalStateException if the MBean cannot be registered.
+     */
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new BankMetrics(), new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier EntityManagerFactory of this JVM; the statistics are shared
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    @Override
+    public long getCommits() {
+        return transactions.getCommits();
+    }
+
+    @Override
+    public Map<String, Long> getRollbacks() {
+        Map<String, Long> rollbacks = new LinkedHashMap<>();
+        for (RollbackReason reason : RollbackReason.values()) {
+            rollbacks.put(reason.name(), transactions.getRollbacks(reason));
+        }
+        return rollbacks;
+    }
+
+    @Override
+    public long getStatements() {
+        return transactions.getStatements();
+    }
+
+    @Override
+    public double getMeanStatementsPerTransaction() {
+        return transactions.getMeanStatementsPerTransaction();
+    }
+
+    @Override
+    public long getMaxStatementsPerTransaction() {
+        return transactions.getMaxStatementsPerTransaction();
+    }
+
+    @Override
+    public long getRowsFetched() {
+        return transactions.getRowsFetched();
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        operations.getLatencies().forEach((operation, histogram) -> counts.put(operation, histogram.getCount()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getOperationMeanMicros() {
+        return operationMicros(LatencyHistogram::getMeanNanos);
+    }
+
+    @Override
+    public Map<String, Double> getOperationP99Micros() {
+        return operationMicros(histogram -> histogram.getPercentileNanos(99));
+    }
+
+    @Override
+    public Map<String, Double> getOperationMaxMicros() {
+        return operationMicros(LatencyHistogram::getMaxNanos);
+    }
+
+    @Override
+    public Map<String, Long> getQueryExecutions() {
+        return queries.getExecutions();
+    }
+
+    @Override
+    public Map<String, Long> getQueryStatements() {
+        return queries.getStatements();
+    }
+
+    @Override
+    public String getText() {
+        return toText();
+    }
+
+    @Override
+    public String getJson() {
+        return toJson();
+    }
+
+    @Override
+    public void reset() {
+        operations.reset();
+        transactions.reset();
+        contention.reset();
+        queries.reset();
+        CacheStatistics.getInstance().reset();
+    }
+
+    /**
+     * @return The statistics as lines of text: the transaction counters, the latency of every operation,
+     * the named queries that ran and the most contended rows.
+     */
+    public String toText() {
+        StringBuilder out = new StringBuilder();
+        String newLine = System.lineSeparator();
+        out.append("Metrics at ").append(Instant.now()).append(newLine)
+                .append("Transactions: ").append(transactions).append(newLine)
+                .append(operations);
+        String ran = queries.toString();
+        if (!ran.isEmpty()) {
+            out.append("Queries:").append(newLine).append(ran);
+        }
+        String hottest = contention.toString();
+        if (!hottest.isEmpty()) {
+            out.append("Contention:").append(newLine).append(hottest);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return The statistics as one JSON object, e.g. for a log shipper.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timestamp\":\"").append(Instant.now()).append('"')
+                .append(",\"transactions\":{\"commits\":").append(getCommits())
+                .append(",\"rollbacks\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> rollback : getRollbacks().entrySet()) {
+            json.append(separator).append('"').append(rollback.getKey()).append("\":").append(rollback.getValue());
+            separator = ",";
+        }
+        json.append("},\"statements\":").append(getStatements())
+                .append(",\"meanStatementsPerTransaction\":").append(number(getMeanStatementsPerTransaction()))
+                .append(",\"maxStatementsPerTransaction\":").append(getMaxStatementsPerTransaction())
+                .append(",\"rowsFetched\":").append(getRowsFetched())
+                .append("},\"operations\":{");
+        separator = "";
+        for (Map.Entry<String, LatencyHistogram> operation : operations.getLatencies().entrySet()) {
+            LatencyHistogram histogram = operation.getValue();
+            json.append(separator).append('"').append(operation.getKey()).append("\":{")
+                    .append("\"count\":").append(histogram.getCount())
+                    .append(",\"meanMicros\":").append(number(histogram.getMeanNanos() / 1_000))
+                    .append(",\"p50Micros\":").append(number(histogram.getPercentileNanos(50) / 1_000.0))
+                    .append(",\"p99Micros\":").append(number(histogram.getPercentileNanos(99) / 1_000.0))
+                    .append(",\"p999Micros\":").append(number(histogram.getPercentileNanos(99.9) / 1_000.0))
+                    .append(",\"maxMicros\":").append(number(histogram.getMaxNanos() / 1_000.0))
+                    .append('}');
+            separator = ",";
+        }
+        json.append("},\"queries\":{");
+        separator = "";
+        Map<String, Long> statements = queries.getStatements();
+        for (Map.Entry<String, Long> query : queries.getExecutions().entrySet()) {
+            if (query.getValue() > 0) {
+                json.append(separator).append('"').append(query.getKey()).append("\":{")
+                        .append("\"executions\":").append(query.getValue())
+                        .append(",\"statements\":").append(statements.getOrDefault(query.getKey(), 0L))
+                        .append('}');
+                separator = ",";
+            }
+        }
+        json.append("},\"contention\":{\"conflicts\":").append(contention.getTotalConflicts())
+                .append(",\"giveUps\":").append(contention.getTotalGiveUps())
+                .append("}}");
+        return json.toString();
+    }
+
+    private Map<String, Double> operationMicros(ToDoubleFunction<LatencyHistogram> nanos) {
+        Map<String, Double> micros = new TreeMap<>();
+        operations.getLatencies().forEach((operation, histogram) ->
+                micros.put(operation, nanos.applyAsDouble(histogram) / 1_000));
+        return micros;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,57 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The statistics of the application as JMX attributes, registered as {@value BankMetrics#OBJECT_NAME}.
+ * Latencies are in microseconds.
+ */
+public interface BankMetricsMXBean {
+    long getCommits();
+
+    /**
+     * @return The rollbacks per {@link RollbackReason}.
+     */
+    Map<String, Long> getRollbacks();
+
+    long getStatements();
+
+    double getMeanStatementsPerTransaction();
+
+    long getMaxStatementsPerTransaction();
+
+    long getRowsFetched();
+
+    Map<String, Long> getOperationCounts();
+
+    Map<String, Double> getOperationMeanMicros();
+
+    Map<String, Double> getOperationP99Micros();
+
+    Map<String, Double> getOperationMaxMicros();
+
+    /**
+     * @return The runs of every named query, see {@link QueryStatistics}.
+     */
+    Map<String, Long> getQueryExecutions();
+
+    /**
+     * @return The SQL statements issued by every named query.
+     */
+    Map<String, Long> getQueryStatements();
+
+    /**
+     * @return All statistics in the format of {@link BankMetrics#toText()}.
+     */
+    String getText();
+
+    /**
+     * @return All statistics in the format of {@link BankMetrics#toJson()}.
+     */
+    String getJson();
+
+    /**
+     * Resets the operation, transaction, contention, query and cache statistics.
+     */
+    void reset();
+}
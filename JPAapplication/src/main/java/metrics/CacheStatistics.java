@@ -0,0 +1,87 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit, miss and invalidation counters of the shared entity cache, per entity. Hits and misses are
+ * recorded by {@link CacheStatisticsListener} for every entity read; invalidations are recorded by the
+ * code that evicts cached entities after writing behind the persistence provider's back. Entities the
+ * cache drops on its own, because they expired or fell out of its size limit, are not counted; their
+ * next read is a miss.
+ */
+public final class CacheStatistics {
+    private static final CacheStatistics INSTANCE = new CacheStatistics();
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private CacheStatistics() {
+    }
+
+    public static CacheStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    public void recordHit(String entity) {
+        countersOf(entity).hits.increment();
+    }
+
+    public void recordMiss(String entity) {
+        countersOf(entity).misses.increment();
+    }
+
+    public void recordInvalidation(String entity) {
+        countersOf(entity).invalidations.increment();
+    }
+
+    public long getHits(String entity) {
+        return countersOf(entity).hits.sum();
+    }
+
+    public long getMisses(String entity) {
+        return countersOf(entity).misses.sum();
+    }
+
+    public long getInvalidations(String entity) {
+        return countersOf(entity).invalidations.sum();
+    }
+
+    /**
+     * @return The share of reads of the entity answered without a database round-trip, between 0 and 1.
+     */
+    public double getHitRatio(String entity) {
+        long hits = getHits(entity);
+        long total = hits + getMisses(entity);
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Resets every counter to zero, e.g. between benchmark runs.
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, Counters> entry : new TreeMap<>(counters).entrySet()) {
+            Counters c = entry.getValue();
+            out.append(String.format("%s: hits=%d misses=%d invalidations=%d hit-ratio=%.2f%n", entry.getKey(),
+                    c.hits.sum(), c.misses.sum(), c.invalidations.sum(), getHitRatio(entry.getKey())));
+        }
+        return out.toString();
+    }
+
+    private Counters countersOf(String entity) {
+        return counters.computeIfAbsent(entity, name -> new Counters());
+    }
+
+    private static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+    }
+}
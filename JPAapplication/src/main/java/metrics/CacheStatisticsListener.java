@@ -0,0 +1,78 @@
+package metrics;
+
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.queries.ObjectLevelReadQuery;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Session event listener that classifies every entity read as a cache hit or miss: a read that finishes
+ * without issuing a database call of its own was answered by the entity or query-result cache.
+ * Driven by {@link StatisticsListener}, the listener registered in persistence.xml.
+ */
+public class CacheStatisticsListener extends SessionEventAdapter {
+    /** A thread never nests this many reads; a deeper stack holds frames of reads that failed. */
+    private static final int MAX_NESTED_READS = 64;
+
+    /**
+     * Reads in progress on the current thread. Relationships loaded while a read runs are nested reads,
+     * and their database calls are charged to them rather than to the outer read.
+     */
+    private static final ThreadLocal<Deque<Read>> READS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final CacheStatistics statistics = CacheStatistics.getInstance();
+
+    @Override
+    public void preExecuteQuery(SessionEvent event) {
+        if (event.getQuery() instanceof ObjectLevelReadQuery) {
+            Deque<Read> reads = READS.get();
+            if (reads.size() >= MAX_NESTED_READS) {
+                reads.clear();
+            }
+            reads.push(new Read(event.getQuery()));
+        }
+    }
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        Read read = READS.get().peek();
+        if (read != null) {
+            read.calledDatabase = true;
+        }
+    }
+
+    @Override
+    public void postExecuteQuery(SessionEvent event) {
+        DatabaseQuery query = event.getQuery();
+        if (!(query instanceof ObjectLevelReadQuery)) {
+            return;
+        }
+        // Drop the frames of nested reads that failed before reaching their post event
+        Deque<Read> reads = READS.get();
+        Read read = reads.poll();
+        while (read != null && read.query != query) {
+            read = reads.poll();
+        }
+        if (read == null || query.getReferenceClass() == null) {
+            return;
+        }
+        String entity = query.getReferenceClass().getSimpleName();
+        if (read.calledDatabase) {
+            statistics.recordMiss(entity);
+        } else {
+            statistics.recordHit(entity);
+        }
+    }
+
+    private static final class Read {
+        private final DatabaseQuery query;
+        private boolean calledDatabase;
+
+        private Read(DatabaseQuery query) {
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conflict, retry and give-up counters of the rows that concurrent units of work fight over, keyed by
+ * row, e.g. "Account#42". A conflict is a unit of work aborted by a version check, deadlock or lock
+ * timeout; it is followed either by a retry or, once the attempts are used up, by a give-up. Recorded
+ * by {@link service.RetryPolicy}; the rows with the most conflicts are the hot spots.
+ */
+public final class ContentionStatistics {
+    private static final ContentionStatistics INSTANCE = new ContentionStatistics();
+    private static final int HOTTEST_SHOWN = 10;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private ContentionStatistics() {
+    }
+
+    public static ContentionStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    public void recordConflict(String row) {
+        countersOf(row).conflicts.increment();
+    }
+
+    public void recordRetry(String row) {
+        countersOf(row).retries.increment();
+    }
+
+    public void recordGiveUp(String row) {
+        countersOf(row).giveUps.increment();
+    }
+
+    public long getConflicts(String row) {
+        return countersOf(row).conflicts.sum();
+    }
+
+    public long getRetries(String row) {
+        return countersOf(row).retries.sum();
+    }
+
+    public long getGiveUps(String row) {
+        return countersOf(row).giveUps.sum();
+    }
+
+    /**
+     * @return The sum of the conflicts of all rows.
+     */
+    public long getTotalConflicts() {
+        return counters.values().stream().mapToLong(c -> c.conflicts.sum()).sum();
+    }
+
+    /**
+     * @return The sum of the give-ups of all rows.
+     */
+    public long getTotalGiveUps() {
+        return counters.values().stream().mapToLong(c -> c.giveUps.sum()).sum();
+    }
+
+    /**
+     * @param limit The maximum number of rows to return.
+     * @return The rows with the most conflicts, most contended first.
+     */
+    public List<String> getHottest(int limit) {
+        // Sorted on a snapshot, the counters keep changing while other threads record
+        Map<String, Long> conflicts = new HashMap<>();
+        counters.forEach((row, c) -> conflicts.put(row, c.conflicts.sum()));
+        List<String> rows = new ArrayList<>(conflicts.keySet());
+        rows.sort(Comparator.comparing((String row) -> conflicts.get(row)).reversed().thenComparing(Comparator.naturalOrder()));
+        return rows.subList(0, Math.min(limit, rows.size()));
+    }
+
+    /**
+     * Resets every counter to zero, e.g. between benchmark runs.
+     */
+    public void reset() {
+        counters.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (String row : getHottest(HOTTEST_SHOWN)) {
+            Counters c = counters.get(row);
+            out.append(String.format("%s: conflicts=%d retries=%d give-ups=%d%n", row,
+                    c.conflicts.sum(), c.retries.sum(), c.giveUps.sum()));
+        }
+        return out.toString();
+    }
+
+    private Counters countersOf(String row) {
+        return counters.computeIfAbsent(row, name -> new Counters());
+    }
+
+    private static final class Counters {
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder giveUps = new LongAdder();
+    }
+}
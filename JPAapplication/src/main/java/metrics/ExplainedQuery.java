@@ -0,0 +1,109 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The plan of one query as seen by {@link IndexAdvisor}: how often the application ran it, what running
+ * it cost, and the sequential scans over large tables it contains together with the indexes that would
+ * let the database skip them.
+ */
+public class ExplainedQuery {
+    private final String sql;
+    private final long executions;
+    private final List<String> plan;
+    private final double executionMillis;
+    private final long sharedBuffersHit;
+    private final long sharedBuffersRead;
+    private final List<String> largeSequentialScans = new ArrayList<>();
+    private final List<String> suggestedIndexes = new ArrayList<>();
+    private final String error;
+
+    ExplainedQuery(String sql, long executions, List<String> plan, double executionMillis,
+                   long sharedBuffersHit, long sharedBuffersRead) {
+        this.sql = sql;
+        this.executions = executions;
+        this.plan = plan;
+        this.executionMillis = executionMillis;
+        this.sharedBuffersHit = sharedBuffersHit;
+        this.sharedBuffersRead = sharedBuffersRead;
+        this.error = null;
+    }
+
+    ExplainedQuery(String sql, long executions, String error) {
+        this.sql = sql;
+        this.executions = executions;
+        this.plan = Collections.emptyList();
+        this.executionMillis = 0;
+        this.sharedBuffersHit = 0;
+        this.sharedBuffersRead = 0;
+        this.error = error;
+    }
+
+    void addLargeSequentialScan(String scan, String suggestedIndex) {
+        largeSequentialScans.add(scan);
+        if (suggestedIndex != null && !suggestedIndexes.contains(suggestedIndex)) {
+            suggestedIndexes.add(suggestedIndex);
+        }
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return How often the application ran the query while it was captured; 0 if it was added by hand.
+     */
+    public long getExecutions() {
+        return executions;
+    }
+
+    /**
+     * @return The lines of the EXPLAIN (ANALYZE, BUFFERS) output.
+     */
+    public List<String> getPlan() {
+        return Collections.unmodifiableList(plan);
+    }
+
+    public double getExecutionMillis() {
+        return executionMillis;
+    }
+
+    public long getSharedBuffersHit() {
+        return sharedBuffersHit;
+    }
+
+    public long getSharedBuffersRead() {
+        return sharedBuffersRead;
+    }
+
+    /**
+     * @return The sequential scans of tables with at least the advisor's large-table row count, e.g.
+     * "Seq Scan on account (200000 rows) Filter: ((iban)::text = ($1)::text)".
+     */
+    public List<String> getLargeSequentialScans() {
+        return Collections.unmodifiableList(largeSequentialScans);
+    }
+
+    /**
+     * @return CREATE INDEX statements for the columns the flagged scans filter on.
+     */
+    public List<String> getSuggestedIndexes() {
+        return Collections.unmodifiableList(suggestedIndexes);
+    }
+
+    /**
+     * @return true if the plan scans a large table sequentially.
+     */
+    public boolean isFlagged() {
+        return !largeSequentialScans.isEmpty();
+    }
+
+    /**
+     * @return Why the query could not be explained, or null if it was.
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,366 @@
+package metrics;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.jpa.JpaHelper;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.SessionEventManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the queries of the application that read large tables sequentially; PostgreSQL only.
+ * <p>
+ * While capturing, every SELECT the persistence provider sends is recorded with its number of executions:
+ * JPQL and native queries as well as the loads of relationships. {@link #analyze()} then runs each one
+ * through EXPLAIN (ANALYZE, BUFFERS) as a generic plan with all parameters NULL, which is the plan the
+ * server settles on for a prepared statement it has run often. An index scan with NULL parameters reads
+ * next to nothing, while a sequential scan reads the whole table whatever the parameters are, so the
+ * buffers and time reported for it are what every execution pays; a scan under a join may show as never
+ * executed but is flagged all the same. Sequential scans of tables with at least largeTableRows live rows
+ * are flagged, with an index on the columns they filter on as a hint.
+ * <p>
+ * Statements sent over the JDBC connection directly are not seen; add them with {@link #addQuery}.
+ */
+public class IndexAdvisor {
+    /** Tables with fewer live rows than this are read faster sequentially than through an index. */
+    public static final long DEFAULT_LARGE_TABLE_ROWS = 10_000;
+
+    private static final Pattern SEQ_SCAN = Pattern.compile("(?:Parallel )?Seq Scan on (\\w+)");
+    private static final Pattern EQUALITY = Pattern.compile(
+            "\\(?(?:\\w+\\.)?([a-z_][a-z0-9_]*)\\)?(?:::[a-z ]+?)? = \\(?\\$\\d+");
+    private static final Pattern EXECUTION_TIME = Pattern.compile("Execution Time: ([0-9.]+) ms");
+    private static final Pattern BUFFERS_HIT = Pattern.compile("shared hit=(\\d+)");
+    private static final Pattern BUFFERS_READ = Pattern.compile("shared (?:hit=\\d+ )?read=(\\d+)");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final long largeTableRows;
+    private final Map<String, LongAdder> queries = new ConcurrentHashMap<>();
+    private final SessionEventAdapter capture = new SessionEventAdapter() {
+        @Override
+        public void preExecuteCall(SessionEvent event) {
+            if (event.getCall() instanceof DatabaseCall) {
+                String sql = ((DatabaseCall) event.getCall()).getSQLString();
+                if (sql != null && isSelect(sql)) {
+                    queries.computeIfAbsent(sql, s -> new LongAdder()).increment();
+                }
+            }
+        }
+    };
+
+    /**
+     * Constructs an IndexAdvisor that flags sequential scans of tables with at least
+     * {@value #DEFAULT_LARGE_TABLE_ROWS} rows.
+     *
+     * @param entityManagerFactory The factory of the persistence unit whose queries are analyzed.
+     */
+    public IndexAdvisor(EntityManagerFactory entityManagerFactory) {
+        this(entityManagerFactory, DEFAULT_LARGE_TABLE_ROWS);
+    }
+
+    /**
+     * Constructs an IndexAdvisor.
+     *
+     * @param entityManagerFactory The factory of the persistence unit whose queries are analyzed.
+     * @param largeTableRows       The number of live rows from which a sequentially scanned table is flagged.
+     */
+    public IndexAdvisor(EntityManagerFactory entityManagerFactory, long largeTableRows) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.largeTableRows = largeTableRows;
+    }
+
+    /**
+     * Starts recording the SELECTs sent by units of work that start from now on.
+     */
+    public void startCapture() {
+        eventManager().addListener(capture);
+    }
+
+    /**
+     * Stops recording; the queries recorded so far are kept.
+     */
+    public void stopCapture() {
+        eventManager().removeListener(capture);
+    }
+
+    /**
+     * Adds a query the capture cannot see, e.g. one sent over the JDBC connection directly.
+     *
+     * @param sql The query, with ? for its parameters.
+     */
+    public void addQuery(String sql) {
+        queries.computeIfAbsent(sql, s -> new LongAdder());
+    }
+
+    /**
+     * @return The recorded queries and how often each ran.
+     */
+    public Map<String, Long> getQueries() {
+        Map<String, Long> executions = new HashMap<>();
+        queries.forEach((sql, count) -> executions.put(sql, count.sum()));
+        return executions;
+    }
+
+    /**
+     * Explains every recorded query. The queries are executed, in transactions that are rolled back.
+     *
+     * @return The explained queries, flagged ones first, then by executions.
+     */
+    public List<ExplainedQuery> analyze() {
+        Map<String, Long> tableRows = liveRows();
+        List<ExplainedQuery> explained = new ArrayList<>();
+        getQueries().forEach((sql, executions) -> explained.add(explain(sql, executions, tableRows)));
+        explained.sort(Comparator.comparing((ExplainedQuery q) -> !q.isFlagged())
+                .thenComparing(ExplainedQuery::getExecutions, Comparator.reverseOrder()));
+        return explained;
+    }
+
+    /**
+     * Explains every recorded query and writes the report.
+     *
+     * @param file The file to write the report to.
+     * @return The explained queries.
+     * @throws IOException if the report cannot be written.
+     */
+    public List<ExplainedQuery> writeReport(Path file) throws IOException {
+        List<ExplainedQuery> explained = analyze();
+        Files.writeString(file, report(explained));
+        return explained;
+    }
+
+    /**
+     * Formats explained queries as a plain-text report: a summary of the flagged queries and the
+     * suggested indexes, then every query with its cost and, if flagged, its plan.
+     *
+     * @param explained The explained queries.
+     * @return The report.
+     */
+    public String report(List<ExplainedQuery> explained) {
+        StringBuilder report = new StringBuilder();
+        Set<String> suggested = new LinkedHashSet<>();
+        long flagged = 0;
+        for (ExplainedQuery query : explained) {
+            if (query.isFlagged()) {
+                flagged++;
+                suggested.addAll(query.getSuggestedIndexes());
+            }
+        }
+        report.append("Index advisor report, ").append(LocalDateTime.now()).append('\n')
+                .append(explained.size()).append(" queries, ").append(flagged)
+                .append(" scanning a table of ").append(largeTableRows).append(" rows or more sequentially\n");
+        if (!suggested.isEmpty()) {
+            report.append("\nSuggested indexes:\n");
+            suggested.forEach(index -> report.append("  ").append(index).append('\n'));
+        }
+        for (ExplainedQuery query : explained) {
+            report.append('\n');
+            if (query.getError() != null) {
+                report.append("[not explained] ").append(query.getError()).append('\n');
+            } else {
+                report.append(query.isFlagged() ? "[SEQ SCAN] " : "[ok] ")
+                        .append(query.getExecutions()).append(" executions, ")
+                        .append(String.format("%.3f", query.getExecutionMillis())).append(" ms, shared buffers hit=")
+                        .append(query.getSharedBuffersHit()).append(" read=").append(query.getSharedBuffersRead()).append('\n');
+            }
+            report.append("  ").append(query.getSql()).append('\n');
+            for (String scan : query.getLargeSequentialScans()) {
+                report.append("  ").append(scan).append('\n');
+            }
+            if (query.isFlagged()) {
+                query.getPlan().forEach(line -> report.append("    ").append(line).append('\n'));
+            }
+        }
+        return report.toString();
+    }
+
+    private ExplainedQuery explain(String sql, long executions, Map<String, Long> tableRows) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Connection connection = em.unwrap(Connection.class);
+            List<String> plan = new ArrayList<>();
+            try (Statement statement = connection.createStatement()) {
+                int parameters = countParameters(sql);
+                statement.execute("SET LOCAL plan_cache_mode = force_generic_plan");
+                statement.execute("PREPARE index_advisor_query AS " + numberParameters(sql));
+                StringBuilder execute = new StringBuilder("EXPLAIN (ANALYZE, BUFFERS) EXECUTE index_advisor_query");
+                if (parameters > 0) {
+                    execute.append('(').append(String.join(", ", Collections.nCopies(parameters, "NULL"))).append(')');
+                }
+                // A prepared statement outlives the transaction, so it is deallocated whether EXPLAIN fails or not
+                statement.execute("SAVEPOINT index_advisor_explain");
+                try (ResultSet rs = statement.executeQuery(execute.toString())) {
+                    while (rs.next()) {
+                        plan.add(rs.getString(1));
+                    }
+                } catch (SQLException e) {
+                    statement.execute("ROLLBACK TO SAVEPOINT index_advisor_explain");
+                    throw e;
+                } finally {
+                    statement.execute("DEALLOCATE index_advisor_query");
+                }
+            }
+            return toExplainedQuery(sql, executions, plan, tableRows);
+        } catch (RuntimeException | SQLException e) {
+            return new ExplainedQuery(sql, executions, e.getMessage());
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    private ExplainedQuery toExplainedQuery(String sql, long executions, List<String> plan, Map<String, Long> tableRows) {
+        double millis = 0;
+        long hit = 0;
+        long read = 0;
+        boolean topBuffers = true;
+        for (String line : plan) {
+            Matcher time = EXECUTION_TIME.matcher(line);
+            if (time.find()) {
+                millis = Double.parseDouble(time.group(1));
+            }
+            // The buffers of the top node include those of the nodes below it
+            if (topBuffers && line.trim().startsWith("Buffers:")) {
+                Matcher hitMatcher = BUFFERS_HIT.matcher(line);
+                Matcher readMatcher = BUFFERS_READ.matcher(line);
+                hit = hitMatcher.find() ? Long.parseLong(hitMatcher.group(1)) : 0;
+                read = readMatcher.find() ? Long.parseLong(readMatcher.group(1)) : 0;
+                topBuffers = false;
+            }
+        }
+        ExplainedQuery explained = new ExplainedQuery(sql, executions, plan, millis, hit, read);
+
+        for (int i = 0; i < plan.size(); i++) {
+            Matcher scan = SEQ_SCAN.matcher(plan.get(i));
+            if (!scan.find()) {
+                continue;
+            }
+            String table = scan.group(1);
+            long rows = tableRows.getOrDefault(table, 0L);
+            if (rows < largeTableRows) {
+                continue;
+            }
+            String filter = filterOf(plan, i);
+            List<String> columns = new ArrayList<>();
+            if (filter != null) {
+                Matcher equality = EQUALITY.matcher(filter);
+                while (equality.find()) {
+                    if (!columns.contains(equality.group(1))) {
+                        columns.add(equality.group(1));
+                    }
+                }
+            }
+            explained.addLargeSequentialScan("Seq Scan on " + table + " (" + rows + " rows)"
+                            + (filter == null ? "" : " " + filter),
+                    columns.isEmpty() ? null : "CREATE INDEX ON " + table + " (" + String.join(", ", columns) + ")");
+        }
+        return explained;
+    }
+
+    /**
+     * @return The Filter line of the plan node at the given line, or null if it has none.
+     */
+    private static String filterOf(List<String> plan, int node) {
+        int indent = indentOf(plan.get(node));
+        for (int i = node + 1; i < plan.size(); i++) {
+            String line = plan.get(i);
+            if (line.contains("->") || indentOf(line) <= indent) {
+                return null;
+            }
+            if (line.trim().startsWith("Filter:")) {
+                return line.trim();
+            }
+        }
+        return null;
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        while (indent < line.length() && line.charAt(indent) == ' ') {
+            indent++;
+        }
+        return line.startsWith("->", indent) ? indent + 4 : indent;
+    }
+
+    private Map<String, Long> liveRows() {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            Map<String, Long> rows = new HashMap<>();
+            List<?> result = em.createNativeQuery("SELECT relname, n_live_tup FROM pg_stat_user_tables").getResultList();
+            for (Object row : result) {
+                Object[] columns = (Object[]) row;
+                rows.put((String) columns[0], ((Number) columns[1]).longValue());
+            }
+            return rows;
+        } finally {
+            em.close();
+        }
+    }
+
+    private SessionEventManager eventManager() {
+        return JpaHelper.getServerSession(entityManagerFactory).getEventManager();
+    }
+
+    private static boolean isSelect(String sql) {
+        String start = sql.stripLeading();
+        return start.regionMatches(true, 0, "SELECT", 0, 6) || start.regionMatches(true, 0, "WITH", 0, 4);
+    }
+
+    private static int countParameters(String sql) {
+        return numberParameters(sql, null);
+    }
+
+    private static String numberParameters(String sql) {
+        StringBuilder numbered = new StringBuilder(sql.length() + 16);
+        numberParameters(sql, numbered);
+        return numbered.toString();
+    }
+
+    /**
+     * Replaces the ? placeholders outside string literals by $1, $2, ...
+     *
+     * @return The number of placeholders.
+     */
+    private static int numberParameters(String sql, StringBuilder numbered) {
+        int parameters = 0;
+        boolean inLiteral = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inLiteral = !inLiteral;
+            }
+            if (c == '?' && !inLiteral) {
+                parameters++;
+                if (numbered != null) {
+                    numbered.append('$').append(parameters);
+                }
+            } else if (numbered != null) {
+                numbered.append(c);
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,122 @@
+package metrics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes {@link BankMetrics}: registers them with JMX and dumps them as text or JSON at a fixed interval
+ * from a daemon thread, by default to the "metrics" logger. Configured by the bank.metrics.* properties
+ * of the persistence unit:
+ * <ul>
+ *     <li>jmx: whether to register the MBean, true by default;</li>
+ *     <li>dump-interval-seconds: the interval of the dumps, 0 (the default) for none;</li>
+ *     <li>dump-format: text (the default) or json.</li>
+ * </ul>
+ */
+public class MetricsReporter implements AutoCloseable {
+    public static final String PROPERTY_PREFIX = "bank.metrics.";
+
+    private static final Logger LOGGER = Logger.getLogger("metrics");
+
+    /**
+     * The format of the dumps.
+     */
+    public enum Format {
+        /** {@link BankMetrics#toText()} */
+        TEXT,
+        /** {@link BankMetrics#toJson()} */
+        JSON
+    }
+
+    private final BankMetrics metrics = new BankMetrics();
+    private final boolean jmx;
+    private final Duration dumpInterval;
+    private final Format format;
+    private final Consumer<String> sink;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructs a MetricsReporter.
+     *
+     * @param jmx          Whether to register the MBean.
+     * @param dumpInterval The interval of the dumps; zero for none.
+     * @param format       The format of the dumps.
+     * @param sink         Receives every dump.
+     */
+    public MetricsReporter(boolean jmx, Duration dumpInterval, Format format, Consumer<String> sink) {
+        this.jmx = jmx;
+        this.dumpInterval = dumpInterval;
+        this.format = format;
+        this.sink = sink;
+    }
+
+    /**
+     * Reads a reporter from the bank.metrics.* properties, logging its dumps to the "metrics" logger.
+     *
+     * @param properties The properties of the persistence unit, e.g. those of its EntityManagerFactory.
+     * @return The configured reporter, not yet started.
+     */
+    public static MetricsReporter fromProperties(Map<String, ?> properties) {
+        return new MetricsReporter(
+                Boolean.parseBoolean(setting(properties, "jmx", true)),
+                Duration.ofSeconds(Long.parseLong(setting(properties, "dump-interval-seconds", 0))),
+                Format.valueOf(setting(properties, "dump-format", "text").toUpperCase()),
+                dump -> LOGGER.info(dump));
+    }
+
+    /**
+     * Registers the MBean and schedules the dumps, as configured.
+     */
+    public synchronized void start() {
+        if (jmx) {
+            BankMetrics.registerMBean();
+        }
+        if (!dumpInterval.isZero() && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-reporter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = dumpInterval.toMillis();
+            scheduler.scheduleAtFixedRate(this::dumpSafely, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Dumps the metrics now.
+     */
+    public void dump() {
+        sink.accept(format == Format.JSON ? metrics.toJson() : metrics.toText());
+    }
+
+    /**
+     * Stops the dumps; the MBean stays registered, as the statistics outlive the reporter.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private void dumpSafely() {
+        // An exception would cancel every later dump
+        try {
+            dump();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Could not dump the metrics", e);
+        }
+    }
+
+    private static String setting(Map<String, ?> properties, String name, Object defaultValue) {
+        Object value = properties.get(PROPERTY_PREFIX + name);
+        return String.valueOf(value == null ? defaultValue : value).trim();
+    }
+}
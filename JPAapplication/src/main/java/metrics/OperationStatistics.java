@@ -0,0 +1,69 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latency histograms of the operations of the application, keyed by "Class.method", e.g.
+ * "BankDAO.findBankByIban" or "BankService.makeMoneyTransfer". An operation that calls another is
+ * timed including it. Recording looks the histogram up in a concurrent map and increments a few
+ * counters, some tens of nanoseconds, so it is cheap enough to stay on.
+ */
+public final class OperationStatistics {
+    private static final OperationStatistics INSTANCE = new OperationStatistics();
+
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    private OperationStatistics() {
+    }
+
+    public static OperationStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records one run of an operation.
+     *
+     * @param operation  The name of the operation.
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started.
+     */
+    public void record(String operation, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        LatencyHistogram histogram = latencies.get(operation);
+        if (histogram == null) {
+            histogram = latencies.computeIfAbsent(operation, name -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * @param operation The name of the operation.
+     * @return The latencies of the operation, or null if it has not run yet.
+     */
+    public LatencyHistogram getLatency(String operation) {
+        return latencies.get(operation);
+    }
+
+    /**
+     * @return The latencies of every operation that ran, ordered by name.
+     */
+    public Map<String, LatencyHistogram> getLatencies() {
+        return new TreeMap<>(latencies);
+    }
+
+    /**
+     * Forgets every recorded latency, e.g. between benchmark runs.
+     */
+    public void reset() {
+        latencies.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        getLatencies().forEach((operation, histogram) ->
+                out.append(operation).append(": ").append(histogram).append(System.lineSeparator()));
+        return out.toString();
+    }
+}
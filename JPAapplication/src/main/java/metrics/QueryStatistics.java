@@ -0,0 +1,119 @@
+package metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counters of the named queries of the persistence unit, keyed by query name, e.g.
+ * "Bank.findByIban". An execution is one run of the query through an EntityManager; a statement is one
+ * SQL call it made to the database, none when the answer came from a cache. Only the names registered by
+ * {@link StatisticsListener} at login are counted, so the internal queries of EclipseLink are left out.
+ */
+public final class QueryStatistics {
+    private static final QueryStatistics INSTANCE = new QueryStatistics();
+
+    private final Map<String, Counters> queries = new ConcurrentHashMap<>();
+
+    private QueryStatistics() {
+    }
+
+    public static QueryStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts counting the executions of named queries.
+     *
+     * @param names The names of the queries.
+     */
+    public void register(Collection<String> names) {
+        for (String name : names) {
+            queries.computeIfAbsent(name, key -> new Counters());
+        }
+    }
+
+    /**
+     * Records one execution of a query; ignored unless its name was registered.
+     *
+     * @param name The name of the query, or null for an unnamed one.
+     */
+    public void recordExecution(String name) {
+        Counters counters = name == null ? null : queries.get(name);
+        if (counters != null) {
+            counters.executions.increment();
+        }
+    }
+
+    /**
+     * Records one SQL statement issued by a query; ignored unless its name was registered.
+     *
+     * @param name The name of the query, or null for an unnamed one.
+     */
+    public void recordStatement(String name) {
+        Counters counters = name == null ? null : queries.get(name);
+        if (counters != null) {
+            counters.statements.increment();
+        }
+    }
+
+    /**
+     * @param name The name of the query.
+     * @return The number of times the query ran.
+     */
+    public long getExecutions(String name) {
+        Counters counters = queries.get(name);
+        return counters == null ? 0 : counters.executions.sum();
+    }
+
+    /**
+     * @return The number of runs of every registered query, ordered by name.
+     */
+    public Map<String, Long> getExecutions() {
+        Map<String, Long> executions = new TreeMap<>();
+        queries.forEach((name, counters) -> executions.put(name, counters.executions.sum()));
+        return executions;
+    }
+
+    /**
+     * @return The number of SQL statements of every registered query, ordered by name.
+     */
+    public Map<String, Long> getStatements() {
+        Map<String, Long> statements = new TreeMap<>();
+        queries.forEach((name, counters) -> statements.put(name, counters.statements.sum()));
+        return statements;
+    }
+
+    /**
+     * Zeroes the counters, e.g. between benchmark runs. The registered names are kept.
+     */
+    public void reset() {
+        queries.values().forEach(counters -> {
+            counters.executions.reset();
+            counters.statements.reset();
+        });
+    }
+
+    /**
+     * @return A line per query that ran, e.g. "Bank.findByIban: 12 executions, 3 statements".
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        new TreeMap<>(queries).forEach((name, counters) -> {
+            long executions = counters.executions.sum();
+            if (executions > 0) {
+                out.append(name).append(": ").append(executions).append(" executions, ")
+                        .append(counters.statements.sum()).append(" statements").append(System.lineSeparator());
+            }
+        });
+        return out.toString();
+    }
+
+    private static final class Counters {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+    }
+}
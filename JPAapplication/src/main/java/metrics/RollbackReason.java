@@ -0,0 +1,65 @@
+package metrics;
+
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.NoResultException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+
+import java.sql.SQLException;
+import java.util.Set;
+
+/**
+ * Why a transaction was rolled back, as counted by {@link TransactionStatistics}.
+ */
+public enum RollbackReason {
+    /** A transfer was rejected because the source account does not hold enough money. */
+    INSUFFICIENT_BALANCE,
+    /** An entity the work needed does not exist. */
+    NOT_FOUND,
+    /** The database rejected a write that breaks a unique, foreign key, not null or check constraint. */
+    CONSTRAINT,
+    /** The database aborted the transaction with a deadlock, serialization failure or lock timeout. */
+    DEADLOCK,
+    /** A concurrent unit of work changed an entity first and won the version check. */
+    CONFLICT,
+    /** Any other failure, or work that marked its transaction rollback-only without saying why. */
+    OTHER;
+
+    private static final Set<String> DEADLOCK_SQL_STATES = Set.of("40001", "40P01", "55P03");
+
+    /**
+     * Classifies the failure that made a transaction roll back.
+     *
+     * @param failure The exception thrown by the work or by the commit.
+     * @return The reason, OTHER if no cause in the chain is recognized.
+     */
+    public static RollbackReason of(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                    || cause instanceof org.eclipse.persistence.exceptions.OptimisticLockException) {
+                return CONFLICT;
+            }
+            if (cause instanceof PessimisticLockException || cause instanceof LockTimeoutException) {
+                return DEADLOCK;
+            }
+            if (cause instanceof EntityNotFoundException || cause instanceof NoResultException) {
+                return NOT_FOUND;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (DEADLOCK_SQL_STATES.contains(sqlState)) {
+                    return DEADLOCK;
+                }
+                // Class 23 is integrity constraint violation
+                if (sqlState != null && sqlState.startsWith("23")) {
+                    return CONSTRAINT;
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,61 @@
+package metrics;
+
+import org.eclipse.persistence.internal.databaseaccess.DatasourceCall;
+import org.eclipse.persistence.queries.DatabaseQuery;
+import org.eclipse.persistence.sessions.DataRecord;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+
+import java.util.Collection;
+
+/**
+ * Session event listener that feeds the statistics of the application: it counts the SQL statements and
+ * fetched rows for {@link TransactionStatistics}, the runs of named queries for {@link QueryStatistics}, and passes the read events on to a
+ * {@link CacheStatisticsListener}. Registered through the eclipselink.session-event-listener property in
+ * persistence.xml, which takes a single listener.
+ */
+public class StatisticsListener extends SessionEventAdapter {
+    private final CacheStatisticsListener cacheStatistics = new CacheStatisticsListener();
+    private final TransactionStatistics transactionStatistics = TransactionStatistics.getInstance();
+    private final QueryStatistics queryStatistics = QueryStatistics.getInstance();
+
+    @Override
+    public void postLogin(SessionEvent event) {
+        // The named queries of the persistence unit; EclipseLink runs clones of them under the same name
+        queryStatistics.register(event.getSession().getQueries().keySet());
+    }
+
+    @Override
+    public void preExecuteQuery(SessionEvent event) {
+        cacheStatistics.preExecuteQuery(event);
+        queryStatistics.recordExecution(event.getQuery().getName());
+    }
+
+    @Override
+    public void preExecuteCall(SessionEvent event) {
+        cacheStatistics.preExecuteCall(event);
+        transactionStatistics.recordStatement();
+        if (event.getCall() instanceof DatasourceCall) {
+            DatabaseQuery query = ((DatasourceCall) event.getCall()).getQuery();
+            if (query != null) {
+                queryStatistics.recordStatement(query.getName());
+            }
+        }
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        // A read returns its rows, a single-row read the row; a write returns its update count
+        Object result = event.getResult();
+        if (result instanceof Collection) {
+            transactionStatistics.recordRowsFetched(((Collection<?>) result).size());
+        } else if (result instanceof DataRecord) {
+            transactionStatistics.recordRowsFetched(1);
+        }
+    }
+
+    @Override
+    public void postExecuteQuery(SessionEvent event) {
+        cacheStatistics.postExecuteQuery(event);
+    }
+}
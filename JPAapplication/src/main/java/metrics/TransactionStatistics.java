@@ -0,0 +1,164 @@
+package metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Commit and rollback counters of the transactions run by {@link DAO.TransactionTemplate}, rollbacks by
+ * {@link RollbackReason}, and the SQL statements and fetched rows counted by {@link StatisticsListener}.
+ * A transaction is tracked per thread from begin to commit or rollback, so the statements it executed
+ * are known when it ends. Statements sent over the JDBC connection directly are not counted.
+ */
+public final class TransactionStatistics {
+    private static final TransactionStatistics INSTANCE = new TransactionStatistics();
+
+    private final LongAdder commits = new LongAdder();
+    private final Map<RollbackReason, LongAdder> rollbacks = new EnumMap<>(RollbackReason.class);
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder rowsFetched = new LongAdder();
+    private final LongAdder statementsInTransactions = new LongAdder();
+    private final LongAccumulator maxStatementsPerTransaction = new LongAccumulator(Long::max, 0);
+    private final ThreadLocal<Transaction> current = ThreadLocal.withInitial(Transaction::new);
+
+    private TransactionStatistics() {
+        for (RollbackReason reason : RollbackReason.values()) {
+            rollbacks.put(reason, new LongAdder());
+        }
+    }
+
+    public static TransactionStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts tracking the transaction that the current thread has just begun.
+     */
+    public void begin() {
+        Transaction transaction = current.get();
+        transaction.open = true;
+        transaction.statements = 0;
+        transaction.rollbackReason = null;
+    }
+
+    /**
+     * Records why the transaction of the current thread was marked rollback-only.
+     *
+     * @param reason The reason counted when the transaction rolls back.
+     */
+    public void markRollback(RollbackReason reason) {
+        current.get().rollbackReason = reason;
+    }
+
+    public void commit() {
+        if (end()) {
+            commits.increment();
+        }
+    }
+
+    /**
+     * Counts the rollback of a transaction that was marked rollback-only, under the reason it was marked
+     * with, or OTHER.
+     */
+    public void rollback() {
+        RollbackReason reason = current.get().rollbackReason;
+        rollback(reason == null ? RollbackReason.OTHER : reason);
+    }
+
+    public void rollback(RollbackReason reason) {
+        if (end()) {
+            rollbacks.get(reason).increment();
+        }
+    }
+
+    public void recordStatement() {
+        statements.increment();
+        Transaction transaction = current.get();
+        if (transaction.open) {
+            transaction.statements++;
+        }
+    }
+
+    public void recordRowsFetched(int rows) {
+        rowsFetched.add(rows);
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    public long getRollbacks(RollbackReason reason) {
+        return rollbacks.get(reason).sum();
+    }
+
+    public long getTotalRollbacks() {
+        return rollbacks.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @return The statements executed in and outside of transactions.
+     */
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched.sum();
+    }
+
+    public double getMeanStatementsPerTransaction() {
+        long transactions = getCommits() + getTotalRollbacks();
+        return transactions == 0 ? 0 : (double) statementsInTransactions.sum() / transactions;
+    }
+
+    public long getMaxStatementsPerTransaction() {
+        return maxStatementsPerTransaction.get();
+    }
+
+    /**
+     * Resets every counter to zero, e.g. between benchmark runs.
+     */
+    public void reset() {
+        commits.reset();
+        rollbacks.values().forEach(LongAdder::reset);
+        statements.reset();
+        rowsFetched.reset();
+        statementsInTransactions.reset();
+        maxStatementsPerTransaction.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(String.format("commits=%d rollbacks=%d", getCommits(), getTotalRollbacks()));
+        for (RollbackReason reason : RollbackReason.values()) {
+            long count = getRollbacks(reason);
+            if (count > 0) {
+                out.append(' ').append(reason.name().toLowerCase()).append('=').append(count);
+            }
+        }
+        return out.append(String.format(" statements=%d statements/tx mean=%.2f max=%d rows-fetched=%d",
+                getStatements(), getMeanStatementsPerTransaction(), getMaxStatementsPerTransaction(),
+                getRowsFetched())).toString();
+    }
+
+    /**
+     * @return true if the current thread had a transaction open, which it now has not.
+     */
+    private boolean end() {
+        Transaction transaction = current.get();
+        if (!transaction.open) {
+            return false;
+        }
+        transaction.open = false;
+        statementsInTransactions.add(transaction.statements);
+        maxStatementsPerTransaction.accumulate(transaction.statements);
+        return true;
+    }
+
+    private static final class Transaction {
+        private boolean open;
+        private long statements;
+        private RollbackReason rollbackReason;
+    }
+}
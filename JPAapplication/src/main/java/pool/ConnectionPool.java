@@ -0,0 +1,159 @@
+package pool;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import metrics.LatencyHistogram;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Pooled JDBC connections for a persistence unit. The JDBC url and credentials are taken from the
+ * unit's jakarta.persistence.jdbc.* properties and the pool itself is configured with bank.pool.*
+ * properties in the same persistence.xml, which system properties of the same name override:
+ * <ul>
+ *     <li>bank.pool.name - the name of the pool and of its JMX beans (default the persistence unit name)</li>
+ *     <li>bank.pool.minimum-idle - connections kept open when idle (default 2)</li>
+ *     <li>bank.pool.maximum-size - hard upper bound of open connections (default 10)</li>
+ *     <li>bank.pool.connection-timeout-ms - how long a thread waits for a connection before failing (default 5000)</li>
+ *     <li>bank.pool.idle-timeout-ms - how long a surplus idle connection is kept (default 600000)</li>
+ *     <li>bank.pool.max-lifetime-ms - age after which a connection is replaced (default 1800000)</li>
+ *     <li>bank.pool.leak-detection-threshold-ms - a connection held longer than this is reported
+ *     as a possible leak, with the stack trace of the code that took it (default 0, off)</li>
+ *     <li>bank.pool.data-source.* - passed to the JDBC driver, e.g. the PostgreSQL prepared statement cache</li>
+ * </ul>
+ */
+public class ConnectionPool implements AutoCloseable {
+    public static final String PROPERTY_PREFIX = "bank.pool.";
+    private static final String DATA_SOURCE_PREFIX = PROPERTY_PREFIX + "data-source.";
+
+    private final String persistenceUnitName;
+    private final Map<String, Object> overrides;
+    private final HikariDataSource pool;
+    private final MeteredDataSource dataSource;
+
+    private ConnectionPool(String persistenceUnitName, Map<String, Object> overrides, HikariConfig config) {
+        this.persistenceUnitName = persistenceUnitName;
+        this.overrides = overrides;
+        this.pool = new HikariDataSource(config);
+        this.dataSource = new MeteredDataSource(pool);
+    }
+
+    /**
+     * Creates the pool for a persistence unit as configured in persistence.xml.
+     *
+     * @param persistenceUnitName The name of the persistence unit.
+     * @return The started pool.
+     */
+    public static ConnectionPool forPersistenceUnit(String persistenceUnitName) {
+        return forPersistenceUnit(persistenceUnitName, new HashMap<>());
+    }
+
+    /**
+     * Creates the pool for a persistence unit, with some of its properties replaced, e.g. to point it
+     * at another database.
+     *
+     * @param persistenceUnitName The name of the persistence unit.
+     * @param overrides           Properties that take precedence over persistence.xml; they are also
+     *                            passed on to the EntityManagerFactory.
+     * @return The started pool.
+     */
+    public static ConnectionPool forPersistenceUnit(String persistenceUnitName, Map<String, ?> overrides) {
+        Properties settings = PersistenceUnitSettings.load(persistenceUnitName);
+        overrides.forEach((name, value) -> settings.setProperty(name, String.valueOf(value)));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                .forEach(name -> settings.setProperty(name, System.getProperty(name)));
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(settings.getProperty(PROPERTY_PREFIX + "name", persistenceUnitName));
+        config.setJdbcUrl(settings.getProperty("jakarta.persistence.jdbc.url"));
+        config.setUsername(settings.getProperty("jakarta.persistence.jdbc.user"));
+        config.setPassword(settings.getProperty("jakarta.persistence.jdbc.password"));
+        String driver = settings.getProperty("jakarta.persistence.jdbc.driver");
+        if (driver != null) {
+            config.setDriverClassName(driver);
+        }
+        config.setMinimumIdle(intSetting(settings, "minimum-idle", 2));
+        config.setMaximumPoolSize(intSetting(settings, "maximum-size", 10));
+        config.setConnectionTimeout(longSetting(settings, "connection-timeout-ms", 5_000));
+        config.setIdleTimeout(longSetting(settings, "idle-timeout-ms", 600_000));
+        config.setMaxLifetime(longSetting(settings, "max-lifetime-ms", 1_800_000));
+        config.setLeakDetectionThreshold(longSetting(settings, "leak-detection-threshold-ms", 0));
+        config.setRegisterMbeans(true);
+        for (String name : settings.stringPropertyNames()) {
+            if (name.startsWith(DATA_SOURCE_PREFIX)) {
+                config.addDataSourceProperty(name.substring(DATA_SOURCE_PREFIX.length()), settings.getProperty(name));
+            }
+        }
+        return new ConnectionPool(persistenceUnitName, new HashMap<>(overrides), config);
+    }
+
+    /**
+     * Creates an EntityManagerFactory for the persistence unit that takes its connections from this pool.
+     * The factory must be closed before the pool.
+     *
+     * @return The new EntityManagerFactory.
+     */
+    public EntityManagerFactory createEntityManagerFactory() {
+        Map<String, Object> properties = new HashMap<>(overrides);
+        properties.put("jakarta.persistence.nonJtaDataSource", dataSource);
+        return Persistence.createEntityManagerFactory(persistenceUnitName, properties);
+    }
+
+    /**
+     * @return The pooled DataSource, for code that works with plain JDBC.
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * @return The current state of the pool.
+     */
+    public PoolMetrics getMetrics() {
+        HikariPoolMXBean mxBean = pool.getHikariPoolMXBean();
+        LatencyHistogram latency = dataSource.getAcquisitionLatency();
+        return new PoolMetrics(
+                mxBean == null ? 0 : mxBean.getActiveConnections(),
+                mxBean == null ? 0 : mxBean.getIdleConnections(),
+                mxBean == null ? 0 : mxBean.getTotalConnections(),
+                pool.getMaximumPoolSize(),
+                mxBean == null ? 0 : mxBean.getThreadsAwaitingConnection(),
+                latency.getCount(),
+                dataSource.getAcquisitionTimeouts(),
+                latency.getTotalNanos(),
+                latency.getPercentileNanos(50),
+                latency.getPercentileNanos(99),
+                latency.getPercentileNanos(99.9),
+                latency.getMaxNanos());
+    }
+
+    /**
+     * @return The connections in use plus the threads waiting for one; cheaper than {@link #getMetrics()}.
+     */
+    int getLoad() {
+        HikariPoolMXBean mxBean = pool.getHikariPoolMXBean();
+        return mxBean == null ? 0 : mxBean.getActiveConnections() + mxBean.getThreadsAwaitingConnection();
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private static int intSetting(Properties settings, String name, int defaultValue) {
+        String value = settings.getProperty(PROPERTY_PREFIX + name);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longSetting(Properties settings, String name, long defaultValue) {
+        String value = settings.getProperty(PROPERTY_PREFIX + name);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+}
@@ -0,0 +1,90 @@
+package pool;
+
+import metrics.LatencyHistogram;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * DataSource handed to the persistence provider. It times every connection checkout against the pool
+ * and counts the ones that gave up waiting.
+ */
+class MeteredDataSource implements DataSource {
+    private final DataSource pool;
+    private final LatencyHistogram acquisitionLatency = new LatencyHistogram();
+    private final LongAdder acquisitionTimeouts = new LongAdder();
+
+    MeteredDataSource(DataSource pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return pool.getConnection();
+        } catch (SQLTransientConnectionException e) {
+            acquisitionTimeouts.increment();
+            throw e;
+        } finally {
+            acquisitionLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * The pool owns the credentials, so the ones the persistence provider passes along are ignored.
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    LatencyHistogram getAcquisitionLatency() {
+        return acquisitionLatency;
+    }
+
+    long getAcquisitionTimeouts() {
+        return acquisitionTimeouts.sum();
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return pool.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        pool.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        pool.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return pool.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return pool.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : pool.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || pool.isWrapperFor(iface);
+    }
+}
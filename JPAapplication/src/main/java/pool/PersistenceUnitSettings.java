@@ -0,0 +1,69 @@
+package pool;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Properties;
+
+/**
+ * Reads the &lt;properties&gt; of a persistence unit straight from META-INF/persistence.xml, so the pool
+ * can be configured from the same place as the rest of the unit before any EntityManagerFactory exists.
+ */
+public final class PersistenceUnitSettings {
+    private static final String PERSISTENCE_XML = "META-INF/persistence.xml";
+
+    private PersistenceUnitSettings() {
+    }
+
+    /**
+     * Loads the properties declared for a persistence unit.
+     *
+     * @param persistenceUnitName The name of the persistence unit.
+     * @return The declared properties.
+     * @throws IllegalArgumentException if no persistence.xml on the classpath declares the unit.
+     */
+    public static Properties load(String persistenceUnitName) {
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            Enumeration<URL> resources = classLoader.getResources(PERSISTENCE_XML);
+            while (resources.hasMoreElements()) {
+                Properties properties = read(resources.nextElement(), persistenceUnitName);
+                if (properties != null) {
+                    return properties;
+                }
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read " + PERSISTENCE_XML, e);
+        }
+        throw new IllegalArgumentException("No persistence unit named " + persistenceUnitName);
+    }
+
+    private static Properties read(URL url, String persistenceUnitName) throws Exception {
+        Document document;
+        try (InputStream in = url.openStream()) {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setExpandEntityReferences(false);
+            document = factory.newDocumentBuilder().parse(in);
+        }
+        NodeList units = document.getElementsByTagName("persistence-unit");
+        for (int i = 0; i < units.getLength(); i++) {
+            Element unit = (Element) units.item(i);
+            if (!persistenceUnitName.equals(unit.getAttribute("name"))) {
+                continue;
+            }
+            Properties properties = new Properties();
+            NodeList declared = unit.getElementsByTagName("property");
+            for (int j = 0; j < declared.getLength(); j++) {
+                Element property = (Element) declared.item(j);
+                properties.setProperty(property.getAttribute("name"), property.getAttribute("value"));
+            }
+            return properties;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package pool;
+
+/**
+ * Point-in-time view of a connection pool. Latencies are in nanoseconds.
+ */
+public class PoolMetrics {
+    private final int activeConnections;
+    private final int idleConnections;
+    private final int totalConnections;
+    private final int maximumPoolSize;
+    private final int threadsAwaitingConnection;
+    private final long acquisitions;
+    private final long acquisitionTimeouts;
+    private final long totalWaitNanos;
+    private final long acquisitionP50Nanos;
+    private final long acquisitionP99Nanos;
+    private final long acquisitionP999Nanos;
+    private final long acquisitionMaxNanos;
+
+    PoolMetrics(int activeConnections, int idleConnections, int totalConnections, int maximumPoolSize,
+                int threadsAwaitingConnection, long acquisitions, long acquisitionTimeouts, long totalWaitNanos,
+                long acquisitionP50Nanos, long acquisitionP99Nanos, long acquisitionP999Nanos,
+                long acquisitionMaxNanos) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.totalConnections = totalConnections;
+        this.maximumPoolSize = maximumPoolSize;
+        this.threadsAwaitingConnection = threadsAwaitingConnection;
+        this.acquisitions = acquisitions;
+        this.acquisitionTimeouts = acquisitionTimeouts;
+        this.totalWaitNanos = totalWaitNanos;
+        this.acquisitionP50Nanos = acquisitionP50Nanos;
+        this.acquisitionP99Nanos = acquisitionP99Nanos;
+        this.acquisitionP999Nanos = acquisitionP999Nanos;
+        this.acquisitionMaxNanos = acquisitionMaxNanos;
+    }
+
+    //    Getters
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    /**
+     * @return The number of threads currently blocked waiting for a connection; a steadily non-zero value
+     * means the pool is too small for the load (or connections are being held too long).
+     */
+    public int getThreadsAwaitingConnection() {
+        return threadsAwaitingConnection;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions;
+    }
+
+    public long getAcquisitionTimeouts() {
+        return acquisitionTimeouts;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getAcquisitionP50Nanos() {
+        return acquisitionP50Nanos;
+    }
+
+    public long getAcquisitionP99Nanos() {
+        return acquisitionP99Nanos;
+    }
+
+    public long getAcquisitionP999Nanos() {
+        return acquisitionP999Nanos;
+    }
+
+    public long getAcquisitionMaxNanos() {
+        return acquisitionMaxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("active=%d idle=%d total=%d/%d waiting=%d acquisitions=%d timeouts=%d "
+                        + "wait=%.1fms p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                activeConnections, idleConnections, totalConnections, maximumPoolSize, threadsAwaitingConnection,
+                acquisitions, acquisitionTimeouts, totalWaitNanos / 1e6, acquisitionP50Nanos / 1e3,
+                acquisitionP99Nanos / 1e3, acquisitionP999Nanos / 1e3, acquisitionMaxNanos / 1e3);
+    }
+}
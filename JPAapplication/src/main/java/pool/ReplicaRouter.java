@@ -0,0 +1,317 @@
+package pool;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read replicas of a persistence unit, each with a {@link ConnectionPool} and an EntityManagerFactory of
+ * its own, and the choice of the replica a read-only unit of work runs on (see
+ * DAO.TransactionTemplate#withReadOnlyEntityManager). A daemon thread probes how far every replica lags
+ * behind the primary; on PostgreSQL standbys this is the primary WAL not yet replayed, in bytes and in
+ * time. Replicas that lag more than max-lag-ms, or could not be reached, are skipped, and when none is
+ * left the read runs on the primary; a read sent to a replica that failed since the last probe fails.
+ * Configured by the bank.replica.* properties of the persistence unit,
+ * which system properties of the same name override:
+ * <ul>
+ *     <li>bank.replica.urls - comma-separated JDBC urls of the replicas, which share the primary's
+ *     credentials and pool settings (default none: every read runs on the primary)</li>
+ *     <li>bank.replica.selection - round-robin (the default) or least-loaded, the replica with the fewest
+ *     connections in use and threads waiting for one</li>
+ *     <li>bank.replica.max-lag-ms - the lag beyond which a replica is skipped (default 5000)</li>
+ *     <li>bank.replica.lag-probe-interval-ms - the interval of the lag probes (default 1000, 0 for none)</li>
+ * </ul>
+ */
+public class ReplicaRouter implements AutoCloseable {
+    public static final String PROPERTY_PREFIX = "bank.replica.";
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicaRouter.class.getName());
+
+    /**
+     * How a replica is chosen among those not lagging too far behind.
+     */
+    public enum Selection {
+        /** Each in turn. */
+        ROUND_ROBIN,
+        /** The one with the fewest connections in use and threads waiting for one. */
+        LEAST_LOADED
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Selection selection;
+    private final Duration maxLag;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final ScheduledExecutorService prober;
+
+    private ReplicaRouter(DataSource primary, List<Replica> replicas, Selection selection, Duration maxLag,
+                          Duration probeInterval) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.selection = selection;
+        this.maxLag = maxLag;
+        probeLag();
+        if (replicas.isEmpty() || probeInterval.isZero()) {
+            prober = null;
+        } else {
+            prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-probe");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = probeInterval.toMillis();
+            prober.scheduleWithFixedDelay(this::probeLag, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts the replicas of a persistence unit as configured in persistence.xml.
+     *
+     * @param persistenceUnitName The name of the persistence unit.
+     * @param primary             The pool of the primary, whose WAL position the lag is measured against.
+     * @param overrides           Properties that take precedence over persistence.xml, as given to the
+     *                            primary's pool; the url and the pool name are replaced for every replica.
+     * @return The started router; without replicas it sends every read to the primary.
+     */
+    public static ReplicaRouter forPersistenceUnit(String persistenceUnitName, ConnectionPool primary,
+                                                   Map<String, ?> overrides) {
+        Properties settings = PersistenceUnitSettings.load(persistenceUnitName);
+        overrides.forEach((name, value) -> settings.setProperty(name, String.valueOf(value)));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(PROPERTY_PREFIX))
+                .forEach(name -> settings.setProperty(name, System.getProperty(name)));
+
+        List<Replica> replicas = new ArrayList<>();
+        String urls = settings.getProperty(PROPERTY_PREFIX + "urls", "").trim();
+        for (String url : urls.isEmpty() ? new String[0] : urls.split(",")) {
+            String name = persistenceUnitName + "-replica-" + (replicas.size() + 1);
+            Map<String, Object> replicaOverrides = new HashMap<>(overrides);
+            replicaOverrides.put("jakarta.persistence.jdbc.url", url.trim());
+            replicaOverrides.put(ConnectionPool.PROPERTY_PREFIX + "name", name);
+            replicaOverrides.put("eclipselink.session-name", name);
+            // A replica is read-only; its schema is the primary's
+            replicaOverrides.put("jakarta.persistence.schema-generation.database.action", "none");
+            ConnectionPool pool = ConnectionPool.forPersistenceUnit(persistenceUnitName, replicaOverrides);
+            replicas.add(new Replica(url.trim(), pool, pool.createEntityManagerFactory()));
+        }
+        return new ReplicaRouter(primary.getDataSource(), replicas,
+                Selection.valueOf(settings.getProperty(PROPERTY_PREFIX + "selection", "round-robin")
+                        .trim().toUpperCase().replace('-', '_')),
+                Duration.ofMillis(Long.parseLong(settings.getProperty(PROPERTY_PREFIX + "max-lag-ms", "5000").trim())),
+                Duration.ofMillis(Long.parseLong(
+                        settings.getProperty(PROPERTY_PREFIX + "lag-probe-interval-ms", "1000").trim())));
+    }
+
+    /**
+     * Chooses the replica for a read-only unit of work.
+     *
+     * @return The EntityManagerFactory of the replica, or null if the read should run on the primary.
+     */
+    public EntityManagerFactory route() {
+        Replica replica = selection == Selection.LEAST_LOADED ? leastLoaded() : nextInTurn();
+        if (replica == null) {
+            primaryReads.increment();
+            return null;
+        }
+        replica.reads.increment();
+        return replica.entityManagerFactory;
+    }
+
+    /**
+     * Measures the lag of every replica now, rather than waiting for the next scheduled probe.
+     */
+    public synchronized void probeLag() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        String primaryPosition = null;
+        try (Connection connection = primary.getConnection();
+             Statement statement = connection.createStatement()) {
+            if (isPostgres(connection)) {
+                try (ResultSet position = statement.executeQuery("SELECT pg_current_wal_lsn()")) {
+                    position.next();
+                    primaryPosition = position.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Could not read the WAL position of the primary", e);
+        }
+        for (Replica replica : replicas) {
+            replica.probe(primaryPosition);
+        }
+    }
+
+    /**
+     * @return The state of every replica, in the order of bank.replica.urls.
+     */
+    public List<ReplicaStatus> getStatus() {
+        List<ReplicaStatus> status = new ArrayList<>();
+        for (Replica replica : replicas) {
+            status.add(new ReplicaStatus(replica.url, replica.available, replica.lagBytes, replica.lag,
+                    replica.reads.sum(), replica.pool.getMetrics()));
+        }
+        return status;
+    }
+
+    /**
+     * @return The read-only units of work that ran on the primary because no replica could take them.
+     */
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * @return The EntityManagerFactory of every replica, available or not, in the order of bank.replica.urls.
+     */
+    public List<EntityManagerFactory> getEntityManagerFactories() {
+        List<EntityManagerFactory> factories = new ArrayList<>();
+        for (Replica replica : replicas) {
+            factories.add(replica.entityManagerFactory);
+        }
+        return factories;
+    }
+
+    /**
+     * Stops the probes and closes the EntityManagerFactory and the pool of every replica.
+     */
+    @Override
+    public void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            replica.entityManagerFactory.close();
+            replica.pool.close();
+        }
+    }
+
+    private Replica nextInTurn() {
+        int count = replicas.size();
+        int first = Math.floorMod(nextReplica.getAndIncrement(), Math.max(1, count));
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((first + i) % count);
+            if (isEligible(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica leastLoaded() {
+        Replica best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (Replica replica : replicas) {
+            int load = replica.pool.getLoad();
+            if (isEligible(replica) && load < bestLoad) {
+                best = replica;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private boolean isEligible(Replica replica) {
+        Duration lag = replica.lag;
+        return replica.available && (lag == null || lag.compareTo(maxLag) <= 0);
+    }
+
+    private static boolean isPostgres(Connection connection) throws SQLException {
+        return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+    }
+
+    /**
+     * A replica and what its last probe found.
+     */
+    private static final class Replica {
+        final String url;
+        final ConnectionPool pool;
+        final EntityManagerFactory entityManagerFactory;
+        final LongAdder reads = new LongAdder();
+        volatile boolean available = true;
+        volatile long lagBytes = -1;
+        volatile Duration lag;
+        // When the replica was first seen behind the primary since it last caught up; 0 while caught up
+        private long behindSinceNanos;
+        private boolean probed;
+
+        Replica(String url, ConnectionPool pool, EntityManagerFactory entityManagerFactory) {
+            this.url = url;
+            this.pool = pool;
+            this.entityManagerFactory = entityManagerFactory;
+        }
+
+        void probe(String primaryPosition) {
+            try (Connection connection = pool.getDataSource().getConnection()) {
+                long bytes = -1;
+                Duration behind = null;
+                if (primaryPosition != null && isPostgres(connection)) {
+                    try (PreparedStatement statement = connection.prepareStatement(
+                            "SELECT pg_wal_lsn_diff(CAST(? AS pg_lsn), pg_last_wal_replay_lsn()), "
+                                    + "extract(epoch FROM now() - pg_last_xact_replay_timestamp())")) {
+                        statement.setString(1, primaryPosition);
+                        try (ResultSet lagged = statement.executeQuery()) {
+                            lagged.next();
+                            // Both are null where the server is not a standby
+                            if (lagged.getObject(1) != null) {
+                                bytes = Math.max(0, lagged.getLong(1));
+                                behind = lagBehind(bytes, lagged.getDouble(2));
+                            }
+                        }
+                    }
+                }
+                lagBytes = bytes;
+                lag = behind;
+                probed = true;
+                if (!available) {
+                    LOGGER.info("Replica " + url + " is reachable again");
+                }
+                available = true;
+            } catch (SQLException | RuntimeException e) {
+                if (available) {
+                    LOGGER.log(Level.WARNING, "Replica " + url + " could not be probed; reads go elsewhere", e);
+                }
+                available = false;
+            }
+        }
+
+        /**
+         * The age of the last replayed transaction overstates the lag when the primary was idle before
+         * the WAL not yet replayed, so the lag is capped by how long the replica has been seen behind.
+         */
+        private Duration lagBehind(long bytes, double lastReplayAgeSeconds) {
+            long now = System.nanoTime();
+            long lastReplayAge = Math.round(lastReplayAgeSeconds * 1_000_000_000);
+            if (bytes == 0) {
+                behindSinceNanos = 0;
+                return Duration.ZERO;
+            }
+            if (behindSinceNanos == 0) {
+                behindSinceNanos = probed ? now : now - lastReplayAge;
+            }
+            return Duration.ofNanos(Math.max(0, Math.min(lastReplayAge, now - behindSinceNanos)));
+        }
+    }
+}
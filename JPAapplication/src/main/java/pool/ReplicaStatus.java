@@ -0,0 +1,69 @@
+package pool;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time view of a read replica, see {@link ReplicaRouter}.
+ */
+public class ReplicaStatus {
+    private final String url;
+    private final boolean available;
+    private final long lagBytes;
+    private final Duration lag;
+    private final long routedReads;
+    private final PoolMetrics pool;
+
+    ReplicaStatus(String url, boolean available, long lagBytes, Duration lag, long routedReads, PoolMetrics pool) {
+        this.url = url;
+        this.available = available;
+        this.lagBytes = lagBytes;
+        this.lag = lag;
+        this.routedReads = routedReads;
+        this.pool = pool;
+    }
+
+    //    Getters
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return Whether the last probe reached the replica.
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * @return The bytes of primary WAL the replica had not replayed at the last probe, or -1 where
+     * this is not known (the replica is not a PostgreSQL standby).
+     */
+    public long getLagBytes() {
+        return lagBytes;
+    }
+
+    /**
+     * @return How far the replica was behind at the last probe: zero when it had replayed all of the
+     * primary's WAL, otherwise the age of the last transaction it replayed; null where this is not known.
+     */
+    public Duration getLag() {
+        return lag;
+    }
+
+    /**
+     * @return The reads routed to the replica so far.
+     */
+    public long getRoutedReads() {
+        return routedReads;
+    }
+
+    public PoolMetrics getPool() {
+        return pool;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s available=%b lag=%s lagBytes=%d reads=%d pool: %s", url, available,
+                lag == null ? "unknown" : lag.toMillis() + "ms", lagBytes, routedReads, pool);
+    }
+}
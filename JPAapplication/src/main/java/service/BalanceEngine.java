@@ -0,0 +1,528 @@
+package service;
+
+import DAO.TransactionTemplate;
+import entities.Account;
+import entities.BalanceCheckpoint;
+import metrics.OperationStatistics;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An optional mode in which the balances of all accounts live in memory and the database is brought up
+ * to date in the background. The engine loads every balance into a {@link BalanceTable} when it starts;
+ * from then on it is the authority on balances. Transfers are queued to a single writer thread, which
+ * checks and applies them one after another, appends each completed one to a memory-mapped
+ * {@link WriteAheadLog} and, once per batch of up to groupCommitSize transfers, forces the log to disk
+ * and only then completes the batch's futures (group commit). One writer needs no locks at all; the
+ * writer is rarely the limit, as the cost of a transfer is dominated by the log's force.
+ * <p>
+ * A checkpoint thread writes the balances changed since the previous checkpoint to the account table
+ * with JDBC batch updates, every checkpointInterval, and records the log sequence they include in
+ * {@link BalanceCheckpoint}, in the same transaction; the log segments the checkpoint covers are then
+ * deleted. {@link #start()} rebuilds the state after a restart or a crash from the account table and the
+ * log records after the checkpoint.
+ * <p>
+ * While an engine runs, nothing else may change account balances: the other transfer paths of
+ * {@link BankService} must not be used, and accounts opened after the start are unknown to it until the
+ * next start. Striped accounts (see {@link StripedBalanceService}) are refused; merge their stripes first.
+ * The log is the record of the engine's transfers, it writes no ledger entries. Amounts are kept in
+ * whole cents. Configured by the bank.balance-engine.* properties of the persistence unit:
+ * <ul>
+ *     <li>wal-directory: the directory of the log, "balance-wal" by default;</li>
+ *     <li>wal-segment-size-mb: the size of a log segment, 64 by default;</li>
+ *     <li>group-commit-size: the most transfers made durable by one force, 1024 by default;</li>
+ *     <li>checkpoint-interval-seconds: the interval of the checkpoints, 10 by default.</li>
+ * </ul>
+ */
+public class BalanceEngine implements AutoCloseable {
+    public static final String PROPERTY_PREFIX = "bank.balance-engine.";
+
+    private static final Logger LOGGER = Logger.getLogger(BalanceEngine.class.getName());
+    private static final int FETCH_SIZE = 10_000;
+    private static final long POLL_MILLIS = 50;
+
+    private final TransactionTemplate transactionTemplate;
+    private final Path walDirectory;
+    private final int walSegmentSize;
+    private final int groupCommitSize;
+    private final Duration checkpointInterval;
+    private final RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private final BlockingQueue<Request> requests;
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final AtomicInteger checkpointsInFlight = new AtomicInteger();
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    private volatile BalanceTable table;
+    private volatile boolean running;
+    private volatile boolean checkpointFailed;
+    private volatile long checkpointedSequence;
+    private WriteAheadLog wal;
+    private Thread writer;
+    private ExecutorService checkpointer;
+    // Used by the writer thread only
+    private long nextSequence;
+    private long deletedUpTo;
+    private long lastCheckpointNanos;
+
+    private int recoveredAccounts;
+    private long replayedTransfers;
+    private Duration recoveryTime = Duration.ZERO;
+
+    /**
+     * Constructs a BalanceEngine, not yet started.
+     *
+     * @param transactionTemplate The template the loading and the checkpoints run their transactions with.
+     * @param walDirectory        The directory of the write-ahead log.
+     * @param walSegmentSize      The size of a log segment in bytes.
+     * @param groupCommitSize     The most transfers made durable by one force of the log.
+     * @param checkpointInterval  The interval of the checkpoints.
+     */
+    public BalanceEngine(TransactionTemplate transactionTemplate, Path walDirectory, int walSegmentSize,
+                         int groupCommitSize, Duration checkpointInterval) {
+        if (groupCommitSize < 1) {
+            throw new IllegalArgumentException("groupCommitSize must be at least 1");
+        }
+        this.transactionTemplate = transactionTemplate;
+        this.walDirectory = walDirectory;
+        this.walSegmentSize = walSegmentSize;
+        this.groupCommitSize = groupCommitSize;
+        this.checkpointInterval = checkpointInterval;
+        this.requests = new ArrayBlockingQueue<>(groupCommitSize * 16);
+    }
+
+    /**
+     * Reads an engine from the bank.balance-engine.* properties, using the default for every property not set.
+     *
+     * @param transactionTemplate The template the loading and the checkpoints run their transactions with.
+     * @param properties          The properties of the persistence unit, e.g. those of its EntityManagerFactory.
+     * @return The configured engine, not yet started.
+     */
+    public static BalanceEngine fromProperties(TransactionTemplate transactionTemplate, Map<String, ?> properties) {
+        return new BalanceEngine(transactionTemplate,
+                Paths.get(setting(properties, "wal-directory", "balance-wal")),
+                Integer.parseInt(setting(properties, "wal-segment-size-mb", 64)) << 20,
+                Integer.parseInt(setting(properties, "group-commit-size", 1024)),
+                Duration.ofSeconds(Long.parseLong(setting(properties, "checkpoint-interval-seconds", 10))));
+    }
+
+    /**
+     * Loads the balances from the account table, applies the transfers the log holds beyond the last
+     * checkpoint and starts the writer; the time it took is {@link #getRecoveryTime()}.
+     *
+     * @throws IllegalStateException if an account is striped or the log refers to an unknown account.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            throw new IllegalStateException("The balance engine is already started");
+        }
+        long start = System.nanoTime();
+        long checkpoint = transactionTemplate.inTransaction(em -> {
+            try {
+                table = loadBalances(em.unwrap(Connection.class));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not load the account balances", e);
+            }
+            BalanceCheckpoint row = em.find(BalanceCheckpoint.class, BalanceCheckpoint.ID);
+            return row == null ? 0L : row.getWal_sequence();
+        });
+        BalanceTable balances = table;
+
+        wal = new WriteAheadLog(walDirectory, walSegmentSize);
+        long[] replayed = new long[1];
+        long last = wal.replay(checkpoint, (sequence, idAccountFrom, idAccountTo, cents) -> {
+            int from = balances.find(idAccountFrom);
+            int to = balances.find(idAccountTo);
+            if (from < 0 || to < 0) {
+                throw new IllegalStateException("Transfer " + sequence + " of the write-ahead log refers to an account "
+                        + "that does not exist: " + idAccountFrom + " -> " + idAccountTo);
+            }
+            // Checked when it was logged; marked dirty, so the next checkpoint writes it
+            balances.add(from, -cents);
+            balances.add(to, cents);
+            replayed[0]++;
+        });
+        nextSequence = last + 1;
+        wal.startSegment(nextSequence);
+        checkpointedSequence = checkpoint;
+        deletedUpTo = 0;
+        checkpointFailed = false;
+        recoveredAccounts = balances.size();
+        replayedTransfers = replayed[0];
+        recoveryTime = Duration.ofNanos(System.nanoTime() - start);
+        LOGGER.info(String.format("Balance engine loaded %d accounts and replayed %d transfers after checkpoint %d in %d ms",
+                recoveredAccounts, replayedTransfers, checkpoint, recoveryTime.toMillis()));
+
+        checkpointer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "balance-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lastCheckpointNanos = System.nanoTime();
+        running = true;
+        writer = new Thread(this::runWriter, "balance-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a transfer; waits while the queue is full.
+     *
+     * @param transferAmount The amount to transfer.
+     * @param idAccountFrom  The ID of the source account.
+     * @param idAccountTo    The ID of the destination account.
+     * @return The outcome, complete once a completed transfer is durable in the log.
+     * @throws IllegalStateException if the engine is not running.
+     */
+    public CompletableFuture<TransferStatus> makeMoneyTransfer(Integer transferAmount, Integer idAccountFrom,
+                                                               Integer idAccountTo) {
+        if (transferAmount == null || transferAmount <= 0 || idAccountFrom == null || idAccountTo == null
+                || idAccountFrom.equals(idAccountTo)) {
+            return CompletableFuture.completedFuture(TransferStatus.INVALID_REQUEST);
+        }
+        Request request = Request.transfer(idAccountFrom, idAccountTo, transferAmount * 100L);
+        enqueue(request);
+        return request.transfer;
+    }
+
+    /**
+     * Reads a balance without waiting for the writer; it includes the transfers applied so far, some of
+     * which may not be durable yet.
+     *
+     * @param idAccount The ID of the account.
+     * @return The balance, or null if the engine does not know the account.
+     */
+    public Double findBalance(Integer idAccount) {
+        BalanceTable balances = table;
+        int slot = balances == null || idAccount == null ? -1 : balances.find(idAccount);
+        return slot < 0 ? null : balances.balanceAt(slot) / 100.0;
+    }
+
+    /**
+     * Writes every balance changed so far to the account table and waits until it is committed.
+     *
+     * @return The log sequence the checkpoint includes.
+     * @throws IllegalStateException if the engine is not running or the checkpoint failed.
+     */
+    public long checkpoint() {
+        Request request = Request.checkpoint();
+        enqueue(request);
+        try {
+            return request.checkpoint.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("The checkpoint failed", e.getCause());
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return The sequence of the last transfer written to the account table.
+     */
+    public long getCheckpointedSequence() {
+        return checkpointedSequence;
+    }
+
+    public int getRecoveredAccounts() {
+        return recoveredAccounts;
+    }
+
+    /**
+     * @return The number of log records applied on top of the last checkpoint by {@link #start()}.
+     */
+    public long getReplayedTransfers() {
+        return replayedTransfers;
+    }
+
+    public Duration getRecoveryTime() {
+        return recoveryTime;
+    }
+
+    /**
+     * Applies the queued transfers, writes a last checkpoint and stops the threads. Transfers queued
+     * after close began are refused.
+     */
+    @Override
+    public synchronized void close() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(5, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        wal.close();
+        writer = null;
+    }
+
+    private void enqueue(Request request) {
+        submitting.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IllegalStateException("The balance engine is not running");
+            }
+            requests.put(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queuing a request", e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    private void runWriter() {
+        List<Request> batch = new ArrayList<>(groupCommitSize);
+        List<CompletableFuture<Long>> checkpointWaiters = new ArrayList<>();
+        try {
+            while (true) {
+                Request first = requests.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Checked in this order so that a request queued after close began is not missed
+                    if (!running && submitting.get() == 0 && requests.isEmpty()) {
+                        break;
+                    }
+                } else {
+                    batch.add(first);
+                    requests.drainTo(batch, groupCommitSize - 1);
+                    applyBatch(batch, checkpointWaiters);
+                    batch.clear();
+                }
+                if (!checkpointWaiters.isEmpty() || isCheckpointDue()) {
+                    submitCheckpoint(new ArrayList<>(checkpointWaiters));
+                    checkpointWaiters.clear();
+                }
+                deleteCheckpointedSegments();
+            }
+            submitCheckpoint(checkpointWaiters);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(batch, checkpointWaiters, e);
+        } catch (RuntimeException | Error e) {
+            LOGGER.log(Level.SEVERE, "The balance engine stopped", e);
+            fail(batch, checkpointWaiters, e);
+        }
+    }
+
+    private void applyBatch(List<Request> batch, List<CompletableFuture<Long>> checkpointWaiters) {
+        long start = System.nanoTime();
+        BalanceTable balances = table;
+        TransferStatus[] statuses = new TransferStatus[batch.size()];
+        boolean appended = false;
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            if (request.checkpoint != null) {
+                checkpointWaiters.add(request.checkpoint);
+                continue;
+            }
+            int from = balances.find(request.idAccountFrom);
+            int to = balances.find(request.idAccountTo);
+            if (from < 0 || to < 0) {
+                statuses[i] = TransferStatus.ACCOUNT_NOT_FOUND;
+            } else if (balances.balanceAt(from) < request.cents) {
+                statuses[i] = TransferStatus.INSUFFICIENT_BALANCE;
+            } else {
+                balances.add(from, -request.cents);
+                balances.add(to, request.cents);
+                wal.append(nextSequence++, request.idAccountFrom, request.idAccountTo, request.cents);
+                statuses[i] = TransferStatus.COMPLETED;
+                appended = true;
+            }
+        }
+        if (appended) {
+            wal.sync();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (statuses[i] != null) {
+                batch.get(i).transfer.complete(statuses[i]);
+            }
+        }
+        operations.record("BalanceEngine.groupCommit", start);
+    }
+
+    private boolean isCheckpointDue() {
+        return table.dirtyCount() > 0 && checkpointsInFlight.get() == 0
+                && System.nanoTime() - lastCheckpointNanos >= checkpointInterval.toNanos();
+    }
+
+    /**
+     * Takes the dirty balances and hands them to the checkpoint thread. Checkpoints run one at a time in
+     * the order they were taken, as each holds only what changed since the one before.
+     */
+    private void submitCheckpoint(List<CompletableFuture<Long>> waiters) {
+        BalanceTable.DirtyBalances dirty = table.takeDirty();
+        long upToSequence = nextSequence - 1;
+        lastCheckpointNanos = System.nanoTime();
+        checkpointsInFlight.incrementAndGet();
+        checkpointer.execute(() -> {
+            try {
+                if (checkpointFailed) {
+                    throw new IllegalStateException("An earlier checkpoint failed; the write-ahead log still holds its transfers");
+                }
+                writeCheckpoint(dirty, upToSequence);
+                checkpointedSequence = upToSequence;
+                waiters.forEach(waiter -> waiter.complete(upToSequence));
+            } catch (RuntimeException e) {
+                if (!checkpointFailed) {
+                    // Later checkpoints would not include these balances, so none may be recorded
+                    checkpointFailed = true;
+                    LOGGER.log(Level.SEVERE, "Checkpoint " + upToSequence + " failed; no further checkpoints are written", e);
+                }
+                waiters.forEach(waiter -> waiter.completeExceptionally(e));
+            } finally {
+                checkpointsInFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private void writeCheckpoint(BalanceTable.DirtyBalances dirty, long upToSequence) {
+        long start = System.nanoTime();
+        try {
+            retryPolicy.execute(() -> {
+                transactionTemplate.runInTransaction(em -> {
+                    try {
+                        writeBalances(em.unwrap(Connection.class), dirty);
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Could not write the checkpoint balances", e);
+                    }
+                    BalanceCheckpoint row = em.find(BalanceCheckpoint.class, BalanceCheckpoint.ID);
+                    if (row == null) {
+                        em.persist(new BalanceCheckpoint(upToSequence, new Date()));
+                    } else {
+                        row.setWal_sequence(upToSequence);
+                        row.setTaken_at(new Date());
+                    }
+                });
+                return null;
+            });
+            // The balances were changed behind the persistence provider's back
+            if (dirty.size() > 0) {
+                transactionTemplate.evictFromCache(Account.class);
+            }
+        } finally {
+            operations.record("BalanceEngine.checkpoint", start);
+        }
+    }
+
+    private void deleteCheckpointedSegments() {
+        long checkpointed = checkpointedSequence;
+        if (checkpointed > deletedUpTo) {
+            wal.deleteUpTo(checkpointed);
+            deletedUpTo = checkpointed;
+        }
+    }
+
+    private void fail(List<Request> batch, List<CompletableFuture<Long>> checkpointWaiters, Throwable cause) {
+        running = false;
+        List<Request> pending = new ArrayList<>(batch);
+        requests.drainTo(pending);
+        for (Request request : pending) {
+            (request.transfer != null ? request.transfer : request.checkpoint).completeExceptionally(cause);
+        }
+        checkpointWaiters.forEach(waiter -> waiter.completeExceptionally(cause));
+    }
+
+    private static BalanceTable loadBalances(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet stripes = statement.executeQuery("SELECT count(*) FROM account_stripe")) {
+                stripes.next();
+                if (stripes.getLong(1) > 0) {
+                    throw new IllegalStateException("The balance engine does not support striped accounts");
+                }
+            }
+            int accounts;
+            try (ResultSet count = statement.executeQuery("SELECT count(*) FROM account")) {
+                count.next();
+                accounts = Math.toIntExact(count.getLong(1));
+            }
+            BalanceTable balances = new BalanceTable(accounts);
+            // Streamed with a cursor (the connection is not in auto-commit mode), not read into memory at once
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet rows = statement.executeQuery("SELECT id_account, account_balance FROM account")) {
+                while (rows.next()) {
+                    balances.put(rows.getInt(1), Math.round(rows.getDouble(2) * 100));
+                }
+            }
+            return balances;
+        }
+    }
+
+    private static void writeBalances(Connection connection, BalanceTable.DirtyBalances dirty) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE account SET account_balance = ?, version = version + 1 WHERE id_account = ?")) {
+            for (int i = 0; i < dirty.size(); i++) {
+                statement.setDouble(1, dirty.balances[i] / 100.0);
+                statement.setInt(2, dirty.ids[i]);
+                statement.addBatch();
+                if ((i + 1) % BatchTransferService.IN_LIST_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            if (dirty.size() % BatchTransferService.IN_LIST_SIZE != 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static String setting(Map<String, ?> properties, String name, Object defaultValue) {
+        Object value = properties.get(PROPERTY_PREFIX + name);
+        return String.valueOf(value == null ? defaultValue : value).trim();
+    }
+
+    /**
+     * A transfer, or a request for a checkpoint, queued to the writer.
+     */
+    private static final class Request {
+        final int idAccountFrom;
+        final int idAccountTo;
+        final long cents;
+        final CompletableFuture<TransferStatus> transfer;
+        final CompletableFuture<Long> checkpoint;
+
+        private Request(int idAccountFrom, int idAccountTo, long cents, CompletableFuture<TransferStatus> transfer,
+                        CompletableFuture<Long> checkpoint) {
+            this.idAccountFrom = idAccountFrom;
+            this.idAccountTo = idAccountTo;
+            this.cents = cents;
+            this.transfer = transfer;
+            this.checkpoint = checkpoint;
+        }
+
+        static Request transfer(int idAccountFrom, int idAccountTo, long cents) {
+            return new Request(idAccountFrom, idAccountTo, cents, new CompletableFuture<>(), null);
+        }
+
+        static Request checkpoint() {
+            return new Request(0, 0, 0, null, new CompletableFuture<>());
+        }
+    }
+}
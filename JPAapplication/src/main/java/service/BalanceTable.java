@@ -0,0 +1,149 @@
+package service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The balances of {@link BalanceEngine}, in cents, in an open-addressing hash table of primitive arrays
+ * keyed by id_account: no boxing and no entry objects, so ten million accounts take a few hundred
+ * megabytes. The accounts are put while the engine loads, before its writer starts, and the table never
+ * grows afterwards. Only the writer thread changes balances; other threads may read them at any time and
+ * see each balance whole, though not necessarily the latest one. The table also tracks which balances
+ * changed since they were last taken for a checkpoint.
+ */
+class BalanceTable {
+    private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(long[].class);
+    /** Marks a free slot; id_account values start at 1. */
+    private static final int FREE = 0;
+
+    private final int[] ids;
+    private final long[] balances;
+    private final int mask;
+    private final boolean[] dirty;
+    private int[] dirtySlots = new int[1024];
+    private int dirtyCount;
+    private int size;
+
+    /**
+     * Constructs a BalanceTable.
+     *
+     * @param expectedAccounts The number of accounts that will be put; the table is sized for at most half full.
+     */
+    BalanceTable(int expectedAccounts) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedAccounts) * 2 - 1) << 1;
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Too many accounts: " + expectedAccounts);
+        }
+        ids = new int[capacity];
+        balances = new long[capacity];
+        dirty = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds an account, or replaces its balance.
+     *
+     * @param id    The ID of the account, greater than 0.
+     * @param cents The balance in cents.
+     */
+    void put(int id, long cents) {
+        if (id == FREE) {
+            throw new IllegalArgumentException("Account id 0 cannot be stored");
+        }
+        int slot = slotOf(id);
+        if (ids[slot] != id) {
+            if (size * 2 >= ids.length) {
+                throw new IllegalStateException("The balance table is full at " + size + " accounts");
+            }
+            ids[slot] = id;
+            size++;
+        }
+        BALANCES.setOpaque(balances, slot, cents);
+    }
+
+    /**
+     * @param id The ID of the account.
+     * @return The slot of the account, or -1 if it is not in the table.
+     */
+    int find(int id) {
+        if (id == FREE) {
+            return -1;
+        }
+        int slot = slotOf(id);
+        return ids[slot] == id ? slot : -1;
+    }
+
+    long balanceAt(int slot) {
+        return (long) BALANCES.getOpaque(balances, slot);
+    }
+
+    /**
+     * Changes a balance and marks it dirty; called by the writer only.
+     *
+     * @param slot  The slot of the account, see {@link #find(int)}.
+     * @param delta The amount in cents added to the balance, negative for a debit.
+     */
+    void add(int slot, long delta) {
+        BALANCES.setOpaque(balances, slot, (long) BALANCES.getOpaque(balances, slot) + delta);
+        if (!dirty[slot]) {
+            dirty[slot] = true;
+            if (dirtyCount == dirtySlots.length) {
+                dirtySlots = Arrays.copyOf(dirtySlots, dirtySlots.length * 2);
+            }
+            dirtySlots[dirtyCount++] = slot;
+        }
+    }
+
+    int dirtyCount() {
+        return dirtyCount;
+    }
+
+    /**
+     * Copies the dirty balances and marks them clean; called by the writer only.
+     *
+     * @return The IDs and balances that changed since the previous call.
+     */
+    DirtyBalances takeDirty() {
+        int[] dirtyIds = new int[dirtyCount];
+        long[] dirtyBalances = new long[dirtyCount];
+        for (int i = 0; i < dirtyCount; i++) {
+            int slot = dirtySlots[i];
+            dirtyIds[i] = ids[slot];
+            dirtyBalances[i] = balanceAt(slot);
+            dirty[slot] = false;
+        }
+        dirtyCount = 0;
+        return new DirtyBalances(dirtyIds, dirtyBalances);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slotOf(int id) {
+        // Account ids are mostly consecutive; the multiplication spreads them over the whole table
+        int slot = (id * 0x9E3779B9) & mask;
+        while (ids[slot] != FREE && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Balances taken for a checkpoint, in cents.
+     */
+    static final class DirtyBalances {
+        final int[] ids;
+        final long[] balances;
+
+        DirtyBalances(int[] ids, long[] balances) {
+            this.ids = ids;
+            this.balances = balances;
+        }
+
+        int size() {
+            return ids.length;
+        }
+    }
+}
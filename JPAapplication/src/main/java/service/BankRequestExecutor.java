@@ -0,0 +1,146 @@
+package service;
+
+import entities.Account;
+import entities.Bank;
+import metrics.OperationStatistics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Serves many concurrent blocking {@link BankService} requests: each operation runs on a thread of its
+ * own, normally a virtual thread, in its own unit of work with its own EntityManager, as all
+ * BankService operations do. At most maxConcurrentOperations run at once, normally the maximum size of
+ * the connection pool, so the requests beyond it wait for a permit as parked threads instead of queuing
+ * on the pool until its connection timeout. The time spent waiting is recorded in
+ * {@link OperationStatistics} as "BankRequestExecutor.permitWait".
+ */
+public class BankRequestExecutor implements AutoCloseable {
+    private final BankService bankService;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrentOperations;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs a BankRequestExecutor.
+     *
+     * @param bankService             The service the operations are called on.
+     * @param executor                Runs the operations; closed with this executor.
+     * @param maxConcurrentOperations The most operations that may run at once.
+     */
+    public BankRequestExecutor(BankService bankService, ExecutorService executor, int maxConcurrentOperations) {
+        if (maxConcurrentOperations < 1) {
+            throw new IllegalArgumentException("maxConcurrentOperations must be at least 1");
+        }
+        this.bankService = bankService;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrentOperations, true);
+        this.maxConcurrentOperations = maxConcurrentOperations;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per operation.
+     *
+     * @param bankService             The service the operations are called on.
+     * @param maxConcurrentOperations The most operations that may run at once, e.g. the maximum pool size.
+     * @return The executor.
+     */
+    public static BankRequestExecutor onVirtualThreads(BankService bankService, int maxConcurrentOperations) {
+        return new BankRequestExecutor(bankService, Executors.newVirtualThreadPerTaskExecutor(), maxConcurrentOperations);
+    }
+
+    /**
+     * Creates an executor that runs the operations on a fixed pool of platform threads.
+     *
+     * @param bankService             The service the operations are called on.
+     * @param threads                 The number of threads.
+     * @param maxConcurrentOperations The most operations that may run at once, e.g. the maximum pool size.
+     * @return The executor.
+     */
+    public static BankRequestExecutor onPlatformThreads(BankService bankService, int threads,
+                                                        int maxConcurrentOperations) {
+        return new BankRequestExecutor(bankService,
+                Executors.newFixedThreadPool(threads, platformThreadFactory()), maxConcurrentOperations);
+    }
+
+    /**
+     * Runs an operation once a permit is free.
+     *
+     * @param operation The operation, called with the service.
+     * @return The result of the operation; completes exceptionally with what the operation threw.
+     */
+    public <T> CompletableFuture<T> submit(Function<BankService, T> operation) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            operations.record("BankRequestExecutor.permitWait", start);
+            try {
+                return operation.apply(bankService);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    public CompletableFuture<TransferStatus> makeMoneyTransfer(Integer transferAmount, Integer idAccountFrom,
+                                                               Integer idAccountTo) {
+        return submit(service -> service.makeMoneyTransfer(transferAmount, idAccountFrom, idAccountTo));
+    }
+
+    public CompletableFuture<Account> findAccount(Integer id) {
+        return submit(service -> service.findAccount(id));
+    }
+
+    public CompletableFuture<Bank> findBank(Integer id) {
+        return submit(service -> service.findBank(id));
+    }
+
+    public int getMaxConcurrentOperations() {
+        return maxConcurrentOperations;
+    }
+
+    /**
+     * @return The number of operations waiting for a permit, an estimate.
+     */
+    public int getWaitingOperations() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Lets the submitted operations finish, waiting up to a minute, and stops the threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "bank-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
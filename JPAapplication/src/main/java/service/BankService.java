@@ -0,0 +1,974 @@
+package service;
+
+import DAO.*;
+import entities.*;
+import jakarta.persistence.EntityManagerFactory;
+import metrics.OperationStatistics;
+
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * This class provides various methods for performing operations related to banking entities
+ * and database manipulation. Every operation runs in its own unit of work, so a single instance
+ * may be shared by many request threads. Every operation is timed in {@link OperationStatistics}.
+ * The reports (person cards, account holders, customer and person pages) run on a read replica when
+ * the TransactionTemplate has one, see pool.ReplicaRouter; the writes and the lookups by ID stay on the
+ * primary and so see the writes before them.
+ */
+public class BankService {
+    private static final Logger LOGGER = Logger.getLogger(BankService.class.getName());
+    private static final int DISPLAY_PAGE_SIZE = 100;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AccountDAO accountDAO;
+    private final BankDAO bankDAO;
+    private final CustomerDAO customerDAO;
+    private final EducationDAO educationDAO;
+    private final EmployeeDAO employeeDAO;
+    private final Payment_cardDAO paymentCardDAO;
+    private final PersonDAO personDAO;
+    private final PersonCardDAO personCardDAO;
+    private final TransferEngine transferEngine;
+    private final BatchTransferService batchTransferService;
+    private final PersonImportService personImportService;
+    private final StripedBalanceService stripedBalanceService;
+    private final LedgerService ledgerService;
+    private final RetryPolicy retryPolicy;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+    private volatile Boolean personCardsProjected;
+
+    /**
+     * Constructs a BankService instance with initialized DAOs.
+     *
+     * @param emf The EntityManagerFactory every unit of work takes its EntityManager from.
+     */
+    public BankService(EntityManagerFactory emf) {
+        this(new TransactionTemplate(emf));
+    }
+
+    /**
+     * Constructs a BankService instance with initialized DAOs and the retry policy configured by the
+     * bank.retry.* properties of the persistence unit.
+     *
+     * @param transactionTemplate The template every unit of work is run with.
+     */
+    public BankService(TransactionTemplate transactionTemplate) {
+        this(transactionTemplate, RetryPolicy.fromProperties(transactionTemplate.getEntityManagerFactory().getProperties()));
+    }
+
+    /**
+     * Constructs a BankService instance with initialized DAOs.
+     *
+     * @param transactionTemplate The template every unit of work is run with.
+     * @param retryPolicy         The policy applied when a write fails with a conflict, deadlock or lock timeout.
+     */
+    public BankService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this.transactionTemplate = transactionTemplate;
+        this.retryPolicy = retryPolicy;
+        accountDAO = new AccountDAO(transactionTemplate);
+        bankDAO = new BankDAO(transactionTemplate);
+        customerDAO = new CustomerDAO(transactionTemplate);
+        educationDAO = new EducationDAO(transactionTemplate);
+        employeeDAO = new EmployeeDAO(transactionTemplate);
+        paymentCardDAO = new Payment_cardDAO(transactionTemplate);
+        personDAO = new PersonDAO(transactionTemplate);
+        personCardDAO = new PersonCardDAO(transactionTemplate);
+        stripedBalanceService = new StripedBalanceService(transactionTemplate, retryPolicy);
+        transferEngine = new TransferEngine(transactionTemplate, retryPolicy, stripedBalanceService);
+        batchTransferService = new BatchTransferService(transactionTemplate, retryPolicy);
+        personImportService = new PersonImportService(transactionTemplate, retryPolicy);
+        ledgerService = new LedgerService(transactionTemplate, retryPolicy);
+    }
+
+
+    /**
+     * Transfers money between two accounts. The transfer runs in its own transaction, locks both
+     * account rows and is retried on deadlocks, so it may be called from several threads at once.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @return The outcome of the transfer, or null if it failed with an exception.
+     */
+    public TransferStatus makeMoneyTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return makeMoneyTransfer(tranferAmount, idAccountFrom, idAccountTo, TransferMode.LOCKED_ENTITIES);
+    }
+
+    /**
+     * Transfers money between two accounts in one round trip to the database, with the transfer_funds
+     * function of sql/transfer_funds.sql (see {@link TransferMode#STORED_FUNCTION}). Where the function
+     * does not exist, e.g. on a database other than PostgreSQL, the transfer takes the JPA path of
+     * {@link #makeMoneyTransfer(Integer, Integer, Integer)}.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @return The outcome of the transfer, or null if it failed with an exception.
+     */
+    public TransferStatus transferFunds(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return makeMoneyTransfer(tranferAmount, idAccountFrom, idAccountTo, TransferMode.STORED_FUNCTION);
+    }
+
+    /**
+     * Transfers money between two accounts, see {@link #makeMoneyTransfer(Integer, Integer, Integer)}.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @param mode          How the balances are changed; {@link TransferMode#GUARDED_UPDATE} reads no entities.
+     * @return The outcome of the transfer, or null if it failed with an exception.
+     */
+    public TransferStatus makeMoneyTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo,
+                                            TransferMode mode) {
+        long start = System.nanoTime();
+        try {
+            TransferStatus status = transferEngine.transfer(tranferAmount, idAccountFrom, idAccountTo, mode);
+            if (status != TransferStatus.COMPLETED) {
+                System.out.println("Transfer rejected: " + status);
+            }
+            return status;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Transfer of " + tranferAmount + " from account " + idAccountFrom
+                    + " to account " + idAccountTo + " failed", e);
+            return null;
+        } finally {
+            operations.record("BankService.makeMoneyTransfer", start);
+        }
+    }
+
+    /**
+     * Splits the balance of a very hot account, e.g. a settlement account that receives thousands of
+     * credits per second, over several stripe rows, so that concurrent transfers to it do not all wait
+     * for the lock of its single account row.
+     *
+     * @param idAccount The ID of the account.
+     * @param stripes   The number of stripes; about the number of concurrent writers of the account.
+     * @return false if the account does not exist.
+     */
+    public boolean stripeAccount(Integer idAccount, int stripes) {
+        long start = System.nanoTime();
+        try {
+            return stripedBalanceService.stripeAccount(idAccount, stripes);
+        } finally {
+            operations.record("BankService.stripeAccount", start);
+        }
+    }
+
+    /**
+     * Moves the balance of a striped account back onto its account row, see {@link #stripeAccount}.
+     *
+     * @param idAccount The ID of the account.
+     */
+    public void unstripeAccount(Integer idAccount) {
+        long start = System.nanoTime();
+        try {
+            stripedBalanceService.unstripeAccount(idAccount);
+        } finally {
+            operations.record("BankService.unstripeAccount", start);
+        }
+    }
+
+    /**
+     * Finds the balance an account had at a past instant, from the transfer ledger.
+     *
+     * @param idAccount The ID of the account.
+     * @param at        The instant.
+     * @return The balance at the instant, or null if the account does not exist.
+     */
+    public Double findBalanceAt(Integer idAccount, Date at) {
+        long start = System.nanoTime();
+        try {
+            return ledgerService.balanceAt(idAccount, at);
+        } finally {
+            operations.record("BankService.findBalanceAt", start);
+        }
+    }
+
+    /**
+     * Snapshots the balances of the accounts that moved since their last snapshot, which keeps
+     * {@link #findBalanceAt} fast; meant to be run periodically, e.g. every night.
+     *
+     * @return The number of snapshots taken.
+     */
+    public int takeBalanceSnapshots() {
+        long start = System.nanoTime();
+        try {
+            return ledgerService.takeSnapshots();
+        } finally {
+            operations.record("BankService.takeBalanceSnapshots", start);
+        }
+    }
+
+    /**
+     * Creates the monthly partitions of the transfer ledger for the coming months; PostgreSQL only.
+     *
+     * @param monthsAhead The number of months after the current one to create.
+     */
+    public void ensureLedgerPartitions(int monthsAhead) {
+        long start = System.nanoTime();
+        try {
+            ledgerService.ensurePartitions(monthsAhead);
+        } finally {
+            operations.record("BankService.ensureLedgerPartitions", start);
+        }
+    }
+
+    /**
+     * Settles a list of transfers, e.g. an end-of-day payment file, with a few statements per chunk
+     * instead of a transaction per transfer.
+     *
+     * @param transfers The transfers to settle, applied in list order.
+     * @param mode      Whether the whole list commits atomically or chunk by chunk.
+     * @param chunkSize The number of transfers per transaction in {@link BatchMode#COMMIT_PER_CHUNK} mode.
+     * @return The accept/reject outcome of every transfer, or null if settlement failed with an exception.
+     */
+    public BatchTransferResult settleTransfers(List<Transfer> transfers, BatchMode mode, int chunkSize) {
+        long start = System.nanoTime();
+        try {
+            BatchTransferResult result = batchTransferService.settle(transfers, mode, chunkSize);
+            System.out.println("Settled transfers: " + result);
+            return result;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Settlement of " + transfers.size() + " transfers failed", e);
+            return null;
+        } finally {
+            operations.record("BankService.settleTransfers", start);
+        }
+    }
+
+    /**
+     * Imports persons, customers and employees from CSV in bulk, e.g. when a partner bank is onboarded.
+     *
+     * @param csv  The CSV input, starting with the header line described in {@link PersonImportService#CSV_HEADER}.
+     * @param mode Whether the import commits as a whole or chunk by chunk; chunk by chunk suits very large files.
+     * @return The number of imported rows and the import rate, or null if the import failed with an exception.
+     */
+    public PersonImportResult importPersons(Reader csv, BatchMode mode) {
+        long start = System.nanoTime();
+        try {
+            PersonImportResult result = personImportService.importPersons(csv, mode);
+            System.out.println("Imported persons: " + result);
+            return result;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Person import failed", e);
+            return null;
+        } finally {
+            operations.record("BankService.importPersons", start);
+        }
+    }
+
+    /**
+     * Prints every row of the person_card projection, the payment cards with the persons they belong to.
+     * The projection is a table kept up to date by triggers, see sql/person_card_projection.sql, so
+     * reading it neither takes DDL locks nor joins person and payment_card. Where the triggers are
+     * missing the rows are read by joining the two tables instead.
+     */
+    public void displayPersonCards() {
+        long start = System.nanoTime();
+        try {
+            boolean projected = isPersonCardProjected();
+            List<PersonCard> personCards = transactionTemplate.withReadOnlyEntityManager(em -> personCardDAO.findAll(projected));
+            for (PersonCard personCard : personCards) {
+                System.out.println(personCard);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not display the person cards", e);
+        } finally {
+            operations.record("BankService.displayPersonCards", start);
+        }
+    }
+
+    /**
+     * Finds the payment cards of a person in the person_card projection.
+     *
+     * @param birthCertificateNumber The birth certificate number of the person.
+     * @return The person's cards ordered by card number; empty if there are none.
+     */
+    public List<PersonCard> findPersonCards(String birthCertificateNumber) {
+        long start = System.nanoTime();
+        try {
+            boolean projected = isPersonCardProjected();
+            return transactionTemplate.withReadOnlyEntityManager(em -> personCardDAO.findByBirthCertificateNumber(birthCertificateNumber, projected));
+        } finally {
+            operations.record("BankService.findPersonCards", start);
+        }
+    }
+
+    /**
+     * Finds a payment card and the person it belongs to in the person_card projection.
+     *
+     * @param cardNumber The card number.
+     * @return The card, or null if no card with that number belongs to a person.
+     */
+    public PersonCard findPersonCardByCardNumber(String cardNumber) {
+        long start = System.nanoTime();
+        try {
+            boolean projected = isPersonCardProjected();
+            return transactionTemplate.withReadOnlyEntityManager(em -> personCardDAO.findByCardNumber(cardNumber, projected));
+        } finally {
+            operations.record("BankService.findPersonCardByCardNumber", start);
+        }
+    }
+
+    /**
+     * Checks once, before the first person card read, whether the triggers maintaining person_card are
+     * installed; a schema generated from the entities has the table but not the triggers.
+     */
+    private boolean isPersonCardProjected() {
+        Boolean projected = personCardsProjected;
+        if (projected == null) {
+            projected = transactionTemplate.inTransaction(em -> personCardDAO.hasProjectionTriggers());
+            if (!projected) {
+                LOGGER.warning("The person_card triggers are missing (see sql/person_card_projection.sql), "
+                        + "person cards are read by joining person and payment_card");
+            }
+            personCardsProjected = projected;
+        }
+        return projected;
+    }
+
+    /**
+     * Creates a new bank entity if a bank with the provided IBAN doesn't already exist.
+     *
+     * @param bankName  The name of the new bank.
+     * @param mainOffice The main office of the new bank.
+     * @param iban      The IBAN of the new bank.
+     */
+    public void createNewBank(String bankName, String mainOffice, String iban) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> {
+                // Check if a bank with the given IBAN already exists
+                Bank existingBank = bankDAO.findBankByIban(iban);
+                if (existingBank != null) {
+                    System.out.println("A bank with the same IBAN already exists.");
+                    return;
+                }
+
+                // Create and persist the new bank
+                Bank newBank = new Bank();
+                newBank.setBank_name(bankName);
+                newBank.setMain_office(mainOffice);
+                newBank.setIban(iban);
+                bankDAO.createBank(newBank);
+
+                // Retrieve the bank details from the database using the IBAN
+                Object[] row = bankDAO.findBankRowByIban(iban);
+
+                // Print the retrieved bank details
+                if (row != null) {
+                    System.out.println("Bank ID: " + row[0]);
+                    System.out.println("Bank Name: " + row[1]);
+                    System.out.println("Main Office: " + row[2]);
+                    System.out.println("IBAN: " + row[3]);
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not create the bank with IBAN " + iban, e);
+        } finally {
+            operations.record("BankService.createNewBank", start);
+        }
+    }
+
+    /**
+     * Deletes a bank entity with the specified IBAN if it exists.
+     *
+     * @param iban The IBAN of the bank to delete.
+     */
+    public void deleteInsertedBank(String iban) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> {
+                Bank bankToDelete = bankDAO.findBankByIban(iban);
+                if (bankToDelete == null) {
+                    System.out.println("Bank with IBAN " + iban + " not found.");
+                    return;
+                }
+
+                bankDAO.deleteBank(bankToDelete.getId_bank());
+                System.out.println("Bank with IBAN " + iban + " deleted successfully.");
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Could not delete the bank with IBAN " + iban, e);
+        } finally {
+            operations.record("BankService.deleteInsertedBank", start);
+        }
+    }
+
+    /**
+     * Creates a trigger function to check account balance and tests it with invalid data insertion.
+     */
+    public void createTriggerCheckItDropIt() {
+        long start = System.nanoTime();
+        try {
+            try {
+                transactionTemplate.runInTransaction(em -> {
+                    // Drop the trigger if it exists
+                    em.createNativeQuery("DROP TRIGGER IF EXISTS account_balance_trigger  ON account")
+                            .executeUpdate();
+
+                    // Create or replace the trigger function
+                    em.createNativeQuery("CREATE OR REPLACE FUNCTION check_balance_trigger() RETURNS TRIGGER AS $$\n" +
+                                    "BEGIN\n" +
+                                    "    IF NEW.account_balance IS NULL OR NEW.account_balance < 0 THEN\n" +
+                                    "        RAISE EXCEPTION 'Account balance cannot be null or negative';\n" +
+                                    "    END IF;\n" +
+                                    "    RETURN NEW;\n" +
+                                    "END;\n" +
+                                    "$$ LANGUAGE plpgsql;")
+                            .executeUpdate();
+                    em.createNativeQuery("CREATE TRIGGER account_balance_trigger BEFORE INSERT OR UPDATE ON account " +
+                                    "FOR EACH ROW EXECUTE FUNCTION check_balance_trigger()")
+                            .executeUpdate();
+
+                    // Insert invalid data to test the trigger
+                    try {
+                        // The id column has no default in the generated schema, so the id is taken from its sequence
+                        em.createNativeQuery("INSERT INTO account (id_account, iban, account_number, account_balance, account_type, currency_type, version) " +
+                                        "VALUES (nextval('account_id_account_seq'), 'CZ0800', '1030500891', -100.00, 'checking', 'USD', 0)")
+                                .executeUpdate();
+                    } catch (Exception e) {
+                        // If insertion fails due to trigger, catch the exception
+                        System.out.println("Trigger successfully prevented insertion of invalid data.");
+                    }
+                });
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Trigger check failed", e);
+            }
+
+            transactionTemplate.runInTransaction(em -> em
+                    .createNativeQuery("DROP TRIGGER IF EXISTS account_balance_trigger ON account")
+                    .executeUpdate());
+
+            // Check if the trigger was deleted
+            System.out.println("Trigger deleted successfully.");
+        } finally {
+            operations.record("BankService.createTriggerCheckItDropIt", start);
+        }
+    }
+
+    /**
+     * Reads the many-to-many relationship table between Account and Person entities.
+     *
+     * @return One (account number, person name) row per account holder.
+     */
+    public List<Object[]> findAccountHolders() {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withReadOnlyEntityManager(em -> accountDAO.findAccountHolders());
+        } finally {
+            operations.record("BankService.findAccountHolders", start);
+        }
+    }
+
+    /**
+     * Streams the many-to-many relationship table between Account and Person entities row by row,
+     * so the report runs in constant memory however many account holders there are.
+     *
+     * @param fetchSize The number of rows fetched from the database per round trip.
+     * @param action    Called with each (account number, person name) row.
+     * @return The number of rows read.
+     */
+    public long forEachAccountHolder(int fetchSize, Consumer<Object[]> action) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.inReadOnlyTransaction(em -> {
+                long rows = 0;
+                try (Stream<Object[]> accountHolders = accountDAO.streamAccountHolders(fetchSize)) {
+                    Iterator<Object[]> iterator = accountHolders.iterator();
+                    while (iterator.hasNext()) {
+                        action.accept(iterator.next());
+                        rows++;
+                    }
+                }
+                return rows;
+            });
+        } finally {
+            operations.record("BankService.forEachAccountHolder", start);
+        }
+    }
+
+    /**
+     * Displays data from the many-to-many relationship table between Account and Person entities.
+     */
+    public void displayDataFromManyToManyTable() {
+        long start = System.nanoTime();
+        try {
+            forEachAccountHolder(AccountDAO.DEFAULT_FETCH_SIZE, result -> {
+                String accountNumber = (String) result[0];
+                String fullName = (String) result[1];
+
+                System.out.println("---");
+                System.out.println("Account number: " + accountNumber);
+                System.out.println("Person name: " + fullName);
+                System.out.println("---");
+            });
+        } finally {
+            operations.record("BankService.displayDataFromManyToManyTable", start);
+        }
+    }
+
+    /**
+     * Displays data from the descendant table Customer. Every page is read in the same unit of work, so
+     * the whole listing comes from one replica rather than from replicas that may lag by different amounts.
+     */
+
+    public void displayDataFromDescendantTable() {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.withReadOnlyEntityManager(em -> {
+                String pageToken = null;
+                do {
+                    Page<Customer> page = findCustomerPage(PersonOrder.ID, DISPLAY_PAGE_SIZE, pageToken);
+                    for (Customer customer : page.getItems()) {
+                        System.out.println("---");
+                        System.out.println("customer name is: " + customer.getFull_name());
+                        System.out.println("---");
+                    }
+                    pageToken = page.getNextPageToken();
+                    // Printed customers are not needed any more, so the persistence context stays one page big
+                    em.clear();
+                } while (pageToken != null);
+                return null;
+            });
+        } finally {
+            operations.record("BankService.displayDataFromDescendantTable", start);
+        }
+    }
+
+    /**
+     * Reads one page of customers, see {@link CustomerDAO#findCustomerPage}.
+     *
+     * @param order     The listing order.
+     * @param pageSize  The maximum number of customers on the page.
+     * @param pageToken The continuation token of the previous page, or null for the first page.
+     * @return The page.
+     */
+    public Page<Customer> findCustomerPage(PersonOrder order, int pageSize, String pageToken) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withReadOnlyEntityManager(em -> customerDAO.findCustomerPage(order, pageSize, pageToken));
+        } finally {
+            operations.record("BankService.findCustomerPage", start);
+        }
+    }
+
+    /**
+     * Reads one page of persons, see {@link PersonDAO#findPersonPage}.
+     *
+     * @param order     The listing order.
+     * @param pageSize  The maximum number of persons on the page.
+     * @param pageToken The continuation token of the previous page, or null for the first page.
+     * @return The page.
+     */
+    public Page<Person> findPersonPage(PersonOrder order, int pageSize, String pageToken) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withReadOnlyEntityManager(em -> personDAO.findPersonPage(order, pageSize, pageToken));
+        } finally {
+            operations.record("BankService.findPersonPage", start);
+        }
+    }
+
+    public void createAccount(Account account) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> accountDAO.createAccount(account));
+        } finally {
+            operations.record("BankService.createAccount", start);
+        }
+    }
+
+    /**
+     * Writes back an account read earlier. Fails with an OptimisticLockException, wrapped in a
+     * RollbackException, if the account was changed since; use {@link #modifyAccount} to apply a change
+     * that is retried on a fresh copy instead.
+     *
+     * @param account The changed account.
+     */
+    public void updateAccount(Account account) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> accountDAO.updateAccount(account));
+        } finally {
+            operations.record("BankService.updateAccount", start);
+        }
+    }
+
+    /**
+     * Reads an account, applies a change to it and commits, starting over with a fresh copy when a
+     * concurrent update of the same account wins the version check.
+     *
+     * @param id     The ID of the account.
+     * @param change The change; it may run several times, once per attempt.
+     * @return The changed account, or null if it does not exist.
+     */
+    public Account modifyAccount(Integer id, Consumer<Account> change) {
+        long start = System.nanoTime();
+        try {
+            return retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+                Account account = accountDAO.findCurrentAccount(id);
+                if (account != null) {
+                    change.accept(account);
+                }
+                return account;
+            }), "Account#" + id);
+        } finally {
+            operations.record("BankService.modifyAccount", start);
+        }
+    }
+
+    public Account findAccount(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> accountDAO.findAccount(id));
+        } finally {
+            operations.record("BankService.findAccount", start);
+        }
+    }
+
+    /**
+     * Reads accounts with the relationships of a fetch plan, see {@link AccountDAO#findAccounts}.
+     *
+     * @param ids  The IDs of the accounts.
+     * @param plan The relationships to load with them, e.g. {@link FetchPlan#ACCOUNT_DETAILS}.
+     * @return The accounts found, ordered by ID.
+     */
+    public List<Account> findAccounts(Collection<Integer> ids, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> accountDAO.findAccounts(ids, plan));
+        } finally {
+            operations.record("BankService.findAccounts", start);
+        }
+    }
+
+    public void deleteAccount(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> accountDAO.deleteAccount(id));
+        } finally {
+            operations.record("BankService.deleteAccount", start);
+        }
+    }
+
+    public void createBank(Bank bank) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> bankDAO.createBank(bank));
+        } finally {
+            operations.record("BankService.createBank", start);
+        }
+    }
+
+    public void updateBank(Bank bank) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> bankDAO.updateBank(bank));
+        } finally {
+            operations.record("BankService.updateBank", start);
+        }
+    }
+
+    public Bank findBank(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> bankDAO.findBank(id));
+        } finally {
+            operations.record("BankService.findBank", start);
+        }
+    }
+
+    /**
+     * Reads a bank with the relationships of a fetch plan, e.g. {@link FetchPlan#BANK_ACCOUNT_BOOK}
+     * for its accounts with their holders and payment cards in a fixed number of queries.
+     *
+     * @param id   The ID of the bank.
+     * @param plan The relationships to load with it.
+     * @return The bank, or null if it does not exist.
+     */
+    public Bank findBank(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> bankDAO.findBank(id, plan));
+        } finally {
+            operations.record("BankService.findBank(FetchPlan)", start);
+        }
+    }
+
+    public Bank findBankByIban(String iban) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> bankDAO.findBankByIban(iban));
+        } finally {
+            operations.record("BankService.findBankByIban", start);
+        }
+    }
+
+    /**
+     * Reads a bank by its IBAN with the relationships of a fetch plan.
+     *
+     * @param iban The IBAN of the bank.
+     * @param plan The relationships to load with it.
+     * @return The bank, or null if it does not exist.
+     */
+    public Bank findBankByIban(String iban, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> bankDAO.findBankByIban(iban, plan));
+        } finally {
+            operations.record("BankService.findBankByIban(FetchPlan)", start);
+        }
+    }
+
+    public void deleteBank(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> bankDAO.deleteBank(id));
+        } finally {
+            operations.record("BankService.deleteBank", start);
+        }
+    }
+
+    public void createCustomer(Customer customer) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> customerDAO.createCustomer(customer));
+        } finally {
+            operations.record("BankService.createCustomer", start);
+        }
+    }
+
+    public void updateCustomer(Customer customer) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> customerDAO.updateCustomer(customer));
+        } finally {
+            operations.record("BankService.updateCustomer", start);
+        }
+    }
+
+    public Customer findCustomer(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> customerDAO.findCustomer(id));
+        } finally {
+            operations.record("BankService.findCustomer", start);
+        }
+    }
+
+    public void deleteCustomer(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> customerDAO.deleteCustomer(id));
+        } finally {
+            operations.record("BankService.deleteCustomer", start);
+        }
+    }
+
+    public void createEducation(Education education) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> educationDAO.createEducation(education));
+        } finally {
+            operations.record("BankService.createEducation", start);
+        }
+    }
+
+    public void updateEducation(Education education) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> educationDAO.updateEducation(education));
+        } finally {
+            operations.record("BankService.updateEducation", start);
+        }
+    }
+
+    public Education findEducation(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> educationDAO.findEducation(id));
+        } finally {
+            operations.record("BankService.findEducation", start);
+        }
+    }
+
+    public void deleteEducation(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> educationDAO.deleteEducation(id));
+        } finally {
+            operations.record("BankService.deleteEducation", start);
+        }
+    }
+
+    public void createEmployee(Employee employee) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> employeeDAO.createEmployee(employee));
+        } finally {
+            operations.record("BankService.createEmployee", start);
+        }
+    }
+
+    public void updateEmployee(Employee employee) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> employeeDAO.updateEmployee(employee));
+        } finally {
+            operations.record("BankService.updateEmployee", start);
+        }
+    }
+
+    public Employee findEmployee(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> employeeDAO.findEmployee(id));
+        } finally {
+            operations.record("BankService.findEmployee", start);
+        }
+    }
+
+    /**
+     * Reads an employee with the relationships of a fetch plan, e.g. {@link FetchPlan#EMPLOYEE_PORTFOLIO}.
+     *
+     * @param id   The ID of the employee.
+     * @param plan The relationships to load with them.
+     * @return The employee, or null if they do not exist.
+     */
+    public Employee findEmployee(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> employeeDAO.findEmployee(id, plan));
+        } finally {
+            operations.record("BankService.findEmployee(FetchPlan)", start);
+        }
+    }
+
+    public void deleteEmployee(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> employeeDAO.deleteEmployee(id));
+        } finally {
+            operations.record("BankService.deleteEmployee", start);
+        }
+    }
+
+    public void createPayment_card(Payment_card paymentCard) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> paymentCardDAO.createPaymentCard(paymentCard));
+        } finally {
+            operations.record("BankService.createPayment_card", start);
+        }
+    }
+
+    public void updatePayment_card(Payment_card paymentCard) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> paymentCardDAO.updatePaymentCard(paymentCard));
+        } finally {
+            operations.record("BankService.updatePayment_card", start);
+        }
+    }
+
+    /**
+     * Reads a payment card, applies a change to it and commits, see {@link #modifyAccount}.
+     *
+     * @param id     The ID of the payment card.
+     * @param change The change; it may run several times, once per attempt.
+     * @return The changed payment card, or null if it does not exist.
+     */
+    public Payment_card modifyPayment_card(Integer id, Consumer<Payment_card> change) {
+        long start = System.nanoTime();
+        try {
+            return retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+                Payment_card paymentCard = paymentCardDAO.findCurrentPaymentCard(id);
+                if (paymentCard != null) {
+                    change.accept(paymentCard);
+                }
+                return paymentCard;
+            }), "Payment_card#" + id);
+        } finally {
+            operations.record("BankService.modifyPayment_card", start);
+        }
+    }
+
+    public Payment_card findPayment_card(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> paymentCardDAO.findPaymentCard(id));
+        } finally {
+            operations.record("BankService.findPayment_card", start);
+        }
+    }
+
+    public void deletePayment_card(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> paymentCardDAO.deletePaymentCard(id));
+        } finally {
+            operations.record("BankService.deletePayment_card", start);
+        }
+    }
+
+    public void createPerson(Person person) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> personDAO.createPerson(person));
+        } finally {
+            operations.record("BankService.createPerson", start);
+        }
+    }
+
+    public void updatePerson(Person person) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> personDAO.updatePerson(person));
+        } finally {
+            operations.record("BankService.updatePerson", start);
+        }
+    }
+
+    public Person findPerson(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> personDAO.findPerson(id));
+        } finally {
+            operations.record("BankService.findPerson", start);
+        }
+    }
+
+    /**
+     * Reads a person with the relationships of a fetch plan, e.g. {@link FetchPlan#PERSON_ACCOUNTS}.
+     *
+     * @param id   The ID of the person.
+     * @param plan The relationships to load with them.
+     * @return The person, or null if they do not exist.
+     */
+    public Person findPerson(Integer id, FetchPlan plan) {
+        long start = System.nanoTime();
+        try {
+            return transactionTemplate.withEntityManager(em -> personDAO.findPerson(id, plan));
+        } finally {
+            operations.record("BankService.findPerson(FetchPlan)", start);
+        }
+    }
+
+    public void deletePerson(Integer id) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.runInTransaction(em -> personDAO.deletePerson(id));
+        } finally {
+            operations.record("BankService.deletePerson", start);
+        }
+    }
+}
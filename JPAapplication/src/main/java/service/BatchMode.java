@@ -0,0 +1,14 @@
+package service;
+
+/**
+ * Commit behaviour of a batch of transfers or imported rows.
+ */
+public enum BatchMode {
+    /** The whole batch is one transaction: either every transfer or row is applied or none is. */
+    ALL_OR_NOTHING,
+    /**
+     * Every chunk is its own transaction; rejected transfers are skipped and the rest of the chunk commits.
+     * Nothing is held across chunks, so memory use does not depend on the size of the batch.
+     */
+    COMMIT_PER_CHUNK
+}
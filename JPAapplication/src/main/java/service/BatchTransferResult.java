@@ -0,0 +1,65 @@
+package service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-transfer outcome of a settled batch. The status at index i belongs to the transfer at index i
+ * of the submitted list.
+ */
+public class BatchTransferResult {
+    private final TransferStatus[] statuses;
+
+    BatchTransferResult(int size) {
+        this.statuses = new TransferStatus[size];
+    }
+
+    void setStatus(int index, TransferStatus status) {
+        statuses[index] = status;
+    }
+
+    /**
+     * @param index The position of the transfer in the submitted list.
+     * @return The outcome of that transfer.
+     */
+    public TransferStatus getStatus(int index) {
+        return statuses[index];
+    }
+
+    /**
+     * @return The outcomes of all transfers, in submission order.
+     */
+    public List<TransferStatus> getStatuses() {
+        return Collections.unmodifiableList(Arrays.asList(statuses));
+    }
+
+    /**
+     * @return The number of transfers that were committed.
+     */
+    public int getAcceptedCount() {
+        return count(TransferStatus.COMPLETED);
+    }
+
+    /**
+     * @return The number of transfers that were not applied.
+     */
+    public int getRejectedCount() {
+        return statuses.length - getAcceptedCount();
+    }
+
+    private int count(TransferStatus status) {
+        int count = 0;
+        for (TransferStatus s : statuses) {
+            if (s == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "accepted=" + getAcceptedCount() + ", rejected=" + getRejectedCount();
+    }
+}
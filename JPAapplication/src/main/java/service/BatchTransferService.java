@@ -0,0 +1,238 @@
+package service;
+
+import DAO.LedgerDAO;
+import DAO.TransactionTemplate;
+import entities.Account;
+import metrics.RollbackReason;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Settles large lists of transfers with a handful of statements per chunk instead of several per transfer.
+ * For each chunk the touched accounts are locked and loaded with one IN (...) query per
+ * {@value #IN_LIST_SIZE} ids, the transfers are checked in order against running balances in memory,
+ * the resulting deltas are netted per account and written back with a JDBC batch update.
+ * The stripes of striped accounts are locked and counted towards their balances; the deltas of a
+ * striped account are written to its account row. The completed transfers are appended to the ledger
+ * in the chunk's transaction, all booked at the same instant.
+ */
+public class BatchTransferService {
+    /** Number of ids bound into a single IN (...) list, well below the PostgreSQL bind parameter limit. */
+    static final int IN_LIST_SIZE = 1000;
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+
+    private final TransactionTemplate transactionTemplate;
+    private final RetryPolicy retryPolicy;
+    private final LedgerDAO ledgerDAO;
+
+    /**
+     * Constructs a BatchTransferService.
+     *
+     * @param transactionTemplate The template each transaction runs its unit of work with.
+     * @param retryPolicy         The policy applied when a transaction fails transiently.
+     */
+    public BatchTransferService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this.transactionTemplate = transactionTemplate;
+        this.retryPolicy = retryPolicy;
+        this.ledgerDAO = new LedgerDAO(transactionTemplate);
+    }
+
+    /**
+     * Settles transfers using the default chunk size.
+     *
+     * @param transfers The transfers to settle, applied in list order.
+     * @param mode      Whether the batch commits as a whole or chunk by chunk.
+     * @return The outcome of every transfer.
+     */
+    public BatchTransferResult settle(List<Transfer> transfers, BatchMode mode) {
+        return settle(transfers, mode, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Settles transfers.
+     *
+     * @param transfers The transfers to settle, applied in list order.
+     * @param mode      Whether the batch commits as a whole or chunk by chunk.
+     * @param chunkSize The number of transfers per transaction in {@link BatchMode#COMMIT_PER_CHUNK} mode.
+     * @return The outcome of every transfer.
+     */
+    public BatchTransferResult settle(List<Transfer> transfers, BatchMode mode, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        BatchTransferResult result = new BatchTransferResult(transfers.size());
+        if (mode == BatchMode.ALL_OR_NOTHING) {
+            retryPolicy.execute(() -> settleInTransaction(transfers, 0, transfers.size(), true, result));
+        } else {
+            for (int from = 0; from < transfers.size(); from += chunkSize) {
+                int start = from;
+                int end = Math.min(transfers.size(), from + chunkSize);
+                retryPolicy.execute(() -> settleInTransaction(transfers, start, end, false, result));
+            }
+        }
+        return result;
+    }
+
+    private Void settleInTransaction(List<Transfer> transfers, int start, int end, boolean atomic,
+                                     BatchTransferResult result) {
+        TreeSet<Integer> touched = new TreeSet<>();
+        for (int i = start; i < end; i++) {
+            Transfer transfer = transfers.get(i);
+            if (transfer.isValid()) {
+                touched.add(transfer.getIdAccountFrom());
+                touched.add(transfer.getIdAccountTo());
+            }
+        }
+
+        transactionTemplate.runInTransaction(em -> {
+            try {
+                Connection connection = em.unwrap(Connection.class);
+                Map<Integer, Double> balances = lockBalances(connection, touched);
+
+                Map<Integer, Double> deltas = new TreeMap<>();
+                TransferStatus firstRejection = null;
+                for (int i = start; i < end; i++) {
+                    TransferStatus status = apply(transfers.get(i), balances, deltas);
+                    if (firstRejection == null && status != TransferStatus.COMPLETED) {
+                        firstRejection = status;
+                    }
+                    result.setStatus(i, status);
+                }
+
+                if (atomic && firstRejection != null) {
+                    for (int i = start; i < end; i++) {
+                        if (result.getStatus(i) == TransferStatus.COMPLETED) {
+                            result.setStatus(i, TransferStatus.ABORTED);
+                        }
+                    }
+                    transactionTemplate.setRollbackOnly(rollbackReasonOf(firstRejection));
+                    return;
+                }
+
+                writeDeltas(connection, deltas);
+                Date bookedAt = new Date();
+                for (int i = start; i < end; i++) {
+                    if (result.getStatus(i) == TransferStatus.COMPLETED) {
+                        Transfer transfer = transfers.get(i);
+                        ledgerDAO.recordTransfer(transfer.getIdAccountFrom(), transfer.getIdAccountTo(),
+                                transfer.getAmount(), bookedAt);
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Batch settlement failed", e);
+            }
+        });
+
+        // The balances were changed behind the persistence provider's back
+        for (Integer id : touched) {
+            transactionTemplate.evictFromCache(Account.class, id);
+        }
+        return null;
+    }
+
+    private static TransferStatus apply(Transfer transfer, Map<Integer, Double> balances, Map<Integer, Double> deltas) {
+        if (!transfer.isValid()) {
+            return TransferStatus.INVALID_REQUEST;
+        }
+        Double balanceFrom = balances.get(transfer.getIdAccountFrom());
+        Double balanceTo = balances.get(transfer.getIdAccountTo());
+        if (balanceFrom == null || balanceTo == null) {
+            return TransferStatus.ACCOUNT_NOT_FOUND;
+        }
+        if (balanceFrom < transfer.getAmount()) {
+            return TransferStatus.INSUFFICIENT_BALANCE;
+        }
+        int amount = transfer.getAmount();
+        balances.put(transfer.getIdAccountFrom(), balanceFrom - amount);
+        balances.put(transfer.getIdAccountTo(), balanceTo + amount);
+        deltas.merge(transfer.getIdAccountFrom(), (double) -amount, Double::sum);
+        deltas.merge(transfer.getIdAccountTo(), (double) amount, Double::sum);
+        return TransferStatus.COMPLETED;
+    }
+
+    /**
+     * Locks the given account rows in ascending id order, then their stripes, and reads their balances.
+     */
+    private static Map<Integer, Double> lockBalances(Connection connection, TreeSet<Integer> ids) throws SQLException {
+        Map<Integer, Double> balances = new HashMap<>();
+        List<Integer> sorted = new ArrayList<>(ids);
+        for (int from = 0; from < sorted.size(); from += IN_LIST_SIZE) {
+            List<Integer> slice = sorted.subList(from, Math.min(sorted.size(), from + IN_LIST_SIZE));
+            String sql = "SELECT id_account, account_balance FROM account WHERE id_account IN ("
+                    + String.join(", ", Collections.nCopies(slice.size(), "?"))
+                    + ") ORDER BY id_account FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < slice.size(); i++) {
+                    statement.setInt(i + 1, slice.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        balances.put(rs.getInt(1), rs.getDouble(2));
+                    }
+                }
+            }
+        }
+        for (int from = 0; from < sorted.size(); from += IN_LIST_SIZE) {
+            List<Integer> slice = sorted.subList(from, Math.min(sorted.size(), from + IN_LIST_SIZE));
+            String sql = "SELECT id_account, balance FROM account_stripe WHERE id_account IN ("
+                    + String.join(", ", Collections.nCopies(slice.size(), "?"))
+                    + ") ORDER BY id_account, stripe FOR UPDATE";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < slice.size(); i++) {
+                    statement.setInt(i + 1, slice.get(i));
+                }
+                try (ResultSet rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        balances.merge(rs.getInt(1), rs.getDouble(2), Double::sum);
+                    }
+                }
+            }
+        }
+        return balances;
+    }
+
+    private static void writeDeltas(Connection connection, Map<Integer, Double> deltas) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE account SET account_balance = account_balance + ?, version = version + 1 WHERE id_account = ?")) {
+            int pending = 0;
+            for (Map.Entry<Integer, Double> delta : deltas.entrySet()) {
+                // Transfers that cancel each other out need no write at all
+                if (delta.getValue() == 0) {
+                    continue;
+                }
+                statement.setDouble(1, delta.getValue());
+                statement.setInt(2, delta.getKey());
+                statement.addBatch();
+                if (++pending == IN_LIST_SIZE) {
+                    statement.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static RollbackReason rollbackReasonOf(TransferStatus rejection) {
+        switch (rejection) {
+            case INSUFFICIENT_BALANCE:
+                return RollbackReason.INSUFFICIENT_BALANCE;
+            case ACCOUNT_NOT_FOUND:
+                return RollbackReason.NOT_FOUND;
+            default:
+                return RollbackReason.OTHER;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package service;
+
+import DAO.LedgerDAO;
+import DAO.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Answers what the balance of an account was at a past instant. Every transfer appends one ledger entry
+ * per account it touches, and {@link #takeSnapshots()}, run periodically (e.g. hourly or nightly), stores
+ * the balance of every account that moved since its last snapshot. A past balance is then the nearest
+ * snapshot plus the entries booked between it and the instant, so the number of entries read is bounded
+ * by the activity of the account in one snapshot period rather than by its whole history.
+ * <p>
+ * Only transfers are booked on the ledger; a balance set directly, e.g. with
+ * {@link BankService#updateAccount}, shows up in past balances as if it had always been there.
+ */
+public class LedgerService {
+    /**
+     * How far snapshots lag behind the clock. A transfer books its entries with the time it ran at but
+     * commits a little later, so a snapshot up to the current instant could miss entries that are about
+     * to be committed.
+     */
+    static final long SNAPSHOT_DELAY_MILLIS = 60_000;
+
+    private final TransactionTemplate transactionTemplate;
+    private final LedgerDAO ledgerDAO;
+    private final RetryPolicy retryPolicy;
+
+    /**
+     * Constructs a LedgerService.
+     *
+     * @param transactionTemplate The template each unit of work is run with.
+     * @param retryPolicy         The policy applied when taking snapshots fails transiently.
+     */
+    public LedgerService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this.transactionTemplate = transactionTemplate;
+        this.ledgerDAO = new LedgerDAO(transactionTemplate);
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @param idAccount The ID of the account.
+     * @param at        The instant.
+     * @return The balance of the account at the instant, or null if the account does not exist.
+     */
+    public Double balanceAt(Integer idAccount, Date at) {
+        return transactionTemplate.withEntityManager(em -> {
+            Double balance = ledgerDAO.findBalanceFromSnapshot(idAccount, at);
+            // An account without a snapshot has no entries older than the last snapshot run
+            return balance != null ? balance : ledgerDAO.findBalanceFromCurrent(idAccount, at);
+        });
+    }
+
+    /**
+     * Snapshots the balances of the accounts that moved since their last snapshot, as of
+     * {@value #SNAPSHOT_DELAY_MILLIS} milliseconds ago.
+     *
+     * @return The number of snapshots taken.
+     */
+    public int takeSnapshots() {
+        return takeSnapshots(new Date(System.currentTimeMillis() - SNAPSHOT_DELAY_MILLIS));
+    }
+
+    /**
+     * Snapshots the balances of the accounts that moved since their last snapshot, as of the cutoff.
+     * Cutoffs must be taken in ascending order and lie before any transfer still in progress.
+     *
+     * @param cutoff The instant the snapshots are as of.
+     * @return The number of snapshots taken.
+     */
+    public int takeSnapshots(Date cutoff) {
+        return retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> ledgerDAO.createSnapshots(cutoff)));
+    }
+
+    /**
+     * Creates the monthly partitions of the ledger from the current month on, so that transfers never
+     * fall into the default partition; PostgreSQL only, once sql/ledger_partitions.sql has been applied.
+     *
+     * @param monthsAhead The number of months after the current one to create.
+     */
+    public void ensurePartitions(int monthsAhead) {
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        ensurePartitions(toDate(thisMonth), toDate(thisMonth.plusMonths(monthsAhead)));
+    }
+
+    /**
+     * Creates the monthly partitions of the ledger between two instants, e.g. before loading history.
+     *
+     * @param from An instant in the first month to create.
+     * @param to   An instant in the last month to create.
+     */
+    public void ensurePartitions(Date from, Date to) {
+        transactionTemplate.runInTransaction(em -> ledgerDAO.createPartitions(from, to));
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
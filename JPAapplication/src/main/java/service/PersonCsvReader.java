@@ -0,0 +1,125 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads {@link PersonRow}s from CSV one line at a time. The first line is the header
+ * {@value #HEADER}; dates are ISO (yyyy-MM-dd), fields may be double-quoted and an empty field is null.
+ * customer_status and registration_date are required for customers, id_superior is optional for employees.
+ */
+class PersonCsvReader {
+    static final String HEADER = "type,birth_certificate_number,birth_date,full_name,email,phone_number,"
+            + "country,city,postcode,street,customer_status,registration_date,id_superior";
+    private static final int COLUMNS = HEADER.split(",").length;
+
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    PersonCsvReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<String> header = nextFields();
+        if (header == null || !header.equals(Arrays.asList(HEADER.split(",")))) {
+            throw new IllegalArgumentException("Expected the header " + HEADER);
+        }
+    }
+
+    /**
+     * @return The next row, or null at the end of the input.
+     * @throws IllegalArgumentException if the line is malformed; the message names the line.
+     */
+    PersonRow next() {
+        List<String> fields = nextFields();
+        if (fields == null) {
+            return null;
+        }
+        try {
+            if (fields.size() != COLUMNS) {
+                throw new IllegalArgumentException("expected " + COLUMNS + " fields but found " + fields.size());
+            }
+            PersonRow.Type type = PersonRow.Type.valueOf(required(fields, 0, "type").toUpperCase(Locale.ROOT));
+            boolean customer = type == PersonRow.Type.CUSTOMER;
+            return new PersonRow(type,
+                    required(fields, 1, "birth_certificate_number"),
+                    LocalDate.parse(required(fields, 2, "birth_date")),
+                    required(fields, 3, "full_name"),
+                    required(fields, 4, "email"),
+                    required(fields, 5, "phone_number"),
+                    required(fields, 6, "country"),
+                    required(fields, 7, "city"),
+                    required(fields, 8, "postcode"),
+                    required(fields, 9, "street"),
+                    customer ? required(fields, 10, "customer_status") : null,
+                    customer ? LocalDate.parse(required(fields, 11, "registration_date")) : null,
+                    type == PersonRow.Type.EMPLOYEE && fields.get(12) != null ? Integer.valueOf(fields.get(12)) : null);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String required(List<String> fields, int index, String column) {
+        String value = fields.get(index);
+        if (value == null) {
+            throw new IllegalArgumentException(column + " is required");
+        }
+        return value;
+    }
+
+    /**
+     * Splits the next non-empty line into fields; quoted fields may contain commas and doubled quotes.
+     */
+    private List<String> nextFields() {
+        String line;
+        try {
+            do {
+                line = reader.readLine();
+                lineNumber++;
+            } while (line != null && line.isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (line == null) {
+            return null;
+        }
+
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unterminated quoted field");
+        }
+        fields.add(field.length() == 0 && !wasQuoted ? null : field.toString());
+        return fields;
+    }
+}
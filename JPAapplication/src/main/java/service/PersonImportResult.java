@@ -0,0 +1,59 @@
+package service;
+
+/**
+ * Counts and throughput of a bulk person import.
+ */
+public class PersonImportResult {
+    private long persons;
+    private long customers;
+    private long employees;
+    private long elapsedNanos;
+
+    PersonImportResult() {
+    }
+
+    void add(PersonRow.Type type) {
+        persons++;
+        if (type == PersonRow.Type.CUSTOMER) {
+            customers++;
+        } else if (type == PersonRow.Type.EMPLOYEE) {
+            employees++;
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The number of imported persons, customers and employees included.
+     */
+    public long getPersonCount() {
+        return persons;
+    }
+
+    public long getCustomerCount() {
+        return customers;
+    }
+
+    public long getEmployeeCount() {
+        return employees;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return The number of imported input rows per second of wall-clock time.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : persons * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("persons=%d (customers=%d, employees=%d) in %d ms, %.0f rows/s",
+                persons, customers, employees, elapsedNanos / 1_000_000, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,310 @@
+package service;
+
+import DAO.TransactionTemplate;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Imports persons, customers and employees from CSV without going through the EntityManager, which
+ * writes every entity with a statement of its own. The input is read and written in chunks, so only
+ * one chunk is in memory at a time. Each chunk reserves its person ids from person_id_person_seq with one
+ * query, taking blocks of INCREMENT BY ids per nextval() as {@link entities.IdGeneration} does. On
+ * PostgreSQL the chunk is then written with COPY; on other databases the person rows go in with multi-row
+ * INSERTs and the customer and employee rows with JDBC batches. Without the sequence (identity columns
+ * outside PostgreSQL) the multi-row INSERTs return the generated ids instead.
+ */
+public class PersonImportService {
+    /**
+     * The header line an import file starts with. Each following line is one person; type is person,
+     * customer or employee, dates are ISO (yyyy-MM-dd), fields may be double-quoted and an empty field is
+     * null. customer_status and registration_date are required for customers, id_superior is optional
+     * for employees and refers to an existing employee.
+     */
+    public static final String CSV_HEADER = PersonCsvReader.HEADER;
+
+    private static final int DEFAULT_CHUNK_SIZE = 5000;
+    /** Person rows per multi-row INSERT: 11 bind parameters each, well below the PostgreSQL limit. */
+    private static final int ROWS_PER_INSERT = 500;
+    private static final String PERSON_SEQUENCE = "person_id_person_seq";
+    private static final String PERSON_COLUMNS =
+            "dtype, birth_certificate_number, birth_date, full_name, email, phone_number, country, city, postcode, street";
+
+    private final TransactionTemplate transactionTemplate;
+    private final RetryPolicy retryPolicy;
+    private final boolean copyIfAvailable;
+
+    /**
+     * Constructs a PersonImportService that uses COPY whenever the database is PostgreSQL.
+     *
+     * @param transactionTemplate The template each transaction runs its unit of work with.
+     * @param retryPolicy         The policy applied when a chunk fails transiently.
+     */
+    public PersonImportService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this(transactionTemplate, retryPolicy, true);
+    }
+
+    /**
+     * Constructs a PersonImportService.
+     *
+     * @param transactionTemplate The template each transaction runs its unit of work with.
+     * @param retryPolicy         The policy applied when a chunk fails transiently.
+     * @param copyIfAvailable     Whether to use COPY on PostgreSQL, or multi-row INSERTs everywhere.
+     */
+    public PersonImportService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy, boolean copyIfAvailable) {
+        this.transactionTemplate = transactionTemplate;
+        this.retryPolicy = retryPolicy;
+        this.copyIfAvailable = copyIfAvailable;
+    }
+
+    /**
+     * Imports persons using the default chunk size.
+     *
+     * @param csv  The CSV input, starting with the header line.
+     * @param mode Whether the import commits as a whole or chunk by chunk.
+     * @return The number of imported rows and the import rate.
+     */
+    public PersonImportResult importPersons(Reader csv, BatchMode mode) {
+        return importPersons(csv, mode, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Imports persons. In {@link BatchMode#ALL_OR_NOTHING} mode a malformed line or a failing chunk rolls
+     * the whole import back; in {@link BatchMode#COMMIT_PER_CHUNK} mode the chunks before it stay
+     * committed, and a chunk that fails transiently is retried. Either way the input is streamed.
+     *
+     * @param csv       The CSV input, starting with the header line.
+     * @param mode      Whether the import commits as a whole or chunk by chunk.
+     * @param chunkSize The number of rows read and written at a time.
+     * @return The number of imported rows and the import rate.
+     * @throws IllegalArgumentException if the input is malformed; the message names the offending line.
+     */
+    public PersonImportResult importPersons(Reader csv, BatchMode mode, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+        long start = System.nanoTime();
+        PersonCsvReader reader = new PersonCsvReader(csv);
+        PersonImportResult result = new PersonImportResult();
+        if (mode == BatchMode.ALL_OR_NOTHING) {
+            // The input cannot be rewound, so a single transaction over all of it is not retried
+            transactionTemplate.runInTransaction(em -> {
+                for (List<PersonRow> chunk = readChunk(reader, chunkSize); !chunk.isEmpty(); chunk = readChunk(reader, chunkSize)) {
+                    writeChunk(chunk);
+                    chunk.forEach(row -> result.add(row.type));
+                }
+            });
+        } else {
+            for (List<PersonRow> chunk = readChunk(reader, chunkSize); !chunk.isEmpty(); chunk = readChunk(reader, chunkSize)) {
+                List<PersonRow> rows = chunk;
+                retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+                    writeChunk(rows);
+                    return null;
+                }));
+                rows.forEach(row -> result.add(row.type));
+            }
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private static List<PersonRow> readChunk(PersonCsvReader reader, int chunkSize) {
+        List<PersonRow> chunk = new ArrayList<>(Math.min(chunkSize, DEFAULT_CHUNK_SIZE));
+        PersonRow row;
+        while (chunk.size() < chunkSize && (row = reader.next()) != null) {
+            chunk.add(row);
+        }
+        return chunk;
+    }
+
+    private void writeChunk(List<PersonRow> rows) {
+        Connection connection = transactionTemplate.currentEntityManager().unwrap(Connection.class);
+        try {
+            List<Integer> ids = reserveIds(connection, rows.size());
+            if (ids != null && copyIfAvailable && connection.isWrapperFor(PGConnection.class)) {
+                copyChunk(connection.unwrap(PGConnection.class).getCopyAPI(), ids, rows);
+            } else {
+                insertChunk(connection, ids, rows);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Person import failed", e);
+        }
+    }
+
+    /**
+     * Takes the next ids from the person sequence. Each nextval() returns the last id of a block of
+     * INCREMENT BY ids, the same blocks the EntityManager takes, so the two never hand out the same id.
+     *
+     * @return The ids, or null if there is no person sequence.
+     */
+    private static List<Integer> reserveIds(Connection connection, int count) throws SQLException {
+        String sequence = PERSON_SEQUENCE;
+        if (connection.isWrapperFor(PGConnection.class)) {
+            // An identity column created next to a left-over sequence of the same name gets a sequence of its own
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT pg_get_serial_sequence('person', 'id_person')");
+                 ResultSet rs = statement.executeQuery()) {
+                if (rs.next() && rs.getString(1) != null) {
+                    sequence = rs.getString(1).substring(rs.getString(1).indexOf('.') + 1);
+                }
+            }
+        }
+
+        long increment;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT increment FROM information_schema.sequences WHERE LOWER(sequence_name) = ?")) {
+            statement.setString(1, sequence);
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                increment = rs.getLong(1);
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(count);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)")) {
+            statement.setLong(1, (count + increment - 1) / increment);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long last = rs.getLong(1);
+                    for (long id = last - increment + 1; id <= last && ids.size() < count; id++) {
+                        ids.add((int) id);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void copyChunk(CopyManager copyManager, List<Integer> ids, List<PersonRow> rows) throws SQLException {
+        StringBuilder persons = new StringBuilder();
+        StringBuilder customers = new StringBuilder();
+        StringBuilder employees = new StringBuilder();
+        for (int i = 0; i < rows.size(); i++) {
+            PersonRow row = rows.get(i);
+            Integer id = ids.get(i);
+            csvLine(persons, id, row.type.discriminator, row.birthCertificateNumber, row.birthDate, row.fullName,
+                    row.email, row.phoneNumber, row.country, row.city, row.postcode, row.street);
+            if (row.type == PersonRow.Type.CUSTOMER) {
+                csvLine(customers, id, row.customerStatus, row.registrationDate);
+            } else if (row.type == PersonRow.Type.EMPLOYEE) {
+                csvLine(employees, id, row.idSuperior);
+            }
+        }
+        copy(copyManager, "person (id_person, " + PERSON_COLUMNS + ")", persons);
+        copy(copyManager, "customer (id_person, customer_status, registration_date)", customers);
+        copy(copyManager, "employee (id_person, id_superior)", employees);
+    }
+
+    private static void copy(CopyManager copyManager, String table, StringBuilder csv) throws SQLException {
+        if (csv.length() == 0) {
+            return;
+        }
+        try {
+            copyManager.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new SQLException("COPY into " + table + " failed", e);
+        }
+    }
+
+    /**
+     * Appends one CSV line; text is always quoted so that only a missing value reads back as NULL.
+     */
+    private static void csvLine(StringBuilder csv, Object... values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                csv.append(',');
+            }
+            Object value = values[i];
+            if (value instanceof String) {
+                csv.append('"').append(((String) value).replace("\"", "\"\"")).append('"');
+            } else if (value != null) {
+                csv.append(value);
+            }
+        }
+        csv.append('\n');
+    }
+
+    /**
+     * @param ids The reserved ids, or null to have the database generate them.
+     */
+    private static void insertChunk(Connection connection, List<Integer> ids, List<PersonRow> rows) throws SQLException {
+        boolean generateIds = ids == null;
+        if (generateIds) {
+            ids = new ArrayList<>(rows.size());
+        }
+        for (int from = 0; from < rows.size(); from += ROWS_PER_INSERT) {
+            List<PersonRow> slice = rows.subList(from, Math.min(rows.size(), from + ROWS_PER_INSERT));
+            String sql = "INSERT INTO person (" + (generateIds ? "" : "id_person, ") + PERSON_COLUMNS + ") VALUES "
+                    + String.join(", ", Collections.nCopies(slice.size(),
+                    generateIds ? "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)" : "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"));
+            try (PreparedStatement statement = generateIds
+                    ? connection.prepareStatement(sql, new String[]{"id_person"})
+                    : connection.prepareStatement(sql)) {
+                int parameter = 1;
+                for (int i = 0; i < slice.size(); i++) {
+                    PersonRow row = slice.get(i);
+                    if (!generateIds) {
+                        statement.setInt(parameter++, ids.get(from + i));
+                    }
+                    statement.setString(parameter++, row.type.discriminator);
+                    statement.setString(parameter++, row.birthCertificateNumber);
+                    statement.setObject(parameter++, row.birthDate);
+                    statement.setString(parameter++, row.fullName);
+                    statement.setString(parameter++, row.email);
+                    statement.setString(parameter++, row.phoneNumber);
+                    statement.setString(parameter++, row.country);
+                    statement.setString(parameter++, row.city);
+                    statement.setString(parameter++, row.postcode);
+                    statement.setString(parameter++, row.street);
+                }
+                statement.executeUpdate();
+                if (generateIds) {
+                    // The ids come back in the order of the VALUES lists
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            ids.add(keys.getInt(1));
+                        }
+                    }
+                }
+            }
+        }
+        if (ids.size() != rows.size()) {
+            throw new SQLException("Expected " + rows.size() + " generated ids but got " + ids.size());
+        }
+
+        try (PreparedStatement customers = connection.prepareStatement(
+                "INSERT INTO customer (id_person, customer_status, registration_date) VALUES (?, ?, ?)");
+             PreparedStatement employees = connection.prepareStatement(
+                     "INSERT INTO employee (id_person, id_superior) VALUES (?, ?)")) {
+            for (int i = 0; i < rows.size(); i++) {
+                PersonRow row = rows.get(i);
+                if (row.type == PersonRow.Type.CUSTOMER) {
+                    customers.setInt(1, ids.get(i));
+                    customers.setString(2, row.customerStatus);
+                    customers.setObject(3, row.registrationDate.atStartOfDay());
+                    customers.addBatch();
+                } else if (row.type == PersonRow.Type.EMPLOYEE) {
+                    employees.setInt(1, ids.get(i));
+                    employees.setObject(2, row.idSuperior, Types.INTEGER);
+                    employees.addBatch();
+                }
+            }
+            customers.executeBatch();
+            employees.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package service;
+
+import java.time.LocalDate;
+
+/**
+ * One person, customer or employee read from an import file.
+ */
+class PersonRow {
+    /**
+     * The entity a row becomes, which decides the child table of the JOINED hierarchy it adds a row to.
+     */
+    enum Type {
+        PERSON("Person"), CUSTOMER("Customer"), EMPLOYEE("Employee");
+
+        /** The value of the person.dtype discriminator column. */
+        final String discriminator;
+
+        Type(String discriminator) {
+            this.discriminator = discriminator;
+        }
+    }
+
+    final Type type;
+    final String birthCertificateNumber;
+    final LocalDate birthDate;
+    final String fullName;
+    final String email;
+    final String phoneNumber;
+    final String country;
+    final String city;
+    final String postcode;
+    final String street;
+    final String customerStatus;
+    final LocalDate registrationDate;
+    final Integer idSuperior;
+
+    PersonRow(Type type, String birthCertificateNumber, LocalDate birthDate, String fullName, String email,
+              String phoneNumber, String country, String city, String postcode, String street,
+              String customerStatus, LocalDate registrationDate, Integer idSuperior) {
+        this.type = type;
+        this.birthCertificateNumber = birthCertificateNumber;
+        this.birthDate = birthDate;
+        this.fullName = fullName;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.country = country;
+        this.city = city;
+        this.postcode = postcode;
+        this.street = street;
+        this.customerStatus = customerStatus;
+        this.registrationDate = registrationDate;
+        this.idSuperior = idSuperior;
+    }
+}
@@ -0,0 +1,173 @@
+package service;
+
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import metrics.ContentionStatistics;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a unit of work when it is aborted because of a transient concurrency failure (optimistic
+ * version conflict, deadlock, serialization failure or lock timeout), waiting a bounded, jittered
+ * exponential backoff between attempts. Conflicts, retries and give-ups are counted per contended row
+ * in {@link ContentionStatistics}. Configured with the bank.retry.* properties of the persistence unit:
+ * <ul>
+ *     <li>bank.retry.max-attempts - attempts including the first one (default 5)</li>
+ *     <li>bank.retry.base-backoff-ms - backoff before the second attempt, doubled for every further one (default 5)</li>
+ *     <li>bank.retry.max-backoff-ms - upper bound of a single backoff (default 200)</li>
+ *     <li>bank.retry.jitter - share of each backoff that is randomised, between 0 and 1 (default 0.5)</li>
+ * </ul>
+ */
+public class RetryPolicy {
+    public static final String PROPERTY_PREFIX = "bank.retry.";
+
+    /**
+     * PostgreSQL SQL states that are safe to retry: serialization_failure, deadlock_detected
+     * and lock_not_available.
+     */
+    private static final Set<String> TRANSIENT_SQL_STATES = Set.of("40001", "40P01", "55P03");
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_BASE_BACKOFF_MILLIS = 5;
+    private static final long DEFAULT_MAX_BACKOFF_MILLIS = 200;
+    private static final double DEFAULT_JITTER = 0.5;
+
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+    private final double jitter;
+    private final ContentionStatistics statistics = ContentionStatistics.getInstance();
+
+    /**
+     * Constructs a RetryPolicy that randomises the second half of every backoff.
+     *
+     * @param maxAttempts       The maximum number of attempts, including the first one.
+     * @param baseBackoffMillis The backoff before the second attempt; it doubles with every further attempt.
+     * @param maxBackoffMillis  The upper bound of a single backoff.
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis) {
+        this(maxAttempts, baseBackoffMillis, maxBackoffMillis, DEFAULT_JITTER);
+    }
+
+    /**
+     * Constructs a RetryPolicy.
+     *
+     * @param maxAttempts       The maximum number of attempts, including the first one.
+     * @param baseBackoffMillis The backoff before the second attempt; it doubles with every further attempt.
+     * @param maxBackoffMillis  The upper bound of a single backoff.
+     * @param jitter            The share of each backoff that is randomised: 0 always waits the full
+     *                          backoff, 1 waits anything between zero and the full backoff.
+     */
+    public RetryPolicy(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis, double jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.jitter = jitter;
+    }
+
+    /**
+     * @return A policy of 5 attempts with a backoff growing from 5 ms up to 200 ms.
+     */
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * Reads a policy from the bank.retry.* properties, using the default for every property not set.
+     *
+     * @param properties The properties of the persistence unit, e.g. those of its EntityManagerFactory.
+     * @return The configured policy.
+     */
+    public static RetryPolicy fromProperties(Map<String, ?> properties) {
+        return new RetryPolicy(
+                Integer.parseInt(setting(properties, "max-attempts", DEFAULT_MAX_ATTEMPTS)),
+                Long.parseLong(setting(properties, "base-backoff-ms", DEFAULT_BASE_BACKOFF_MILLIS)),
+                Long.parseLong(setting(properties, "max-backoff-ms", DEFAULT_MAX_BACKOFF_MILLIS)),
+                Double.parseDouble(setting(properties, "jitter", DEFAULT_JITTER)));
+    }
+
+    /**
+     * Runs the work, retrying it while it fails transiently and attempts remain.
+     *
+     * @param work      The unit of work; it must open and finish its own transaction, and read the rows
+     *                  it changes afresh, or a version conflict repeats on every attempt.
+     * @param contended The rows the work competes for, e.g. "Account#42"; a transient failure is
+     *                  counted against each of them.
+     * @return The result of the first successful attempt.
+     */
+    public <T> T execute(Supplier<T> work, String... contended) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return work.get();
+            } catch (RuntimeException e) {
+                if (!isTransient(e)) {
+                    throw e;
+                }
+                boolean giveUp = attempt >= maxAttempts;
+                for (String row : contended) {
+                    statistics.recordConflict(row);
+                    if (giveUp) {
+                        statistics.recordGiveUp(row);
+                    } else {
+                        statistics.recordRetry(row);
+                    }
+                }
+                if (giveUp) {
+                    throw e;
+                }
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a failure was caused by a version conflict, deadlock, serialization failure or lock timeout.
+     *
+     * @param failure The failure to inspect, including its causes.
+     * @return true if running the same work again may succeed.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                    || cause instanceof org.eclipse.persistence.exceptions.OptimisticLockException
+                    || cause instanceof PessimisticLockException || cause instanceof LockTimeoutException) {
+                return true;
+            }
+            if (cause instanceof SQLException && TRANSIENT_SQL_STATES.contains(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long floor = ceiling - (long) (ceiling * jitter);
+        try {
+            // Randomise the wait so that the transactions that collided do not collide again
+            Thread.sleep(ThreadLocalRandom.current().nextLong(floor, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private static String setting(Map<String, ?> properties, String name, Object defaultValue) {
+        Object value = properties.get(PROPERTY_PREFIX + name);
+        return String.valueOf(value == null ? defaultValue : value).trim();
+    }
+}
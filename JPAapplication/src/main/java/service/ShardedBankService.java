@@ -0,0 +1,369 @@
+package service;
+
+import DAO.Shard;
+import DAO.ShardRouter;
+import DAO.TransactionTemplate;
+import entities.Account;
+import entities.Bank;
+import entities.Payment_card;
+import entities.TransferSaga;
+import metrics.OperationStatistics;
+import metrics.RollbackReason;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The operations on banks, accounts and payment cards of a {@link ShardRouter}: each runs on the shard
+ * the bank's IBAN or the entity's ID routes it to, through the {@link BankService} of that shard. A
+ * transfer between two accounts of one shard is a single transaction there. A transfer between shards
+ * cannot be, so it is a saga of three local transactions, each recorded in a {@link TransferSaga} row:
+ * <ol>
+ *     <li>the source shard takes the money, if the balance of the account row covers it, and records
+ *     the transfer as DEBITED;</li>
+ *     <li>the destination shard adds the money and records it as CREDITED, unless it finds the row of
+ *     an earlier attempt, so a repeated step adds nothing;</li>
+ *     <li>the source shard records the transfer as COMPLETED, or, if the destination account is gone,
+ *     gives the money back and records it as COMPENSATED.</li>
+ * </ol>
+ * A transfer interrupted after the first step, e.g. because the destination shard was down, stays
+ * DEBITED until {@link #recoverTransfers(Duration)} finishes it. The money in flight is missing from
+ * both accounts in the meantime. Aggregates are computed on every shard in parallel and combined.
+ */
+public class ShardedBankService {
+    private static final Logger LOGGER = Logger.getLogger(ShardedBankService.class.getName());
+    private static final int RECOVERY_BATCH_SIZE = 1000;
+
+    private final ShardRouter shardRouter;
+    private final List<BankService> bankServices = new ArrayList<>();
+    private final RetryPolicy retryPolicy;
+    private final OperationStatistics operations = OperationStatistics.getInstance();
+
+    /**
+     * Constructs a ShardedBankService with the retry policy configured by the bank.retry.* properties of
+     * the first shard's persistence unit.
+     *
+     * @param shardRouter The shards.
+     */
+    public ShardedBankService(ShardRouter shardRouter) {
+        this(shardRouter, RetryPolicy.fromProperties(shardRouter.getShards().get(0).getTransactionTemplate()
+                .getEntityManagerFactory().getProperties()));
+    }
+
+    /**
+     * Constructs a ShardedBankService.
+     *
+     * @param shardRouter The shards.
+     * @param retryPolicy The policy applied when a write fails with a conflict, deadlock or lock timeout.
+     */
+    public ShardedBankService(ShardRouter shardRouter, RetryPolicy retryPolicy) {
+        this.shardRouter = shardRouter;
+        this.retryPolicy = retryPolicy;
+        for (Shard shard : shardRouter.getShards()) {
+            bankServices.add(new BankService(shard.getTransactionTemplate(), retryPolicy));
+        }
+    }
+
+    /**
+     * @param shard A shard of the router.
+     * @return The BankService that runs on the shard, e.g. for the persons kept in the first shard.
+     */
+    public BankService getBankService(Shard shard) {
+        return bankServices.get(shard.getIndex());
+    }
+
+    public ShardRouter getShardRouter() {
+        return shardRouter;
+    }
+
+    /**
+     * Creates a bank in the shard its IBAN routes to.
+     *
+     * @param bank The new bank.
+     */
+    public void createBank(Bank bank) {
+        long start = System.nanoTime();
+        try {
+            bankService(shardRouter.shardOfIban(bank.getIban())).createBank(bank);
+        } finally {
+            operations.record("ShardedBankService.createBank", start);
+        }
+    }
+
+    public Bank findBankByIban(String iban) {
+        long start = System.nanoTime();
+        try {
+            return bankService(shardRouter.shardOfIban(iban)).findBankByIban(iban);
+        } finally {
+            operations.record("ShardedBankService.findBankByIban", start);
+        }
+    }
+
+    /**
+     * Creates an account in the shard of its bank.
+     *
+     * @param account The new account; its bank must exist.
+     */
+    public void createAccount(Account account) {
+        long start = System.nanoTime();
+        try {
+            bankService(shardRouter.shardOfIban(account.getBank().getIban())).createAccount(account);
+        } finally {
+            operations.record("ShardedBankService.createAccount", start);
+        }
+    }
+
+    public Account findAccount(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return bankService(shardRouter.shardOfId(id)).findAccount(id);
+        } finally {
+            operations.record("ShardedBankService.findAccount", start);
+        }
+    }
+
+    /**
+     * Creates a payment card in the shard of its account.
+     *
+     * @param paymentCard The new card; its account must exist.
+     */
+    public void createPayment_card(Payment_card paymentCard) {
+        long start = System.nanoTime();
+        try {
+            bankService(shardRouter.shardOfId(paymentCard.getAccount().getId_account())).createPayment_card(paymentCard);
+        } finally {
+            operations.record("ShardedBankService.createPayment_card", start);
+        }
+    }
+
+    public Payment_card findPayment_card(Integer id) {
+        long start = System.nanoTime();
+        try {
+            return bankService(shardRouter.shardOfId(id)).findPayment_card(id);
+        } finally {
+            operations.record("ShardedBankService.findPayment_card", start);
+        }
+    }
+
+    /**
+     * Transfers money between two accounts, in one transaction if they live in the same shard and by the
+     * saga described above if they do not.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @return The outcome of the transfer, or null if it failed with an exception; a transfer between
+     * shards that failed after the money was taken is finished by {@link #recoverTransfers(Duration)}.
+     */
+    public TransferStatus makeMoneyTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        if (tranferAmount == null || tranferAmount <= 0 || idAccountFrom == null || idAccountTo == null
+                || idAccountFrom.equals(idAccountTo)) {
+            return TransferStatus.INVALID_REQUEST;
+        }
+        if (!shardRouter.containsId(idAccountFrom) || !shardRouter.containsId(idAccountTo)) {
+            return TransferStatus.ACCOUNT_NOT_FOUND;
+        }
+        Shard source = shardRouter.shardOfId(idAccountFrom);
+        Shard destination = shardRouter.shardOfId(idAccountTo);
+        if (source == destination) {
+            return bankService(source).makeMoneyTransfer(tranferAmount, idAccountFrom, idAccountTo,
+                    TransferMode.GUARDED_UPDATE);
+        }
+
+        long start = System.nanoTime();
+        try {
+            TransferStatus status = transferBetweenShards(tranferAmount, idAccountFrom, idAccountTo, source, destination);
+            if (status != TransferStatus.COMPLETED) {
+                System.out.println("Transfer rejected: " + status);
+            }
+            return status;
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Transfer of " + tranferAmount + " from account " + idAccountFrom
+                    + " to account " + idAccountTo + " between shards failed", e);
+            return null;
+        } finally {
+            operations.record("ShardedBankService.transferBetweenShards", start);
+        }
+    }
+
+    /**
+     * Finishes the transfers between shards that have been DEBITED for longer than a grace period, e.g.
+     * after the destination shard or the process failed in the middle of one.
+     *
+     * @param olderThan The grace period, longer than a transfer normally takes, so that transfers still
+     *                  running are left alone.
+     * @return The transfers finished, completed or compensated.
+     */
+    public int recoverTransfers(Duration olderThan) {
+        long start = System.nanoTime();
+        try {
+            Date before = new Date(System.currentTimeMillis() - olderThan.toMillis());
+            List<Integer> finished = shardRouter.scatter(shard -> {
+                List<TransferSaga> sagas = shard.getTransactionTemplate().withEntityManager(em ->
+                        shard.getTransferSagaDAO().findSagas(TransferSaga.State.DEBITED, before, RECOVERY_BATCH_SIZE));
+                int count = 0;
+                for (TransferSaga saga : sagas) {
+                    try {
+                        credit(saga);
+                        count++;
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Transfer " + saga.getId_saga() + " could not be recovered", e);
+                    }
+                }
+                return count;
+            });
+            return finished.stream().mapToInt(Integer::intValue).sum();
+        } finally {
+            operations.record("ShardedBankService.recoverTransfers", start);
+        }
+    }
+
+    /**
+     * Counts the accounts of all shards.
+     *
+     * @return The number of accounts.
+     */
+    public long countAccounts() {
+        long start = System.nanoTime();
+        try {
+            return shardRouter.scatter(shard -> shard.getTransactionTemplate().withReadOnlyEntityManager(em ->
+                    shard.getAccountDAO().countAccounts())).stream().mapToLong(Long::longValue).sum();
+        } finally {
+            operations.record("ShardedBankService.countAccounts", start);
+        }
+    }
+
+    /**
+     * Adds up the money held by the accounts of all shards. Transfers between shards still in flight
+     * are not included.
+     *
+     * @return The sum of the balances.
+     */
+    public double totalBalance() {
+        long start = System.nanoTime();
+        try {
+            return shardRouter.scatter(shard -> shard.getTransactionTemplate().withReadOnlyEntityManager(em ->
+                    shard.getAccountDAO().sumBalances())).stream().mapToDouble(Double::doubleValue).sum();
+        } finally {
+            operations.record("ShardedBankService.totalBalance", start);
+        }
+    }
+
+    /**
+     * Retrieves the accounts of all shards with the highest balances, see
+     * {@link DAO.AccountDAO#findRichestAccounts(int)}.
+     *
+     * @param limit The maximum number of accounts.
+     * @return The accounts, highest balance first.
+     */
+    public List<Account> findRichestAccounts(int limit) {
+        long start = System.nanoTime();
+        try {
+            List<Account> accounts = new ArrayList<>();
+            // Every shard sends its own top accounts, which include those of the overall top
+            shardRouter.scatter(shard -> shard.getTransactionTemplate().withReadOnlyEntityManager(em ->
+                    shard.getAccountDAO().findRichestAccounts(limit))).forEach(accounts::addAll);
+            accounts.sort(Comparator.comparingDouble(Account::getAccount_balance).reversed()
+                    .thenComparing(Account::getId_account));
+            return accounts.size() > limit ? new ArrayList<>(accounts.subList(0, limit)) : accounts;
+        } finally {
+            operations.record("ShardedBankService.findRichestAccounts", start);
+        }
+    }
+
+    private TransferStatus transferBetweenShards(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo,
+                                                 Shard source, Shard destination) {
+        // Checked first, so that a transfer to a missing account rarely takes the money at all
+        if (!destination.getTransactionTemplate().withEntityManager(em ->
+                destination.getAccountDAO().accountExists(idAccountTo))) {
+            return TransferStatus.ACCOUNT_NOT_FOUND;
+        }
+
+        String id = UUID.randomUUID().toString();
+        TransactionTemplate transactionTemplate = source.getTransactionTemplate();
+        TransferStatus debited = retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+            if (source.getAccountDAO().withdrawIfCovered(idAccountFrom, tranferAmount) == 0) {
+                if (!source.getAccountDAO().accountExists(idAccountFrom)) {
+                    transactionTemplate.setRollbackOnly(RollbackReason.NOT_FOUND);
+                    return TransferStatus.ACCOUNT_NOT_FOUND;
+                }
+                transactionTemplate.setRollbackOnly(RollbackReason.INSUFFICIENT_BALANCE);
+                return TransferStatus.INSUFFICIENT_BALANCE;
+            }
+            Date now = new Date();
+            source.getLedgerDAO().recordEntry(idAccountFrom, idAccountTo, -tranferAmount, now);
+            source.getTransferSagaDAO().createSaga(new TransferSaga(id, idAccountFrom, idAccountTo, tranferAmount,
+                    TransferSaga.State.DEBITED, now));
+            return TransferStatus.COMPLETED;
+        }), "Account#" + idAccountFrom);
+        if (debited != TransferStatus.COMPLETED) {
+            return debited;
+        }
+        // The balance was changed behind the persistence provider's back
+        transactionTemplate.evictFromCache(Account.class, idAccountFrom);
+
+        return credit(new TransferSaga(id, idAccountFrom, idAccountTo, tranferAmount, TransferSaga.State.DEBITED, null));
+    }
+
+    /**
+     * Runs the second and third step of a transfer between shards; both may have run before.
+     *
+     * @return COMPLETED, or ACCOUNT_NOT_FOUND if the money was given back.
+     */
+    private TransferStatus credit(TransferSaga debited) {
+        String id = debited.getId_saga();
+        Integer idAccountFrom = debited.getId_account_from();
+        Integer idAccountTo = debited.getId_account_to();
+        double amount = debited.getAmount();
+        Shard source = shardRouter.shardOfId(idAccountFrom);
+        Shard destination = shardRouter.shardOfId(idAccountTo);
+
+        TransactionTemplate destinationTemplate = destination.getTransactionTemplate();
+        boolean credited = retryPolicy.execute(() -> destinationTemplate.inTransaction(em -> {
+            TransferSaga earlier = destination.getTransferSagaDAO().findSaga(id);
+            if (earlier != null) {
+                return earlier.getState() == TransferSaga.State.CREDITED;
+            }
+            // The outcome is committed either way, so that every later attempt comes to the same one
+            Date now = new Date();
+            boolean deposited = destination.getAccountDAO().deposit(idAccountTo, amount) == 1;
+            if (deposited) {
+                destination.getLedgerDAO().recordEntry(idAccountTo, idAccountFrom, amount, now);
+            }
+            destination.getTransferSagaDAO().createSaga(new TransferSaga(id, idAccountFrom, idAccountTo, amount,
+                    deposited ? TransferSaga.State.CREDITED : TransferSaga.State.COMPENSATED, now));
+            return deposited;
+        }), "Account#" + idAccountTo);
+        destinationTemplate.evictFromCache(Account.class, idAccountTo);
+
+        TransactionTemplate sourceTemplate = source.getTransactionTemplate();
+        TransferStatus status = retryPolicy.execute(() -> sourceTemplate.inTransaction(em -> {
+            TransferSaga saga = source.getTransferSagaDAO().lockSaga(id);
+            // Otherwise another thread, e.g. a recovery, finished the transfer first
+            if (saga != null && saga.getState() == TransferSaga.State.DEBITED) {
+                Date now = new Date();
+                if (!credited) {
+                    source.getAccountDAO().deposit(idAccountFrom, amount);
+                    source.getLedgerDAO().recordEntry(idAccountFrom, idAccountTo, amount, now);
+                }
+                saga.setState(credited ? TransferSaga.State.COMPLETED : TransferSaga.State.COMPENSATED);
+                saga.setUpdated_at(now);
+            }
+            return credited ? TransferStatus.COMPLETED : TransferStatus.ACCOUNT_NOT_FOUND;
+        }), "Account#" + idAccountFrom);
+        if (!credited) {
+            sourceTemplate.evictFromCache(Account.class, idAccountFrom);
+        }
+        return status;
+    }
+
+    private BankService bankService(Shard shard) {
+        return bankServices.get(shard.getIndex());
+    }
+}
@@ -0,0 +1,204 @@
+package service;
+
+import DAO.AccountDAO;
+import DAO.AccountStripeDAO;
+import DAO.TransactionTemplate;
+import entities.Account;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Splits the balance of chosen, very hot accounts (e.g. settlement accounts) over several stripe rows.
+ * A credit adds to one random stripe, so concurrent credits lock different rows instead of queueing
+ * for the account row. A debit takes from one random stripe if that stripe covers it; otherwise it
+ * locks the account row and all stripes, checks the whole balance and spreads what is left evenly over
+ * the stripes again. The account's balance is always the sum of its row and its stripes, and the
+ * striped column of the account row says whether it has any.
+ * <p>
+ * Which accounts are striped is read from the database on first use and kept up to date by
+ * {@link #stripeAccount} and {@link #unstripeAccount}; an instance that did not make the change learns
+ * of it on the first debit that finds stripes, and until then still books correctly, only without
+ * spreading the load.
+ */
+public class StripedBalanceService {
+    private final TransactionTemplate transactionTemplate;
+    private final AccountDAO accountDAO;
+    private final AccountStripeDAO accountStripeDAO;
+    private final RetryPolicy retryPolicy;
+    private final Lock stripeCountsLock = new ReentrantLock();
+    private volatile Map<Integer, Integer> stripeCounts;
+
+    /**
+     * Constructs a StripedBalanceService.
+     *
+     * @param transactionTemplate The template each unit of work is run with.
+     * @param retryPolicy         The policy applied when striping fails transiently.
+     */
+    public StripedBalanceService(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this.transactionTemplate = transactionTemplate;
+        this.accountDAO = new AccountDAO(transactionTemplate);
+        this.accountStripeDAO = new AccountStripeDAO(transactionTemplate);
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @param idAccount The ID of an account.
+     * @return true if the account's balance is striped.
+     */
+    public boolean isStriped(Integer idAccount) {
+        return stripeCounts().containsKey(idAccount);
+    }
+
+    /**
+     * Splits the balance of an account evenly over a number of stripes, or re-splits it if the account
+     * is striped already.
+     *
+     * @param idAccount The ID of the account.
+     * @param stripes   The number of stripes; about the number of concurrent writers of the account.
+     * @return false if the account does not exist.
+     */
+    public boolean stripeAccount(Integer idAccount, int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be at least 1");
+        }
+        boolean striped = retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+            Double rowBalance = accountDAO.lockRowBalance(idAccount);
+            if (rowBalance == null) {
+                return false;
+            }
+            double total = rowBalance + sum(accountStripeDAO.lockStripes(idAccount));
+            accountStripeDAO.deleteStripes(idAccount);
+            accountStripeDAO.createStripes(idAccount, spread(total, stripes));
+            accountDAO.updateRowBalance(idAccount, 0);
+            accountDAO.updateStriped(idAccount, true);
+            return true;
+        }), "Account#" + idAccount);
+        if (striped) {
+            stripeCounts().put(idAccount, stripes);
+            transactionTemplate.evictFromCache(Account.class, idAccount);
+        }
+        return striped;
+    }
+
+    /**
+     * Moves the balance of a striped account back onto its account row and removes the stripes.
+     *
+     * @param idAccount The ID of the account.
+     */
+    public void unstripeAccount(Integer idAccount) {
+        retryPolicy.execute(() -> transactionTemplate.inTransaction(em -> {
+            Double rowBalance = accountDAO.lockRowBalance(idAccount);
+            if (rowBalance != null) {
+                double total = rowBalance + sum(accountStripeDAO.lockStripes(idAccount));
+                accountStripeDAO.deleteStripes(idAccount);
+                accountDAO.updateRowBalance(idAccount, total);
+                accountDAO.updateStriped(idAccount, false);
+            }
+            return null;
+        }), "Account#" + idAccount);
+        stripeCounts().remove(idAccount);
+        transactionTemplate.evictFromCache(Account.class, idAccount);
+    }
+
+    /**
+     * Adds money to a random stripe of a striped account, in the current transaction.
+     *
+     * @param idAccount The ID of the account.
+     * @param amount    The amount to add.
+     * @return false if the account does not exist.
+     */
+    boolean credit(Integer idAccount, double amount) {
+        Integer stripes = stripeCounts().get(idAccount);
+        if (stripes != null && accountStripeDAO.credit(idAccount, randomStripe(stripes), amount) == 1) {
+            return true;
+        }
+        // Striped by another instance in the meantime, or not striped any more
+        return accountDAO.deposit(idAccount, amount) == 1;
+    }
+
+    /**
+     * Takes money from a striped account, in the current transaction. Falls back to locking the account
+     * row and all stripes when the randomly chosen stripe does not cover the amount, or when the account
+     * is not known to be striped.
+     *
+     * @param idAccount The ID of the account.
+     * @param amount    The amount to take.
+     * @return false if the account does not exist or its whole balance is too low.
+     */
+    boolean debit(Integer idAccount, double amount) {
+        Integer stripes = stripeCounts().get(idAccount);
+        if (stripes != null && accountStripeDAO.debitIfCovered(idAccount, randomStripe(stripes), amount) == 1) {
+            return true;
+        }
+
+        Double rowBalance = accountDAO.lockRowBalance(idAccount);
+        if (rowBalance == null) {
+            return false;
+        }
+        double[] balances = accountStripeDAO.lockStripes(idAccount);
+        double total = rowBalance + sum(balances);
+        if (total < amount) {
+            return false;
+        }
+        if (balances.length == 0) {
+            accountDAO.updateRowBalance(idAccount, total - amount);
+        } else {
+            // Striped by another instance, spread the next debits over its stripes too
+            stripeCounts().putIfAbsent(idAccount, balances.length);
+            // Rebalance, so the next debits find money in whichever stripe they pick
+            accountStripeDAO.updateStripes(idAccount, spread(total - amount, balances.length));
+            if (rowBalance != 0) {
+                accountDAO.updateRowBalance(idAccount, 0);
+            }
+        }
+        return true;
+    }
+
+    private Map<Integer, Integer> stripeCounts() {
+        Map<Integer, Integer> counts = stripeCounts;
+        if (counts == null) {
+            // A lock rather than synchronized: a virtual thread blocked on the query inside a monitor
+            // would pin its carrier thread
+            stripeCountsLock.lock();
+            try {
+                if (stripeCounts == null) {
+                    stripeCounts = new ConcurrentHashMap<>(
+                            transactionTemplate.withEntityManager(em -> accountStripeDAO.findStripeCounts()));
+                }
+                counts = stripeCounts;
+            } finally {
+                stripeCountsLock.unlock();
+            }
+        }
+        return counts;
+    }
+
+    private static int randomStripe(int stripes) {
+        return ThreadLocalRandom.current().nextInt(stripes);
+    }
+
+    /**
+     * Splits an amount into equal whole-cent parts; the first part takes the remainder.
+     */
+    private static double[] spread(double total, int parts) {
+        long cents = Math.round(total * 100);
+        double[] balances = new double[parts];
+        for (int i = 0; i < parts; i++) {
+            balances[i] = (cents / parts) / 100.0;
+        }
+        balances[0] = (cents / parts + cents % parts) / 100.0;
+        return balances;
+    }
+
+    private static double sum(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
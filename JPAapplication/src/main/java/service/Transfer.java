@@ -0,0 +1,46 @@
+package service;
+
+/**
+ * A single requested money transfer, as read from a settlement file.
+ */
+public class Transfer {
+    private final Integer idAccountFrom;
+    private final Integer idAccountTo;
+    private final Integer amount;
+
+    /**
+     * Constructs a Transfer.
+     *
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @param amount        The amount to transfer.
+     */
+    public Transfer(Integer idAccountFrom, Integer idAccountTo, Integer amount) {
+        this.idAccountFrom = idAccountFrom;
+        this.idAccountTo = idAccountTo;
+        this.amount = amount;
+    }
+
+    //    Getters
+    public Integer getIdAccountFrom() {
+        return idAccountFrom;
+    }
+
+    public Integer getIdAccountTo() {
+        return idAccountTo;
+    }
+
+    public Integer getAmount() {
+        return amount;
+    }
+
+    boolean isValid() {
+        return amount != null && amount > 0 && idAccountFrom != null && idAccountTo != null
+                && !idAccountFrom.equals(idAccountTo);
+    }
+
+    @Override
+    public String toString() {
+        return idAccountFrom + " -> " + idAccountTo + ": " + amount;
+    }
+}
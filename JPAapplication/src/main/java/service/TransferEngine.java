@@ -0,0 +1,224 @@
+package service;
+
+import DAO.AccountDAO;
+import DAO.LedgerDAO;
+import DAO.TransactionTemplate;
+import entities.Account;
+import metrics.RollbackReason;
+
+import java.util.Date;
+import java.util.logging.Logger;
+
+/**
+ * Moves money between two accounts. Safe to call from many threads at once: every transfer runs
+ * in its own unit of work, locks both account rows in ascending id order so that
+ * two opposite transfers cannot deadlock each other, and is retried when the database still aborts it
+ * with a deadlock or serialization failure. See {@link TransferMode} for the ways the balances can
+ * be changed; a transfer from or to a striped account (see {@link StripedBalanceService}) always
+ * takes the guarded update path, on the stripes. Every completed transfer is appended to the ledger
+ * in the same transaction, by the transfer_funds database function itself in
+ * {@link TransferMode#STORED_FUNCTION} mode.
+ */
+public class TransferEngine {
+    private static final Logger LOGGER = Logger.getLogger(TransferEngine.class.getName());
+    // Indexed by the status codes transfer_funds returns
+    private static final TransferStatus[] TRANSFER_FUNCTION_STATUSES = {
+            TransferStatus.COMPLETED, TransferStatus.INVALID_REQUEST,
+            TransferStatus.ACCOUNT_NOT_FOUND, TransferStatus.INSUFFICIENT_BALANCE};
+    private static final int TRANSFER_FUNCTION_STRIPED = 4;
+
+    private final TransactionTemplate transactionTemplate;
+    private final AccountDAO accountDAO;
+    private final LedgerDAO ledgerDAO;
+    private final RetryPolicy retryPolicy;
+    private final StripedBalanceService stripedBalances;
+    private volatile Boolean transferFunctionInstalled;
+
+    /**
+     * Constructs a TransferEngine with the default retry policy.
+     *
+     * @param transactionTemplate The template each transfer runs its unit of work with.
+     */
+    public TransferEngine(TransactionTemplate transactionTemplate) {
+        this(transactionTemplate, RetryPolicy.defaults());
+    }
+
+    /**
+     * Constructs a TransferEngine.
+     *
+     * @param transactionTemplate The template each transfer runs its unit of work with.
+     * @param retryPolicy         The policy applied when a transfer fails transiently.
+     */
+    public TransferEngine(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy) {
+        this(transactionTemplate, retryPolicy, new StripedBalanceService(transactionTemplate, retryPolicy));
+    }
+
+    /**
+     * Constructs a TransferEngine.
+     *
+     * @param transactionTemplate The template each transfer runs its unit of work with.
+     * @param retryPolicy         The policy applied when a transfer fails transiently.
+     * @param stripedBalances     The service that knows which accounts are striped.
+     */
+    public TransferEngine(TransactionTemplate transactionTemplate, RetryPolicy retryPolicy,
+                          StripedBalanceService stripedBalances) {
+        this.transactionTemplate = transactionTemplate;
+        this.accountDAO = new AccountDAO(transactionTemplate);
+        this.ledgerDAO = new LedgerDAO(transactionTemplate);
+        this.retryPolicy = retryPolicy;
+        this.stripedBalances = stripedBalances;
+    }
+
+    /**
+     * Transfers money between two accounts by locking and updating both Account entities.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @return The outcome of the transfer.
+     */
+    public TransferStatus transfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return transfer(tranferAmount, idAccountFrom, idAccountTo, TransferMode.LOCKED_ENTITIES);
+    }
+
+    /**
+     * Transfers money between two accounts.
+     *
+     * @param tranferAmount The amount to transfer.
+     * @param idAccountFrom The ID of the account to transfer from.
+     * @param idAccountTo   The ID of the account to transfer to.
+     * @param mode          How the balances are changed.
+     * @return The outcome of the transfer.
+     */
+    public TransferStatus transfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo, TransferMode mode) {
+        if (tranferAmount == null || tranferAmount <= 0 || idAccountFrom == null || idAccountTo == null
+                || idAccountFrom.equals(idAccountTo)) {
+            return TransferStatus.INVALID_REQUEST;
+        }
+        boolean striped = stripedBalances.isStriped(idAccountFrom) || stripedBalances.isStriped(idAccountTo);
+        if (mode == TransferMode.STORED_FUNCTION && !striped && hasTransferFunction()) {
+            return evictIfCompleted(retryPolicy.execute(() -> attemptStoredTransfer(tranferAmount, idAccountFrom, idAccountTo),
+                    "Account#" + idAccountFrom, "Account#" + idAccountTo), idAccountFrom, idAccountTo);
+        }
+        if (mode == TransferMode.GUARDED_UPDATE || striped) {
+            return evictIfCompleted(retryPolicy.execute(() -> attemptGuardedTransfer(tranferAmount, idAccountFrom, idAccountTo),
+                    "Account#" + idAccountFrom, "Account#" + idAccountTo), idAccountFrom, idAccountTo);
+        }
+        return retryPolicy.execute(() -> attemptTransfer(tranferAmount, idAccountFrom, idAccountTo),
+                "Account#" + idAccountFrom, "Account#" + idAccountTo);
+    }
+
+    private TransferStatus attemptTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return transactionTemplate.inTransaction(em -> {
+            // Always lock the lower id first, whichever direction the money goes
+            Account accountFrom;
+            Account accountTo;
+            if (idAccountFrom < idAccountTo) {
+                accountFrom = accountDAO.lockAccount(idAccountFrom);
+                accountTo = accountDAO.lockAccount(idAccountTo);
+            } else {
+                accountTo = accountDAO.lockAccount(idAccountTo);
+                accountFrom = accountDAO.lockAccount(idAccountFrom);
+            }
+
+            if (accountFrom == null || accountTo == null) {
+                transactionTemplate.setRollbackOnly(RollbackReason.NOT_FOUND);
+                return TransferStatus.ACCOUNT_NOT_FOUND;
+            }
+            if (accountFrom.getAccount_balance() < tranferAmount) {
+                transactionTemplate.setRollbackOnly(RollbackReason.INSUFFICIENT_BALANCE);
+                return TransferStatus.INSUFFICIENT_BALANCE;
+            }
+
+            // Both accounts are managed, so the changes are flushed on commit
+            accountFrom.setAccount_balance(accountFrom.getAccount_balance() - tranferAmount);
+            accountTo.setAccount_balance(accountTo.getAccount_balance() + tranferAmount);
+            ledgerDAO.recordTransfer(idAccountFrom, idAccountTo, tranferAmount, new Date());
+            return TransferStatus.COMPLETED;
+        });
+    }
+
+    private TransferStatus attemptGuardedTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return transactionTemplate.inTransaction(em -> guardedTransfer(tranferAmount, idAccountFrom, idAccountTo));
+    }
+
+    private TransferStatus guardedTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        // Each UPDATE locks its row, so the lower id is again updated first
+        boolean covered;
+        boolean deposited;
+        if (idAccountFrom < idAccountTo) {
+            covered = withdraw(idAccountFrom, tranferAmount);
+            deposited = covered && deposit(idAccountTo, tranferAmount);
+        } else {
+            deposited = deposit(idAccountTo, tranferAmount);
+            covered = deposited && withdraw(idAccountFrom, tranferAmount);
+        }
+        if (covered && deposited) {
+            ledgerDAO.recordTransfer(idAccountFrom, idAccountTo, tranferAmount, new Date());
+            return TransferStatus.COMPLETED;
+        }
+
+        // Only a rejected transfer pays for finding out why
+        if (!accountDAO.accountExists(idAccountFrom) || !accountDAO.accountExists(idAccountTo)) {
+            transactionTemplate.setRollbackOnly(RollbackReason.NOT_FOUND);
+            return TransferStatus.ACCOUNT_NOT_FOUND;
+        }
+        transactionTemplate.setRollbackOnly(RollbackReason.INSUFFICIENT_BALANCE);
+        return TransferStatus.INSUFFICIENT_BALANCE;
+    }
+
+    private TransferStatus attemptStoredTransfer(Integer tranferAmount, Integer idAccountFrom, Integer idAccountTo) {
+        return transactionTemplate.inTransaction(em -> {
+            int code = accountDAO.transferFunds(idAccountFrom, idAccountTo, tranferAmount);
+            if (code == TRANSFER_FUNCTION_STRIPED) {
+                // Striped by another instance; the function changed nothing
+                return guardedTransfer(tranferAmount, idAccountFrom, idAccountTo);
+            }
+            TransferStatus status = TRANSFER_FUNCTION_STATUSES[code];
+            // The function changed nothing; rolling back only counts the rejection like the other paths
+            if (status == TransferStatus.ACCOUNT_NOT_FOUND) {
+                transactionTemplate.setRollbackOnly(RollbackReason.NOT_FOUND);
+            } else if (status == TransferStatus.INSUFFICIENT_BALANCE) {
+                transactionTemplate.setRollbackOnly(RollbackReason.INSUFFICIENT_BALANCE);
+            }
+            return status;
+        });
+    }
+
+    private boolean hasTransferFunction() {
+        Boolean installed = transferFunctionInstalled;
+        if (installed == null) {
+            installed = transactionTemplate.inTransaction(em -> accountDAO.hasTransferFunction());
+            if (!installed) {
+                LOGGER.warning("The transfer_funds function is missing (see sql/transfer_funds.sql), "
+                        + "STORED_FUNCTION transfers take the LOCKED_ENTITIES path");
+            }
+            transferFunctionInstalled = installed;
+        }
+        return installed;
+    }
+
+    private TransferStatus evictIfCompleted(TransferStatus status, Integer idAccountFrom, Integer idAccountTo) {
+        if (status == TransferStatus.COMPLETED) {
+            // The balances were changed behind the persistence provider's back
+            transactionTemplate.evictFromCache(Account.class, idAccountFrom);
+            transactionTemplate.evictFromCache(Account.class, idAccountTo);
+        }
+        return status;
+    }
+
+    private boolean withdraw(Integer idAccount, Integer amount) {
+        if (stripedBalances.isStriped(idAccount)) {
+            return stripedBalances.debit(idAccount, amount);
+        }
+        // The guarded UPDATE skips accounts striped by another instance, whose row holds only part of
+        // the balance, so a rejected debit is checked against the row and the stripes together
+        return accountDAO.withdrawIfCovered(idAccount, amount) == 1 || stripedBalances.debit(idAccount, amount);
+    }
+
+    private boolean deposit(Integer idAccount, Integer amount) {
+        return stripedBalances.isStriped(idAccount)
+                ? stripedBalances.credit(idAccount, amount)
+                : accountDAO.deposit(idAccount, amount) == 1;
+    }
+}
@@ -0,0 +1,32 @@
+package service;
+
+/**
+ * How a single transfer changes the two account balances. The statement counts below are those
+ * TransferModeBenchmark measures for a completed transfer, including the two ledger entries and leaving
+ * out the commit; id allocation adds a few hundredths on average.
+ */
+public enum TransferMode {
+    /**
+     * Both Account entities are locked and read (SELECT ... FOR UPDATE), the balance is checked in Java
+     * and the changed entities are written back: six statements per transfer, two SELECTs, two UPDATEs
+     * and two ledger INSERTs.
+     */
+    LOCKED_ENTITIES,
+    /**
+     * Each balance is changed by one UPDATE, the one on the source account guarded by
+     * {@code account_balance >= amount}: four statements per transfer, the two UPDATEs and two ledger
+     * INSERTs, and no Account entity is read. A striped account is debited through its stripes instead,
+     * see StripedBalanceService.
+     * The accounts are evicted from the shared cache afterwards; Account entities already loaded by an
+     * enclosing unit of work are not refreshed.
+     */
+    GUARDED_UPDATE,
+    /**
+     * The transfer_funds database function of sql/transfer_funds.sql checks and changes both balances and
+     * appends the ledger entries: one statement per transfer. The accounts are evicted from the shared
+     * cache afterwards, as with {@link #GUARDED_UPDATE}. Where the function does not exist, e.g. on the
+     * embedded stand-in of the benchmarks, transfers take the {@link #LOCKED_ENTITIES} path, and
+     * transfers involving a striped account take the {@link #GUARDED_UPDATE} path.
+     */
+    STORED_FUNCTION
+}
@@ -0,0 +1,17 @@
+package service;
+
+/**
+ * Outcome of a money transfer between two accounts.
+ */
+public enum TransferStatus {
+    /** The transfer was committed. */
+    COMPLETED,
+    /** The amount is not positive or both sides are the same account. */
+    INVALID_REQUEST,
+    /** One of the accounts does not exist. */
+    ACCOUNT_NOT_FOUND,
+    /** The source account does not hold enough money. */
+    INSUFFICIENT_BALANCE,
+    /** The transfer was valid, but its all-or-nothing batch was rolled back because another transfer was rejected. */
+    ABORTED
+}
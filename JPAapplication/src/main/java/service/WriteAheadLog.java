@@ -0,0 +1,225 @@
+package service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * The write-ahead log of {@link BalanceEngine}: every applied transfer as a fixed-size record in
+ * memory-mapped segment files, named after the sequence of their first record. A record is
+ * <pre>
+ *   sequence (8 bytes) | from account (4) | to account (4) | amount in cents (8) | CRC32C of the above (4) | unused (4)
+ * </pre>
+ * Appending only copies the record into the mapping; {@link #sync()} forces everything appended since
+ * the previous sync to disk with one call, so a whole batch of transfers is made durable at once (group
+ * commit). Reading stops at the first record of a segment that is zero or fails its checksum, i.e. at the
+ * end of what was written or at a record torn by a crash, which was never acknowledged. After a restart
+ * appending continues in a new segment. Not thread-safe: the engine's writer thread is its only user.
+ */
+class WriteAheadLog implements AutoCloseable {
+    static final int RECORD_SIZE = 32;
+    private static final int CHECKSUMMED_BYTES = 24;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    /** The first sequence of every segment on disk, oldest first, the current one last. */
+    private final List<Long> segments = new ArrayList<>();
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private int syncedPosition;
+
+    /**
+     * Receives the records of the log.
+     */
+    interface RecordConsumer {
+        void accept(long sequence, int idAccountFrom, int idAccountTo, long cents);
+    }
+
+    /**
+     * Opens the log; nothing can be appended before {@link #startSegment(long)}.
+     *
+     * @param directory   The directory of the segments, created if it does not exist.
+     * @param segmentSize The size of a segment in bytes, rounded down to whole records.
+     */
+    WriteAheadLog(Path directory, int segmentSize) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("segmentSize must hold at least one record");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the write-ahead log in " + directory, e);
+        }
+        Collections.sort(segments);
+    }
+
+    /**
+     * Reads the records of every segment in sequence order.
+     *
+     * @param afterSequence Records up to and including this sequence are skipped.
+     * @param consumer      Receives the records after it.
+     * @return The highest sequence in the log, or afterSequence if it is higher.
+     */
+    long replay(long afterSequence, RecordConsumer consumer) {
+        long last = afterSequence;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        for (Long first : segments) {
+            try (FileChannel segment = FileChannel.open(segmentFile(first), StandardOpenOption.READ)) {
+                long position = 0;
+                while (true) {
+                    record.clear();
+                    if (segment.read(record, position) < RECORD_SIZE) {
+                        break;
+                    }
+                    long sequence = record.getLong(0);
+                    if (sequence <= 0 || record.getInt(CHECKSUMMED_BYTES) != checksum(record)) {
+                        break;
+                    }
+                    if (sequence > afterSequence) {
+                        consumer.accept(sequence, record.getInt(8), record.getInt(12), record.getLong(16));
+                    }
+                    last = Math.max(last, sequence);
+                    position += RECORD_SIZE;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the write-ahead log segment " + first, e);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Starts appending to a new segment.
+     *
+     * @param firstSequence The sequence of the next record.
+     */
+    void startSegment(long firstSequence) {
+        if (mapping != null) {
+            forceAll();
+        }
+        closeSegment();
+        try {
+            Path file = segmentFile(firstSequence);
+            // A segment left by a run that crashed before its first sync holds no acknowledged record
+            Files.deleteIfExists(file);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            syncedPosition = 0;
+            segments.remove(firstSequence);
+            segments.add(firstSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the write-ahead log segment " + firstSequence, e);
+        }
+    }
+
+    /**
+     * Copies a record into the current segment, starting a new one when it is full. The record is not
+     * durable until the next {@link #sync()}.
+     */
+    void append(long sequence, int idAccountFrom, int idAccountTo, long cents) {
+        if (!mapping.hasRemaining()) {
+            startSegment(sequence);
+        }
+        int position = mapping.position();
+        mapping.putLong(sequence).putInt(idAccountFrom).putInt(idAccountTo).putLong(cents);
+        crc.reset();
+        crc.update(mapping.duplicate().position(position).limit(position + CHECKSUMMED_BYTES));
+        mapping.putInt((int) crc.getValue()).putInt(0);
+    }
+
+    /**
+     * Forces the records appended since the previous sync to disk.
+     */
+    void sync() {
+        int position = mapping.position();
+        if (position > syncedPosition) {
+            mapping.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+    }
+
+    /**
+     * Deletes the segments whose records are all included in a checkpoint; the current segment is kept.
+     *
+     * @param checkpointSequence The sequence of the last transfer the checkpoint includes.
+     * @return The number of segments deleted.
+     */
+    int deleteUpTo(long checkpointSequence) {
+        int deleted = 0;
+        // A segment ends where the next one starts
+        while (segments.size() > 1 && segments.get(1) - 1 <= checkpointSequence) {
+            try {
+                Files.deleteIfExists(segmentFile(segments.get(0)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete the write-ahead log segment " + segments.get(0), e);
+            }
+            segments.remove(0);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        if (mapping != null) {
+            forceAll();
+        }
+        closeSegment();
+    }
+
+    private void forceAll() {
+        mapping.force();
+        syncedPosition = mapping.position();
+    }
+
+    private void closeSegment() {
+        // The mapping itself is released when it is garbage collected
+        mapping = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close the write-ahead log segment", e);
+            } finally {
+                channel = null;
+            }
+        }
+    }
+
+    private int checksum(ByteBuffer record) {
+        crc.reset();
+        crc.update(record.duplicate().position(0).limit(CHECKSUMMED_BYTES));
+        return (int) crc.getValue();
+    }
+
+    private Path segmentFile(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+}
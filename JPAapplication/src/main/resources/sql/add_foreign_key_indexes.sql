@@ -0,0 +1,15 @@
+-- Adds the indexes declared on the entities for foreign key and join columns to a database whose tables
+-- were created before they were declared; schema generation only adds indexes to the tables it creates.
+--
+-- CONCURRENTLY builds each index without blocking writes, so the application may keep running, but it
+-- cannot run inside a transaction; run the file with psql's default autocommit:
+--   psql -d <database> -f add_foreign_key_indexes.sql
+-- If a build fails it leaves an INVALID index behind; drop it and run the file again.
+--
+-- Already indexed and left alone: payment_card.account_id (unique), customer.id_person (primary key)
+-- and person_account.account_id (first column of the primary key).
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS account_iban_idx ON account (iban);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS education_id_person_idx ON education (id_person);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS employee_id_superior_idx ON employee (id_superior);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS person_account_person_id_idx ON person_account (person_id);
@@ -0,0 +1,11 @@
+-- Adds the striped column of Account to an existing database and marks the accounts whose balance is
+-- already split over account_stripe rows. The balance of an account that is not striped is its row's
+-- alone, so reading it loads no stripes, and the guarded debit of TransferMode.GUARDED_UPDATE leaves
+-- striped accounts to StripedBalanceService, since their row holds only part of the balance.
+--
+-- Run it once before deploying the version of the application that maps the column:
+--   psql -d <database> -f add_striped_column.sql
+
+ALTER TABLE account ADD COLUMN IF NOT EXISTS striped boolean NOT NULL DEFAULT false;
+UPDATE account SET striped = true, version = version + 1
+WHERE NOT striped AND id_account IN (SELECT id_account FROM account_stripe);
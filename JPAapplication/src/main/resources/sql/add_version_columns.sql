@@ -0,0 +1,11 @@
+-- Adds the optimistic locking version columns of Account and Payment_card to an existing database.
+-- Existing rows start at version 0; the application increments the version with every update and
+-- rejects an update whose version no longer matches. Code that updates these tables without the
+-- EntityManager must increment the version as well, e.g.
+--   UPDATE account SET account_balance = account_balance + 10, version = version + 1 WHERE id_account = 1;
+--
+-- Run it once before deploying the version of the application that maps the columns:
+--   psql -d <database> -f add_version_columns.sql
+
+ALTER TABLE account ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
+ALTER TABLE payment_card ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0;
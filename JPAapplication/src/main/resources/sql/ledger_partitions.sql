@@ -0,0 +1,97 @@
+-- Turns the ledger_entry table into one partitioned by month of booked_at, so that a month that is no
+-- longer needed online can be detached (and archived or dropped) in an instant instead of deleted row
+-- by row. The ledger tail of a point-in-time balance only reads the months it covers, but planning it
+-- costs more with every attached partition, so detach the months that are no longer queried.
+--
+-- Run it once, with the application stopped; rows already in ledger_entry are moved over:
+--   psql -d <database> -f ledger_partitions.sql
+-- and create the partitions of the coming months ahead of time, e.g. from a monthly job:
+--   SELECT ledger_ensure_partitions(current_date, (current_date + interval '3 months')::date);
+-- (BankService.ensureLedgerPartitions does the same.) Entries of a month without a partition end up
+-- in ledger_entry_default. PostgreSQL refuses to create a partition for a range the default partition
+-- holds rows of, so ledger_ensure_partitions then detaches the default partition, creates the
+-- partition, moves the month's rows into it and attaches the default partition again. That holds an
+-- exclusive lock on ledger_entry while the rows move, so keep creating the partitions ahead of time.
+--
+-- To take an old month offline:
+--   ALTER TABLE ledger_entry DETACH PARTITION ledger_entry_y2024m01;
+-- Balances at an instant in a detached month are then answered only from the snapshots; keep at
+-- least the last balance_snapshot of every account taken before the oldest attached month.
+
+CREATE SEQUENCE IF NOT EXISTS ledger_entry_id_entry_seq INCREMENT BY 50;
+
+DO $$
+BEGIN
+    IF to_regclass('ledger_entry') IS NOT NULL
+       AND NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'ledger_entry'::regclass) THEN
+        ALTER TABLE ledger_entry RENAME TO ledger_entry_unpartitioned;
+        ALTER INDEX IF EXISTS ledger_entry_account_booked_idx RENAME TO ledger_entry_unpartitioned_account_booked_idx;
+    END IF;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS ledger_entry (
+    id_entry        bigint           NOT NULL DEFAULT nextval('ledger_entry_id_entry_seq'),
+    id_account      integer          NOT NULL,
+    counter_account integer,
+    amount          double precision NOT NULL,
+    booked_at       timestamp        NOT NULL,
+    -- A unique constraint on a partitioned table must contain the partition key
+    PRIMARY KEY (id_entry, booked_at)
+) PARTITION BY RANGE (booked_at);
+
+ALTER SEQUENCE ledger_entry_id_entry_seq OWNED BY ledger_entry.id_entry;
+
+CREATE INDEX IF NOT EXISTS ledger_entry_account_booked_idx ON ledger_entry (id_account, booked_at);
+
+CREATE TABLE IF NOT EXISTS ledger_entry_default PARTITION OF ledger_entry DEFAULT;
+
+CREATE OR REPLACE FUNCTION ledger_ensure_partitions(from_month date, to_month date) RETURNS void AS $$
+DECLARE
+    month date := date_trunc('month', from_month);
+    next_month date;
+    partition text;
+BEGIN
+    WHILE month <= to_month LOOP
+        partition := 'ledger_entry_' || to_char(month, '"y"YYYY"m"MM');
+        next_month := month + interval '1 month';
+        IF to_regclass(partition) IS NULL THEN
+            IF EXISTS (SELECT 1 FROM ledger_entry_default WHERE booked_at >= month AND booked_at < next_month) THEN
+                -- The new partition would overlap rows of the default one, so those move with it
+                ALTER TABLE ledger_entry DETACH PARTITION ledger_entry_default;
+                EXECUTE format('CREATE TABLE %I PARTITION OF ledger_entry FOR VALUES FROM (%L) TO (%L)',
+                               partition, month, next_month);
+                EXECUTE format('INSERT INTO %I (id_entry, id_account, counter_account, amount, booked_at) '
+                               'SELECT id_entry, id_account, counter_account, amount, booked_at '
+                               'FROM ledger_entry_default WHERE booked_at >= %L AND booked_at < %L',
+                               partition, month, next_month);
+                DELETE FROM ledger_entry_default WHERE booked_at >= month AND booked_at < next_month;
+                ALTER TABLE ledger_entry ATTACH PARTITION ledger_entry_default DEFAULT;
+            ELSE
+                EXECUTE format('CREATE TABLE %I PARTITION OF ledger_entry FOR VALUES FROM (%L) TO (%L)',
+                               partition, month, next_month);
+            END IF;
+        END IF;
+        month := next_month;
+    END LOOP;
+END
+$$ LANGUAGE plpgsql;
+
+DO $$
+DECLARE
+    first_month date;
+    last_month date;
+BEGIN
+    IF to_regclass('ledger_entry_unpartitioned') IS NOT NULL THEN
+        SELECT MIN(booked_at)::date, MAX(booked_at)::date INTO first_month, last_month
+        FROM ledger_entry_unpartitioned;
+        IF first_month IS NOT NULL THEN
+            PERFORM ledger_ensure_partitions(first_month, last_month);
+        END IF;
+        INSERT INTO ledger_entry (id_entry, id_account, counter_account, amount, booked_at)
+        SELECT id_entry, id_account, counter_account, amount, booked_at FROM ledger_entry_unpartitioned;
+        DROP TABLE ledger_entry_unpartitioned;
+    END IF;
+    PERFORM ledger_ensure_partitions(current_date, (current_date + interval '3 months')::date);
+END
+$$;
@@ -0,0 +1,64 @@
+-- Moves an existing PostgreSQL database from one id per insert (serial / identity columns) to the
+-- block-allocated sequences the entities use with bank.id.generation=sequence.
+--
+-- For every table the id sequence gets the name the entity expects (<table>_<column>_seq), an
+-- INCREMENT BY equal to bank.id.allocation-size (50), and a next value past the largest id in use.
+-- The column default is kept, so plain INSERTs written by hand still get a fresh id; they only use
+-- up ids faster.
+--
+-- Run it once, with the application stopped:
+--   psql -d <database> -f migrate_ids_to_sequences.sql
+--
+-- To go back to bank.id.generation=identity, set the increment back to 1:
+--   ALTER SEQUENCE person_id_person_seq INCREMENT BY 1;   -- and so on for each table
+-- Ids handed out in blocks stay valid; the gaps they leave are never reused.
+
+DO $$
+DECLARE
+    allocation_size CONSTANT integer := 50;
+    id_columns CONSTANT text[][] := ARRAY[
+        ['bank', 'id_bank'],
+        ['account', 'id_account'],
+        ['person', 'id_person'],
+        ['payment_card', 'id_card'],
+        ['education', 'id_education']];
+    tbl text;
+    col text;
+    expected text;
+    current_sequence text;
+    max_id bigint;
+BEGIN
+    FOR i IN 1 .. array_length(id_columns, 1) LOOP
+        tbl := id_columns[i][1];
+        col := id_columns[i][2];
+        expected := tbl || '_' || col || '_seq';
+        current_sequence := pg_get_serial_sequence(tbl, col);
+
+        IF current_sequence IS NULL THEN
+            -- The column has no sequence of its own: create one and make it the column default
+            IF to_regclass(expected) IS NULL THEN
+                EXECUTE format('CREATE SEQUENCE %I', expected);
+            END IF;
+            EXECUTE format('ALTER SEQUENCE %I OWNED BY %I.%I', expected, tbl, col);
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN %I SET DEFAULT nextval(%L)',
+                           tbl, col, expected);
+        ELSIF to_regclass(expected) IS NULL THEN
+            EXECUTE format('ALTER SEQUENCE %s RENAME TO %I', current_sequence, expected);
+        ELSIF current_sequence::regclass <> to_regclass(expected) THEN
+            RAISE EXCEPTION 'Sequence % is in the way of the sequence of %.%', expected, tbl, col;
+        END IF;
+
+        -- GENERATED ALWAYS identity columns reject the ids the application brings along
+        IF EXISTS (SELECT 1 FROM information_schema.columns c
+                   WHERE c.table_name = tbl AND c.column_name = col AND c.identity_generation = 'ALWAYS') THEN
+            EXECUTE format('ALTER TABLE %I ALTER COLUMN %I SET GENERATED BY DEFAULT', tbl, col);
+        END IF;
+
+        EXECUTE format('ALTER SEQUENCE %I INCREMENT BY %s', expected, allocation_size);
+        -- Each nextval() is the last id of a block, so start one block past the largest id
+        EXECUTE format('SELECT COALESCE(MAX(%I), 0) FROM %I', col, tbl) INTO max_id;
+        PERFORM setval(expected, max_id + allocation_size, false);
+        RAISE NOTICE '%.% now takes ids from % in blocks of %', tbl, col, expected, allocation_size;
+    END LOOP;
+END
+$$;
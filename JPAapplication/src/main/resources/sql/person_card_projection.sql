@@ -0,0 +1,101 @@
+-- Replaces the person_card view with a table of the same rows that triggers on person and payment_card
+-- keep up to date, row by row, as they change. Reading it is an index lookup instead of a join, and
+-- nothing has to be dropped and re-created to read it. The rows are the ones the view had: every
+-- payment card with the person whose id_person equals the card's account_id.
+--
+-- Run it once, with the application stopped (it is safe to run again):
+--   psql -d <database> -f person_card_projection.sql
+-- TRUNCATE of person or payment_card does not fire the triggers; run the last block again after one.
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = 'person_card' AND relkind = 'v'
+               AND pg_table_is_visible(oid)) THEN
+        DROP VIEW person_card;
+    END IF;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS person_card (
+    id_card                  integer     NOT NULL PRIMARY KEY,
+    id_person                integer     NOT NULL,
+    birth_certificate_number varchar(10) NOT NULL,
+    person_name              varchar(50) NOT NULL,
+    card_number              varchar(20) NOT NULL UNIQUE,
+    card_status              varchar(7)  NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS person_card_birth_certificate_number_idx ON person_card (birth_certificate_number);
+-- Lets a change of a person find its rows
+CREATE INDEX IF NOT EXISTS person_card_id_person_idx ON person_card (id_person);
+
+CREATE OR REPLACE FUNCTION person_card_on_card_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM person_card WHERE id_card = OLD.id_card;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO person_card (id_card, id_person, birth_certificate_number, person_name, card_number, card_status)
+        SELECT NEW.id_card, p.id_person, p.birth_certificate_number, p.full_name, NEW.card_number, NEW.card_status
+        FROM person p
+        WHERE p.id_person = NEW.account_id;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION person_card_on_person_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND OLD.id_person = NEW.id_person THEN
+        UPDATE person_card
+        SET birth_certificate_number = NEW.birth_certificate_number, person_name = NEW.full_name
+        WHERE id_person = NEW.id_person;
+        RETURN NULL;
+    END IF;
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        DELETE FROM person_card WHERE id_person = OLD.id_person;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO person_card (id_card, id_person, birth_certificate_number, person_name, card_number, card_status)
+        SELECT pc.id_card, NEW.id_person, NEW.birth_certificate_number, NEW.full_name, pc.card_number, pc.card_status
+        FROM payment_card pc
+        WHERE pc.account_id = NEW.id_person;
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+-- Updates that touch none of the projected columns, e.g. of a card's expiration date or a person's
+-- address, do not fire the triggers at all
+DROP TRIGGER IF EXISTS person_card_on_card_insert_delete ON payment_card;
+CREATE TRIGGER person_card_on_card_insert_delete AFTER INSERT OR DELETE ON payment_card
+    FOR EACH ROW EXECUTE FUNCTION person_card_on_card_change();
+DROP TRIGGER IF EXISTS person_card_on_card_update ON payment_card;
+CREATE TRIGGER person_card_on_card_update AFTER UPDATE OF id_card, card_number, card_status, account_id ON payment_card
+    FOR EACH ROW
+    WHEN (OLD.id_card IS DISTINCT FROM NEW.id_card OR OLD.card_number IS DISTINCT FROM NEW.card_number
+          OR OLD.card_status IS DISTINCT FROM NEW.card_status OR OLD.account_id IS DISTINCT FROM NEW.account_id)
+    EXECUTE FUNCTION person_card_on_card_change();
+
+DROP TRIGGER IF EXISTS person_card_on_person_insert_delete ON person;
+CREATE TRIGGER person_card_on_person_insert_delete AFTER INSERT OR DELETE ON person
+    FOR EACH ROW EXECUTE FUNCTION person_card_on_person_change();
+DROP TRIGGER IF EXISTS person_card_on_person_update ON person;
+CREATE TRIGGER person_card_on_person_update AFTER UPDATE OF id_person, birth_certificate_number, full_name ON person
+    FOR EACH ROW
+    WHEN (OLD.id_person IS DISTINCT FROM NEW.id_person
+          OR OLD.birth_certificate_number IS DISTINCT FROM NEW.birth_certificate_number
+          OR OLD.full_name IS DISTINCT FROM NEW.full_name)
+    EXECUTE FUNCTION person_card_on_person_change();
+
+-- Fill the table from scratch; the locks keep person and payment_card from changing meanwhile
+DO $$
+BEGIN
+    LOCK TABLE person, payment_card IN SHARE MODE;
+    DELETE FROM person_card;
+    INSERT INTO person_card (id_card, id_person, birth_certificate_number, person_name, card_number, card_status)
+    SELECT pc.id_card, p.id_person, p.birth_certificate_number, p.full_name, pc.card_number, pc.card_status
+    FROM person p
+    JOIN payment_card pc ON p.id_person = pc.account_id;
+END
+$$;
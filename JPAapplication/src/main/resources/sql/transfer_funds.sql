@@ -0,0 +1,63 @@
+-- Creates transfer_funds(from, to, amount), a money transfer that runs inside the database, so the
+-- application moves money with a single statement (TransferMode.STORED_FUNCTION). It does what
+-- TransferEngine does in Java: locks both account rows, the lower id first, checks the balance, debits,
+-- credits, bumps the versions the entities check and appends the two ledger entries. It returns a
+-- status code:
+--   0  completed
+--   1  invalid request (amount not positive, an id missing, or the same account on both sides)
+--   2  account not found
+--   3  insufficient balance
+--   4  an account is striped
+-- Nothing is changed unless it returns 0. Striped accounts (see StripedBalanceService) are not handled
+-- here, their rows hold only part of the balance; the application sends transfers involving them down
+-- the guarded UPDATE path instead, also when the function returns 4 for an account the application did
+-- not yet know to be striped.
+--
+-- It reads the striped column of add_striped_column.sql. Run it once (it is safe to run again); until
+-- it exists the application falls back to the JPA path:
+--   psql -d <database> -f transfer_funds.sql
+
+CREATE OR REPLACE FUNCTION transfer_funds(p_from integer, p_to integer, p_amount double precision)
+RETURNS integer AS $$
+DECLARE
+    from_balance double precision;
+    found_accounts integer;
+    striped_accounts integer;
+BEGIN
+    IF p_amount IS NULL OR p_amount <= 0 OR p_from IS NULL OR p_to IS NULL OR p_from = p_to THEN
+        RETURN 1;
+    END IF;
+
+    -- The rows are locked in the order of the sort, so two opposite transfers cannot deadlock
+    SELECT count(*), max(locked.account_balance) FILTER (WHERE locked.id_account = p_from),
+           count(*) FILTER (WHERE locked.striped)
+    INTO found_accounts, from_balance, striped_accounts
+    FROM (SELECT id_account, account_balance, striped
+          FROM account
+          WHERE id_account IN (p_from, p_to)
+          ORDER BY id_account
+          FOR UPDATE) locked;
+
+    IF found_accounts < 2 THEN
+        RETURN 2;
+    END IF;
+    IF striped_accounts > 0 THEN
+        RETURN 4;
+    END IF;
+    IF from_balance < p_amount THEN
+        RETURN 3;
+    END IF;
+
+    UPDATE account SET account_balance = account_balance - p_amount, version = version + 1
+    WHERE id_account = p_from;
+    UPDATE account SET account_balance = account_balance + p_amount, version = version + 1
+    WHERE id_account = p_to;
+
+    -- Every value nextval returns is this call's alone, whichever block of ids the application
+    -- reads it as, so one call per entry never collides with ids the application allocated
+    INSERT INTO ledger_entry (id_entry, id_account, counter_account, amount, booked_at)
+    VALUES (nextval('ledger_entry_id_entry_seq'), p_from, p_to, -p_amount, localtimestamp),
+           (nextval('ledger_entry_id_entry_seq'), p_to, p_from, p_amount, localtimestamp);
+    RETURN 0;
+END;
+$$ LANGUAGE plpgsql;
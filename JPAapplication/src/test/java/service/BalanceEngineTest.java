@@ -0,0 +1,162 @@
+package service;
+
+import entities.Bank;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The {@link BalanceEngine} on an in-memory database: transfers, checkpoints to the account table and
+ * the recovery of a restarted engine from the last checkpoint and the write-ahead log. Checkpoints are
+ * only taken on request or on close, so a test controls what the account table holds.
+ */
+class BalanceEngineTest {
+    private static final int SEGMENT_SIZE = 64 * WriteAheadLog.RECORD_SIZE;
+    private static final Duration NO_PERIODIC_CHECKPOINT = Duration.ofHours(1);
+
+    @TempDir
+    Path walDirectory;
+
+    private TestDatabase database;
+    private Integer accountA;
+    private Integer accountB;
+
+    @BeforeEach
+    void createAccounts() {
+        database = new TestDatabase();
+        Bank bank = database.createBank();
+        accountA = database.createAccount(bank, 100);
+        accountB = database.createAccount(bank, 0);
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void transfersAreAppliedInMemoryAndWrittenByACheckpoint() {
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            assertEquals(TransferStatus.COMPLETED, engine.makeMoneyTransfer(30, accountA, accountB).join());
+            assertEquals(TransferStatus.INSUFFICIENT_BALANCE, engine.makeMoneyTransfer(71, accountA, accountB).join());
+            assertEquals(TransferStatus.ACCOUNT_NOT_FOUND, engine.makeMoneyTransfer(1, accountA, -1).join());
+            assertEquals(TransferStatus.INVALID_REQUEST, engine.makeMoneyTransfer(1, accountA, accountA).join());
+
+            assertEquals(70.0, engine.findBalance(accountA));
+            assertEquals(30.0, engine.findBalance(accountB));
+            // Nothing reaches the account table before a checkpoint
+            assertEquals(100.0, tableBalance(accountA));
+
+            assertEquals(1, engine.checkpoint());
+            assertEquals(70.0, tableBalance(accountA));
+            assertEquals(30.0, tableBalance(accountB));
+        }
+    }
+
+    @Test
+    void aRestartReplaysTheLoggedTransfersAfterTheCheckpoint() {
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            engine.makeMoneyTransfer(10, accountA, accountB).join();
+        }
+        // The engine above checkpointed transfer 1 on close; a run that crashed before its next
+        // checkpoint left transfers 2 and 3 in the log
+        try (WriteAheadLog wal = new WriteAheadLog(walDirectory, SEGMENT_SIZE)) {
+            wal.startSegment(2);
+            wal.append(2, accountA, accountB, 2_000);
+            wal.append(3, accountB, accountA, 500);
+            wal.sync();
+        }
+
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            assertEquals(2, engine.getRecoveredAccounts());
+            assertEquals(2, engine.getReplayedTransfers());
+            assertEquals(75.0, engine.findBalance(accountA));
+            assertEquals(25.0, engine.findBalance(accountB));
+            // The replayed transfers are only in memory until the next checkpoint
+            assertEquals(90.0, tableBalance(accountA));
+
+            assertEquals(TransferStatus.COMPLETED, engine.makeMoneyTransfer(5, accountA, accountB).join());
+            assertEquals(4, engine.checkpoint());
+            assertEquals(70.0, tableBalance(accountA));
+            assertEquals(30.0, tableBalance(accountB));
+        }
+    }
+
+    @Test
+    void aRestartAfterARunWithoutTransfersStartsTheSameSegmentAgain() {
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            engine.makeMoneyTransfer(10, accountA, accountB).join();
+        }
+        // Starts segment 2 and never syncs it, as no transfer is made
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            assertEquals(0, engine.getReplayedTransfers());
+        }
+
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            assertEquals(90.0, engine.findBalance(accountA));
+            assertEquals(TransferStatus.COMPLETED, engine.makeMoneyTransfer(20, accountA, accountB).join());
+            assertEquals(2, engine.checkpoint());
+        }
+        assertEquals(70.0, tableBalance(accountA));
+        assertEquals(30.0, tableBalance(accountB));
+    }
+
+    @Test
+    void aCheckpointDeletesTheSegmentsItCovers() throws Exception {
+        try (BalanceEngine engine = new BalanceEngine(database.getTransactionTemplate(), walDirectory,
+                2 * WriteAheadLog.RECORD_SIZE, 1, NO_PERIODIC_CHECKPOINT)) {
+            engine.start();
+            for (int i = 0; i < 5; i++) {
+                engine.makeMoneyTransfer(1, accountA, accountB).join();
+            }
+            assertEquals(5, engine.checkpoint());
+
+            // The writer deletes the segments of transfers 1-4 once it sees the checkpoint committed
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (segmentCount() > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, segmentCount());
+        }
+
+        // The segment of transfer 5 holds nothing after the checkpoint
+        try (BalanceEngine engine = newEngine()) {
+            engine.start();
+            assertEquals(0, engine.getReplayedTransfers());
+            assertEquals(95.0, engine.findBalance(accountA));
+        }
+    }
+
+    private BalanceEngine newEngine() {
+        return new BalanceEngine(database.getTransactionTemplate(), walDirectory, SEGMENT_SIZE, 16,
+                NO_PERIODIC_CHECKPOINT);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(walDirectory)) {
+            return files.count();
+        }
+    }
+
+    private double tableBalance(Integer idAccount) {
+        return database.getTransactionTemplate().withEntityManager(em -> ((Number) em
+                .createNativeQuery("SELECT account_balance FROM account WHERE id_account = ?")
+                .setParameter(1, idAccount)
+                .getSingleResult()).doubleValue());
+    }
+}
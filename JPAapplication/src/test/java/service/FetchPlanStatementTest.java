@@ -0,0 +1,195 @@
+package service;
+
+import DAO.FetchPlan;
+import entities.Account;
+import entities.Bank;
+import entities.Education;
+import entities.Employee;
+import entities.Payment_card;
+import entities.Person;
+import metrics.TransactionStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The SQL statements it takes to load a graph by a {@link FetchPlan} and walk it, counted by
+ * {@link TransactionStatistics} on a cold shared cache. Walking the graph lazily costs statements per
+ * entity; the plan costs the same few statements whatever the size of the graph.
+ */
+class FetchPlanStatementTest {
+    private static final AtomicInteger UNIQUE = new AtomicInteger();
+
+    private TestDatabase database;
+    private BankService bankService;
+
+    @BeforeEach
+    void startDatabase() {
+        database = new TestDatabase();
+        bankService = database.getBankService();
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void bankAccountBookTakesOneStatementWhateverTheNumberOfAccounts() {
+        for (int accounts : new int[]{5, 20}) {
+            Integer idBank = createAccountBook(accounts).getId_bank();
+            long lazy = statements(() -> database.getTransactionTemplate()
+                    .withEntityManager(em -> walkAccounts(em.find(Bank.class, idBank).getAccounts(), accounts, true)));
+            long planned = statements(() -> walkAccounts(
+                    bankService.findBank(idBank, FetchPlan.BANK_ACCOUNT_BOOK).getAccounts(), accounts, true));
+
+            // The batch fetches of the banks and cards still leave a holders query per account
+            assertTrue(lazy > accounts, "lazy walk took " + lazy + " statements");
+            assertEquals(1, planned);
+        }
+    }
+
+    @Test
+    void personAccountsTakeTwoStatementsWhateverTheNumberOfAccounts() {
+        for (int accounts : new int[]{5, 20}) {
+            Integer idPerson = createHolder(accounts);
+            long planned = statements(() -> walkAccounts(
+                    bankService.findPerson(idPerson, FetchPlan.PERSON_ACCOUNTS).getAccounts(), accounts, false));
+
+            // The lookup of the subclass of the person, then the join of the plan
+            assertEquals(2, planned);
+        }
+    }
+
+    @Test
+    void employeePortfolioTakesOneStatementWhateverTheNumberOfEducations() {
+        for (int educations : new int[]{5, 20}) {
+            Integer idEmployee = createPortfolio(educations);
+            long lazy = statements(() -> database.getTransactionTemplate()
+                    .withEntityManager(em -> walkPortfolio(em.find(Employee.class, idEmployee), educations)));
+            long planned = statements(() -> walkPortfolio(
+                    bankService.findEmployee(idEmployee, FetchPlan.EMPLOYEE_PORTFOLIO), educations));
+
+            // The employee, its customers and its educations
+            assertEquals(3, lazy);
+            assertEquals(1, planned);
+        }
+    }
+
+    /**
+     * Creates a person holding accounts of different banks, each with a payment card.
+     */
+    private Integer createHolder(int accounts) {
+        Person holder = fill(new Person());
+        holder.setAccounts(new ArrayList<>());
+        database.getTransactionTemplate().runInTransaction(em -> {
+            for (int i = 0; i < accounts; i++) {
+                Account account = em.find(Account.class, database.createAccount(database.createBank(), 100));
+                em.persist(paymentCard(account));
+                holder.getAccounts().add(account);
+            }
+            em.persist(holder);
+        });
+        return holder.getId_person();
+    }
+
+    /**
+     * Creates an employee with as many educations.
+     */
+    private Integer createPortfolio(int educations) {
+        Employee employee = fill(new Employee());
+        database.getTransactionTemplate().runInTransaction(em -> {
+            em.persist(employee);
+            for (int i = 0; i < educations; i++) {
+                em.persist(new Education(null, "University " + i, employee));
+            }
+        });
+        return employee.getId_person();
+    }
+
+    private static int walkPortfolio(Employee employee, int educations) {
+        assertEquals(0, employee.getCustomers().size());
+        assertEquals(educations, employee.getEducations().size());
+        return educations;
+    }
+
+    /**
+     * Creates a bank with accounts that each have a payment card and two holders.
+     */
+    private Bank createAccountBook(int accounts) {
+        Bank bank = database.createBank();
+        database.getTransactionTemplate().runInTransaction(em -> {
+            for (int i = 0; i < accounts; i++) {
+                Account account = em.find(Account.class, database.createAccount(bank, 100));
+                em.persist(paymentCard(account));
+                for (int h = 0; h < 2; h++) {
+                    Person holder = fill(new Person());
+                    holder.setAccounts(new ArrayList<>(List.of(account)));
+                    em.persist(holder);
+                }
+            }
+        });
+        return bank;
+    }
+
+    /**
+     * Runs the work on a cold shared cache.
+     *
+     * @return The statements the work executed.
+     */
+    private long statements(Supplier<?> work) {
+        database.getEntityManagerFactory().getCache().evictAll();
+        TransactionStatistics statistics = TransactionStatistics.getInstance();
+        long before = statistics.getStatements();
+        work.get();
+        return statistics.getStatements() - before;
+    }
+
+    /**
+     * Reads the bank and payment card of every account, and its holders if asked to.
+     */
+    private static int walkAccounts(Collection<Account> accounts, int expected, boolean holders) {
+        assertEquals(expected, accounts.size());
+        for (Account account : accounts) {
+            assertNotNull(account.getBank().getBank_name());
+            assertNotNull(account.getPaymentCard());
+            if (holders) {
+                assertFalse(account.getPersons().isEmpty());
+            }
+        }
+        return expected;
+    }
+
+    private static Payment_card paymentCard(Account account) {
+        Payment_card card = new Payment_card();
+        card.setCard_number(String.format("%016d", UNIQUE.incrementAndGet()));
+        card.setCard_status("active");
+        card.setExpiration_date(new Date(System.currentTimeMillis() + 3L * 365 * 24 * 3600 * 1000));
+        card.setCVC((short) 123);
+        card.setAccount(account);
+        return card;
+    }
+
+    private static <T extends Person> T fill(T person) {
+        int n = UNIQUE.incrementAndGet();
+        person.setBirth_certificate_number(String.format("%010d", n));
+        person.setBirth_date(new Date(0));
+        person.setFull_name("Person " + n);
+        person.setEmail("person" + n + "@example.com");
+        person.setPhone_number("+420" + n);
+        person.setCountry("Czechia");
+        person.setCity("Prague");
+        person.setPostcode("11000");
+        person.setStreet("Street " + n);
+        return person;
+    }
+}
@@ -0,0 +1,171 @@
+package service;
+
+import DAO.Shard;
+import DAO.ShardRouter;
+import DAO.TransactionTemplate;
+import entities.Account;
+import entities.Bank;
+import entities.TransferSaga;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transfers between two shards, each an in-memory database of its own. The destination shard can be
+ * made to fail every transaction, which interrupts a transfer after the source shard took the money.
+ */
+class ShardedTransferTest {
+    private TestDatabase sourceDatabase;
+    private TestDatabase destinationDatabase;
+    private FailingTransactionTemplate destinationTemplate;
+    private ShardRouter shardRouter;
+    private ShardedBankService sharded;
+    private Shard source;
+    private Shard destination;
+    private Integer accountFrom;
+    private Integer accountTo;
+
+    @BeforeEach
+    void createShards() {
+        sourceDatabase = new TestDatabase();
+        destinationDatabase = new TestDatabase();
+        destinationTemplate = new FailingTransactionTemplate(destinationDatabase.getEntityManagerFactory());
+        shardRouter = new ShardRouter(List.of(sourceDatabase.getTransactionTemplate(), destinationTemplate));
+        shardRouter.initializeIds();
+        sharded = new ShardedBankService(shardRouter, new RetryPolicy(3, 1, 5));
+        source = shardRouter.getShards().get(0);
+        destination = shardRouter.getShards().get(1);
+        accountFrom = createAccount(source, 100);
+        accountTo = createAccount(destination, 0);
+    }
+
+    @AfterEach
+    void closeShards() {
+        shardRouter.close();
+        sourceDatabase.close();
+        destinationDatabase.close();
+    }
+
+    @Test
+    void aTransferBetweenShardsMovesTheMoneyAndCompletesTheSaga() {
+        assertEquals(TransferStatus.COMPLETED, sharded.makeMoneyTransfer(30, accountFrom, accountTo));
+
+        assertEquals(70.0, balance(source, accountFrom));
+        assertEquals(30.0, balance(destination, accountTo));
+        assertEquals(100.0, sharded.totalBalance());
+        assertEquals(1, sagas(source, TransferSaga.State.COMPLETED).size());
+        assertEquals(1, sagas(destination, TransferSaga.State.CREDITED).size());
+    }
+
+    @Test
+    void aRejectedTransferBetweenShardsTakesNoMoney() {
+        assertEquals(TransferStatus.INSUFFICIENT_BALANCE, sharded.makeMoneyTransfer(101, accountFrom, accountTo));
+        assertEquals(TransferStatus.ACCOUNT_NOT_FOUND, sharded.makeMoneyTransfer(10, accountFrom, accountTo + 1));
+
+        assertEquals(100.0, balance(source, accountFrom));
+        assertEquals(0.0, balance(destination, accountTo));
+        assertTrue(sagas(source, TransferSaga.State.DEBITED).isEmpty());
+    }
+
+    @Test
+    void aTransferInterruptedAfterTheDebitIsCompletedByRecovery() {
+        destinationTemplate.failing = true;
+        // makeMoneyTransfer answers null when the transfer failed with an exception
+        assertNull(sharded.makeMoneyTransfer(30, accountFrom, accountTo));
+        destinationTemplate.failing = false;
+
+        // The money in flight is in neither account
+        assertEquals(70.0, balance(source, accountFrom));
+        assertEquals(0.0, balance(destination, accountTo));
+        assertEquals(70.0, sharded.totalBalance());
+        assertEquals(1, sagas(source, TransferSaga.State.DEBITED).size());
+
+        // A transfer still within the grace period is left alone
+        assertEquals(0, sharded.recoverTransfers(Duration.ofHours(1)));
+        assertEquals(1, sharded.recoverTransfers(Duration.ZERO));
+
+        assertEquals(70.0, balance(source, accountFrom));
+        assertEquals(30.0, balance(destination, accountTo));
+        assertEquals(100.0, sharded.totalBalance());
+        assertEquals(1, sagas(source, TransferSaga.State.COMPLETED).size());
+        assertEquals(1, sagas(destination, TransferSaga.State.CREDITED).size());
+        // Nothing is left to recover, so a second run credits nothing twice
+        assertEquals(0, sharded.recoverTransfers(Duration.ZERO));
+        assertEquals(30.0, balance(destination, accountTo));
+    }
+
+    @Test
+    void aTransferToAnAccountGoneAfterTheDebitIsCompensated() {
+        destinationTemplate.failing = true;
+        assertNull(sharded.makeMoneyTransfer(30, accountFrom, accountTo));
+        destinationTemplate.failing = false;
+        sharded.getBankService(destination).deleteAccount(accountTo);
+
+        assertEquals(1, sharded.recoverTransfers(Duration.ZERO));
+
+        assertEquals(100.0, balance(source, accountFrom));
+        assertEquals(100.0, sharded.totalBalance());
+        assertEquals(1, sagas(source, TransferSaga.State.COMPENSATED).size());
+        assertEquals(1, sagas(destination, TransferSaga.State.COMPENSATED).size());
+        assertTrue(sagas(source, TransferSaga.State.DEBITED).isEmpty());
+    }
+
+    /**
+     * Creates a bank whose IBAN routes to the shard, with one account.
+     *
+     * @return The ID of the account.
+     */
+    private Integer createAccount(Shard shard, double balance) {
+        Bank bank;
+        do {
+            bank = TestDatabase.newBank();
+        } while (shardRouter.shardOfIban(bank.getIban()) != shard);
+        sharded.createBank(bank);
+        Account account = TestDatabase.newAccount(bank, balance);
+        sharded.createAccount(account);
+        assertSame(shard, shardRouter.shardOfId(account.getId_account()));
+        return account.getId_account();
+    }
+
+    private static double balance(Shard shard, Integer idAccount) {
+        return shard.getTransactionTemplate().withEntityManager(em -> ((Number) em
+                .createNativeQuery("SELECT account_balance FROM account WHERE id_account = ?")
+                .setParameter(1, idAccount)
+                .getSingleResult()).doubleValue());
+    }
+
+    private static List<TransferSaga> sagas(Shard shard, TransferSaga.State state) {
+        Date later = new Date(System.currentTimeMillis() + 60_000);
+        return shard.getTransactionTemplate().withEntityManager(em ->
+                shard.getTransferSagaDAO().findSagas(state, later, 100));
+    }
+
+    /**
+     * A template whose transactions fail while {@link #failing} is set, as if its database were down;
+     * reads without a transaction still succeed.
+     */
+    private static final class FailingTransactionTemplate extends TransactionTemplate {
+        volatile boolean failing;
+
+        FailingTransactionTemplate(EntityManagerFactory entityManagerFactory) {
+            super(entityManagerFactory);
+        }
+
+        @Override
+        public <T> T inTransaction(Function<EntityManager, T> work) {
+            if (failing) {
+                throw new IllegalStateException("The database is down");
+            }
+            return super.inTransaction(work);
+        }
+    }
+}
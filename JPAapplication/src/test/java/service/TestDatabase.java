@@ -0,0 +1,119 @@
+package service;
+
+import DAO.TransactionTemplate;
+import entities.Account;
+import entities.Bank;
+import jakarta.persistence.EntityManagerFactory;
+import pool.ConnectionPool;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The "Bank" persistence unit pointed at an empty in-memory H2 database in PostgreSQL mode, one per
+ * instance, with the schema generated from the entities.
+ */
+class TestDatabase implements AutoCloseable {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final AtomicInteger UNIQUE = new AtomicInteger();
+
+    private final ConnectionPool pool;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final BankService bankService;
+
+    TestDatabase() {
+        this(new HashMap<>());
+    }
+
+    /**
+     * @param extraProperties Persistence unit properties specific to the test, e.g. retry settings.
+     */
+    TestDatabase(Map<String, String> extraProperties) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("jakarta.persistence.jdbc.url", "jdbc:h2:mem:test" + DATABASES.incrementAndGet()
+                + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL;LOCK_TIMEOUT=10000");
+        properties.put("jakarta.persistence.jdbc.driver", "org.h2.Driver");
+        properties.put("jakarta.persistence.jdbc.user", "sa");
+        properties.put("jakarta.persistence.jdbc.password", "");
+        // H2 understands the PostgreSQL dialect, but not the DDL EclipseLink generates for H2 2.x
+        properties.put("eclipselink.target-database", "PostgreSQL");
+        properties.put("jakarta.persistence.schema-generation.database.action", "drop-and-create");
+        properties.put("eclipselink.logging.level", "SEVERE");
+        properties.putAll(extraProperties);
+        pool = ConnectionPool.forPersistenceUnit("Bank", properties);
+        entityManagerFactory = pool.createEntityManagerFactory();
+        transactionTemplate = new TransactionTemplate(entityManagerFactory);
+        bankService = new BankService(transactionTemplate);
+    }
+
+    /**
+     * @return A new bank with a unique IBAN, not yet persisted.
+     */
+    static Bank newBank() {
+        int n = UNIQUE.incrementAndGet();
+        Bank bank = new Bank();
+        bank.setBank_name("Bank " + n);
+        bank.setMain_office("Office " + n);
+        bank.setIban("IBAN" + n);
+        return bank;
+    }
+
+    /**
+     * @param bank    The bank of the account.
+     * @param balance The opening balance.
+     * @return A new account with a unique number, not yet persisted.
+     */
+    static Account newAccount(Bank bank, double balance) {
+        Account account = new Account();
+        account.setAccount_number(String.format("%010d", UNIQUE.incrementAndGet()));
+        account.setAccount_balance(balance);
+        account.setAccount_type("checking");
+        account.setCurrency_type("EUR");
+        account.setBank(bank);
+        return account;
+    }
+
+    /**
+     * @return A new bank with a unique IBAN.
+     */
+    Bank createBank() {
+        Bank bank = newBank();
+        bankService.createBank(bank);
+        return bank;
+    }
+
+    /**
+     * @param bank    The bank of the account.
+     * @param balance The opening balance.
+     * @return The ID of a new account.
+     */
+    Integer createAccount(Bank bank, double balance) {
+        Account account = newAccount(bank, balance);
+        bankService.createAccount(account);
+        return account.getId_account();
+    }
+
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    TransactionTemplate getTransactionTemplate() {
+        return transactionTemplate;
+    }
+
+    BankService getBankService() {
+        return bankService;
+    }
+
+    @Override
+    public void close() {
+        entityManagerFactory.close();
+        pool.close();
+    }
+}
@@ -0,0 +1,145 @@
+package service;
+
+import entities.Bank;
+import metrics.ContentionStatistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads moving money in both directions between the same two accounts, and many threads
+ * changing the same account optimistically. Every run must finish well within the lock timeout, so a
+ * deadlock fails the test rather than hanging it.
+ */
+class TransferConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final double OPENING_BALANCE = 1_000;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private TestDatabase database;
+    private Integer accountA;
+    private Integer accountB;
+
+    @BeforeEach
+    void createAccounts() {
+        // Enough attempts that no optimistic change gives up, even with every thread on one account
+        database = new TestDatabase(Map.of("bank.retry.max-attempts", "100", "bank.retry.max-backoff-ms", "20"));
+        Bank bank = database.createBank();
+        accountA = database.createAccount(bank, OPENING_BALANCE);
+        accountB = database.createAccount(bank, OPENING_BALANCE);
+        ContentionStatistics.getInstance().reset();
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        database.close();
+    }
+
+    @Test
+    void opposingLockedTransfersConserveTheTotalBalance() throws Exception {
+        assertOpposingTransfersConserveTheTotalBalance(TransferMode.LOCKED_ENTITIES);
+    }
+
+    @Test
+    void opposingGuardedTransfersConserveTheTotalBalance() throws Exception {
+        assertOpposingTransfersConserveTheTotalBalance(TransferMode.GUARDED_UPDATE);
+    }
+
+    @Test
+    void concurrentChangesOfOneAccountAreRetriedAndNoneIsLost() throws Exception {
+        BankService bankService = database.getBankService();
+        List<Integer> changes = runConcurrently(thread -> {
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                assertNotNull(bankService.modifyAccount(accountA,
+                        account -> account.setAccount_balance(account.getAccount_balance() + 1)));
+            }
+            return TRANSFERS_PER_THREAD;
+        });
+
+        int applied = changes.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(OPENING_BALANCE + applied, balance(accountA), 0.0);
+        ContentionStatistics contention = ContentionStatistics.getInstance();
+        String row = "Account#" + accountA;
+        assertTrue(contention.getRetries(row) > 0, "no version conflict was retried");
+        assertEquals(0, contention.getGiveUps(row));
+        assertEquals(contention.getConflicts(row), contention.getRetries(row));
+    }
+
+    private void assertOpposingTransfersConserveTheTotalBalance(TransferMode mode) throws Exception {
+        BankService bankService = database.getBankService();
+        List<Integer> completed = runConcurrently(thread -> {
+            // Half of the threads pay from A to B, the other half from B to A
+            Integer from = thread % 2 == 0 ? accountA : accountB;
+            Integer to = thread % 2 == 0 ? accountB : accountA;
+            int count = 0;
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                TransferStatus status = bankService.makeMoneyTransfer(
+                        1 + ThreadLocalRandom.current().nextInt(100), from, to, mode);
+                // makeMoneyTransfer answers null when the transfer failed with an exception
+                assertNotNull(status, "transfer failed");
+                assertTrue(status == TransferStatus.COMPLETED || status == TransferStatus.INSUFFICIENT_BALANCE,
+                        "unexpected status " + status);
+                if (status == TransferStatus.COMPLETED) {
+                    count++;
+                }
+            }
+            return count;
+        });
+
+        assertTrue(completed.stream().mapToInt(Integer::intValue).sum() > 0);
+        assertEquals(2 * OPENING_BALANCE, balance(accountA) + balance(accountB), 0.0);
+        assertTrue(balance(accountA) >= 0 && balance(accountB) >= 0);
+        // Both paths lock the lower id first, so the opposing transfers never deadlock or retry
+        assertEquals(0, ContentionStatistics.getInstance().getTotalConflicts());
+    }
+
+    /**
+     * Runs the work on THREADS threads at once and waits for all of them.
+     *
+     * @return The result of each thread, in thread order.
+     */
+    private <T> List<T> runConcurrently(ThreadWork<T> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int index = thread;
+                futures.add(executor.submit((Callable<T>) () -> work.run(index)));
+            }
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+            assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS), "threads still running");
+        }
+    }
+
+    private double balance(Integer idAccount) {
+        // Read from the table, past the shared cache
+        return database.getTransactionTemplate().withEntityManager(em -> ((Number) em
+                .createNativeQuery("SELECT account_balance FROM account WHERE id_account = ?")
+                .setParameter(1, idAccount)
+                .getSingleResult()).doubleValue());
+    }
+
+    @FunctionalInterface
+    private interface ThreadWork<T> {
+        T run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,184 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Appending, replaying and truncating the {@link WriteAheadLog}. A crash is simulated by abandoning a log
+ * without closing it and, where the test needs it, by overwriting what a crash would have lost: the
+ * records appended after the last sync.
+ */
+class WriteAheadLogTest {
+    private static final int SEGMENT_SIZE = 4 * WriteAheadLog.RECORD_SIZE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendedRecordsAreReplayedInOrder() {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, SEGMENT_SIZE)) {
+            wal.startSegment(1);
+            wal.append(1, 10, 20, 150);
+            wal.append(2, 20, 30, 2_500);
+            wal.append(3, 30, 10, 1);
+            wal.sync();
+        }
+
+        List<long[]> records = new ArrayList<>();
+        long last = new WriteAheadLog(directory, SEGMENT_SIZE).replay(0, collectInto(records));
+
+        assertEquals(3, last);
+        assertArrayEquals(new long[]{1, 10, 20, 150}, records.get(0));
+        assertArrayEquals(new long[]{2, 20, 30, 2_500}, records.get(1));
+        assertArrayEquals(new long[]{3, 30, 10, 1}, records.get(2));
+    }
+
+    @Test
+    void replaySkipsTheRecordsOfTheCheckpoint() {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, SEGMENT_SIZE)) {
+            wal.startSegment(1);
+            for (long sequence = 1; sequence <= 6; sequence++) {
+                wal.append(sequence, 1, 2, 100);
+            }
+            wal.sync();
+        }
+
+        List<long[]> records = new ArrayList<>();
+        long last = new WriteAheadLog(directory, SEGMENT_SIZE).replay(4, collectInto(records));
+
+        assertEquals(6, last);
+        assertEquals(List.of(5L, 6L), sequences(records));
+        // Nothing after the checkpoint: the checkpoint's sequence is still the last one
+        assertEquals(9, new WriteAheadLog(directory, SEGMENT_SIZE).replay(9, collectInto(new ArrayList<>())));
+    }
+
+    @Test
+    void aCrashLosesOnlyTheRecordsAppendedSinceTheLastSync() throws IOException {
+        WriteAheadLog crashed = new WriteAheadLog(directory, SEGMENT_SIZE);
+        crashed.startSegment(1);
+        crashed.append(1, 1, 2, 100);
+        crashed.append(2, 1, 2, 100);
+        crashed.sync();
+        crashed.append(3, 1, 2, 100);
+        // The crash tears the unsynced record half way through; the log is never closed
+        overwrite(segment(1), 2 * WriteAheadLog.RECORD_SIZE + 8, new byte[8]);
+
+        List<long[]> records = new ArrayList<>();
+        long last = new WriteAheadLog(directory, SEGMENT_SIZE).replay(0, collectInto(records));
+
+        assertEquals(2, last);
+        assertEquals(List.of(1L, 2L), sequences(records));
+    }
+
+    @Test
+    void replayStopsAtARecordThatFailsItsChecksum() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, SEGMENT_SIZE)) {
+            wal.startSegment(1);
+            wal.append(1, 1, 2, 100);
+            wal.append(2, 1, 2, 100);
+            wal.append(3, 1, 2, 100);
+            wal.sync();
+        }
+        // A flipped bit in the amount of the second record
+        overwrite(segment(1), WriteAheadLog.RECORD_SIZE + 16, new byte[]{1});
+
+        List<long[]> records = new ArrayList<>();
+        new WriteAheadLog(directory, SEGMENT_SIZE).replay(0, collectInto(records));
+
+        assertEquals(List.of(1L), sequences(records));
+    }
+
+    @Test
+    void fullSegmentsAreDeletedOnceACheckpointCoversThem() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, 2 * WriteAheadLog.RECORD_SIZE)) {
+            wal.startSegment(1);
+            for (long sequence = 1; sequence <= 5; sequence++) {
+                wal.append(sequence, 1, 2, 100);
+            }
+            wal.sync();
+            // Segments of records 1-2, 3-4 and 5-
+            assertEquals(3, wal.segmentCount());
+
+            assertEquals(0, wal.deleteUpTo(1));
+            assertEquals(1, wal.deleteUpTo(3));
+            assertTrue(Files.notExists(segment(1)));
+            assertEquals(1, wal.deleteUpTo(4));
+            // The current segment is kept whatever the checkpoint
+            assertEquals(0, wal.deleteUpTo(100));
+            assertEquals(1, wal.segmentCount());
+        }
+        assertEquals(List.of(segment(5)), segments());
+
+        List<long[]> records = new ArrayList<>();
+        new WriteAheadLog(directory, 2 * WriteAheadLog.RECORD_SIZE).replay(4, collectInto(records));
+        assertEquals(List.of(5L), sequences(records));
+    }
+
+    @Test
+    void aRestartReplacesASegmentWhoseFirstSyncNeverHappened() throws IOException {
+        try (WriteAheadLog wal = new WriteAheadLog(directory, SEGMENT_SIZE)) {
+            wal.startSegment(1);
+            wal.append(1, 1, 2, 100);
+            wal.append(2, 1, 2, 100);
+            wal.sync();
+        }
+
+        // The next run starts its segment after the replayed records and crashes before its first sync
+        WriteAheadLog crashed = new WriteAheadLog(directory, SEGMENT_SIZE);
+        long last = crashed.replay(0, collectInto(new ArrayList<>()));
+        crashed.startSegment(last + 1);
+        crashed.append(last + 1, 1, 2, 100);
+        overwrite(segment(3), 0, new byte[WriteAheadLog.RECORD_SIZE]);
+
+        // The run after it finds the same last record and starts the same segment again
+        try (WriteAheadLog wal = new WriteAheadLog(directory, SEGMENT_SIZE)) {
+            last = wal.replay(0, collectInto(new ArrayList<>()));
+            assertEquals(2, last);
+            wal.startSegment(last + 1);
+            wal.append(3, 2, 1, 40);
+            wal.sync();
+        }
+
+        List<long[]> records = new ArrayList<>();
+        new WriteAheadLog(directory, SEGMENT_SIZE).replay(0, collectInto(records));
+        assertEquals(List.of(1L, 2L, 3L), sequences(records));
+        assertArrayEquals(new long[]{3, 2, 1, 40}, records.get(2));
+    }
+
+    private static WriteAheadLog.RecordConsumer collectInto(List<long[]> records) {
+        return (sequence, idAccountFrom, idAccountTo, cents) ->
+                records.add(new long[]{sequence, idAccountFrom, idAccountTo, cents});
+    }
+
+    private static List<Long> sequences(List<long[]> records) {
+        return records.stream().map(record -> record[0]).toList();
+    }
+
+    private Path segment(long firstSequence) {
+        return directory.resolve(String.format("wal-%020d.log", firstSequence));
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static void overwrite(Path file, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}